@@ -177,6 +177,11 @@ public class HiCO<V extends NumberVector> extends GeneralizedOPTICS<V, Correlati
      */
     private ArrayModifiableDBIDs tmpIds;
 
+    /**
+     * Scratch buffers for the eigenvectors of two objects.
+     */
+    private double[][] v1t, v2t;
+
     /**
      * Sort object by the temporary fields.
      */
@@ -226,9 +231,12 @@ public class HiCO<V extends NumberVector> extends GeneralizedOPTICS<V, Correlati
     protected void expandDBID(DBIDRef id) {
       clusterOrder.add(id);
 
-      PCAFilteredResult pca1 = index.getLocalProjection(id);
       V dv1 = relation.get(id);
       final int dim = dv1.getDimensionality();
+      if(v1t == null || v1t.length != dim) {
+        v1t = new double[dim][dim];
+        v2t = new double[dim][dim];
+      }
 
       DBIDArrayIter iter = tmpIds.iter();
       for(; iter.valid(); iter.advance()) {
@@ -236,10 +244,12 @@ public class HiCO<V extends NumberVector> extends GeneralizedOPTICS<V, Correlati
           tmpCorrelation.putInt(iter, 0);
           continue;
         }
-        PCAFilteredResult pca2 = index.getLocalProjection(iter);
         V dv2 = relation.get(iter);
 
-        tmpCorrelation.putInt(iter, correlationDistance(pca1, pca2, dim));
+        // The buffers are modified, so the eigenvectors need to be copied again.
+        int lambda1 = index.getStrongEigenvectors(id, v1t);
+        int lambda2 = index.getStrongEigenvectors(iter, v2t);
+        tmpCorrelation.putInt(iter, correlationDistance(v1t, lambda1, v2t, lambda2, dim));
         tmpDistance.putDouble(iter, EuclideanDistanceFunction.STATIC.distance(dv1, dv2));
       }
       tmpIds.sort(tmpcomp);
@@ -297,57 +307,72 @@ public class HiCO<V extends NumberVector> extends GeneralizedOPTICS<V, Correlati
    *         specified PCAs
    */
   public int correlationDistance(PCAFilteredResult pca1, PCAFilteredResult pca2, int dimensionality) {
-    // TODO: Can we delay copying the matrixes?
-    // pca of rv1
-    double[][] v1t = copy(pca1.getEigenvectors());
-    double[][] v1t_strong = pca1.getStrongEigenvectors();
-    int lambda1 = pca1.getCorrelationDimension();
-
-    // pca of rv2
-    double[][] v2t = copy(pca2.getEigenvectors());
-    double[][] v2t_strong = pca2.getStrongEigenvectors();
-    int lambda2 = pca2.getCorrelationDimension();
+    return correlationDistance(copy(pca1.getEigenvectors()), pca1.getCorrelationDimension(), //
+        copy(pca2.getEigenvectors()), pca2.getCorrelationDimension(), dimensionality);
+  }
 
+  /**
+   * Computes the correlation distance between the two subspaces spanned by the
+   * specified strong eigenvectors.
+   *
+   * @param v1t strong eigenvectors of the first object in the first rows, the
+   *        matrix must have dimensionality rows (modified)
+   * @param lambda1 number of strong eigenvectors of the first object
+   * @param v2t strong eigenvectors of the second object in the first rows, the
+   *        matrix must have dimensionality rows (modified)
+   * @param lambda2 number of strong eigenvectors of the second object
+   * @param dimensionality the dimensionality of the data space
+   * @return the correlation distance between the two subspaces
+   */
+  public int correlationDistance(double[][] v1t, int lambda1, double[][] v2t, int lambda2, int dimensionality) {
+    // Rows added by adjust are stored after the original strong eigenvectors.
+    final int strong1 = lambda1, strong2 = lambda2;
     // for all strong eigenvectors of rv2
-    double[][] m1_czech = pca1.dissimilarityMatrix();
-    for(int i = 0; i < v2t_strong.length; i++) {
-      double[] v2_i = v2t_strong[i];
+    for(int i = 0; i < strong2; i++) {
+      double[] v2_i = v2t[i];
       // check, if distance of v2_i to the space of rv1 > delta
       // (i.e., if v2_i spans up a new dimension)
-      double distsq = squareSum(v2_i) - transposeTimesTimes(v2_i, m1_czech, v2_i);
+      double distsq = squareSum(v2_i) - projectedSquareSum(v2_i, v1t, lambda1);
 
-      // if so, insert v2_i into v1 and adjust v1
-      // and compute m1_czech new, increase lambda1
+      // if so, insert v2_i into v1 and adjust v1, increase lambda1
       if(lambda1 < dimensionality && distsq > deltasq) {
         adjust(v1t, v2_i, lambda1++);
-        // TODO: make this incremental?
-        double[] e1_czech_d = new double[v1t.length];
-        Arrays.fill(e1_czech_d, 0, lambda1, 1);
-        m1_czech = transposeDiagonalTimes(v1t, e1_czech_d, v1t);
       }
     }
 
     // for all strong eigenvectors of rv1
-    double[][] m2_czech = pca2.dissimilarityMatrix();
-    for(int i = 0; i < v1t_strong.length; i++) {
-      double[] v1_i = v1t_strong[i];
+    for(int i = 0; i < strong1; i++) {
+      double[] v1_i = v1t[i];
       // check, if distance of v1_i to the space of rv2 > delta
       // (i.e., if v1_i spans up a new dimension)
-      double distsq = squareSum(v1_i) - transposeTimesTimes(v1_i, m2_czech, v1_i);
+      double distsq = squareSum(v1_i) - projectedSquareSum(v1_i, v2t, lambda2);
 
-      // if so, insert v1_i into v2 and adjust v2
-      // and compute m2_czech new , increase lambda2
+      // if so, insert v1_i into v2 and adjust v2, increase lambda2
       if(lambda2 < dimensionality && distsq > deltasq) {
         adjust(v2t, v1_i, lambda2++);
-        // TODO: make this incremental?
-        double[] e2_czech_d = new double[v1t.length];
-        Arrays.fill(e2_czech_d, 0, lambda2, 1);
-        m2_czech = transposeDiagonalTimes(v2t, e2_czech_d, v2t);
       }
     }
     return Math.max(lambda1, lambda2);
   }
 
+  /**
+   * Squared length of the projection of a vector onto the space spanned by
+   * the first rows of an orthonormal matrix.
+   *
+   * @param vec Vector
+   * @param v Orthonormal vectors
+   * @param lambda Number of vectors to use
+   * @return Squared length of the projection
+   */
+  private static double projectedSquareSum(double[] vec, double[][] v, int lambda) {
+    double sum = 0.;
+    for(int k = 0; k < lambda; k++) {
+      final double p = transposeTimes(vec, v[k]);
+      sum += p * p;
+    }
+    return sum;
+  }
+
   /**
    * Inserts the specified vector into the given orthonormal matrix
    * <code>v</code> at column <code>corrDim</code>. After insertion the matrix
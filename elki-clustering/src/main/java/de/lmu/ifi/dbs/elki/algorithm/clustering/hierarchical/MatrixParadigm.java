@@ -20,11 +20,17 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.PrimitiveDistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 
 /**
@@ -107,6 +113,9 @@ public class MatrixParadigm {
    * @return this
    */
   public MatrixParadigm initializeWithDistances(DistanceQuery<?> dq) {
+    if(dq instanceof PrimitiveDistanceQuery) {
+      return initializeWithDistances((PrimitiveDistanceQuery<?>) dq);
+    }
     final DBIDArrayIter ix = this.ix, iy = this.iy;
     final double[] matrix = this.matrix;
     int pos = 0;
@@ -119,4 +128,28 @@ public class MatrixParadigm {
     }
     return this;
   }
+
+  /**
+   * Initialize a distance matrix, computing each row with a single block
+   * distance call.
+   *
+   * @param dq Distance query
+   * @param <O> Object type
+   * @return this
+   */
+  private <O> MatrixParadigm initializeWithDistances(PrimitiveDistanceQuery<O> dq) {
+    final Relation<? extends O> relation = dq.getRelation();
+    final PrimitiveDistanceFunction<? super O> df = dq.getDistanceFunction();
+    final DBIDArrayIter ix = this.ix;
+    final List<O> objs = new ArrayList<>(size);
+    for(ix.seek(0); ix.valid(); ix.advance()) {
+      objs.add(relation.get(ix));
+    }
+    final double[] row = new double[size];
+    for(int x = 1; x < size; x++) {
+      df.distances(objs.get(x), objs.subList(0, x), row);
+      System.arraycopy(row, 0, matrix, triangleSize(x), x);
+    }
+    return this;
+  }
 }
@@ -0,0 +1,602 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.pq;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeans;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeansLloyd;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.projection.NumericalFeatureSelection;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.ProxyDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.ProjectedView;
+import de.lmu.ifi.dbs.elki.database.relation.ProxyView;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractRefiningIndex;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
+import de.lmu.ifi.dbs.elki.index.KNNIndex;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.utilities.Alias;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMaxHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.LessEqualConstraint;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ChainedParameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Product quantization index for approximate k-nearest-neighbor search with
+ * Euclidean distance.
+ * <p>
+ * The vector space is split into a number of disjoint subspaces, and each
+ * subspace is quantized separately with k-means (trained on a sample of the
+ * data). Every object is then stored as one byte per subspace, i.e. as a
+ * sequence of codebook indexes. At query time, the distances of the query
+ * to all codebook entries are precomputed once (asymmetric distance
+ * computation), so that approximating the distance of an object costs one
+ * table lookup per subspace. The best candidates of this scan are refined
+ * using the exact distances.
+ * <p>
+ * Reference:
+ * <p>
+ * H. Jégou, M. Douze, C. Schmid<br>
+ * Product Quantization for Nearest Neighbor Search<br>
+ * IEEE Transactions on Pattern Analysis and Machine Intelligence 33(1)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @apiviz.uses KMeans
+ * @apiviz.has ProductQuantizationKNNQuery
+ *
+ * @param <V> Vector type
+ */
+@Title("Product Quantization for Nearest Neighbor Search")
+@Reference(authors = "H. Jégou, M. Douze, C. Schmid", //
+    title = "Product Quantization for Nearest Neighbor Search", //
+    booktitle = "IEEE Transactions on Pattern Analysis and Machine Intelligence 33(1)", //
+    url = "https://doi.org/10.1109/TPAMI.2010.57", //
+    bibkey = "DBLP:journals/pami/JegouDS11")
+public class ProductQuantizationIndex<V extends NumberVector> extends AbstractRefiningIndex<V> implements KNNIndex<V> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ProductQuantizationIndex.class);
+
+  /**
+   * k-means variant used to train the sub-quantizers, configured with at most
+   * {@link #ksub} clusters. It may be shared, and is not modified.
+   */
+  protected KMeans<V, ?> kmeans;
+
+  /**
+   * Number of subspaces.
+   */
+  protected int numsub;
+
+  /**
+   * Maximum number of codebook entries per subspace (at most 256).
+   */
+  protected int ksub;
+
+  /**
+   * Training sample size.
+   */
+  protected int samplesize;
+
+  /**
+   * Random generator for sampling.
+   */
+  protected RandomFactory rnd;
+
+  /**
+   * Refinement factor: number of candidates per requested neighbor.
+   */
+  protected int refine;
+
+  /**
+   * Subspace boundaries, {@code numsub + 1} entries.
+   */
+  protected int[] bounds;
+
+  /**
+   * Codebooks: for each subspace, the concatenated codebook vectors.
+   */
+  protected double[][] codebooks;
+
+  /**
+   * Codes, {@code numsub} bytes per object.
+   */
+  protected byte[] codes;
+
+  /**
+   * Object ids, in the order of the codes.
+   */
+  protected ArrayDBIDs ids;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation to index
+   * @param kmeans k-means variant for training the codebooks, configured with
+   *        at most ksub clusters
+   * @param numsub Number of subspaces
+   * @param ksub Codebook size per subspace
+   * @param samplesize Training sample size
+   * @param rnd Random generator for sampling
+   * @param refine Refinement factor
+   */
+  public ProductQuantizationIndex(Relation<V> relation, KMeans<V, ?> kmeans, int numsub, int ksub, int samplesize, RandomFactory rnd, int refine) {
+    super(relation);
+    this.kmeans = kmeans;
+    this.numsub = numsub;
+    this.ksub = ksub;
+    this.samplesize = samplesize;
+    this.rnd = rnd;
+    this.refine = refine;
+  }
+
+  @Override
+  public void initialize() {
+    final int dim = RelationUtil.dimensionality(relation);
+    if(numsub > dim) {
+      throw new AbortException("Number of subspaces must not exceed the dimensionality.");
+    }
+    bounds = new int[numsub + 1];
+    for(int j = 0; j <= numsub; j++) {
+      bounds[j] = (int) (j * (long) dim / numsub);
+    }
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    if(ids.size() * (long) numsub > Integer.MAX_VALUE) {
+      throw new AbortException("Product quantization codes of " + ids.size() + " objects with " + numsub + " subspaces exceed the Java array size limit. Use fewer subspaces.");
+    }
+    DBIDs sample = samplesize > 0 && samplesize < ids.size() ? DBIDUtil.randomSample(ids, samplesize, rnd) : ids;
+
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Training sub-quantizers", numsub, LOG) : null;
+    codebooks = new double[numsub][];
+    for(int j = 0; j < numsub; j++) {
+      codebooks[j] = trainCodebook(sample, bounds[j], bounds[j + 1]);
+      LOG.incrementProcessed(prog);
+    }
+    LOG.ensureCompleted(prog);
+
+    codes = new byte[ids.size() * numsub];
+    int off = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+      final V vec = relation.get(it);
+      for(int j = 0; j < numsub; j++) {
+        codes[off++] = (byte) nearestCode(codebooks[j], vec, bounds[j], bounds[j + 1]);
+      }
+    }
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".code-bytes", codes.length));
+    }
+  }
+
+  /**
+   * Train the codebook of a single subspace.
+   *
+   * @param sample Training sample
+   * @param start First dimension (inclusive)
+   * @param end Last dimension (exclusive)
+   * @return Concatenated codebook vectors
+   */
+  protected double[] trainCodebook(DBIDs sample, int start, int end) {
+    final int len = end - start;
+    if(sample.size() <= ksub) {
+      // Too few objects to cluster: every object becomes a codebook entry.
+      double[] book = new double[sample.size() * len];
+      int off = 0;
+      for(DBIDIter it = sample.iter(); it.valid(); it.advance(), off += len) {
+        final V vec = relation.get(it);
+        for(int d = 0; d < len; d++) {
+          book[off + d] = vec.doubleValue(start + d);
+        }
+      }
+      return book;
+    }
+    int[] dims = new int[len];
+    for(int d = 0; d < len; d++) {
+      dims[d] = start + d;
+    }
+    ProxyView<V> view = new ProxyView<>(sample, new ProjectedView<>(relation, new NumericalFeatureSelection<V>(dims)));
+    // The k-means instance is shared, and already configured with k = ksub.
+    Clustering<?> clustering = kmeans.run(new ProxyDatabase(sample, view), view);
+    int nonempty = 0;
+    for(Cluster<?> clus : clustering.getAllClusters()) {
+      nonempty += clus.size() > 0 ? 1 : 0;
+    }
+    if(nonempty > ksub) {
+      throw new AbortException("The k-means variant produced more than " + ksub + " clusters.");
+    }
+    double[] book = new double[nonempty * len];
+    int off = 0;
+    for(Cluster<?> clus : clustering.getAllClusters()) {
+      // Skip empty clusters, they have no centroid.
+      final DBIDs members = clus.getIDs();
+      if(members.isEmpty()) {
+        continue;
+      }
+      // Use the actual centroids, as some k-means variants produce medoids.
+      for(DBIDIter it = members.iter(); it.valid(); it.advance()) {
+        final V vec = relation.get(it);
+        for(int d = 0; d < len; d++) {
+          book[off + d] += vec.doubleValue(start + d);
+        }
+      }
+      final double f = 1. / members.size();
+      for(int d = 0; d < len; d++) {
+        book[off + d] *= f;
+      }
+      off += len;
+    }
+    return book;
+  }
+
+  /**
+   * Find the nearest codebook entry.
+   *
+   * @param book Codebook
+   * @param vec Vector
+   * @param start First dimension (inclusive)
+   * @param end Last dimension (exclusive)
+   * @return Code of the nearest codebook entry
+   */
+  private static int nearestCode(double[] book, NumberVector vec, int start, int end) {
+    final int len = end - start;
+    double best = Double.POSITIVE_INFINITY;
+    int bestc = 0;
+    for(int c = 0, off = 0; off < book.length; c++, off += len) {
+      double sum = 0.;
+      for(int d = 0; d < len; d++) {
+        final double v = vec.doubleValue(start + d) - book[off + d];
+        sum += v * v;
+      }
+      if(sum < best) {
+        best = sum;
+        bestc = c;
+      }
+    }
+    return bestc;
+  }
+
+  /**
+   * Build the asymmetric distance lookup table for a query: the squared
+   * distances of each query subvector to all codebook entries of the
+   * subspace, at offset {@code j * ksub + code}.
+   *
+   * @param query Query vector
+   * @return Lookup table
+   */
+  protected double[] lookupTable(NumberVector query) {
+    double[] table = new double[numsub * ksub];
+    for(int j = 0; j < numsub; j++) {
+      final double[] book = codebooks[j];
+      final int start = bounds[j], len = bounds[j + 1] - start;
+      for(int off = 0, t = j * ksub; off < book.length; off += len, t++) {
+        double sum = 0.;
+        for(int d = 0; d < len; d++) {
+          final double v = query.doubleValue(start + d) - book[off + d];
+          sum += v * v;
+        }
+        table[t] = sum;
+      }
+    }
+    return table;
+  }
+
+  @Override
+  public Logging getLogger() {
+    return LOG;
+  }
+
+  @Override
+  public String getLongName() {
+    return "Product quantization index";
+  }
+
+  @Override
+  public String getShortName() {
+    return "pq-index";
+  }
+
+  @Override
+  public KNNQuery<V> getKNNQuery(DistanceQuery<V> distanceQuery, Object... hints) {
+    if(distanceQuery.getRelation() != relation) {
+      return null;
+    }
+    for(Object hint : hints) {
+      if(DatabaseQuery.HINT_EXACT.equals(hint)) {
+        return null;
+      }
+    }
+    DistanceFunction<? super V> df = distanceQuery.getDistanceFunction();
+    if(!(df instanceof EuclideanDistanceFunction) && !(df instanceof SquaredEuclideanDistanceFunction)) {
+      return null;
+    }
+    return new ProductQuantizationKNNQuery(distanceQuery);
+  }
+
+  /**
+   * k-nearest-neighbor query using asymmetric distance computation.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public class ProductQuantizationKNNQuery extends AbstractRefiningIndex<V>.AbstractKNNQuery {
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     */
+    public ProductQuantizationKNNQuery(DistanceQuery<V> distanceQuery) {
+      super(distanceQuery);
+    }
+
+    @Override
+    public KNNList getKNNForObject(V obj, int k) {
+      final double[] table = lookupTable(obj);
+      final int size = ids.size(), numc = (int) Math.min(size, k * (long) refine);
+      // Filter step: keep the best candidates by approximate distance.
+      DoubleIntegerMaxHeap candidates = new DoubleIntegerMaxHeap(numc);
+      double bound = Double.POSITIVE_INFINITY;
+      for(int i = 0, off = 0; i < size; i++, off += numsub) {
+        double sum = 0.;
+        for(int j = 0, t = 0; j < numsub; j++, t += ksub) {
+          sum += table[t + (codes[off + j] & 0xFF)];
+        }
+        if(sum < bound) {
+          if(candidates.size() < numc) {
+            candidates.add(sum, i);
+          }
+          else {
+            candidates.replaceTopElement(sum, i);
+          }
+          bound = candidates.size() < numc ? Double.POSITIVE_INFINITY : candidates.peekKey();
+        }
+      }
+      // Refinement step with exact distances.
+      KNNHeap heap = DBIDUtil.newHeap(k);
+      DBIDArrayIter it = ids.iter();
+      for(; !candidates.isEmpty(); candidates.poll()) {
+        it.seek(candidates.peekValue());
+        heap.insert(refine(it, obj), it);
+      }
+      return heap.toKNNList();
+    }
+  }
+
+  /**
+   * Index factory.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.has ProductQuantizationIndex
+   *
+   * @param <V> Vector type
+   */
+  @Alias({ "pq", "productquantization" })
+  public static class Factory<V extends NumberVector> implements IndexFactory<V> {
+    /**
+     * k-means variant used to train the sub-quantizers.
+     */
+    protected KMeans<V, ?> kmeans;
+
+    /**
+     * Number of subspaces.
+     */
+    protected int numsub;
+
+    /**
+     * Codebook size per subspace.
+     */
+    protected int ksub;
+
+    /**
+     * Training sample size.
+     */
+    protected int samplesize;
+
+    /**
+     * Random generator for sampling.
+     */
+    protected RandomFactory rnd;
+
+    /**
+     * Refinement factor.
+     */
+    protected int refine;
+
+    /**
+     * Constructor.
+     *
+     * @param kmeans k-means variant for training the codebooks, configured with
+     *        at most ksub clusters
+     * @param numsub Number of subspaces
+     * @param ksub Codebook size per subspace
+     * @param samplesize Training sample size
+     * @param rnd Random generator for sampling
+     * @param refine Refinement factor
+     */
+    public Factory(KMeans<V, ?> kmeans, int numsub, int ksub, int samplesize, RandomFactory rnd, int refine) {
+      super();
+      this.kmeans = kmeans;
+      this.numsub = numsub;
+      this.ksub = ksub;
+      this.samplesize = samplesize;
+      this.rnd = rnd;
+      this.refine = refine;
+    }
+
+    @Override
+    public ProductQuantizationIndex<V> instantiate(Relation<V> relation) {
+      return new ProductQuantizationIndex<>(relation, kmeans, numsub, ksub, samplesize, rnd, refine);
+    }
+
+    @Override
+    public TypeInformation getInputTypeRestriction() {
+      return TypeUtil.NUMBER_VECTOR_FIELD;
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     *
+     * @param <V> Vector type
+     */
+    public static class Parameterizer<V extends NumberVector> extends AbstractParameterizer {
+      /**
+       * Number of subspaces.
+       */
+      public static final OptionID SUBSPACES_ID = new OptionID("pq.subspaces", "Number of subspaces to quantize independently.");
+
+      /**
+       * Codebook size.
+       */
+      public static final OptionID CODEBOOK_ID = new OptionID("pq.codebook", "Number of codebook entries per subspace (at most 256).");
+
+      /**
+       * k-means variant.
+       */
+      public static final OptionID KMEANS_ID = new OptionID("pq.kmeans", "k-means variant used to train the codebooks.");
+
+      /**
+       * Training sample size.
+       */
+      public static final OptionID SAMPLE_ID = new OptionID("pq.sample", "Number of objects to train the codebooks on, 0 to use all.");
+
+      /**
+       * Random seed for sampling.
+       */
+      public static final OptionID SEED_ID = new OptionID("pq.seed", "Random generator seed for sampling the training data.");
+
+      /**
+       * Refinement factor.
+       */
+      public static final OptionID REFINE_ID = new OptionID("pq.refine", "Number of candidates per requested neighbor to refine with exact distances.");
+
+      /**
+       * k-means variant used to train the sub-quantizers.
+       */
+      protected KMeans<V, ?> kmeans;
+
+      /**
+       * Number of subspaces.
+       */
+      protected int numsub;
+
+      /**
+       * Codebook size per subspace.
+       */
+      protected int ksub;
+
+      /**
+       * Training sample size.
+       */
+      protected int samplesize;
+
+      /**
+       * Random generator for sampling.
+       */
+      protected RandomFactory rnd;
+
+      /**
+       * Refinement factor.
+       */
+      protected int refine;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        IntParameter numsubP = new IntParameter(SUBSPACES_ID, 8) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(numsubP)) {
+          numsub = numsubP.intValue();
+        }
+        IntParameter ksubP = new IntParameter(CODEBOOK_ID, 256) //
+            .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT) //
+            .addConstraint(new LessEqualConstraint(256));
+        if(config.grab(ksubP)) {
+          ksub = ksubP.intValue();
+        }
+        ObjectParameter<KMeans<V, ?>> kmeansP = new ObjectParameter<>(KMEANS_ID, KMeans.class, KMeansLloyd.class);
+        if(config.grab(kmeansP)) {
+          ListParameterization kmeansParameters = new ListParameterization();
+          // The number of clusters is given by the codebook size.
+          kmeansParameters.addParameter(KMeans.K_ID, ksub);
+          ChainedParameterization combinedConfig = new ChainedParameterization(kmeansParameters, config);
+          combinedConfig.errorsTo(config);
+          kmeans = kmeansP.instantiateClass(combinedConfig);
+        }
+        IntParameter sampleP = new IntParameter(SAMPLE_ID, 100000) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+        if(config.grab(sampleP)) {
+          samplesize = sampleP.intValue();
+        }
+        RandomParameter rndP = new RandomParameter(SEED_ID);
+        if(config.grab(rndP)) {
+          rnd = rndP.getValue();
+        }
+        IntParameter refineP = new IntParameter(REFINE_ID, 10) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(refineP)) {
+          refine = refineP.intValue();
+        }
+      }
+
+      @Override
+      protected Factory<V> makeInstance() {
+        return new Factory<>(kmeans, numsub, ksub, samplesize, rnd, refine);
+      }
+    }
+  }
+}
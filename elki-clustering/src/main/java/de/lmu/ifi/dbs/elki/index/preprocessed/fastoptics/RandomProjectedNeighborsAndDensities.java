@@ -65,7 +65,8 @@ import net.jafama.FastMath;
  * This is based on the original code provided by Johannes Schneider, with
  * ELKIfications and optimizations by Erich Schubert.
  * <p>
- * TODO: implement one of the Index APIs?
+ * For a general k nearest neighbor index based on random projection splits,
+ * use the RandomProjectionTreeKNNPreprocessor instead.
  *
  * @author Johannes Schneider
  * @author Erich Schubert
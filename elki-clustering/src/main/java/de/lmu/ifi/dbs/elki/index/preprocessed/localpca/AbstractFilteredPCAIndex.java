@@ -20,23 +20,39 @@
  */
 package de.lmu.ifi.dbs.elki.index.preprocessed.localpca;
 
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.euclideanLength;
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.minusTimesEquals;
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.timesEquals;
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.transposeTimes;
+
+import java.util.Arrays;
+
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
 import de.lmu.ifi.dbs.elki.index.preprocessed.AbstractPreprocessorIndex;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.CovarianceMatrix;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.EigenvalueDecomposition;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.EigenPair;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCAFilteredResult;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCAResult;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCARunner;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.StandardCovarianceMatrixBuilder;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.filter.EigenPairFilter;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.filter.PercentageEigenPairFilter;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.EmptyDataException;
@@ -69,6 +85,31 @@ public abstract class AbstractFilteredPCAIndex<NV extends NumberVector> extends
    */
   protected EigenPairFilter filter;
 
+  /**
+   * Data dimensionality.
+   */
+  protected int dim;
+
+  /**
+   * Position of each object in the arrays below.
+   */
+  protected WritableIntegerDataStore positions;
+
+  /**
+   * Eigenvalues of all objects, {@code dim} values each.
+   */
+  protected double[] eigenvalues;
+
+  /**
+   * Start of the strong eigenvectors of each object in {@link #basis}.
+   */
+  protected int[] basisStart;
+
+  /**
+   * Strong eigenvectors of all objects, flattened.
+   */
+  protected double[] basis;
+
   /**
    * Constructor.
    *
@@ -90,37 +131,210 @@ public abstract class AbstractFilteredPCAIndex<NV extends NumberVector> extends
 
     // Note: this is required for ERiC to work properly, otherwise the data is
     // recomputed for the partitions!
-    if(storage != null) {
+    if(basis != null) {
       return;
     }
 
-    storage = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, PCAFilteredResult.class);
-
     long start = System.currentTimeMillis();
     FiniteProgress progress = getLogger().isVerbose() ? new FiniteProgress("Performing local PCA", relation.size(), getLogger()) : null;
 
-    // TODO: use a bulk operation?
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      PCAResult epairs = pca.processIds(objectsForPCA(iditer), relation);
-      int numstrong = filter.filter(epairs.getEigenvalues());
-      PCAFilteredResult pcares = new PCAFilteredResult(epairs.getEigenPairs(), numstrong, 1., 0.);
-      storage.put(iditer, pcares);
-      getLogger().incrementProcessed(progress);
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    dim = RelationUtil.dimensionality(relation);
+    positions = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+    for(DBIDArrayIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      positions.putInt(iditer, iditer.getOffset());
     }
+    eigenvalues = new double[size * dim];
+    final double[][] strong = new double[size][];
+
+    // Neighborhood queries need not be thread-safe, so materialize them first.
+    final DoubleDBIDList[] neighbors = new DoubleDBIDList[size];
+    for(DBIDArrayIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      neighbors[iditer.getOffset()] = objectsForPCA(iditer);
+    }
+
+    // The local PCAs are independent, compute them in parallel. Each worker
+    // reuses its covariance and decomposition storage.
+    ParallelExecutor.run(size, () -> {
+      Worker worker = new Worker();
+      return i -> {
+        strong[i] = worker.process(neighbors[i], i);
+        neighbors[i] = null; // Release memory early
+        getLogger().incrementProcessed(progress);
+      };
+    });
     getLogger().ensureCompleted(progress);
 
+    // Pack the strong eigenvectors into a single array.
+    basisStart = new int[size + 1];
+    for(int i = 0; i < size; i++) {
+      basisStart[i + 1] = basisStart[i] + strong[i].length;
+    }
+    basis = new double[basisStart[size]];
+    for(int i = 0; i < size; i++) {
+      System.arraycopy(strong[i], 0, basis, basisStart[i], strong[i].length);
+    }
+
     if(getLogger().isVerbose()) {
       long elapsedTime = System.currentTimeMillis() - start;
       getLogger().verbose(this.getClass().getName() + " runtime: " + elapsedTime + " milliseconds.");
     }
   }
 
+  /**
+   * Local PCA computation of a single thread.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class Worker {
+    /**
+     * Reusable covariance matrix, {@code null} for custom covariance builders.
+     */
+    private CovarianceMatrix cov;
+
+    /**
+     * Reusable eigenvalue decomposition, {@code null} for custom PCA runners.
+     */
+    private EigenvalueDecomposition evd;
+
+    /**
+     * Eigenvalue buffer.
+     */
+    private double[] ev;
+
+    /**
+     * Constructor.
+     */
+    Worker() {
+      // The workspaces can only be used with the default implementations.
+      if(pca.getClass() == PCARunner.class) {
+        evd = new EigenvalueDecomposition(dim);
+        ev = new double[dim];
+        if(pca.getCovarianceMatrixBuilder().getClass() == StandardCovarianceMatrixBuilder.class) {
+          cov = new CovarianceMatrix(dim);
+        }
+      }
+    }
+
+    /**
+     * Compute the local PCA of one object.
+     *
+     * @param neighbors Neighbors of the object
+     * @param pos Object position
+     * @return Strong eigenvectors, flattened
+     */
+    double[] process(DoubleDBIDList neighbors, int pos) {
+      final int off = pos * dim;
+      if(evd == null) {
+        PCAResult epairs = pca.processIds(neighbors, relation);
+        double[][] vecs = epairs.getEigenvectors();
+        double[] evs = epairs.getEigenvalues();
+        // Truncated PCA runners only return the leading eigenpairs.
+        evs = evs.length < dim ? Arrays.copyOf(evs, dim) : evs;
+        System.arraycopy(evs, 0, eigenvalues, off, dim);
+        int numstrong = Math.min(filter.filter(evs), vecs.length);
+        double[] strong = new double[numstrong * dim];
+        for(int s = 0; s < numstrong; s++) {
+          System.arraycopy(vecs[s], 0, strong, s * dim, dim);
+        }
+        return strong;
+      }
+      double[][] covmat = cov != null ? cov.recompute(relation, neighbors).destroyToPopulationMatrix() //
+          : pca.getCovarianceMatrixBuilder().processIds(neighbors, relation);
+      evd.decompose(covmat);
+      // Same as PCAResult: absolute values, already sorted by the decomposition.
+      double[] d = evd.getRealEigenvalues();
+      for(int i = 0; i < dim; i++) {
+        ev[i] = Math.abs(d[i]);
+      }
+      System.arraycopy(ev, 0, eigenvalues, off, dim);
+      int numstrong = filter.filter(ev);
+      double[][] v = evd.getV();
+      double[] strong = new double[numstrong * dim];
+      for(int s = 0, o = 0; s < numstrong; s++) {
+        for(int j = 0; j < dim; j++) {
+          strong[o++] = v[j][s];
+        }
+      }
+      return strong;
+    }
+  }
+
   @Override
   public PCAFilteredResult getLocalProjection(DBIDRef objid) {
-    if(storage == null) {
+    // The full result is not stored, but recomputed.
+    PCAResult epairs = pca.processIds(objectsForPCA(objid), relation);
+    EigenPair[] pairs = completeEigenPairs(epairs.getEigenPairs());
+    double[] evs = new double[pairs.length];
+    for(int i = 0; i < pairs.length; i++) {
+      evs[i] = pairs[i].getEigenvalue();
+    }
+    int numstrong = Math.min(filter.filter(evs), epairs.getEigenPairs().length);
+    return new PCAFilteredResult(pairs, numstrong, 1., 0.);
+  }
+
+  /**
+   * Complete the eigenpairs of a truncated PCA to a full orthonormal basis,
+   * using zero eigenvalues for the added vectors.
+   *
+   * @param pairs Leading eigenpairs
+   * @return Eigenpairs of the full dimensionality
+   */
+  private static EigenPair[] completeEigenPairs(EigenPair[] pairs) {
+    final int dim = pairs[0].getEigenvector().length;
+    if(pairs.length >= dim) {
+      return pairs;
+    }
+    EigenPair[] full = Arrays.copyOf(pairs, dim);
+    int n = pairs.length;
+    // Gram-Schmidt of the unit vectors against the available eigenvectors.
+    for(int j = 0; j < dim && n < dim; j++) {
+      double[] v = new double[dim];
+      v[j] = 1.;
+      for(int rep = 0; rep < 2; rep++) {
+        for(int i = 0; i < n; i++) {
+          minusTimesEquals(v, full[i].getEigenvector(), transposeTimes(full[i].getEigenvector(), v));
+        }
+      }
+      final double norm = euclideanLength(v);
+      if(norm > 1e-8) {
+        full[n++] = new EigenPair(timesEquals(v, 1. / norm), 0.);
+      }
+    }
+    return full;
+  }
+
+  @Override
+  public int getCorrelationDimension(DBIDRef objid) {
+    if(basis == null) {
+      initialize();
+    }
+    final int p = positions.intValue(objid);
+    return (basisStart[p + 1] - basisStart[p]) / dim;
+  }
+
+  @Override
+  public int getStrongEigenvectors(DBIDRef objid, double[][] buf) {
+    if(basis == null) {
+      initialize();
+    }
+    final int p = positions.intValue(objid);
+    int c = 0;
+    for(int o = basisStart[p], e = basisStart[p + 1]; o < e; o += dim) {
+      System.arraycopy(basis, o, buf[c++], 0, dim);
+    }
+    return c;
+  }
+
+  @Override
+  public void getEigenvalues(DBIDRef objid, double[] buf) {
+    if(basis == null) {
       initialize();
     }
-    return storage.get(objid);
+    System.arraycopy(eigenvalues, positions.intValue(objid) * dim, buf, 0, dim);
   }
 
   /**
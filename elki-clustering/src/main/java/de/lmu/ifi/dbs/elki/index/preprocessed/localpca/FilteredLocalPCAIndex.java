@@ -37,13 +37,45 @@ import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCAFilteredResult;
  */
 public interface FilteredLocalPCAIndex<NV extends NumberVector> extends Index {
   /**
-   * Get the precomputed local PCA for a particular object ID.
+   * Get the local PCA for a particular object ID.
+   * <p>
+   * The result is not cached: every call queries the neighborhood and
+   * recomputes the full PCA. Bulk consumers should prefer
+   * {@link #getCorrelationDimension} and {@link #getStrongEigenvectors},
+   * which are precomputed by {@link #initialize}.
    * 
    * @param objid Object ID
    * @return Matrix
    */
   PCAFilteredResult getLocalProjection(DBIDRef objid);
 
+  /**
+   * Get the local correlation dimensionality, i.e., the number of strong
+   * eigenvectors.
+   *
+   * @param objid Object ID
+   * @return Correlation dimensionality
+   */
+  int getCorrelationDimension(DBIDRef objid);
+
+  /**
+   * Copy the strong eigenvectors into the first rows of a buffer.
+   *
+   * @param objid Object ID
+   * @param buf Output buffer, must have at least as many rows as the strong
+   *        eigenvectors, each of the data dimensionality
+   * @return Number of strong eigenvectors
+   */
+  int getStrongEigenvectors(DBIDRef objid, double[][] buf);
+
+  /**
+   * Copy all eigenvalues, in descending order, into a buffer.
+   *
+   * @param objid Object ID
+   * @param buf Output buffer of the data dimensionality
+   */
+  void getEigenvalues(DBIDRef objid, double[] buf);
+
   /**
    * Factory interface
    *
@@ -0,0 +1,104 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.pq;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractIndexStructureTest;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the product quantization index.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ProductQuantizationIndexTest extends AbstractIndexStructureTest {
+  /**
+   * Test with enough refinement to be exact.
+   */
+  @Test
+  public void testExact() {
+    ProductQuantizationIndex.Factory<?> factory = new ELKIBuilder<>(ProductQuantizationIndex.Factory.class) //
+        .with(ProductQuantizationIndex.Factory.Parameterizer.SUBSPACES_ID, 3) //
+        .with(ProductQuantizationIndex.Factory.Parameterizer.CODEBOOK_ID, 16) //
+        .with(ProductQuantizationIndex.Factory.Parameterizer.REFINE_ID, 60) //
+        .with(ProductQuantizationIndex.Factory.Parameterizer.SEED_ID, 0L) //
+        .build();
+    testExactEuclidean(factory, ProductQuantizationIndex.ProductQuantizationKNNQuery.class, null);
+  }
+
+  /**
+   * Test with a training sample smaller than the codebook size.
+   */
+  @Test
+  public void testSmallSample() {
+    ProductQuantizationIndex.Factory<?> factory = new ELKIBuilder<>(ProductQuantizationIndex.Factory.class) //
+        .with(ProductQuantizationIndex.Factory.Parameterizer.SUBSPACES_ID, 3) //
+        .with(ProductQuantizationIndex.Factory.Parameterizer.CODEBOOK_ID, 16) //
+        .with(ProductQuantizationIndex.Factory.Parameterizer.SAMPLE_ID, 10) //
+        .with(ProductQuantizationIndex.Factory.Parameterizer.REFINE_ID, 60) //
+        .with(ProductQuantizationIndex.Factory.Parameterizer.SEED_ID, 0L) //
+        .build();
+    testExactEuclidean(factory, ProductQuantizationIndex.ProductQuantizationKNNQuery.class, null);
+  }
+
+  /**
+   * Test the recall of the approximate search.
+   */
+  @Test
+  public void testRecall() {
+    final int k = 10;
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase("elki/testdata/unittests/hierarchical-3d2d1d.csv", 600);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    ProductQuantizationIndex<DoubleVector> index = new ELKIBuilder<ProductQuantizationIndex.Factory<DoubleVector>>(ProductQuantizationIndex.Factory.class) //
+        .with(ProductQuantizationIndex.Factory.Parameterizer.SUBSPACES_ID, 3) //
+        .with(ProductQuantizationIndex.Factory.Parameterizer.CODEBOOK_ID, 32) //
+        .with(ProductQuantizationIndex.Factory.Parameterizer.REFINE_ID, 3) //
+        .with(ProductQuantizationIndex.Factory.Parameterizer.SEED_ID, 0L) //
+        .build().instantiate(rel);
+    index.initialize();
+    KNNQuery<DoubleVector> knnq = index.getKNNQuery(dq);
+    LinearScanDistanceKNNQuery<DoubleVector> scan = new LinearScanDistanceKNNQuery<>(dq);
+    int found = 0, total = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      KNNList expect = scan.getKNNForDBID(it, k), got = knnq.getKNNForDBID(it, k);
+      found += DBIDUtil.intersectionSize(expect, got);
+      total += expect.size();
+    }
+    assertTrue("Recall too low: " + found / (double) total, found >= 0.9 * total);
+  }
+}
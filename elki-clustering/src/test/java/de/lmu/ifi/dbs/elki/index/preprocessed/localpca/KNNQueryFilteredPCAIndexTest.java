@@ -0,0 +1,88 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.preprocessed.localpca;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.VMath;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCAFilteredResult;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCARunner;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.RandomizedPCARunner;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.StandardCovarianceMatrixBuilder;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.filter.PercentageEigenPairFilter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Test the local PCA index, in particular with truncated PCA runners.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class KNNQueryFilteredPCAIndexTest extends AbstractSimpleAlgorithmTest {
+  /**
+   * Truncated PCA that only computes two of the five eigenpairs.
+   */
+  @Test
+  public void testTruncatedPCA() {
+    Database db = makeSimpleDatabase(UNITTEST + "correlation-overlap-3-5d.ascii", 650);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    PercentageEigenPairFilter filter = new PercentageEigenPairFilter(0.85);
+    KNNQueryFilteredPCAIndex<NumberVector> full = new KNNQueryFilteredPCAIndex.Factory<NumberVector>(EuclideanDistanceFunction.STATIC, //
+        new PCARunner(new StandardCovarianceMatrixBuilder()), filter, 20).instantiate(rel);
+    full.initialize();
+    // With an oversampling of 3, the sketch spans the full space, so the
+    // leading eigenvalues are exact.
+    KNNQueryFilteredPCAIndex<NumberVector> trunc = new KNNQueryFilteredPCAIndex.Factory<NumberVector>(EuclideanDistanceFunction.STATIC, //
+        new RandomizedPCARunner(2, 3, 2, new RandomFactory(0L)), filter, 20).instantiate(rel);
+    trunc.initialize();
+    double[] fev = new double[5], tev = new double[5];
+    double[][] buf = new double[5][5];
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      full.getEigenvalues(it, fev);
+      trunc.getEigenvalues(it, tev);
+      assertEquals("Leading eigenvalue differs.", fev[0], tev[0], 1e-10);
+      assertEquals("Second eigenvalue differs.", fev[1], tev[1], 1e-10);
+      for(int i = 2; i < 5; i++) {
+        assertEquals("Missing eigenvalues are not zero.", 0., tev[i], 0.);
+      }
+      final int c = trunc.getStrongEigenvectors(it, buf);
+      assertEquals("Inconsistent correlation dimension.", c, trunc.getCorrelationDimension(it));
+      assertTrue("Too many strong eigenvectors.", c >= 1 && c <= 2);
+      for(int i = 0; i < c; i++) {
+        assertEquals("Eigenvector not normalized.", 1., VMath.euclideanLength(buf[i]), 1e-10);
+      }
+    }
+    // The local projection is completed to a full basis.
+    PCAFilteredResult res = trunc.getLocalProjection(rel.iterDBIDs());
+    assertEquals("Incomplete eigenvectors.", 5, res.getEigenvectors().length);
+    assertEquals("Incomplete weak eigenvectors.", 5 - res.getCorrelationDimension(), res.getWeakEigenvectors().length);
+  }
+}
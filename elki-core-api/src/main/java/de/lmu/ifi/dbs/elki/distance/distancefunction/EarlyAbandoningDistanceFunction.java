@@ -0,0 +1,48 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.distance.distancefunction;
+
+/**
+ * Distance function that can stop early, once the distance is known to exceed
+ * a threshold.
+ * <p>
+ * This is used by k-nearest-neighbor searches, which only need exact distances
+ * for candidates that are closer than the current k-distance. Dynamic
+ * programming distances such as DTW can then abandon the computation as soon
+ * as an entire row of the matrix exceeds the threshold.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <O> Object type
+ */
+public interface EarlyAbandoningDistanceFunction<O> extends PrimitiveDistanceFunction<O> {
+  /**
+   * Compute the distance, but abandon when it exceeds the threshold.
+   *
+   * @param o1 First object
+   * @param o2 Second object
+   * @param threshold Distance threshold
+   * @return Exact distance if it is at most {@code threshold}, otherwise any
+   *         value larger than {@code threshold} (usually infinity).
+   */
+  double distance(O o1, O o2, double threshold);
+}
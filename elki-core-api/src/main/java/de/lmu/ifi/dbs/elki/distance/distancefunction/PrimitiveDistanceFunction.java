@@ -20,6 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.distance.distancefunction;
 
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.query.distance.PrimitiveDistanceQuery;
@@ -47,6 +49,46 @@ public interface PrimitiveDistanceFunction<O> extends DistanceFunction<O> {
    */
   double distance(O o1, O o2);
 
+  /**
+   * Compute the distances of one query object to a block of objects.
+   * <p>
+   * The results must be the same as when calling {@link #distance} for each
+   * pair, but implementations can avoid repeated dispatch and hoist work on the
+   * query object out of the loop.
+   *
+   * @param query Query object
+   * @param objs Block of objects
+   * @param out Output array, {@code out[i]} is the distance to
+   *        {@code objs.get(i)}
+   */
+  default void distances(O query, List<? extends O> objs, double[] out) {
+    for(int i = 0, size = objs.size(); i < size; i++) {
+      out[i] = distance(query, objs.get(i));
+    }
+  }
+
+  /**
+   * Compute the distances of a tile of object pairs.
+   * <p>
+   * Implementations may use algebraic expansions (e.g., for Euclidean distance)
+   * that are faster, but can differ from {@link #distance} by rounding errors.
+   * Use {@link #distances(Object, List, double[])} if exact values are needed.
+   *
+   * @param rows Row objects
+   * @param cols Column objects
+   * @param out Output array (row-major), {@code out[i * cols.size() + j]} is the
+   *        distance of {@code rows.get(i)} and {@code cols.get(j)}
+   */
+  default void distances(List<? extends O> rows, List<? extends O> cols, double[] out) {
+    final int ncols = cols.size();
+    for(int i = 0, off = 0, nrows = rows.size(); i < nrows; i++, off += ncols) {
+      final O row = rows.get(i);
+      for(int j = 0; j < ncols; j++) {
+        out[off + j] = distance(row, cols.get(j));
+      }
+    }
+  }
+
   @Override
   SimpleTypeInformation<? super O> getInputTypeRestriction();
 
@@ -98,6 +98,17 @@ public class DoubleVector implements NumberVector {
     return (long) values[dimension];
   }
 
+  /**
+   * Get the raw value array (NO copy, unlike {@code toArray()}).
+   * <p>
+   * This is meant for optimized numerical code only. Do not modify!
+   *
+   * @return Value array
+   */
+  public double[] getRawValues() {
+    return values;
+  }
+
   @Override
   public double[] toArray() {
     return values.clone();
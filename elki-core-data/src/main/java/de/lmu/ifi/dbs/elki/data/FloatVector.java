@@ -107,6 +107,17 @@ public class FloatVector implements NumberVector {
     return (long) values[dimension];
   }
 
+  /**
+   * Get the raw value array (NO copy, unlike {@code toArray()}).
+   * <p>
+   * This is meant for optimized numerical code only. Do not modify!
+   *
+   * @return Value array
+   */
+  public float[] getRawValues() {
+    return values;
+  }
+
   @Override
   public double[] toArray() {
     double[] data = new double[values.length];
@@ -20,6 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.distance.distancefunction;
 
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.FloatVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.VectorUtil;
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
@@ -75,7 +77,11 @@ public class ArcCosineUnitlengthDistanceFunction implements SpatialPrimitiveDist
    */
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
-    final double v = VectorUtil.dot(v1, v2);
+    final double v = v1 instanceof DoubleVector && v2 instanceof DoubleVector ? //
+        DenseDistanceUtil.dot(((DoubleVector) v1).getRawValues(), ((DoubleVector) v2).getRawValues()) : //
+        v1 instanceof FloatVector && v2 instanceof FloatVector ? //
+            DenseDistanceUtil.dot(((FloatVector) v1).getRawValues(), ((FloatVector) v2).getRawValues()) : //
+            VectorUtil.dot(v1, v2);
     return v < 1 ? (v > -1 ? Math.acos(v) : 1) : 0;
   }
 
@@ -20,6 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.distance.distancefunction;
 
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.FloatVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.VectorUtil;
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
@@ -75,7 +77,11 @@ public class CosineDistanceFunction implements SpatialPrimitiveDistanceFunction<
    */
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
-    double d = VectorUtil.cosAngle(v1, v2);
+    double d = v1 instanceof DoubleVector && v2 instanceof DoubleVector ? //
+        DenseDistanceUtil.cosAngle(((DoubleVector) v1).getRawValues(), ((DoubleVector) v2).getRawValues()) : //
+        v1 instanceof FloatVector && v2 instanceof FloatVector ? //
+            DenseDistanceUtil.cosAngle(((FloatVector) v1).getRawValues(), ((FloatVector) v2).getRawValues()) : //
+            VectorUtil.cosAngle(v1, v2);
     return (d <= 1) ? 1 - d : 0;
   }
 
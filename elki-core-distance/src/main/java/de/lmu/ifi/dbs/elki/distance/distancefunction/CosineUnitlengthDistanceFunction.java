@@ -20,6 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.distance.distancefunction;
 
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.FloatVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.VectorUtil;
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
@@ -76,7 +78,11 @@ public class CosineUnitlengthDistanceFunction implements SpatialPrimitiveDistanc
    */
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
-    double d = VectorUtil.dot(v1, v2);
+    double d = v1 instanceof DoubleVector && v2 instanceof DoubleVector ? //
+        DenseDistanceUtil.dot(((DoubleVector) v1).getRawValues(), ((DoubleVector) v2).getRawValues()) : //
+        v1 instanceof FloatVector && v2 instanceof FloatVector ? //
+            DenseDistanceUtil.dot(((FloatVector) v1).getRawValues(), ((FloatVector) v2).getRawValues()) : //
+            VectorUtil.dot(v1, v2);
     return (d <= 1) ? 1 - d : 0;
   }
 
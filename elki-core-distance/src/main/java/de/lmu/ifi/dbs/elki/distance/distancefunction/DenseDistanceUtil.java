@@ -0,0 +1,506 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.distance.distancefunction;
+
+import de.lmu.ifi.dbs.elki.data.VectorUtil;
+import net.jafama.FastMath;
+
+/**
+ * Distance loops on dense {@code double[]} and {@code float[]} arrays, as used
+ * by the vector distance functions when both operands are
+ * {@link de.lmu.ifi.dbs.elki.data.DoubleVector}s or
+ * {@link de.lmu.ifi.dbs.elki.data.FloatVector}s.
+ * <p>
+ * The loops are unrolled with independent accumulators. This breaks the
+ * dependency chain of the floating point additions, which allows the JIT to
+ * use pipelining and (where supported) vector instructions, and avoids the
+ * virtual {@code doubleValue(d)} calls of the generic code.
+ * <p>
+ * Because the summation order differs, results may deviate from a plain
+ * sequential loop in the last bits.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public final class DenseDistanceUtil {
+  /**
+   * Fake constructor. Do not instantiate.
+   */
+  private DenseDistanceUtil() {
+    // Do not instantiate.
+  }
+
+  /**
+   * Squared Euclidean distance of a range of two double arrays.
+   *
+   * @param a First array
+   * @param b Second array
+   * @param start First dimension
+   * @param end Last dimension (exclusive)
+   * @return Sum of squared differences
+   */
+  public static double squaredEuclidean(double[] a, double[] b, int start, int end) {
+    double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+    int d = start;
+    for(final int stop = end - 3; d < stop; d += 4) {
+      final double d0 = a[d] - b[d], d1 = a[d + 1] - b[d + 1];
+      final double d2 = a[d + 2] - b[d + 2], d3 = a[d + 3] - b[d + 3];
+      s0 += d0 * d0;
+      s1 += d1 * d1;
+      s2 += d2 * d2;
+      s3 += d3 * d3;
+    }
+    for(; d < end; d++) {
+      final double d0 = a[d] - b[d];
+      s0 += d0 * d0;
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * Squared Euclidean norm of a range of a double array.
+   *
+   * @param a Array
+   * @param start First dimension
+   * @param end Last dimension (exclusive)
+   * @return Sum of squares
+   */
+  public static double squaredNorm(double[] a, int start, int end) {
+    double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+    int d = start;
+    for(final int stop = end - 3; d < stop; d += 4) {
+      final double d0 = a[d], d1 = a[d + 1], d2 = a[d + 2], d3 = a[d + 3];
+      s0 += d0 * d0;
+      s1 += d1 * d1;
+      s2 += d2 * d2;
+      s3 += d3 * d3;
+    }
+    for(; d < end; d++) {
+      final double d0 = a[d];
+      s0 += d0 * d0;
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * Squared Euclidean distance of two double arrays, with missing dimensions
+   * treated as 0.
+   *
+   * @param a First array
+   * @param b Second array
+   * @return Squared Euclidean distance
+   */
+  public static double squaredEuclidean(double[] a, double[] b) {
+    final int dim1 = a.length, dim2 = b.length;
+    return dim1 <= dim2 ? squaredEuclidean(a, b, 0, dim1) + squaredNorm(b, dim1, dim2) //
+        : squaredEuclidean(a, b, 0, dim2) + squaredNorm(a, dim2, dim1);
+  }
+
+  /**
+   * Manhattan distance of a range of two double arrays.
+   *
+   * @param a First array
+   * @param b Second array
+   * @param start First dimension
+   * @param end Last dimension (exclusive)
+   * @return Sum of absolute differences
+   */
+  public static double manhattan(double[] a, double[] b, int start, int end) {
+    double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+    int d = start;
+    for(final int stop = end - 3; d < stop; d += 4) {
+      s0 += Math.abs(a[d] - b[d]);
+      s1 += Math.abs(a[d + 1] - b[d + 1]);
+      s2 += Math.abs(a[d + 2] - b[d + 2]);
+      s3 += Math.abs(a[d + 3] - b[d + 3]);
+    }
+    for(; d < end; d++) {
+      s0 += Math.abs(a[d] - b[d]);
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * Sum of absolute values of a range of a double array.
+   *
+   * @param a Array
+   * @param start First dimension
+   * @param end Last dimension (exclusive)
+   * @return Sum of absolute values
+   */
+  public static double absSum(double[] a, int start, int end) {
+    double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+    int d = start;
+    for(final int stop = end - 3; d < stop; d += 4) {
+      s0 += Math.abs(a[d]);
+      s1 += Math.abs(a[d + 1]);
+      s2 += Math.abs(a[d + 2]);
+      s3 += Math.abs(a[d + 3]);
+    }
+    for(; d < end; d++) {
+      s0 += Math.abs(a[d]);
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * Manhattan distance of two double arrays, with missing dimensions treated as
+   * 0.
+   *
+   * @param a First array
+   * @param b Second array
+   * @return Manhattan distance
+   */
+  public static double manhattan(double[] a, double[] b) {
+    final int dim1 = a.length, dim2 = b.length;
+    return dim1 <= dim2 ? manhattan(a, b, 0, dim1) + absSum(b, dim1, dim2) //
+        : manhattan(a, b, 0, dim2) + absSum(a, dim2, dim1);
+  }
+
+  /**
+   * Sum of powers of absolute differences of a range of two double arrays.
+   *
+   * @param a First array
+   * @param b Second array
+   * @param start First dimension
+   * @param end Last dimension (exclusive)
+   * @param p Exponent
+   * @return Sum of |a_i-b_i|^p
+   */
+  public static double lpPow(double[] a, double[] b, int start, int end, double p) {
+    double s0 = 0., s1 = 0.;
+    int d = start;
+    for(final int stop = end - 1; d < stop; d += 2) {
+      s0 += FastMath.pow(Math.abs(a[d] - b[d]), p);
+      s1 += FastMath.pow(Math.abs(a[d + 1] - b[d + 1]), p);
+    }
+    if(d < end) {
+      s0 += FastMath.pow(Math.abs(a[d] - b[d]), p);
+    }
+    return s0 + s1;
+  }
+
+  /**
+   * Sum of powers of absolute values of a range of a double array.
+   *
+   * @param a Array
+   * @param start First dimension
+   * @param end Last dimension (exclusive)
+   * @param p Exponent
+   * @return Sum of |a_i|^p
+   */
+  public static double lpNormPow(double[] a, int start, int end, double p) {
+    double s0 = 0., s1 = 0.;
+    int d = start;
+    for(final int stop = end - 1; d < stop; d += 2) {
+      s0 += FastMath.pow(Math.abs(a[d]), p);
+      s1 += FastMath.pow(Math.abs(a[d + 1]), p);
+    }
+    if(d < end) {
+      s0 += FastMath.pow(Math.abs(a[d]), p);
+    }
+    return s0 + s1;
+  }
+
+  /**
+   * Sum of powers of absolute differences of two double arrays, with missing
+   * dimensions treated as 0.
+   *
+   * @param a First array
+   * @param b Second array
+   * @param p Exponent
+   * @return Sum of |a_i-b_i|^p
+   */
+  public static double lpPow(double[] a, double[] b, double p) {
+    final int dim1 = a.length, dim2 = b.length;
+    return dim1 <= dim2 ? lpPow(a, b, 0, dim1, p) + lpNormPow(b, dim1, dim2, p) //
+        : lpPow(a, b, 0, dim2, p) + lpNormPow(a, dim2, dim1, p);
+  }
+
+  /**
+   * Dot product of two double arrays, up to the shorter length.
+   *
+   * @param a First array
+   * @param b Second array
+   * @return Dot product
+   */
+  public static double dot(double[] a, double[] b) {
+    final int end = a.length < b.length ? a.length : b.length;
+    double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+    int d = 0;
+    for(final int stop = end - 3; d < stop; d += 4) {
+      s0 += a[d] * b[d];
+      s1 += a[d + 1] * b[d + 1];
+      s2 += a[d + 2] * b[d + 2];
+      s3 += a[d + 3] * b[d + 3];
+    }
+    for(; d < end; d++) {
+      s0 += a[d] * b[d];
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * Absolute cosine of the angle between two double arrays, with missing
+   * dimensions treated as 0. Same semantics as
+   * {@link VectorUtil#angleDense}.
+   *
+   * @param a First array
+   * @param b Second array
+   * @return Cosine of the angle
+   */
+  public static double cosAngle(double[] a, double[] b) {
+    final double cross = dot(a, b);
+    final double l1 = squaredNorm(a, 0, a.length), l2 = squaredNorm(b, 0, b.length);
+    final double c = (cross == 0.) ? 0. : //
+        (l1 == 0. || l2 == 0.) ? 1. : //
+            FastMath.sqrt((cross / l1) * (cross / l2));
+    return (c < 1.) ? c : 1.;
+  }
+
+  /**
+   * Squared Euclidean distance of a range of two float arrays.
+   *
+   * @param a First array
+   * @param b Second array
+   * @param start First dimension
+   * @param end Last dimension (exclusive)
+   * @return Sum of squared differences
+   */
+  public static double squaredEuclidean(float[] a, float[] b, int start, int end) {
+    double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+    int d = start;
+    for(final int stop = end - 3; d < stop; d += 4) {
+      final double d0 = (double) a[d] - b[d], d1 = (double) a[d + 1] - b[d + 1];
+      final double d2 = (double) a[d + 2] - b[d + 2], d3 = (double) a[d + 3] - b[d + 3];
+      s0 += d0 * d0;
+      s1 += d1 * d1;
+      s2 += d2 * d2;
+      s3 += d3 * d3;
+    }
+    for(; d < end; d++) {
+      final double d0 = (double) a[d] - b[d];
+      s0 += d0 * d0;
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * Squared Euclidean norm of a range of a float array.
+   *
+   * @param a Array
+   * @param start First dimension
+   * @param end Last dimension (exclusive)
+   * @return Sum of squares
+   */
+  public static double squaredNorm(float[] a, int start, int end) {
+    double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+    int d = start;
+    for(final int stop = end - 3; d < stop; d += 4) {
+      final double d0 = a[d], d1 = a[d + 1], d2 = a[d + 2], d3 = a[d + 3];
+      s0 += d0 * d0;
+      s1 += d1 * d1;
+      s2 += d2 * d2;
+      s3 += d3 * d3;
+    }
+    for(; d < end; d++) {
+      final double d0 = a[d];
+      s0 += d0 * d0;
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * Squared Euclidean distance of two float arrays, with missing dimensions
+   * treated as 0.
+   *
+   * @param a First array
+   * @param b Second array
+   * @return Squared Euclidean distance
+   */
+  public static double squaredEuclidean(float[] a, float[] b) {
+    final int dim1 = a.length, dim2 = b.length;
+    return dim1 <= dim2 ? squaredEuclidean(a, b, 0, dim1) + squaredNorm(b, dim1, dim2) //
+        : squaredEuclidean(a, b, 0, dim2) + squaredNorm(a, dim2, dim1);
+  }
+
+  /**
+   * Manhattan distance of a range of two float arrays.
+   *
+   * @param a First array
+   * @param b Second array
+   * @param start First dimension
+   * @param end Last dimension (exclusive)
+   * @return Sum of absolute differences
+   */
+  public static double manhattan(float[] a, float[] b, int start, int end) {
+    double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+    int d = start;
+    for(final int stop = end - 3; d < stop; d += 4) {
+      s0 += Math.abs((double) a[d] - b[d]);
+      s1 += Math.abs((double) a[d + 1] - b[d + 1]);
+      s2 += Math.abs((double) a[d + 2] - b[d + 2]);
+      s3 += Math.abs((double) a[d + 3] - b[d + 3]);
+    }
+    for(; d < end; d++) {
+      s0 += Math.abs((double) a[d] - b[d]);
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * Sum of absolute values of a range of a float array.
+   *
+   * @param a Array
+   * @param start First dimension
+   * @param end Last dimension (exclusive)
+   * @return Sum of absolute values
+   */
+  public static double absSum(float[] a, int start, int end) {
+    double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+    int d = start;
+    for(final int stop = end - 3; d < stop; d += 4) {
+      s0 += Math.abs((double) a[d]);
+      s1 += Math.abs((double) a[d + 1]);
+      s2 += Math.abs((double) a[d + 2]);
+      s3 += Math.abs((double) a[d + 3]);
+    }
+    for(; d < end; d++) {
+      s0 += Math.abs((double) a[d]);
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * Manhattan distance of two float arrays, with missing dimensions treated as
+   * 0.
+   *
+   * @param a First array
+   * @param b Second array
+   * @return Manhattan distance
+   */
+  public static double manhattan(float[] a, float[] b) {
+    final int dim1 = a.length, dim2 = b.length;
+    return dim1 <= dim2 ? manhattan(a, b, 0, dim1) + absSum(b, dim1, dim2) //
+        : manhattan(a, b, 0, dim2) + absSum(a, dim2, dim1);
+  }
+
+  /**
+   * Sum of powers of absolute differences of a range of two float arrays.
+   *
+   * @param a First array
+   * @param b Second array
+   * @param start First dimension
+   * @param end Last dimension (exclusive)
+   * @param p Exponent
+   * @return Sum of |a_i-b_i|^p
+   */
+  public static double lpPow(float[] a, float[] b, int start, int end, double p) {
+    double s0 = 0., s1 = 0.;
+    int d = start;
+    for(final int stop = end - 1; d < stop; d += 2) {
+      s0 += FastMath.pow(Math.abs((double) a[d] - b[d]), p);
+      s1 += FastMath.pow(Math.abs((double) a[d + 1] - b[d + 1]), p);
+    }
+    if(d < end) {
+      s0 += FastMath.pow(Math.abs((double) a[d] - b[d]), p);
+    }
+    return s0 + s1;
+  }
+
+  /**
+   * Sum of powers of absolute values of a range of a float array.
+   *
+   * @param a Array
+   * @param start First dimension
+   * @param end Last dimension (exclusive)
+   * @param p Exponent
+   * @return Sum of |a_i|^p
+   */
+  public static double lpNormPow(float[] a, int start, int end, double p) {
+    double s0 = 0., s1 = 0.;
+    int d = start;
+    for(final int stop = end - 1; d < stop; d += 2) {
+      s0 += FastMath.pow(Math.abs((double) a[d]), p);
+      s1 += FastMath.pow(Math.abs((double) a[d + 1]), p);
+    }
+    if(d < end) {
+      s0 += FastMath.pow(Math.abs((double) a[d]), p);
+    }
+    return s0 + s1;
+  }
+
+  /**
+   * Sum of powers of absolute differences of two float arrays, with missing
+   * dimensions treated as 0.
+   *
+   * @param a First array
+   * @param b Second array
+   * @param p Exponent
+   * @return Sum of |a_i-b_i|^p
+   */
+  public static double lpPow(float[] a, float[] b, double p) {
+    final int dim1 = a.length, dim2 = b.length;
+    return dim1 <= dim2 ? lpPow(a, b, 0, dim1, p) + lpNormPow(b, dim1, dim2, p) //
+        : lpPow(a, b, 0, dim2, p) + lpNormPow(a, dim2, dim1, p);
+  }
+
+  /**
+   * Dot product of two float arrays, up to the shorter length.
+   *
+   * @param a First array
+   * @param b Second array
+   * @return Dot product
+   */
+  public static double dot(float[] a, float[] b) {
+    final int end = a.length < b.length ? a.length : b.length;
+    double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+    int d = 0;
+    for(final int stop = end - 3; d < stop; d += 4) {
+      s0 += (double) a[d] * b[d];
+      s1 += (double) a[d + 1] * b[d + 1];
+      s2 += (double) a[d + 2] * b[d + 2];
+      s3 += (double) a[d + 3] * b[d + 3];
+    }
+    for(; d < end; d++) {
+      s0 += (double) a[d] * b[d];
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * Absolute cosine of the angle between two float arrays, with missing
+   * dimensions treated as 0. Same semantics as
+   * {@link VectorUtil#angleDense}.
+   *
+   * @param a First array
+   * @param b Second array
+   * @return Cosine of the angle
+   */
+  public static double cosAngle(float[] a, float[] b) {
+    final double cross = dot(a, b);
+    final double l1 = squaredNorm(a, 0, a.length), l2 = squaredNorm(b, 0, b.length);
+    final double c = (cross == 0.) ? 0. : //
+        (l1 == 0. || l2 == 0.) ? 1. : //
+            FastMath.sqrt((cross / l1) * (cross / l2));
+    return (c < 1.) ? c : 1.;
+  }
+}
@@ -20,8 +20,13 @@
  */
 package de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski;
 
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.FloatVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DenseDistanceUtil;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.Priority;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
@@ -112,6 +117,12 @@ public class EuclideanDistanceFunction extends LPIntegerNormDistanceFunction {
 
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
+    if(v1 instanceof DoubleVector && v2 instanceof DoubleVector) {
+      return FastMath.sqrt(DenseDistanceUtil.squaredEuclidean(((DoubleVector) v1).getRawValues(), ((DoubleVector) v2).getRawValues()));
+    }
+    if(v1 instanceof FloatVector && v2 instanceof FloatVector) {
+      return FastMath.sqrt(DenseDistanceUtil.squaredEuclidean(((FloatVector) v1).getRawValues(), ((FloatVector) v2).getRawValues()));
+    }
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int mindim = dim1 < dim2 ? dim1 : dim2;
     double agg = preDistance(v1, v2, 0, mindim);
@@ -124,13 +135,44 @@ public class EuclideanDistanceFunction extends LPIntegerNormDistanceFunction {
     return FastMath.sqrt(agg);
   }
 
+  @Override
+  public void distances(NumberVector query, List<? extends NumberVector> objs, double[] out) {
+    SquaredEuclideanDistanceFunction.STATIC.distances(query, objs, out);
+    for(int i = 0, size = objs.size(); i < size; i++) {
+      out[i] = FastMath.sqrt(out[i]);
+    }
+  }
+
+  /**
+   * Compute a tile of Euclidean distances, using the expansion of
+   * {@link SquaredEuclideanDistanceFunction#distances(List, List, double[])}.
+   */
+  @Override
+  public void distances(List<? extends NumberVector> rows, List<? extends NumberVector> cols, double[] out) {
+    SquaredEuclideanDistanceFunction.STATIC.distances(rows, cols, out);
+    for(int i = 0, size = rows.size() * cols.size(); i < size; i++) {
+      out[i] = FastMath.sqrt(out[i]);
+    }
+  }
+
   @Override
   public double norm(NumberVector v) {
+    if(v instanceof DoubleVector) {
+      final double[] a = ((DoubleVector) v).getRawValues();
+      return FastMath.sqrt(DenseDistanceUtil.squaredNorm(a, 0, a.length));
+    }
+    if(v instanceof FloatVector) {
+      final float[] a = ((FloatVector) v).getRawValues();
+      return FastMath.sqrt(DenseDistanceUtil.squaredNorm(a, 0, a.length));
+    }
     return FastMath.sqrt(preNorm(v, 0, v.getDimensionality()));
   }
 
   @Override
   public double minDist(SpatialComparable mbr1, SpatialComparable mbr2) {
+    if(mbr1 instanceof NumberVector && mbr2 instanceof NumberVector) {
+      return distance((NumberVector) mbr1, (NumberVector) mbr2); // Consistent rounding
+    }
     final int dim1 = mbr1.getDimensionality(), dim2 = mbr2.getDimensionality();
     final int mindim = dim1 < dim2 ? dim1 : dim2;
 
@@ -20,9 +20,12 @@
  */
 package de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski;
 
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.FloatVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
 import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DenseDistanceUtil;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.Norm;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
@@ -33,7 +36,6 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
-
 import net.jafama.FastMath;
 
 /**
@@ -173,6 +175,12 @@ public class LPNormDistanceFunction implements SpatialPrimitiveDistanceFunction<
 
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
+    if(v1 instanceof DoubleVector && v2 instanceof DoubleVector) {
+      return FastMath.pow(DenseDistanceUtil.lpPow(((DoubleVector) v1).getRawValues(), ((DoubleVector) v2).getRawValues(), p), invp);
+    }
+    if(v1 instanceof FloatVector && v2 instanceof FloatVector) {
+      return FastMath.pow(DenseDistanceUtil.lpPow(((FloatVector) v1).getRawValues(), ((FloatVector) v2).getRawValues(), p), invp);
+    }
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int mindim = dim1 < dim2 ? dim1 : dim2;
     double agg = preDistance(v1, v2, 0, mindim);
@@ -187,11 +195,22 @@ public class LPNormDistanceFunction implements SpatialPrimitiveDistanceFunction<
 
   @Override
   public double norm(NumberVector v) {
+    if(v instanceof DoubleVector) {
+      final double[] a = ((DoubleVector) v).getRawValues();
+      return FastMath.pow(DenseDistanceUtil.lpNormPow(a, 0, a.length, p), invp);
+    }
+    if(v instanceof FloatVector) {
+      final float[] a = ((FloatVector) v).getRawValues();
+      return FastMath.pow(DenseDistanceUtil.lpNormPow(a, 0, a.length, p), invp);
+    }
     return FastMath.pow(preNorm(v, 0, v.getDimensionality()), invp);
   }
 
   @Override
   public double minDist(SpatialComparable mbr1, SpatialComparable mbr2) {
+    if(mbr1 instanceof NumberVector && mbr2 instanceof NumberVector) {
+      return distance((NumberVector) mbr1, (NumberVector) mbr2); // Consistent rounding
+    }
     final int dim1 = mbr1.getDimensionality(), dim2 = mbr2.getDimensionality();
     final int mindim = dim1 < dim2 ? dim1 : dim2;
 
@@ -20,8 +20,11 @@
  */
 package de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski;
 
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.FloatVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DenseDistanceUtil;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 
@@ -111,6 +114,12 @@ public class ManhattanDistanceFunction extends LPIntegerNormDistanceFunction {
 
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
+    if(v1 instanceof DoubleVector && v2 instanceof DoubleVector) {
+      return DenseDistanceUtil.manhattan(((DoubleVector) v1).getRawValues(), ((DoubleVector) v2).getRawValues());
+    }
+    if(v1 instanceof FloatVector && v2 instanceof FloatVector) {
+      return DenseDistanceUtil.manhattan(((FloatVector) v1).getRawValues(), ((FloatVector) v2).getRawValues());
+    }
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int mindim = dim1 < dim2 ? dim1 : dim2;
     double agg = preDistance(v1, v2, 0, mindim);
@@ -125,11 +134,22 @@ public class ManhattanDistanceFunction extends LPIntegerNormDistanceFunction {
 
   @Override
   public double norm(NumberVector v) {
+    if(v instanceof DoubleVector) {
+      final double[] a = ((DoubleVector) v).getRawValues();
+      return DenseDistanceUtil.absSum(a, 0, a.length);
+    }
+    if(v instanceof FloatVector) {
+      final float[] a = ((FloatVector) v).getRawValues();
+      return DenseDistanceUtil.absSum(a, 0, a.length);
+    }
     return preNorm(v, 0, v.getDimensionality());
   }
 
   @Override
   public double minDist(SpatialComparable mbr1, SpatialComparable mbr2) {
+    if(mbr1 instanceof NumberVector && mbr2 instanceof NumberVector) {
+      return distance((NumberVector) mbr1, (NumberVector) mbr2); // Consistent rounding
+    }
     final int dim1 = mbr1.getDimensionality(), dim2 = mbr2.getDimensionality();
     final int mindim = dim1 < dim2 ? dim1 : dim2;
 
@@ -20,6 +20,10 @@
  */
 package de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski;
 
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.FloatVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.SparseNumberVector;
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
@@ -46,6 +50,11 @@ public class SquaredEuclideanDistanceFunction extends AbstractNumberVectorDistan
    */
   public static final SquaredEuclideanDistanceFunction STATIC = new SquaredEuclideanDistanceFunction();
 
+  /**
+   * Machine epsilon, for error bounds.
+   */
+  private static final double EPSILON = Math.ulp(1.);
+
   /**
    * Constructor - use {@link #STATIC} instead.
    * 
@@ -56,15 +65,6 @@ public class SquaredEuclideanDistanceFunction extends AbstractNumberVectorDistan
     super();
   }
 
-  private final double preDistance(double[] v1, double[] v2, int start, int end) {
-    double agg = 0.;
-    for(int d = start; d < end; d++) {
-      final double delta = v1[d] - v2[d];
-      agg += delta * delta;
-    }
-    return agg;
-  }
-
   private final double preDistance(NumberVector v1, NumberVector v2, int start, int end) {
     double agg = 0.;
     for(int d = start; d < end; d++) {
@@ -108,15 +108,6 @@ public class SquaredEuclideanDistanceFunction extends AbstractNumberVectorDistan
     return agg;
   }
 
-  private final double preNorm(double[] v, int start, int end) {
-    double agg = 0.;
-    for(int d = start; d < end; d++) {
-      final double xd = v[d];
-      agg += xd * xd;
-    }
-    return agg;
-  }
-
   private final double preNormMBR(SpatialComparable mbr, int start, int end) {
     double agg = 0.;
     for(int d = start; d < end; d++) {
@@ -131,6 +122,12 @@ public class SquaredEuclideanDistanceFunction extends AbstractNumberVectorDistan
 
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
+    if(v1 instanceof DoubleVector && v2 instanceof DoubleVector) {
+      return DenseDistanceUtil.squaredEuclidean(((DoubleVector) v1).getRawValues(), ((DoubleVector) v2).getRawValues());
+    }
+    if(v1 instanceof FloatVector && v2 instanceof FloatVector) {
+      return DenseDistanceUtil.squaredEuclidean(((FloatVector) v1).getRawValues(), ((FloatVector) v2).getRawValues());
+    }
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int mindim = dim1 < dim2 ? dim1 : dim2;
     double agg = preDistance(v1, v2, 0, mindim);
@@ -147,25 +144,123 @@ public class SquaredEuclideanDistanceFunction extends AbstractNumberVectorDistan
    * Special version for double arrays.
    */
   public double distance(double[] v1, double[] v2) {
-    final int dim1 = v1.length, dim2 = v2.length;
-    final int mindim = dim1 < dim2 ? dim1 : dim2;
-    double agg = preDistance(v1, v2, 0, mindim);
-    if(dim1 > mindim) {
-      agg += preNorm(v1, mindim, dim1);
+    return DenseDistanceUtil.squaredEuclidean(v1, v2);
+  }
+
+  @Override
+  public void distances(NumberVector query, List<? extends NumberVector> objs, double[] out) {
+    final int size = objs.size();
+    if(!(query instanceof DoubleVector)) {
+      for(int i = 0; i < size; i++) {
+        out[i] = distance(query, objs.get(i));
+      }
+      return;
     }
-    else if(dim2 > mindim) {
-      agg += preNorm(v2, mindim, dim2);
+    final double[] q = ((DoubleVector) query).getRawValues();
+    for(int i = 0; i < size; i++) {
+      final NumberVector o = objs.get(i);
+      out[i] = o instanceof DoubleVector ? DenseDistanceUtil.squaredEuclidean(q, ((DoubleVector) o).getRawValues()) : distance(query, o);
     }
-    return agg;
+  }
+
+  /**
+   * Compute a tile of squared Euclidean distances, using the expansion
+   * \(||x-y||^2 = ||x||^2 + ||y||^2 - 2 x \cdot y\).
+   * <p>
+   * This needs fewer operations per pair than the direct computation, but
+   * suffers from cancellation when the distance is small compared to the
+   * norms. The absolute error is bounded by {@link #expansionError}.
+   * <p>
+   * The expansion is only used if all vectors are dense
+   * ({@link DoubleVector} or {@link FloatVector}); otherwise, the distances are
+   * computed pairwise.
+   */
+  @Override
+  public void distances(List<? extends NumberVector> rows, List<? extends NumberVector> cols, double[] out) {
+    final int nrows = rows.size(), ncols = cols.size();
+    if(!isDense(rows) || !isDense(cols)) {
+      for(int i = 0, off = 0; i < nrows; i++, off += ncols) {
+        final NumberVector r = rows.get(i);
+        for(int j = 0; j < ncols; j++) {
+          out[off + j] = distance(r, cols.get(j));
+        }
+      }
+      return;
+    }
+    final double[][] c = new double[ncols][];
+    final double[] cnorms = new double[ncols];
+    for(int j = 0; j < ncols; j++) {
+      final double[] v = c[j] = rawValues(cols.get(j));
+      cnorms[j] = DenseDistanceUtil.squaredNorm(v, 0, v.length);
+    }
+    for(int i = 0, off = 0; i < nrows; i++, off += ncols) {
+      final double[] r = rawValues(rows.get(i));
+      final double rnorm = DenseDistanceUtil.squaredNorm(r, 0, r.length);
+      for(int j = 0; j < ncols; j++) {
+        final double v = rnorm + cnorms[j] - 2 * DenseDistanceUtil.dot(r, c[j]);
+        out[off + j] = v > 0 ? v : 0;
+      }
+    }
+  }
+
+  /**
+   * Upper bound of the absolute rounding error of the tile evaluation in
+   * {@link #distances(List, List, double[])}.
+   *
+   * @param dim Dimensionality
+   * @param norm1 Squared norm of the first vector
+   * @param norm2 Squared norm of the second vector
+   * @return Error bound
+   */
+  public static double expansionError(int dim, double norm1, double norm2) {
+    return 2 * (dim + 2) * EPSILON * (norm1 + norm2);
+  }
+
+  /**
+   * Test if all vectors are dense, i.e. {@link DoubleVector} or
+   * {@link FloatVector}.
+   *
+   * @param vecs Vectors
+   * @return {@code true} if all vectors are dense
+   */
+  public static boolean isDense(List<? extends NumberVector> vecs) {
+    for(int i = 0, size = vecs.size(); i < size; i++) {
+      final NumberVector v = vecs.get(i);
+      if(!(v instanceof DoubleVector) && !(v instanceof FloatVector)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get the values of a dense vector, without copying if possible.
+   *
+   * @param v Vector
+   * @return Values
+   */
+  private static double[] rawValues(NumberVector v) {
+    return v instanceof DoubleVector ? ((DoubleVector) v).getRawValues() : v.toArray();
   }
 
   @Override
   public double norm(NumberVector v) {
+    if(v instanceof DoubleVector) {
+      final double[] a = ((DoubleVector) v).getRawValues();
+      return DenseDistanceUtil.squaredNorm(a, 0, a.length);
+    }
+    if(v instanceof FloatVector) {
+      final float[] a = ((FloatVector) v).getRawValues();
+      return DenseDistanceUtil.squaredNorm(a, 0, a.length);
+    }
     return preNorm(v, 0, v.getDimensionality());
   }
 
   @Override
   public double minDist(SpatialComparable mbr1, SpatialComparable mbr2) {
+    if(mbr1 instanceof NumberVector && mbr2 instanceof NumberVector) {
+      return distance((NumberVector) mbr1, (NumberVector) mbr2); // Consistent rounding
+    }
     final int dim1 = mbr1.getDimensionality(), dim2 = mbr2.getDimensionality();
     final int mindim = dim1 < dim2 ? dim1 : dim2;
 
@@ -23,6 +23,7 @@ package de.lmu.ifi.dbs.elki.distance.distancefunction.timeseries;
 import java.util.Arrays;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.EarlyAbandoningDistanceFunction;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
 import net.jafama.FastMath;
@@ -36,7 +37,8 @@ import net.jafama.FastMath;
  * Using dynamic time warping to find patterns in time series<br>
  * AAAI-94 Workshop on Knowledge Discovery in Databases, 1994
  * <p>
- * This implementation uses a buffer storing two rows.
+ * This implementation uses a buffer storing two rows. When a threshold is
+ * given, the computation is abandoned as soon as all cells of a row exceed it.
  * <p>
  * TODO: allow different one-dimensional distances
  * 
@@ -50,7 +52,7 @@ import net.jafama.FastMath;
     booktitle = "AAAI-94 Workshop on Knowledge Discovery in Databases, 1994", //
     url = "http://www.aaai.org/Papers/Workshops/1994/WS-94-03/WS94-03-031.pdf", //
     bibkey = "DBLP:conf/kdd/BerndtC94")
-public class DTWDistanceFunction extends AbstractEditDistanceFunction {
+public class DTWDistanceFunction extends AbstractEditDistanceFunction implements EarlyAbandoningDistanceFunction<NumberVector> {
   /**
    * Constructor.
    */
@@ -69,6 +71,11 @@ public class DTWDistanceFunction extends AbstractEditDistanceFunction {
 
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
+    return distance(v1, v2, Double.POSITIVE_INFINITY);
+  }
+
+  @Override
+  public double distance(NumberVector v1, NumberVector v2, double threshold) {
     // Dimensionality, and last valid value in second vector:
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int m2 = dim2 - 1;
@@ -85,12 +92,17 @@ public class DTWDistanceFunction extends AbstractEditDistanceFunction {
 
     // Fill first row:
     firstRow(buf, band, v1, v2, dim2);
+    // Abandon once all cells of a row exceed the threshold:
+    if(FastMath.sqrt(rowMin(buf, 0, 0, (band >= dim2) ? dim2 - 1 : band)) > threshold) {
+      return Double.POSITIVE_INFINITY;
+    }
 
     // Active buffer offsets (cur = read, nxt = write)
     int cur = 0, nxt = dim2;
     // Fill remaining rows:
     int i = 1, l = 0, r = Math.min(m2, i + band);
     while(i < dim1) {
+      double rowmin = Double.POSITIVE_INFINITY;
       final double val1 = v1.doubleValue(i);
       for(int j = l; j <= r; j++) {
         // Value in previous row (must exist, may be infinite):
@@ -106,7 +118,13 @@ public class DTWDistanceFunction extends AbstractEditDistanceFunction {
           }
         }
         // Write:
-        buf[nxt + j] = min + delta(val1, v2.doubleValue(j));
+        final double v = min + delta(val1, v2.doubleValue(j));
+        buf[nxt + j] = v;
+        rowmin = (v < rowmin) ? v : rowmin;
+      }
+      // Early abandoning, all paths exceed the threshold:
+      if(FastMath.sqrt(rowmin) > threshold) {
+        return Double.POSITIVE_INFINITY;
       }
       // Swap buffer positions:
       cur = dim2 - cur;
@@ -147,6 +165,23 @@ public class DTWDistanceFunction extends AbstractEditDistanceFunction {
     }
   }
 
+  /**
+   * Minimum of a row segment, for early abandoning.
+   * 
+   * @param buf Buffer
+   * @param off Row offset
+   * @param l First valid column
+   * @param r Last valid column
+   * @return Minimum value
+   */
+  protected static double rowMin(double[] buf, int off, int l, int r) {
+    double min = Double.POSITIVE_INFINITY;
+    for(int j = off + l, e = off + r; j <= e; j++) {
+      min = (buf[j] < min) ? buf[j] : min;
+    }
+    return min;
+  }
+
   /**
    * Compute the delta of two values.
    * <p>
@@ -67,6 +67,11 @@ public class ERPDistanceFunction extends DTWDistanceFunction {
 
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
+    return distance(v1, v2, Double.POSITIVE_INFINITY);
+  }
+
+  @Override
+  public double distance(NumberVector v1, NumberVector v2, double threshold) {
     // Dimensionality, and last valid value in second vector:
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int m2 = dim2 - 1;
@@ -83,12 +88,17 @@ public class ERPDistanceFunction extends DTWDistanceFunction {
 
     // Fill first row:
     firstRow(buf, band, v1, v2, dim2);
+    // Abandon once all cells of a row exceed the threshold:
+    if(FastMath.sqrt(rowMin(buf, 0, 0, (band >= dim2) ? dim2 - 1 : band)) > threshold) {
+      return Double.POSITIVE_INFINITY;
+    }
 
     // Active buffer offsets (cur = read, nxt = write)
     int cur = 0, nxt = dim2;
     // Fill remaining rows:
     int i = 1, l = 0, r = Math.min(m2, i + band);
     while(i < dim1) {
+      double rowmin = Double.POSITIVE_INFINITY;
       final double val1 = v1.doubleValue(i);
       for(int j = l; j <= r; j++) {
         // Value in previous row (must exist, may be infinite):
@@ -105,6 +115,11 @@ public class ERPDistanceFunction extends DTWDistanceFunction {
         }
         // Write:
         buf[nxt + j] = min;
+        rowmin = (min < rowmin) ? min : rowmin;
+      }
+      // Early abandoning, all paths exceed the threshold:
+      if(FastMath.sqrt(rowmin) > threshold) {
+        return Double.POSITIVE_INFINITY;
       }
       // Swap buffer positions:
       cur = dim2 - cur;
@@ -23,6 +23,7 @@ package de.lmu.ifi.dbs.elki.distance.distancefunction.timeseries;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.type.VectorTypeInformation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.AbstractNumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.EarlyAbandoningDistanceFunction;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
@@ -53,7 +54,7 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
     booktitle = "Proc. 9th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining", //
     url = "https://doi.org/10.1145/956750.956777", //
     bibkey = "DBLP:conf/kdd/VlachosHGK03")
-public class LCSSDistanceFunction extends AbstractNumberVectorDistanceFunction {
+public class LCSSDistanceFunction extends AbstractNumberVectorDistanceFunction implements EarlyAbandoningDistanceFunction<NumberVector> {
   /**
    * Keeps the currently set pDelta.
    */
@@ -78,9 +79,14 @@ public class LCSSDistanceFunction extends AbstractNumberVectorDistanceFunction {
 
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
+    return distance(v1, v2, Double.POSITIVE_INFINITY);
+  }
+
+  @Override
+  public double distance(NumberVector v1, NumberVector v2, double threshold) {
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     if(dim1 > dim2) {
-      return distance(v2, v1);
+      return distance(v2, v1, threshold);
     }
     final int delta = (int) Math.ceil(dim2 * pDelta);
 
@@ -88,6 +94,8 @@ public class LCSSDistanceFunction extends AbstractNumberVectorDistanceFunction {
     final double epsilon = getRange(v1, dim1, v2, dim2) * pEpsilon;
 
     double[] curr = new double[dim2 + 1], next = new double[dim2 + 1];
+    // Largest value seen so far, each row can add at most one match.
+    double best = 0.;
 
     for(int i = 0; i < dim1; i++) {
       final double ai = v1.doubleValue(i);
@@ -102,6 +110,11 @@ public class LCSSDistanceFunction extends AbstractNumberVectorDistanceFunction {
         else { // del
           next[j + 1] = next[j];
         }
+        best = (next[j + 1] > best) ? next[j + 1] : best;
+      }
+      // Early abandoning: even matching all remaining rows is not enough.
+      if(1. - (best + dim1 - 1 - i) / dim1 > threshold) {
+        return Double.POSITIVE_INFINITY;
       }
       // Swap
       double[] tmp = curr;
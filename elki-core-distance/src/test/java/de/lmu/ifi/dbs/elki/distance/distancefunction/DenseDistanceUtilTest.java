@@ -0,0 +1,154 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.distance.distancefunction;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.FloatVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.VectorUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPNormDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.ManhattanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import net.jafama.FastMath;
+
+/**
+ * Validate the unrolled dense distance loops against the generic code.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class DenseDistanceUtilTest {
+  /**
+   * Dimensionalities to test, including unrolling remainders.
+   */
+  private static final int[] DIMS = { 1, 2, 3, 4, 5, 7, 8, 13, 64, 257 };
+
+  @Test
+  public void testDouble() {
+    Random rnd = new Random(0L);
+    for(int dim : DIMS) {
+      for(int dim2 : new int[] { dim, dim + 3 }) {
+        double[] a = random(rnd, dim), b = random(rnd, dim2);
+        NumberVector va = new GenericVector(a), vb = new GenericVector(b);
+        checkAll(DoubleVector.wrap(a), DoubleVector.wrap(b), va, vb);
+      }
+    }
+  }
+
+  @Test
+  public void testFloat() {
+    Random rnd = new Random(1L);
+    for(int dim : DIMS) {
+      for(int dim2 : new int[] { dim, dim + 3 }) {
+        float[] a = toFloat(random(rnd, dim)), b = toFloat(random(rnd, dim2));
+        FloatVector fa = new FloatVector(a), fb = new FloatVector(b);
+        checkAll(fa, fb, new GenericVector(fa.toArray()), new GenericVector(fb.toArray()));
+      }
+    }
+  }
+
+  /**
+   * Compare the optimized and the generic code paths.
+   *
+   * @param a First dense vector
+   * @param b Second dense vector
+   * @param ga First generic vector
+   * @param gb Second generic vector
+   */
+  private static void checkAll(NumberVector a, NumberVector b, NumberVector ga, NumberVector gb) {
+    final double tol = 1e-12;
+    check(SquaredEuclideanDistanceFunction.STATIC, a, b, ga, gb, tol);
+    check(EuclideanDistanceFunction.STATIC, a, b, ga, gb, tol);
+    check(ManhattanDistanceFunction.STATIC, a, b, ga, gb, tol);
+    check(new LPNormDistanceFunction(.5), a, b, ga, gb, tol);
+    check(new LPNormDistanceFunction(2.5), a, b, ga, gb, tol);
+    check(CosineDistanceFunction.STATIC, a, b, ga, gb, tol);
+    check(ArcCosineDistanceFunction.STATIC, a, b, ga, gb, tol);
+    assertEquals(VectorUtil.dot(ga, gb), DenseDistanceUtil.dot(a.toArray(), b.toArray()), tol * FastMath.abs(VectorUtil.dot(ga, gb)) + tol);
+    assertEquals(SquaredEuclideanDistanceFunction.STATIC.norm(ga), SquaredEuclideanDistanceFunction.STATIC.norm(a), tol * SquaredEuclideanDistanceFunction.STATIC.norm(ga));
+    assertEquals(ManhattanDistanceFunction.STATIC.norm(ga), ManhattanDistanceFunction.STATIC.norm(a), tol * ManhattanDistanceFunction.STATIC.norm(ga));
+  }
+
+  /**
+   * Compare the optimized and the generic code paths of one distance.
+   */
+  private static void check(PrimitiveDistanceFunction<? super NumberVector> df, NumberVector a, NumberVector b, NumberVector ga, NumberVector gb, double tol) {
+    final double ref = df.distance(ga, gb);
+    assertEquals(df.toString(), ref, df.distance(a, b), tol * ref + tol);
+    assertEquals(df.toString(), ref, df.distance(b, a), tol * ref + tol);
+  }
+
+  private static double[] random(Random rnd, int dim) {
+    double[] v = new double[dim];
+    for(int i = 0; i < dim; i++) {
+      v[i] = rnd.nextDouble() * 2 - 1;
+    }
+    return v;
+  }
+
+  private static float[] toFloat(double[] v) {
+    float[] f = new float[v.length];
+    for(int i = 0; i < v.length; i++) {
+      f[i] = (float) v[i];
+    }
+    return f;
+  }
+
+  /**
+   * Vector type not handled by the optimized code, to force the generic path.
+   *
+   * @author Erich Schubert
+   */
+  private static class GenericVector implements NumberVector {
+    double[] values;
+
+    GenericVector(double[] values) {
+      this.values = values;
+    }
+
+    @Override
+    public int getDimensionality() {
+      return values.length;
+    }
+
+    @Override
+    public double doubleValue(int dimension) {
+      return values[dimension];
+    }
+
+    @Override
+    public long longValue(int dimension) {
+      return (long) values[dimension];
+    }
+
+    @Override
+    public double[] toArray() {
+      return values.clone();
+    }
+  }
+}
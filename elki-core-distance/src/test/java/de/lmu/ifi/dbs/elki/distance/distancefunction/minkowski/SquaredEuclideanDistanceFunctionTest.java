@@ -20,8 +20,19 @@
  */
 package de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.FloatVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.SparseDoubleVector;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.AbstractDistanceFunctionTest;
 import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
 
@@ -40,4 +51,58 @@ public class SquaredEuclideanDistanceFunctionTest extends AbstractDistanceFuncti
     spatialConsistency(dist);
     nonnegativeSpatialConsistency(dist);
   }
+
+  @Test
+  public void testBlockDistances() {
+    SquaredEuclideanDistanceFunction dist = SquaredEuclideanDistanceFunction.STATIC;
+    Random rnd = new Random(0L);
+    List<NumberVector> objs = new ArrayList<>();
+    for(int i = 0; i < 50; i++) {
+      double[] v = new double[TEST_DIM];
+      for(int d = 0; d < TEST_DIM; d++) {
+        v[d] = (rnd.nextDouble() - .5) * 2E4;
+      }
+      // Mix vector types, to also cover the fallbacks.
+      objs.add(i % 5 == 4 ? FloatVector.FACTORY.newNumberVector(v) : DoubleVector.wrap(v));
+    }
+    objs.add(objs.get(0)); // Duplicate, distance 0.
+    final int n = objs.size();
+    double[] out = new double[n];
+    for(NumberVector q : objs) {
+      dist.distances(q, objs, out);
+      for(int j = 0; j < n; j++) {
+        assertEquals("One-to-many not exact.", dist.distance(q, objs.get(j)), out[j], 0.);
+      }
+    }
+    double[] tile = new double[n * n];
+    dist.distances(objs, objs, tile);
+    for(int i = 0; i < n; i++) {
+      for(int j = 0; j < n; j++) {
+        final NumberVector a = objs.get(i), b = objs.get(j);
+        final double err = SquaredEuclideanDistanceFunction.expansionError(TEST_DIM, dist.norm(a), dist.norm(b));
+        final double exact = dist.distance(a, b), approx = tile[i * n + j];
+        assertTrue("Tile error exceeds bound: " + (approx - exact) + " > " + err, Math.abs(approx - exact) <= err);
+      }
+    }
+  }
+
+  @Test
+  public void testSparseTile() {
+    SquaredEuclideanDistanceFunction dist = SquaredEuclideanDistanceFunction.STATIC;
+    Random rnd = new Random(0L);
+    List<NumberVector> objs = new ArrayList<>();
+    for(int i = 0; i < 20; i++) {
+      objs.add(new SparseDoubleVector(new int[] { rnd.nextInt(500), 500 + rnd.nextInt(500) }, new double[] { rnd.nextDouble(), rnd.nextDouble() }, 1000));
+    }
+    objs.add(DoubleVector.wrap(new double[1000]));
+    final int n = objs.size();
+    double[] tile = new double[n * n];
+    dist.distances(objs, objs, tile);
+    // Not dense, so no expansion is used, and the values are exact.
+    for(int i = 0; i < n; i++) {
+      for(int j = 0; j < n; j++) {
+        assertEquals("Sparse tile not exact.", dist.distance(objs.get(i), objs.get(j)), tile[i * n + j], 0.);
+      }
+    }
+  }
 }
@@ -405,9 +405,24 @@ public class CovarianceMatrix {
    * @return Covariance matrix
    */
   public static CovarianceMatrix make(Relation<? extends NumberVector> relation, DBIDs ids) {
-    int dim = RelationUtil.dimensionality(relation);
-    CovarianceMatrix c = new CovarianceMatrix(dim);
-    double[] mean = c.mean;
+    return new CovarianceMatrix(RelationUtil.dimensionality(relation)).recompute(relation, ids);
+  }
+
+  /**
+   * Reset the matrix, and compute the covariance of the given objects with
+   * the two-pass approach, reusing the allocated storage.
+   * <p>
+   * This allows computing many small covariance matrixes (e.g., for local
+   * PCA) with a single object. It <em>may</em> be used after a "destroy", but
+   * then overwrites the matrix returned by it.
+   * 
+   * @param relation Relation to use.
+   * @param ids IDs to add
+   * @return {@code this}
+   */
+  public CovarianceMatrix recompute(Relation<? extends NumberVector> relation, DBIDs ids) {
+    reset();
+    final int dim = mean.length;
     int count = 0;
     // Compute mean first:
     for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
@@ -418,7 +433,7 @@ public class CovarianceMatrix {
       count++;
     }
     if(count == 0) {
-      return c;
+      return this;
     }
     // Normalize mean
     for(int i = 0; i < dim; i++) {
@@ -426,8 +441,8 @@ public class CovarianceMatrix {
     }
     // Compute covariances second
     // Two-pass approach is numerically okay and fast, when possible.
-    double[] tmp = c.nmea; // Scratch space
-    double[][] elems = c.elements;
+    double[] tmp = nmea; // Scratch space
+    double[][] elems = elements;
     for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
       NumberVector vec = relation.get(iditer);
       for(int i = 0; i < dim; i++) {
@@ -445,7 +460,7 @@ public class CovarianceMatrix {
         elems[j][i] = elems[i][j];
       }
     }
-    c.wsum = count;
-    return c;
+    wsum = count;
+    return this;
   }
 }
@@ -87,9 +87,37 @@ public class EigenvalueDecomposition {
    * @param A Square matrix
    */
   public EigenvalueDecomposition(double[][] A) {
-    n = A.length;
+    this(A.length);
+    decompose(A);
+  }
+
+  /**
+   * Allocate a reusable decomposition for n by n matrices.
+   * <p>
+   * Use {@link #decompose(double[][])} to compute a decomposition. Each call
+   * overwrites the previous results, including the arrays returned by
+   * {@link #getV()} and {@link #getRealEigenvalues()}.
+   *
+   * @param n Matrix dimensionality
+   */
+  public EigenvalueDecomposition(int n) {
+    this.n = n;
     d = new double[n];
     e = new double[n];
+    V = new double[n][n];
+  }
+
+  /**
+   * Check for symmetry, then compute the eigenvalue decomposition, reusing
+   * the storage of this object.
+   *
+   * @param A Square matrix, not modified
+   * @return {@code this}
+   */
+  public EigenvalueDecomposition decompose(double[][] A) {
+    assert A.length == n : "Matrix dimensionality does not agree.";
+    Arrays.fill(d, 0.);
+    Arrays.fill(e, 0.);
 
     boolean issymmetric = true;
     for(int j = 0; (j < n) && issymmetric; j++) {
@@ -105,14 +133,15 @@ public class EigenvalueDecomposition {
     }
 
     if(issymmetric) {
-      V = VMath.copy(A);
+      for(int i = 0; i < n; i++) {
+        System.arraycopy(A[i], 0, V[i], 0, n);
+      }
       // Tridiagonalize.
       tred2();
       // Diagonalize.
       tql2();
     }
     else {
-      V = new double[n][n];
       H = VMath.copy(A);
       ort = new double[n];
       // Reduce to Hessenberg form.
@@ -122,6 +151,7 @@ public class EigenvalueDecomposition {
     }
     // Sort eigenvalues and corresponding vectors.
     sortEigen();
+    return this;
   }
 
   /**
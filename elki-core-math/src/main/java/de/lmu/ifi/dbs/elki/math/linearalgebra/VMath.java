@@ -78,6 +78,13 @@ public final class VMath {
    */
   protected static final String ERR_SINGULAR = "Matrix is singular.";
 
+  /**
+   * Block size for cache-blocked matrix multiplication.
+   * <p>
+   * A 64x64 block of doubles is 32 KiB, i.e. about the size of a L1 cache.
+   */
+  private static final int BLOCKSIZE = 64;
+
   /**
    * When a symmetric positive definite matrix is required.
    */
@@ -1282,21 +1289,25 @@ public final class VMath {
     // Optimized implementation, exploiting the storage layout
     assert m2.length == coldim1 : ERR_MATRIX_INNERDIM;
     final double[][] r2 = new double[rowdim1][coldim2];
-    // Optimized ala Jama. jik order.
-    final double[] Bcolj = new double[coldim1];
-    for(int j = 0; j < coldim2; j++) {
-      // Make a linear copy of column j from B
-      for(int k = 0; k < coldim1; k++) {
-        Bcolj[k] = m2[k][j];
-      }
-      // multiply it with each row from A
-      for(int i = 0; i < rowdim1; i++) {
-        final double[] Arowi = m1[i];
-        double s = 0;
-        for(int k = 0; k < coldim1; k++) {
-          s += Arowi[k] * Bcolj[k];
+    // Cache-blocked ikj order. The products are still summed in the order of
+    // k, so the result is the same as with the naive loop.
+    for(int i0 = 0; i0 < rowdim1; i0 += BLOCKSIZE) {
+      final int imax = Math.min(i0 + BLOCKSIZE, rowdim1);
+      for(int k0 = 0; k0 < coldim1; k0 += BLOCKSIZE) {
+        final int kmax = Math.min(k0 + BLOCKSIZE, coldim1);
+        for(int j0 = 0; j0 < coldim2; j0 += BLOCKSIZE) {
+          final int jmax = Math.min(j0 + BLOCKSIZE, coldim2);
+          for(int i = i0; i < imax; i++) {
+            final double[] Arowi = m1[i], Rrowi = r2[i];
+            for(int k = k0; k < kmax; k++) {
+              final double[] Browk = m2[k];
+              final double a = Arowi[k];
+              for(int j = j0; j < jmax; j++) {
+                Rrowi[j] += a * Browk[j];
+              }
+            }
+          }
         }
-        r2[i][j] = s;
       }
     }
     return r2;
@@ -1360,19 +1371,25 @@ public final class VMath {
     final int coldim2 = getColumnDimensionality(m2);
     assert m2.length == rowdim1 : ERR_MATRIX_INNERDIM;
     final double[][] re = new double[coldim1][coldim2];
-    final double[] Bcolj = new double[rowdim1];
-    for(int j = 0; j < coldim2; j++) {
-      // Make a linear copy of column j from B
-      for(int k = 0; k < rowdim1; k++) {
-        Bcolj[k] = m2[k][j];
-      }
-      // multiply it with each row from A
-      for(int i = 0; i < coldim1; i++) {
-        double s = 0;
-        for(int k = 0; k < rowdim1; k++) {
-          s += m1[k][i] * Bcolj[k];
+    // Cache-blocked kij order, reading both inputs row-wise. The products are
+    // still summed in the order of k.
+    for(int k0 = 0; k0 < rowdim1; k0 += BLOCKSIZE) {
+      final int kmax = Math.min(k0 + BLOCKSIZE, rowdim1);
+      for(int i0 = 0; i0 < coldim1; i0 += BLOCKSIZE) {
+        final int imax = Math.min(i0 + BLOCKSIZE, coldim1);
+        for(int j0 = 0; j0 < coldim2; j0 += BLOCKSIZE) {
+          final int jmax = Math.min(j0 + BLOCKSIZE, coldim2);
+          for(int k = k0; k < kmax; k++) {
+            final double[] Arowk = m1[k], Browk = m2[k];
+            for(int i = i0; i < imax; i++) {
+              final double[] Rrowi = re[i];
+              final double a = Arowk[i];
+              for(int j = j0; j < jmax; j++) {
+                Rrowi[j] += a * Browk[j];
+              }
+            }
+          }
         }
-        re[i][j] = s;
       }
     }
     return re;
@@ -1414,18 +1431,21 @@ public final class VMath {
     final int rowdim2 = m2.length;
     assert coldim1 == getColumnDimensionality(m2) : ERR_MATRIX_INNERDIM;
     final double[][] re = new double[rowdim1][rowdim2];
-    for(int j = 0; j < rowdim2; j++) {
-      final double[] Browj = m2[j];
-      // multiply it with each row from A
+    // Process a block of rows of B at a time, while it is in the cache.
+    for(int j0 = 0; j0 < rowdim2; j0 += BLOCKSIZE) {
+      final int jmax = Math.min(j0 + BLOCKSIZE, rowdim2);
       for(int i = 0; i < rowdim1; i++) {
-        final double[] Arowi = m1[i];
-        double s = 0;
-        // assert Arowi.length == coldim1 : ERR_MATRIX_RAGGED;
-        // assert Browj.length == coldim1 : ERR_MATRIX_INNERDIM;
-        for(int k = 0; k < coldim1; k++) {
-          s += Arowi[k] * Browj[k];
+        final double[] Arowi = m1[i], Rrowi = re[i];
+        for(int j = j0; j < jmax; j++) {
+          final double[] Browj = m2[j];
+          double s = 0;
+          // assert Arowi.length == coldim1 : ERR_MATRIX_RAGGED;
+          // assert Browj.length == coldim1 : ERR_MATRIX_INNERDIM;
+          for(int k = 0; k < coldim1; k++) {
+            s += Arowi[k] * Browj[k];
+          }
+          Rrowi[j] = s;
         }
-        re[i][j] = s;
       }
     }
     return re;
@@ -20,10 +20,13 @@
  */
 package de.lmu.ifi.dbs.elki.math.linearalgebra.pca;
 
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.CovarianceMatrix;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.EigenvalueDecomposition;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
@@ -85,6 +88,24 @@ public class PCARunner {
     return processCovarMatrix(covarianceMatrixBuilder.processQueryResults(results, database));
   }
 
+  /**
+   * Run PCA on a list of vectors, when no relation is available (e.g. while
+   * loading the data).
+   * <p>
+   * The default implementation computes the unweighted population covariance
+   * matrix, as the covariance matrix builder requires a relation.
+   * 
+   * @param vectors Vectors, must be non-empty
+   * @return PCA result
+   */
+  public PCAResult processVectors(List<? extends NumberVector> vectors) {
+    CovarianceMatrix cov = new CovarianceMatrix(vectors.get(0).getDimensionality());
+    for(NumberVector vec : vectors) {
+      cov.put(vec);
+    }
+    return processCovarMatrix(cov.destroyToPopulationMatrix());
+  }
+
   /**
    * Process an existing covariance Matrix.
    * 
@@ -0,0 +1,352 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.math.linearalgebra.pca;
+
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.euclideanLength;
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.minusTimesEquals;
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.plusTimesEquals;
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.timesEquals;
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.transposeTimes;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.Centroid;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.EigenvalueDecomposition;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Truncated PCA using a randomized range finder with subspace iteration.
+ * <p>
+ * Only the leading k eigenpairs are computed, and the covariance matrix is
+ * never materialized. Instead, each pass over the data multiplies the
+ * (implicit, centered) covariance matrix with an orthonormal d×l sketch, where
+ * l = k + oversampling. This needs O(n d l) time per pass and O(d l) memory,
+ * instead of O(d²) memory and O(d³) time for the full eigenvalue
+ * decomposition, and makes PCA feasible for very high-dimensional data.
+ * <p>
+ * The data is read 3 + iterations times: once for the mean, once per power
+ * iteration plus the initial sketch, and once to project the covariance onto
+ * the final subspace, which is then decomposed as a small l×l matrix.
+ * <p>
+ * As only k eigenvalues are available, eigenpair filters that use the total
+ * variance (such as the percentage filter) only see the variance explained by
+ * these k components.
+ * <p>
+ * Reference:
+ * <p>
+ * N. Halko, P. G. Martinsson, J. A. Tropp<br>
+ * Finding Structure with Randomness: Probabilistic Algorithms for Constructing
+ * Approximate Matrix Decompositions<br>
+ * SIAM Review 53(2)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@Reference(authors = "N. Halko, P. G. Martinsson, J. A. Tropp", //
+    title = "Finding Structure with Randomness: Probabilistic Algorithms for Constructing Approximate Matrix Decompositions", //
+    booktitle = "SIAM Review 53(2)", //
+    url = "https://doi.org/10.1137/090771806", //
+    bibkey = "DBLP:journals/siamrev/HalkoMT11")
+public class RandomizedPCARunner extends PCARunner {
+  /**
+   * Number of components to compute.
+   */
+  int k;
+
+  /**
+   * Additional sketch dimensions.
+   */
+  int oversampling;
+
+  /**
+   * Number of power iterations.
+   */
+  int iterations;
+
+  /**
+   * Random generator.
+   */
+  RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param k Number of components to compute
+   * @param oversampling Additional sketch dimensions
+   * @param iterations Number of power iterations
+   * @param rnd Random generator
+   */
+  public RandomizedPCARunner(int k, int oversampling, int iterations, RandomFactory rnd) {
+    super(null);
+    this.k = k;
+    this.oversampling = oversampling;
+    this.iterations = iterations;
+    this.rnd = rnd;
+  }
+
+  @Override
+  public PCAResult processIds(DBIDs ids, Relation<? extends NumberVector> relation) {
+    return process(c -> {
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+        c.accept(relation.get(it));
+      }
+    }, ids.size(), RelationUtil.dimensionality(relation));
+  }
+
+  @Override
+  public PCAResult processQueryResult(DoubleDBIDList results, Relation<? extends NumberVector> relation) {
+    return processIds(results, relation);
+  }
+
+  @Override
+  public PCAResult processVectors(List<? extends NumberVector> vectors) {
+    return process(vectors::forEach, vectors.size(), vectors.get(0).getDimensionality());
+  }
+
+  /**
+   * Run the randomized PCA.
+   *
+   * @param data Data source, may be read multiple times
+   * @param size Number of vectors
+   * @param dim Dimensionality
+   * @return PCA result with the leading eigenpairs
+   */
+  protected PCAResult process(Consumer<Consumer<NumberVector>> data, int size, int dim) {
+    final int l = Math.min(k + oversampling, dim);
+    Centroid centroid = new Centroid(dim);
+    data.accept(centroid::put);
+    final double[] mean = centroid.getArrayRef();
+
+    // Random starting subspace, refined by subspace iteration.
+    Random random = rnd.getSingleThreadedRandom();
+    double[][] q = new double[l][dim];
+    for(double[] row : q) {
+      for(int j = 0; j < dim; j++) {
+        row[j] = random.nextGaussian();
+      }
+    }
+    orthonormalize(q, random);
+    for(int i = 0; i <= iterations; i++) {
+      q = multiply(data, q, mean);
+      orthonormalize(q, random);
+    }
+
+    // Project the covariance matrix onto the subspace: T = Q^T C Q
+    final double[][] t = new double[l][l];
+    final double[] buf = new double[dim], z = new double[l];
+    final double[][] fq = q;
+    data.accept(vec -> {
+      project(vec, mean, fq, buf, z);
+      for(int i = 0; i < l; i++) {
+        final double zi = z[i];
+        final double[] ti = t[i];
+        for(int j = 0; j <= i; j++) {
+          ti[j] += zi * z[j];
+        }
+      }
+    });
+    for(int i = 0; i < l; i++) {
+      for(int j = 0; j <= i; j++) {
+        t[j][i] = t[i][j] /= size;
+      }
+    }
+
+    // Decompose the small matrix, and map the eigenvectors back.
+    EigenvalueDecomposition evd = new EigenvalueDecomposition(t);
+    final double[] ev = evd.getRealEigenvalues();
+    final double[][] u = evd.getV();
+    EigenPair[] pairs = new EigenPair[l];
+    for(int i = 0; i < l; i++) {
+      double[] vec = new double[dim];
+      for(int j = 0; j < l; j++) {
+        plusTimesEquals(vec, q[j], u[j][i]);
+      }
+      pairs[i] = new EigenPair(vec, Math.abs(ev[i]));
+    }
+    Arrays.sort(pairs, Comparator.reverseOrder());
+    return new PCAResult(Arrays.copyOf(pairs, Math.min(k, l)));
+  }
+
+  /**
+   * Multiply the (implicit) covariance matrix with the subspace, in a single
+   * pass over the data.
+   *
+   * @param data Data source
+   * @param q Subspace, vectors in rows
+   * @param mean Mean vector
+   * @return Product (scaled by the number of vectors), vectors in rows
+   */
+  private static double[][] multiply(Consumer<Consumer<NumberVector>> data, double[][] q, double[] mean) {
+    final int l = q.length, dim = mean.length;
+    final double[][] y = new double[l][dim];
+    final double[] buf = new double[dim], z = new double[l];
+    data.accept(vec -> {
+      project(vec, mean, q, buf, z);
+      for(int i = 0; i < l; i++) {
+        plusTimesEquals(y[i], buf, z[i]);
+      }
+    });
+    return y;
+  }
+
+  /**
+   * Center a vector, and project it onto the subspace.
+   *
+   * @param vec Input vector
+   * @param mean Mean vector
+   * @param q Subspace, vectors in rows
+   * @param buf Output buffer for the centered vector
+   * @param z Output buffer for the projection
+   */
+  private static void project(NumberVector vec, double[] mean, double[][] q, double[] buf, double[] z) {
+    for(int j = 0; j < mean.length; j++) {
+      buf[j] = vec.doubleValue(j) - mean[j];
+    }
+    for(int i = 0; i < q.length; i++) {
+      z[i] = transposeTimes(q[i], buf);
+    }
+  }
+
+  /**
+   * Orthonormalize the rows of a matrix, using modified Gram-Schmidt with
+   * reorthogonalization. Vectors that are (numerically) linearly dependent are
+   * replaced with random directions.
+   *
+   * @param q Matrix, vectors in rows
+   * @param random Random generator
+   */
+  private static void orthonormalize(double[][] q, Random random) {
+    for(int i = 0; i < q.length; i++) {
+      final double[] qi = q[i];
+      while(true) {
+        final double norm0 = euclideanLength(qi);
+        for(int rep = 0; rep < 2; rep++) {
+          for(int j = 0; j < i; j++) {
+            minusTimesEquals(qi, q[j], transposeTimes(q[j], qi));
+          }
+        }
+        final double norm = euclideanLength(qi);
+        if(norm > 0 && norm > 1e-10 * norm0) {
+          timesEquals(qi, 1. / norm);
+          break;
+        }
+        for(int j = 0; j < qi.length; j++) {
+          qi[j] = random.nextGaussian();
+        }
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Number of components to compute.
+     */
+    public static final OptionID K_ID = new OptionID("randomizedpca.k", "The number of principal components to compute.");
+
+    /**
+     * Additional sketch dimensions.
+     */
+    public static final OptionID OVERSAMPLING_ID = new OptionID("randomizedpca.oversampling", "Additional dimensions of the random sketch, to improve accuracy.");
+
+    /**
+     * Number of power iterations.
+     */
+    public static final OptionID ITER_ID = new OptionID("randomizedpca.iterations", "The number of power iterations to perform.");
+
+    /**
+     * Random seed.
+     */
+    public static final OptionID SEED_ID = new OptionID("randomizedpca.seed", "Random seed (optional).");
+
+    /**
+     * Number of components to compute.
+     */
+    int k;
+
+    /**
+     * Additional sketch dimensions.
+     */
+    int oversampling = 10;
+
+    /**
+     * Number of power iterations.
+     */
+    int iterations = 2;
+
+    /**
+     * Random generator.
+     */
+    RandomFactory rnd;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter kP = new IntParameter(K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.intValue();
+      }
+      IntParameter overP = new IntParameter(OVERSAMPLING_ID, 10) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(overP)) {
+        oversampling = overP.intValue();
+      }
+      IntParameter iterP = new IntParameter(ITER_ID, 2) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(iterP)) {
+        iterations = iterP.intValue();
+      }
+      RandomParameter rndP = new RandomParameter(SEED_ID);
+      if(config.grab(rndP)) {
+        rnd = rndP.getValue();
+      }
+    }
+
+    @Override
+    protected RandomizedPCARunner makeInstance() {
+      return new RandomizedPCARunner(k, oversampling, iterations, rnd);
+    }
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.math.linearalgebra.pca;
+
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.euclideanLength;
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.minusTimesEquals;
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.plusTimesEquals;
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.squareSum;
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.times;
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.timesEquals;
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.transposeTimes;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Streaming PCA using candid covariance-free incremental PCA (CCIPCA).
+ * <p>
+ * The leading k eigenvectors are estimated in a single pass over the data,
+ * without computing a covariance matrix. Each vector is centered with the
+ * running mean, and then used to update the eigenvector estimates one after
+ * the other, removing the projection onto each estimate before updating the
+ * next. This needs O(n d k) time and O(d k) memory.
+ * <p>
+ * The amnesic parameter gives more weight to recent samples, which speeds up
+ * convergence from the (poor) initial estimates. The result is an
+ * approximation, in particular of the weaker components, which converge more
+ * slowly. As only k eigenvalues are available, eigenpair filters that use the
+ * total variance only see the variance explained by these k components.
+ * <p>
+ * Reference:
+ * <p>
+ * J. Weng, Y. Zhang, W.-S. Hwang<br>
+ * Candid Covariance-Free Incremental Principal Component Analysis<br>
+ * IEEE Trans. Pattern Analysis and Machine Intelligence 25(8)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@Reference(authors = "J. Weng, Y. Zhang, W.-S. Hwang", //
+    title = "Candid Covariance-Free Incremental Principal Component Analysis", //
+    booktitle = "IEEE Trans. Pattern Analysis and Machine Intelligence 25(8)", //
+    url = "https://doi.org/10.1109/TPAMI.2003.1217609", //
+    bibkey = "DBLP:journals/pami/WengZH03")
+public class StreamingPCARunner extends PCARunner {
+  /**
+   * Number of components to compute.
+   */
+  int k;
+
+  /**
+   * Amnesic parameter.
+   */
+  double amnesia;
+
+  /**
+   * Constructor.
+   *
+   * @param k Number of components to compute
+   * @param amnesia Amnesic parameter, 0 for no amnesia
+   */
+  public StreamingPCARunner(int k, double amnesia) {
+    super(null);
+    this.k = k;
+    this.amnesia = amnesia;
+  }
+
+  @Override
+  public PCAResult processIds(DBIDs ids, Relation<? extends NumberVector> relation) {
+    Estimator est = new Estimator(RelationUtil.dimensionality(relation));
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+      est.put(relation.get(it));
+    }
+    return est.getResult();
+  }
+
+  @Override
+  public PCAResult processQueryResult(DoubleDBIDList results, Relation<? extends NumberVector> relation) {
+    return processIds(results, relation);
+  }
+
+  @Override
+  public PCAResult processVectors(List<? extends NumberVector> vectors) {
+    Estimator est = new Estimator(vectors.get(0).getDimensionality());
+    for(NumberVector vec : vectors) {
+      est.put(vec);
+    }
+    return est.getResult();
+  }
+
+  /**
+   * Make a new estimator, to feed vectors one at a time without buffering.
+   *
+   * @param dim Dimensionality
+   * @return Estimator
+   */
+  public Estimator newEstimator(int dim) {
+    return new Estimator(dim);
+  }
+
+  /**
+   * Incremental estimator state.
+   *
+   * @author Erich Schubert
+   */
+  public class Estimator {
+    /**
+     * Number of vectors seen.
+     */
+    int n = 0;
+
+    /**
+     * Running mean.
+     */
+    double[] mean;
+
+    /**
+     * Centered (and deflated) vector buffer.
+     */
+    double[] u;
+
+    /**
+     * Unnormalized eigenvector estimates.
+     */
+    double[][] v;
+
+    /**
+     * Constructor.
+     *
+     * @param dim Dimensionality
+     */
+    Estimator(int dim) {
+      this.mean = new double[dim];
+      this.u = new double[dim];
+      this.v = new double[Math.min(k, dim)][];
+    }
+
+    /**
+     * Process a single vector.
+     *
+     * @param vec Vector
+     */
+    public void put(NumberVector vec) {
+      ++n;
+      for(int j = 0; j < mean.length; j++) {
+        final double delta = vec.doubleValue(j) - mean[j];
+        mean[j] += delta / n;
+        u[j] = vec.doubleValue(j) - mean[j];
+      }
+      // Amnesic weights, limited such that old data is never weighted negative.
+      final double l = Math.max(0., Math.min(amnesia, n - 2.));
+      final double w1 = (n - 1 - l) / n, w2 = (1 + l) / n;
+      for(int i = 0; i < v.length; i++) {
+        double[] vi = v[i];
+        final double norm = vi != null ? euclideanLength(vi) : 0.;
+        if(norm == 0.) {
+          v[i] = u.clone(); // Initialize with the residual vector.
+          return;
+        }
+        final double s = w2 * transposeTimes(u, vi) / norm;
+        plusTimesEquals(timesEquals(vi, w1), u, s);
+        // Remove the component along the updated estimate.
+        final double nsq = squareSum(vi);
+        if(nsq > 0.) {
+          minusTimesEquals(u, vi, transposeTimes(u, vi) / nsq);
+        }
+      }
+    }
+
+    /**
+     * Get the running mean of the vectors seen.
+     *
+     * @return Mean vector (reference)
+     */
+    public double[] getMean() {
+      return mean;
+    }
+
+    /**
+     * Build the PCA result from the current estimates.
+     *
+     * @return PCA result
+     */
+    public PCAResult getResult() {
+      EigenPair[] pairs = new EigenPair[v.length];
+      int c = 0;
+      for(double[] vi : v) {
+        final double norm = vi != null ? euclideanLength(vi) : 0.;
+        if(norm > 0.) {
+          pairs[c++] = new EigenPair(times(vi, 1. / norm), norm);
+        }
+      }
+      pairs = Arrays.copyOf(pairs, c);
+      Arrays.sort(pairs, Comparator.reverseOrder());
+      return new PCAResult(pairs);
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Number of components to compute.
+     */
+    public static final OptionID K_ID = new OptionID("ccipca.k", "The number of principal components to compute.");
+
+    /**
+     * Amnesic parameter.
+     */
+    public static final OptionID AMNESIA_ID = new OptionID("ccipca.amnesia", "Amnesic parameter, larger values give more weight to recent data.");
+
+    /**
+     * Number of components to compute.
+     */
+    int k;
+
+    /**
+     * Amnesic parameter.
+     */
+    double amnesia = 2.;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter kP = new IntParameter(K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.intValue();
+      }
+      DoubleParameter amnesiaP = new DoubleParameter(AMNESIA_ID, 2.) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE);
+      if(config.grab(amnesiaP)) {
+        amnesia = amnesiaP.doubleValue();
+      }
+    }
+
+    @Override
+    protected StreamingPCARunner makeInstance() {
+      return new StreamingPCARunner(k, amnesia);
+    }
+  }
+}
@@ -0,0 +1,356 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions;
+
+import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+/**
+ * Approximate multivariate kernel sums, accelerated with a k-d-tree.
+ * <p>
+ * The data is organized in a k-d-tree with bounding boxes. When evaluating the
+ * kernel sum at a query point, the minimum and maximum distance to a box bound
+ * the contributions of all points in the box. If these bounds are close
+ * enough, the whole box is approximated by the midpoint of the bounds,
+ * otherwise the box is refined. The pruning rule follows Gray and Moore: a
+ * running lower bound of the total sum is maintained, and the absolute error
+ * of every approximated box is limited relative to it, which guarantees a
+ * relative error of at most {@code epsilon} for the returned sum. With
+ * {@code epsilon=0}, only boxes with constant contributions (e.g., outside of
+ * the support of a finite kernel) are pruned, and the result is exact up to
+ * rounding.
+ * <p>
+ * The kernel must be non-increasing in the distance, which holds for all
+ * kernels in this package. The tree does not depend on the bandwidth, so the
+ * same instance can be used with varying bandwidths (e.g., balloon
+ * estimators).
+ * <p>
+ * This class is thread-safe after construction.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @apiviz.composedOf Node
+ * @apiviz.uses KernelDensityFunction
+ */
+@Reference(authors = "A. G. Gray, A. W. Moore", //
+    title = "Nonparametric Density Estimation: Toward Computational Tractability", //
+    booktitle = "Proc. 2003 SIAM Int. Conf. on Data Mining", //
+    bibkey = "DBLP:conf/sdm/GrayM03")
+public class ApproximateKernelDensity {
+  /**
+   * Data points, reordered by the tree.
+   */
+  private final double[][] data;
+
+  /**
+   * Kernel function.
+   */
+  private final KernelDensityFunction kernel;
+
+  /**
+   * Maximum relative error.
+   */
+  private final double epsilon;
+
+  /**
+   * Maximum leaf size.
+   */
+  private final int leafsize;
+
+  /**
+   * Root of the tree.
+   */
+  private final Node root;
+
+  /**
+   * Constructor.
+   *
+   * @param data Data points (not modified, the references are copied)
+   * @param kernel Kernel function
+   * @param epsilon Maximum relative error of the kernel sums
+   * @param leafsize Maximum number of points in a leaf
+   */
+  public ApproximateKernelDensity(double[][] data, KernelDensityFunction kernel, double epsilon, int leafsize) {
+    if(data.length == 0) {
+      throw new IllegalArgumentException("Cannot estimate densities without data.");
+    }
+    if(!(epsilon >= 0.)) {
+      throw new IllegalArgumentException("Epsilon must be non-negative.");
+    }
+    this.data = data.clone();
+    this.kernel = kernel;
+    this.epsilon = epsilon;
+    this.leafsize = leafsize > 0 ? leafsize : 1;
+    this.root = build(0, data.length, new SplitAdapter());
+  }
+
+  /**
+   * Constructor, with a default leaf size of 16.
+   *
+   * @param data Data points (not modified, the references are copied)
+   * @param kernel Kernel function
+   * @param epsilon Maximum relative error of the kernel sums
+   */
+  public ApproximateKernelDensity(double[][] data, KernelDensityFunction kernel, double epsilon) {
+    this(data, kernel, epsilon, 16);
+  }
+
+  /**
+   * Build the tree recursively.
+   *
+   * @param start Interval start
+   * @param end Interval end (exclusive)
+   * @param adapter Adapter for partitioning
+   * @return Node
+   */
+  private Node build(int start, int end, SplitAdapter adapter) {
+    final int dim = data[start].length;
+    double[] min = data[start].clone(), max = data[start].clone();
+    for(int i = start + 1; i < end; i++) {
+      final double[] v = data[i];
+      for(int d = 0; d < dim; d++) {
+        final double x = v[d];
+        min[d] = x < min[d] ? x : min[d];
+        max[d] = x > max[d] ? x : max[d];
+      }
+    }
+    Node node = new Node(start, end, min, max);
+    if(end - start <= leafsize) {
+      return node;
+    }
+    // Split on the widest dimension.
+    int sdim = 0;
+    double width = max[0] - min[0];
+    for(int d = 1; d < dim; d++) {
+      if(max[d] - min[d] > width) {
+        width = max[d] - min[d];
+        sdim = d;
+      }
+    }
+    if(!(width > 0)) {
+      return node; // All duplicates.
+    }
+    final int mid = (start + end) >>> 1;
+    adapter.dim = sdim;
+    QuickSelect.quickSelect(data, adapter, start, end, mid);
+    node.left = build(start, mid, adapter);
+    node.right = build(mid, end, adapter);
+    return node;
+  }
+
+  /**
+   * Approximate the sum of kernel contributions
+   * {@code sum_i K(||query - x_i|| / bandwidth)}.
+   * <p>
+   * The result is not normalized by the number of points or by the bandwidth.
+   *
+   * @param query Query point
+   * @param bandwidth Kernel bandwidth
+   * @return Approximate kernel sum, within the relative error bound
+   */
+  public double sum(double[] query, double bandwidth) {
+    final double ibw = 1. / bandwidth;
+    final double kmin = kernel.density(maxDistance(root, query) * ibw);
+    final double kmax = kernel.density(minDistance(root, query) * ibw);
+    // Estimate, and lower bound of the total sum:
+    double[] state = { 0., (root.end - root.start) * kmin };
+    sum(root, query, ibw, kmin, kmax, state);
+    return state[0];
+  }
+
+  /**
+   * Approximate the average kernel contribution, i.e. the kernel sum divided
+   * by the number of data points.
+   * <p>
+   * For a density, this still needs to be divided by the kernel volume, e.g.
+   * {@code bandwidth^dim} for product-normalized kernels.
+   *
+   * @param query Query point
+   * @param bandwidth Kernel bandwidth
+   * @return Approximate average kernel contribution
+   */
+  public double density(double[] query, double bandwidth) {
+    return sum(query, bandwidth) / data.length;
+  }
+
+  /**
+   * Recursive evaluation of the kernel sum.
+   *
+   * @param node Current node
+   * @param query Query point
+   * @param ibw Inverse bandwidth
+   * @param kmin Lower bound of the kernel contributions in this node
+   * @param kmax Upper bound of the kernel contributions in this node
+   * @param state State: current estimate, and lower bound of the total
+   */
+  private void sum(Node node, double[] query, double ibw, double kmin, double kmax, double[] state) {
+    final int size = node.end - node.start;
+    // Error of size * (kmax - kmin) / 2 is acceptable if it is at most
+    // epsilon * size / n times the lower bound of the total:
+    if(kmax - kmin <= 2 * epsilon * state[1] / data.length) {
+      state[0] += size * (kmax + kmin) * .5;
+      return;
+    }
+    if(node.left == null) {
+      double s = 0.;
+      for(int i = node.start; i < node.end; i++) {
+        s += kernel.density(distance(data[i], query) * ibw);
+      }
+      state[0] += s;
+      state[1] += s - size * kmin;
+      return;
+    }
+    final Node l = node.left, r = node.right;
+    final double lmin = kernel.density(maxDistance(l, query) * ibw);
+    final double lmax = kernel.density(minDistance(l, query) * ibw);
+    final double rmin = kernel.density(maxDistance(r, query) * ibw);
+    final double rmax = kernel.density(minDistance(r, query) * ibw);
+    // Refine the lower bound:
+    state[1] += (l.end - l.start) * lmin + (r.end - r.start) * rmin - size * kmin;
+    // Closer node first, to raise the lower bound early.
+    if(lmax >= rmax) {
+      sum(l, query, ibw, lmin, lmax, state);
+      sum(r, query, ibw, rmin, rmax, state);
+    }
+    else {
+      sum(r, query, ibw, rmin, rmax, state);
+      sum(l, query, ibw, lmin, lmax, state);
+    }
+  }
+
+  /**
+   * Euclidean distance of two points.
+   *
+   * @param a First point
+   * @param b Second point
+   * @return Distance
+   */
+  private static double distance(double[] a, double[] b) {
+    double agg = 0.;
+    for(int d = 0; d < a.length; d++) {
+      final double v = a[d] - b[d];
+      agg += v * v;
+    }
+    return Math.sqrt(agg);
+  }
+
+  /**
+   * Minimum Euclidean distance of a point to a node.
+   *
+   * @param node Node
+   * @param query Query point
+   * @return Minimum distance
+   */
+  private static double minDistance(Node node, double[] query) {
+    final double[] min = node.min, max = node.max;
+    double agg = 0.;
+    for(int d = 0; d < query.length; d++) {
+      final double q = query[d];
+      final double v = q < min[d] ? min[d] - q : q > max[d] ? q - max[d] : 0.;
+      agg += v * v;
+    }
+    return Math.sqrt(agg);
+  }
+
+  /**
+   * Maximum Euclidean distance of a point to a node.
+   *
+   * @param node Node
+   * @param query Query point
+   * @return Maximum distance
+   */
+  private static double maxDistance(Node node, double[] query) {
+    final double[] min = node.min, max = node.max;
+    double agg = 0.;
+    for(int d = 0; d < query.length; d++) {
+      final double q = query[d];
+      final double v = Math.max(Math.abs(q - min[d]), Math.abs(q - max[d]));
+      agg += v * v;
+    }
+    return Math.sqrt(agg);
+  }
+
+  /**
+   * Node of the k-d-tree.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class Node {
+    /**
+     * Interval of the data array.
+     */
+    final int start, end;
+
+    /**
+     * Bounding box.
+     */
+    final double[] min, max;
+
+    /**
+     * Child nodes (null for leaves).
+     */
+    Node left, right;
+
+    /**
+     * Constructor.
+     *
+     * @param start Interval start
+     * @param end Interval end (exclusive)
+     * @param min Minimum coordinates
+     * @param max Maximum coordinates
+     */
+    Node(int start, int end, double[] min, double[] max) {
+      this.start = start;
+      this.end = end;
+      this.min = min;
+      this.max = max;
+    }
+  }
+
+  /**
+   * Adapter for partitioning the data along one dimension.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class SplitAdapter implements QuickSelect.Adapter<double[][]> {
+    /**
+     * Dimension to split on.
+     */
+    int dim;
+
+    @Override
+    public void swap(double[][] data, int i, int j) {
+      double[] tmp = data[i];
+      data[i] = data[j];
+      data[j] = tmp;
+    }
+
+    @Override
+    public boolean compareGreater(double[][] data, int i, int j) {
+      return data[i][dim] > data[j][dim];
+    }
+  }
+}
@@ -85,4 +85,19 @@ public class EigenvalueDecompositionTest {
     double[][] v = ev.getV(), d = ev.getD();
     assertEquals("Asymmetric decomposition", 0., normF(minus(times(a, v), times(v, d))), 1e-13);
   }
+
+  @Test
+  public void testReuse() {
+    double[][] evs = { { 0.5, MathUtil.SQRT3 / 2 }, { -MathUtil.SQRT3 / 2, 0.5 } };
+    double[][] s1 = timesTranspose(times(evs, new double[][] { { 4, 0 }, { 0, 9 } }), evs);
+    double[][] s2 = transpose(new double[][] { { 1, 2 }, { 3, 4 } });
+    EigenvalueDecomposition ev = new EigenvalueDecomposition(2);
+    for(double[][] s : new double[][][] { s1, s2, s1 }) {
+      ev.decompose(s);
+      EigenvalueDecomposition ref = new EigenvalueDecomposition(s);
+      assertTrue("Eigenvalues differ.", almostEquals(ref.getRealEigenvalues(), ev.getRealEigenvalues(), 0.));
+      assertTrue("Imaginary parts differ.", almostEquals(ref.getImagEigenvalues(), ev.getImagEigenvalues(), 0.));
+      assertTrue("Eigenvectors differ.", almostEquals(ref.getV(), ev.getV(), 0.));
+    }
+  }
 }
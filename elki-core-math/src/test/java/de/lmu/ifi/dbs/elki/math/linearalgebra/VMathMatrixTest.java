@@ -24,6 +24,8 @@ import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.*;
 import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMathOperationsTest.assertDimensionMismatch;
 import static org.junit.Assert.*;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 /**
@@ -249,6 +251,42 @@ public class VMathMatrixTest {
     assertTrue(almostEquals(transposeTimes(m3, m4), transposeTimesTranspose(m3, m4_t)));
   }
 
+  /**
+   * Testing the cache-blocked matrix multiplications on matrices larger than
+   * one block, against the row-times-column definition.
+   *
+   * The following VMath methods are tested:<br>
+   * times, transposeTimes, timesTranspose
+   */
+  @Test
+  public void testBlockedMatrixMultiplication() {
+    Random r = new Random(0L);
+    final double[][] m1 = new double[150][130], m2 = new double[130][70], m3 = new double[150][70];
+    for(double[][] m : new double[][][] { m1, m2, m3 }) {
+      for(double[] row : m) {
+        for(int j = 0; j < row.length; j++) {
+          row[j] = r.nextGaussian();
+        }
+      }
+    }
+    final double[][] m2_t = transpose(m2), m1_t = transpose(m1);
+    final double[][] res_times = times(m1, m2);
+    final double[][] res_transTimes = transposeTimes(m1, m3);
+    final double[][] res_timesTrans = timesTranspose(m1, m2_t);
+    for(int i = 0; i < 150; i++) {
+      for(int j = 0; j < 70; j++) {
+        assertEquals(transposeTimes(m1[i], m2_t[j]), res_times[i][j], 0.);
+        assertEquals(transposeTimes(m1[i], m2_t[j]), res_timesTrans[i][j], 0.);
+      }
+    }
+    final double[][] m3_t = transpose(m3);
+    for(int i = 0; i < 130; i++) {
+      for(int j = 0; j < 70; j++) {
+        assertEquals(transposeTimes(m1_t[i], m3_t[j]), res_transTimes[i][j], 0.);
+      }
+    }
+  }
+
   /**
    * Testing the Matrix times Vector multiplications methods of VMath class.
    *
@@ -0,0 +1,133 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.math.linearalgebra.pca;
+
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.transposeTimes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.VMath;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Test the randomized truncated PCA against the full decomposition.
+ *
+ * @author Erich Schubert
+ */
+public class RandomizedPCARunnerTest {
+  @Test
+  public void testAgainstFullPCA() {
+    List<V> data = makeData(50, 2000, 0L);
+    PCAResult full = new PCARunner(null).processVectors(data);
+    PCAResult res = new RandomizedPCARunner(3, 10, 2, new RandomFactory(1L)).processVectors(data);
+    assertEquals("Number of components", 3, res.getEigenPairs().length);
+    for(int i = 0; i < 3; i++) {
+      EigenPair ep = res.getEigenPairs()[i], ref = full.getEigenPairs()[i];
+      assertEquals("Eigenvalue " + i, ref.getEigenvalue(), ep.getEigenvalue(), 1e-8 * ref.getEigenvalue());
+      assertEquals("Eigenvector " + i, 1., Math.abs(transposeTimes(ref.getEigenvector(), ep.getEigenvector())), 1e-8);
+    }
+  }
+
+  @Test
+  public void testFullRank() {
+    List<V> data = makeData(5, 100, 1L);
+    PCAResult full = new PCARunner(null).processVectors(data);
+    PCAResult res = new RandomizedPCARunner(5, 10, 0, new RandomFactory(1L)).processVectors(data);
+    assertEquals("Number of components", 5, res.getEigenPairs().length);
+    assertTrue("Eigenvalues differ", VMath.almostEquals(full.getEigenvalues(), res.getEigenvalues(), 1e-10));
+  }
+
+  /**
+   * Generate data with three strong components in a random orientation, plus
+   * some noise.
+   *
+   * @param dim Dimensionality
+   * @param size Number of vectors
+   * @param seed Random seed
+   * @return Data
+   */
+  protected static List<V> makeData(int dim, int size, long seed) {
+    Random r = new Random(seed);
+    final double[] scales = { 10., 5., 2.5 };
+    double[][] basis = new double[scales.length][dim];
+    for(double[] row : basis) {
+      for(int j = 0; j < dim; j++) {
+        row[j] = r.nextGaussian();
+      }
+      VMath.normalizeEquals(row);
+    }
+    List<V> data = new ArrayList<>(size);
+    for(int i = 0; i < size; i++) {
+      double[] vec = new double[dim];
+      for(int j = 0; j < dim; j++) {
+        vec[j] = 1. + .1 * r.nextGaussian();
+      }
+      for(int k = 0; k < scales.length; k++) {
+        VMath.plusTimesEquals(vec, basis[k], scales[k] * r.nextGaussian());
+      }
+      data.add(new V(vec));
+    }
+    return data;
+  }
+
+  /**
+   * Trivial pseudo-vector to use for testing. Because of module dependencies,
+   * we do not have access to our usual DoubleVector here!
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class V implements NumberVector {
+    double[] data;
+
+    public V(double... data) {
+      this.data = data;
+    }
+
+    @Override
+    public int getDimensionality() {
+      return data.length;
+    }
+
+    @Override
+    public double doubleValue(int dimension) {
+      return data[dimension];
+    }
+
+    @Override
+    public long longValue(int dimension) {
+      return (long) data[dimension];
+    }
+
+    @Override
+    public double[] toArray() {
+      return data.clone();
+    }
+  }
+}
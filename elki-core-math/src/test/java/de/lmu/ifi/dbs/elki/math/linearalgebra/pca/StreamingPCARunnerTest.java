@@ -0,0 +1,50 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.math.linearalgebra.pca;
+
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.transposeTimes;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.RandomizedPCARunnerTest.V;
+
+/**
+ * Test the streaming PCA against the full decomposition.
+ *
+ * @author Erich Schubert
+ */
+public class StreamingPCARunnerTest {
+  @Test
+  public void testAgainstFullPCA() {
+    List<V> data = RandomizedPCARunnerTest.makeData(50, 5000, 0L);
+    PCAResult full = new PCARunner(null).processVectors(data);
+    PCAResult res = new StreamingPCARunner(3, 2.).processVectors(data);
+    assertEquals("Number of components", 3, res.getEigenPairs().length);
+    for(int i = 0; i < 3; i++) {
+      EigenPair ep = res.getEigenPairs()[i], ref = full.getEigenPairs()[i];
+      assertEquals("Eigenvalue " + i, ref.getEigenvalue(), ep.getEigenvalue(), 0.1 * ref.getEigenvalue());
+      assertEquals("Eigenvector " + i, 1., Math.abs(transposeTimes(ref.getEigenvector(), ep.getEigenvector())), 0.01);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the approximate kernel density sums.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ApproximateKernelDensityTest {
+  /**
+   * Generate clustered test data.
+   *
+   * @param size Number of points
+   * @param dim Dimensionality
+   * @param seed Random seed
+   * @return Data
+   */
+  private static double[][] makeData(int size, int dim, long seed) {
+    Random rnd = new Random(seed);
+    double[][] data = new double[size][dim];
+    for(int i = 0; i < size; i++) {
+      final double off = (i % 3) * 4.;
+      for(int d = 0; d < dim; d++) {
+        data[i][d] = off + rnd.nextGaussian() * (1 + (i % 3));
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Exact kernel sum, for reference.
+   */
+  private static double exactSum(double[][] data, double[] query, KernelDensityFunction kernel, double bandwidth) {
+    double s = 0.;
+    for(double[] v : data) {
+      double agg = 0.;
+      for(int d = 0; d < v.length; d++) {
+        final double diff = v[d] - query[d];
+        agg += diff * diff;
+      }
+      s += kernel.density(Math.sqrt(agg) / bandwidth);
+    }
+    return s;
+  }
+
+  @Test
+  public void testExact() {
+    double[][] data = makeData(1000, 2, 0L);
+    for(KernelDensityFunction kernel : new KernelDensityFunction[] { //
+        GaussianKernelDensityFunction.KERNEL, EpanechnikovKernelDensityFunction.KERNEL, UniformKernelDensityFunction.KERNEL }) {
+      ApproximateKernelDensity kde = new ApproximateKernelDensity(data, kernel, 0.);
+      for(int i = 0; i < data.length; i += 17) {
+        final double exact = exactSum(data, data[i], kernel, 1.5);
+        assertEquals(kernel.getClass().getSimpleName(), exact, kde.sum(data[i], 1.5), 1e-10 * exact);
+      }
+    }
+  }
+
+  @Test
+  public void testErrorBound() {
+    double[][] data = makeData(2000, 3, 1L);
+    Random rnd = new Random(2L);
+    for(double eps : new double[] { 0.001, 0.01, 0.1 }) {
+      for(KernelDensityFunction kernel : new KernelDensityFunction[] { //
+          GaussianKernelDensityFunction.KERNEL, EpanechnikovKernelDensityFunction.KERNEL, TriangularKernelDensityFunction.KERNEL }) {
+        ApproximateKernelDensity kde = new ApproximateKernelDensity(data, kernel, eps, 8);
+        for(int i = 0; i < 50; i++) {
+          double[] query = { rnd.nextDouble() * 12 - 2, rnd.nextDouble() * 12 - 2, rnd.nextDouble() * 12 - 2 };
+          final double bandwidth = .5 + rnd.nextDouble() * 2;
+          final double exact = exactSum(data, query, kernel, bandwidth);
+          final double approx = kde.sum(query, bandwidth);
+          assertTrue("Error bound violated: " + approx + " vs. " + exact, Math.abs(approx - exact) <= eps * exact + 1e-12);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDensity() {
+    double[][] data = makeData(500, 2, 3L);
+    ApproximateKernelDensity kde = new ApproximateKernelDensity(data, GaussianKernelDensityFunction.KERNEL, 0.);
+    double[] query = { 1., 2. };
+    assertEquals(exactSum(data, query, GaussianKernelDensityFunction.KERNEL, 1.) / data.length, kde.density(query, 1.), 1e-12);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.parallel;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Run independent, coarse-grained tasks (such as the members of an ensemble)
+ * concurrently, and pass their results to a consumer in submission order.
+ * <p>
+ * The number of tasks running at the same time is bounded both by the desired
+ * parallelism and by the available memory: a further task is only started if
+ * the free heap can hold the estimated memory requirements of all running
+ * tasks plus the new one. At least one task is always running.
+ * <p>
+ * Tasks are executed on the common fork-join pool, not on the
+ * {@link ParallelCore}, so that tasks may themselves use the
+ * {@link ParallelExecutor} without blocking the threads it needs.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public final class OrderedTaskRunner {
+  /**
+   * Private constructor. Static methods only.
+   */
+  private OrderedTaskRunner() {
+    // Do not use.
+  }
+
+  /**
+   * Run the tasks, and consume the results in order.
+   *
+   * @param tasks Tasks to run
+   * @param parallelism Maximum number of concurrent tasks
+   * @param bytesPerTask Estimated memory use of a single task, {@code 0} to
+   *        ignore memory
+   * @param consumer Consumer of the results, called from the calling thread
+   * @param <T> Result type
+   */
+  public static <T> void run(List<? extends Callable<T>> tasks, int parallelism, long bytesPerTask, Consumer<? super T> consumer) {
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    ArrayDeque<Future<T>> pending = new ArrayDeque<>(parallelism);
+    Iterator<? extends Callable<T>> iter = tasks.iterator();
+    try {
+      while(iter.hasNext() || !pending.isEmpty()) {
+        while(iter.hasNext() && (pending.isEmpty() || canStart(pending.size(), parallelism, bytesPerTask))) {
+          pending.add(pool.submit(iter.next()));
+        }
+        consumer.accept(pending.poll().get());
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      for(Future<T> f : pending) {
+        f.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Test whether another task may be started.
+   *
+   * @param running Number of running tasks
+   * @param parallelism Maximum parallelism
+   * @param bytesPerTask Estimated memory per task
+   * @return {@code true} if another task can be started
+   */
+  private static boolean canStart(int running, int parallelism, long bytesPerTask) {
+    if(running >= parallelism) {
+      return false;
+    }
+    if(bytesPerTask <= 0) {
+      return true;
+    }
+    final Runtime rt = Runtime.getRuntime();
+    final long available = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+    // Running tasks may not yet have allocated their memory.
+    return available / bytesPerTask > running;
+  }
+}
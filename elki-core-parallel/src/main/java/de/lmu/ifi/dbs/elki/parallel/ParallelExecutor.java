@@ -24,8 +24,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
@@ -95,6 +100,127 @@ public final class ParallelExecutor {
     }
   }
 
+  /**
+   * Run an action for each index in [0;size) on all available CPUs.
+   * <p>
+   * The index range is split into contiguous blocks; the action must be safe
+   * to call concurrently for different indexes.
+   *
+   * @param size Number of indexes
+   * @param action Action to run for every index
+   */
+  public static void run(int size, IntConsumer action) {
+    ParallelCore core = ParallelCore.getCore();
+    int numparts = core.getParallelism();
+    numparts = (size > numparts * numparts * 16) ? numparts * Math.max(1, numparts - 1) : numparts;
+    if(numparts <= 1 || size < 2) {
+      for(int i = 0; i < size; i++) {
+        action.accept(i);
+      }
+      return;
+    }
+    core.connect();
+    try {
+      final int blocksize = (size + (numparts - 1)) / numparts;
+      List<Future<?>> parts = new ArrayList<>(numparts);
+      for(int start = 0; start < size; start += blocksize) {
+        final int begin = start, end = Math.min(start + blocksize, size);
+        parts.add(core.submit(() -> {
+          for(int i = begin; i < end; i++) {
+            action.accept(i);
+          }
+          return null;
+        }));
+      }
+      for(Future<?> fut : parts) {
+        fut.get();
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  /**
+   * Run an action for each index in [0;size) on all available CPUs, with a
+   * separate setup for every worker thread.
+   * <p>
+   * Every worker calls {@code setup} once, e.g., to allocate thread-local
+   * buffers, and then takes the next index to process until all indexes are
+   * taken. The calling thread participates and only waits for indexes that
+   * other workers have already taken, so this may also be used from within a
+   * task that is already running in parallel.
+   *
+   * @param size Number of indexes
+   * @param setup Setup of a worker, returning the action to run for an index
+   */
+  public static void run(int size, Supplier<? extends IntConsumer> setup) {
+    ParallelCore core = ParallelCore.getCore();
+    final int helpers = Math.min(core.getParallelism(), size) - 1;
+    if(helpers <= 0) {
+      IntConsumer action = setup.get();
+      for(int i = 0; i < size; i++) {
+        action.accept(i);
+      }
+      return;
+    }
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(size);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final Runnable worker = () -> {
+      IntConsumer action = null;
+      for(int i = next.getAndIncrement(); i < size; i = next.getAndIncrement()) {
+        try {
+          if(error.get() == null) {
+            action = action != null ? action : setup.get();
+            action.accept(i);
+          }
+        }
+        catch(RuntimeException | Error e) {
+          error.compareAndSet(null, e);
+        }
+        finally {
+          done.countDown();
+        }
+      }
+    };
+    core.connect();
+    try {
+      List<Future<?>> futures = new ArrayList<>(helpers);
+      for(int w = 0; w < helpers; w++) {
+        futures.add(core.submit(() -> {
+          worker.run();
+          return null;
+        }));
+      }
+      worker.run();
+      done.await();
+      // Helpers that did not start yet have nothing left to do.
+      for(Future<?> fut : futures) {
+        fut.cancel(false);
+      }
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+    final Throwable e = error.get();
+    if(e instanceof Error) {
+      throw (Error) e;
+    }
+    if(e != null) {
+      throw (RuntimeException) e;
+    }
+  }
+
   /**
    * Run for an array part, without step size.
    *
@@ -25,6 +25,8 @@ import java.util.List;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
@@ -50,6 +52,11 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanD
  * @apiviz.uses SquaredEuclideanDistanceFunction
  */
 public class LinearScanEuclideanDistanceKNNQuery<O extends NumberVector> extends LinearScanPrimitiveDistanceKNNQuery<O> implements LinearScanQuery {
+  /**
+   * Number of distances per tile in batch queries.
+   */
+  private static final int TILESIZE = 16384;
+
   /**
    * Constructor.
    *
@@ -83,13 +90,20 @@ public class LinearScanEuclideanDistanceKNNQuery<O extends NumberVector> extends
    */
   private KNNHeap linearScan(Relation<? extends O> relation, DBIDIter iter, final O obj, KNNHeap heap) {
     final SquaredEuclideanDistanceFunction squared = SquaredEuclideanDistanceFunction.STATIC;
+    final int bsize = Math.min(BLOCKSIZE, relation.size());
+    final ArrayModifiableDBIDs block = DBIDUtil.newArray(bsize);
+    final List<O> objs = new ArrayList<>(bsize);
+    final double[] dists = new double[bsize];
     double max = Double.POSITIVE_INFINITY;
     while(iter.valid()) {
-      final double dist = squared.distance(obj, relation.get(iter));
-      if(dist <= max) {
-        max = heap.insert(dist, iter);
+      nextBlock(relation, iter, block, objs);
+      squared.distances(obj, objs, dists);
+      for(DBIDArrayIter it = block.iter(); it.valid(); it.advance()) {
+        final double dist = dists[it.getOffset()];
+        if(dist <= max) {
+          max = heap.insert(dist, it);
+        }
       }
-      iter.advance();
     }
     return heap;
   }
@@ -115,6 +129,13 @@ public class LinearScanEuclideanDistanceKNNQuery<O extends NumberVector> extends
 
   /**
    * Perform a linear scan batch kNN for primitive distance functions.
+   * <p>
+   * For dense vectors, distances are first computed tile by tile with the
+   * expansion \(||x||^2+||y||^2-2x\cdot y\), which is only used to discard
+   * candidates; the remaining candidates are verified with the exact distance,
+   * so the results are the same as with single queries. Queries whose heap is
+   * not yet full, and non-dense (e.g., sparse) vectors, use exact one-to-many
+   * distance computations instead.
    *
    * @param objs Objects list
    * @param heaps Heaps array
@@ -123,15 +144,67 @@ public class LinearScanEuclideanDistanceKNNQuery<O extends NumberVector> extends
   protected void linearScanBatchKNN(List<O> objs, List<KNNHeap> heaps) {
     final SquaredEuclideanDistanceFunction squared = SquaredEuclideanDistanceFunction.STATIC;
     final Relation<? extends O> relation = getRelation();
-    final int size = objs.size();
-    // Linear scan style KNN.
-    for(DBIDIter iter = relation.getDBIDs().iter(); iter.valid(); iter.advance()) {
-      O candidate = relation.get(iter);
-      for(int index = 0; index < size; index++) {
-        final KNNHeap heap = heaps.get(index);
-        final double dist = squared.distance(objs.get(index), candidate);
-        if(dist <= heap.getKNNDistance()) {
-          heap.insert(dist, iter);
+    final int size = objs.size(), bsize = Math.min(BLOCKSIZE, relation.size());
+    final boolean dense = SquaredEuclideanDistanceFunction.isDense(objs);
+    final double[] qnorms = new double[size];
+    for(int index = 0; dense && index < size; index++) {
+      qnorms[index] = squared.norm(objs.get(index));
+    }
+    final ArrayModifiableDBIDs block = DBIDUtil.newArray(bsize);
+    final List<O> candidates = new ArrayList<>(bsize);
+    final double[] cnorms = new double[bsize], dists = new double[bsize];
+    final int rows = Math.max(1, Math.min(size, TILESIZE / bsize));
+    final double[] tile = new double[rows * bsize];
+    final List<O> tileobjs = new ArrayList<>(rows);
+    final int[] tileidx = new int[rows];
+    // Linear scan style KNN, one tile of queries and candidates at a time.
+    for(DBIDIter iter = relation.getDBIDs().iter(); iter.valid();) {
+      nextBlock(relation, iter, block, candidates);
+      final int ncand = candidates.size();
+      final boolean tiled = dense && SquaredEuclideanDistanceFunction.isDense(candidates);
+      for(int j = 0; tiled && j < ncand; j++) {
+        cnorms[j] = squared.norm(candidates.get(j));
+      }
+      for(int start = 0; start < size; start += rows) {
+        final int end = Math.min(start + rows, size);
+        tileobjs.clear();
+        for(int index = start; index < end; index++) {
+          final KNNHeap heap = heaps.get(index);
+          if(tiled && heap.size() >= heap.getK()) {
+            tileidx[tileobjs.size()] = index;
+            tileobjs.add(objs.get(index));
+            continue;
+          }
+          // Exact distances, every candidate may enter the heap.
+          squared.distances(objs.get(index), candidates, dists);
+          double max = heap.getKNNDistance();
+          for(DBIDArrayIter it = block.iter(); it.valid(); it.advance()) {
+            final double dist = dists[it.getOffset()];
+            if(dist <= max) {
+              max = heap.insert(dist, it);
+            }
+          }
+        }
+        if(tileobjs.isEmpty()) {
+          continue;
+        }
+        squared.distances(tileobjs, candidates, tile);
+        for(int t = 0, off = 0, ntile = tileobjs.size(); t < ntile; t++, off += ncand) {
+          final int index = tileidx[t];
+          final KNNHeap heap = heaps.get(index);
+          final O obj = objs.get(index);
+          final int dim = obj.getDimensionality();
+          for(DBIDArrayIter it = block.iter(); it.valid(); it.advance()) {
+            final int j = it.getOffset();
+            final double approx = tile[off + j];
+            if(approx - SquaredEuclideanDistanceFunction.expansionError(dim, qnorms[index], cnorms[j]) > heap.getKNNDistance()) {
+              continue;
+            }
+            final double dist = squared.distance(obj, candidates.get(j));
+            if(dist <= heap.getKNNDistance()) {
+              heap.insert(dist, it);
+            }
+          }
         }
       }
     }
@@ -24,6 +24,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
@@ -32,6 +34,7 @@ import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.query.LinearScanQuery;
 import de.lmu.ifi.dbs.elki.database.query.distance.PrimitiveDistanceQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.EarlyAbandoningDistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
 
 /**
@@ -47,6 +50,11 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
  * @apiviz.uses PrimitiveDistanceFunction
  */
 public class LinearScanPrimitiveDistanceKNNQuery<O> extends AbstractDistanceKNNQuery<O> implements LinearScanQuery {
+  /**
+   * Number of candidates to process at once.
+   */
+  protected static final int BLOCKSIZE = 256;
+
   /**
    * Unboxed distance function.
    */
@@ -85,17 +93,67 @@ public class LinearScanPrimitiveDistanceKNNQuery<O> extends AbstractDistanceKNNQ
    */
   private KNNHeap linearScan(Relation<? extends O> relation, DBIDIter iter, final O obj, KNNHeap heap) {
     final PrimitiveDistanceFunction<? super O> rawdist = this.rawdist;
+    if(rawdist instanceof EarlyAbandoningDistanceFunction) {
+      return linearScanEarlyAbandoning(relation, iter, obj, heap);
+    }
+    final int bsize = Math.min(BLOCKSIZE, relation.size());
+    final ArrayModifiableDBIDs block = DBIDUtil.newArray(bsize);
+    final List<O> objs = new ArrayList<>(bsize);
+    final double[] dists = new double[bsize];
     double max = Double.POSITIVE_INFINITY;
     while(iter.valid()) {
-      final double dist = rawdist.distance(obj, relation.get(iter));
+      nextBlock(relation, iter, block, objs);
+      rawdist.distances(obj, objs, dists);
+      for(DBIDArrayIter it = block.iter(); it.valid(); it.advance()) {
+        final double dist = dists[it.getOffset()];
+        if(dist <= max) {
+          max = heap.insert(dist, it);
+        }
+      }
+    }
+    return heap;
+  }
+
+  /**
+   * Linear scan passing the current k-distance as threshold, so the distance
+   * computation can be abandoned for candidates that cannot enter the heap.
+   * 
+   * @param relation Data relation
+   * @param iter ID iterator
+   * @param obj Query object
+   * @param heap Output heap
+   * @return Heap
+   */
+  @SuppressWarnings("unchecked")
+  private KNNHeap linearScanEarlyAbandoning(Relation<? extends O> relation, DBIDIter iter, final O obj, KNNHeap heap) {
+    final EarlyAbandoningDistanceFunction<? super O> rawdist = (EarlyAbandoningDistanceFunction<? super O>) this.rawdist;
+    double max = Double.POSITIVE_INFINITY;
+    for(; iter.valid(); iter.advance()) {
+      final double dist = rawdist.distance(obj, relation.get(iter), max);
       if(dist <= max) {
         max = heap.insert(dist, iter);
       }
-      iter.advance();
     }
     return heap;
   }
 
+  /**
+   * Load the next block of objects.
+   *
+   * @param relation Data relation
+   * @param iter ID iterator, will be advanced
+   * @param block Output block of IDs
+   * @param objs Output block of objects
+   */
+  protected static <O> void nextBlock(Relation<? extends O> relation, DBIDIter iter, ArrayModifiableDBIDs block, List<O> objs) {
+    block.clear();
+    objs.clear();
+    for(int i = 0; i < BLOCKSIZE && iter.valid(); i++, iter.advance()) {
+      block.add(iter);
+      objs.add(relation.get(iter));
+    }
+  }
+
   @Override
   public List<KNNList> getKNNForBulkDBIDs(ArrayDBIDs ids, int k) {
     final Relation<? extends O> relation = getRelation();
@@ -125,14 +183,27 @@ public class LinearScanPrimitiveDistanceKNNQuery<O> extends AbstractDistanceKNNQ
     final PrimitiveDistanceFunction<? super O> rawdist = this.rawdist;
     final Relation<? extends O> relation = getRelation();
     final int size = objs.size();
-    // Linear scan style KNN.
-    for(DBIDIter iter = relation.getDBIDs().iter(); iter.valid(); iter.advance()) {
-      O candidate = relation.get(iter);
+    if(rawdist instanceof EarlyAbandoningDistanceFunction) {
+      for(int index = 0; index < size; index++) {
+        linearScanEarlyAbandoning(relation, relation.iterDBIDs(), objs.get(index), heaps.get(index));
+      }
+      return;
+    }
+    final int bsize = Math.min(BLOCKSIZE, relation.size());
+    final ArrayModifiableDBIDs block = DBIDUtil.newArray(bsize);
+    final List<O> candidates = new ArrayList<>(bsize);
+    final double[] dists = new double[bsize];
+    // Linear scan style KNN, one block of candidates at a time.
+    for(DBIDIter iter = relation.getDBIDs().iter(); iter.valid();) {
+      nextBlock(relation, iter, block, candidates);
       for(int index = 0; index < size; index++) {
         final KNNHeap heap = heaps.get(index);
-        final double dist = rawdist.distance(objs.get(index), candidate);
-        if(dist <= heap.getKNNDistance()) {
-          heap.insert(dist, iter);
+        rawdist.distances(objs.get(index), candidates, dists);
+        for(DBIDArrayIter it = block.iter(); it.valid(); it.advance()) {
+          final double dist = dists[it.getOffset()];
+          if(dist <= heap.getKNNDistance()) {
+            heap.insert(dist, it);
+          }
         }
       }
     }
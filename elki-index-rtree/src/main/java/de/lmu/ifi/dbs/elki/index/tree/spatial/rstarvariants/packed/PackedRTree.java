@@ -0,0 +1,1224 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.packed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.ModifiableHyperBoundingBox;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.ids.*;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.AbstractDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.AbstractDistanceRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.rknn.AbstractRKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.rknn.RKNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.WeightedNumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPNormDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.ManhattanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.MaximumDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractIndex;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
+import de.lmu.ifi.dbs.elki.index.KNNIndex;
+import de.lmu.ifi.dbs.elki.index.RKNNIndex;
+import de.lmu.ifi.dbs.elki.index.RangeIndex;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.SpatialPointLeafEntry;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTreeFactory;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.strategies.bulk.BulkSplit;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.strategies.bulk.SortTileRecursiveBulkSplit;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.AtomicLongCounter;
+import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.utilities.Alias;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+import net.jafama.FastMath;
+
+/**
+ * Static, read-optimized in-memory R-tree, built once using a
+ * {@link BulkSplit} strategy such as Sort-Tile-Recursive.
+ * <p>
+ * In contrast to {@link de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTree}
+ * this tree does not use node objects at all. All nodes are serialized in
+ * breadth-first order, and the bounding boxes are stored as a struct of
+ * arrays: one flat {@code double[]} of minimums and one of maximums. The
+ * children of each directory node are a contiguous range of node numbers, and
+ * the leaves reference a contiguous range of the packed coordinate array. This
+ * avoids all pointer chasing during queries, and the distance computations are
+ * simple loops over primitive arrays.
+ * <p>
+ * The tree does not support updates; it is meant for the common build-once,
+ * query-many use case. Queries do not modify the tree, and the statistics
+ * counters are atomic, so this index can be
+ * used by multiple threads concurrently.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @apiviz.has PackedRTreeKNNQuery
+ * @apiviz.has PackedRTreeRangeQuery
+ * @apiviz.has PackedRTreeRKNNQuery
+ *
+ * @param <O> Vector type
+ */
+public class PackedRTree<O extends NumberVector> extends AbstractIndex<O> implements KNNIndex<O>, RangeIndex<O>, RKNNIndex<O> {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(PackedRTree.class);
+
+  /**
+   * Bulk split strategy.
+   */
+  BulkSplit bulkSplitter;
+
+  /**
+   * Maximum number of entries per node.
+   */
+  int capacity;
+
+  /**
+   * Minimum number of entries per node.
+   */
+  int minimum;
+
+  /**
+   * Dimensionality.
+   */
+  int dim = -1;
+
+  /**
+   * Minimums of the node bounding boxes, {@code numNodes * dim} values.
+   */
+  double[] mins;
+
+  /**
+   * Maximums of the node bounding boxes, {@code numNodes * dim} values.
+   */
+  double[] maxs;
+
+  /**
+   * Child offsets of directory nodes: the children of directory node {@code i}
+   * are the nodes {@code dirOffsets[i]} to {@code dirOffsets[i+1]}
+   * (exclusive).
+   */
+  int[] dirOffsets;
+
+  /**
+   * Entry offsets of leaf nodes: leaf {@code firstLeaf + i} contains the points
+   * {@code leafOffsets[i]} to {@code leafOffsets[i+1]} (exclusive).
+   */
+  int[] leafOffsets;
+
+  /**
+   * Number of the first leaf node (all nodes after are leaves, too).
+   */
+  int firstLeaf;
+
+  /**
+   * Packed point coordinates, in leaf order, {@code size * dim} values.
+   */
+  double[] points;
+
+  /**
+   * Object IDs, in the same order as {@link #points}.
+   */
+  ArrayModifiableDBIDs ids;
+
+  /**
+   * Counter for node accesses (thread-safe).
+   */
+  final Counter nodeaccess;
+
+  /**
+   * Counter for distance computations (thread-safe).
+   */
+  final Counter distcalc;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation to index
+   * @param bulkSplitter Bulk split strategy
+   * @param capacity Maximum number of entries per node
+   * @param minimum Minimum number of entries per node
+   */
+  public PackedRTree(Relation<O> relation, BulkSplit bulkSplitter, int capacity, int minimum) {
+    super(relation);
+    this.bulkSplitter = bulkSplitter;
+    this.capacity = capacity;
+    this.minimum = minimum;
+    assert (capacity > 1 && minimum >= 1 && minimum <= capacity);
+    if(LOG.isStatistics()) {
+      String prefix = this.getClass().getName();
+      // Atomic, as queries may run concurrently.
+      this.nodeaccess = new AtomicLongCounter(prefix + ".nodeaccess");
+      this.distcalc = new AtomicLongCounter(prefix + ".distancecalcs");
+    }
+    else {
+      this.nodeaccess = null;
+      this.distcalc = null;
+    }
+  }
+
+  @Override
+  public void initialize() {
+    final int size = relation.size();
+    dim = size > 0 ? RelationUtil.dimensionality(relation) : 0;
+    List<SpatialPointLeafEntry> entries = new ArrayList<>(size);
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      entries.add(new SpatialPointLeafEntry(DBIDUtil.deref(it), relation.get(it)));
+    }
+    serialize(size, bulkLoad(entries));
+  }
+
+  /**
+   * Build the temporary tree bottom-up, using the bulk split strategy.
+   *
+   * @param entries Leaf entries
+   * @return Root node
+   */
+  protected BuildNode bulkLoad(List<SpatialPointLeafEntry> entries) {
+    if(entries.size() <= capacity) {
+      return new BuildNode(entries, true, dim);
+    }
+    List<BuildNode> nodes = new ArrayList<>();
+    for(List<SpatialPointLeafEntry> partition : bulkSplitter.partition(entries, minimum, capacity)) {
+      nodes.add(new BuildNode(partition, true, dim));
+    }
+    while(nodes.size() > capacity) {
+      List<BuildNode> parents = new ArrayList<>();
+      for(List<BuildNode> partition : bulkSplitter.partition(nodes, minimum, capacity)) {
+        parents.add(new BuildNode(partition, false, dim));
+      }
+      nodes = parents;
+    }
+    return new BuildNode(nodes, false, dim);
+  }
+
+  /**
+   * Serialize the temporary tree into the packed arrays, in breadth-first
+   * order.
+   *
+   * @param size Number of objects
+   * @param root Root node
+   */
+  protected void serialize(int size, BuildNode root) {
+    // Collect the levels, top-down. All leaves are on the same level.
+    List<List<BuildNode>> levels = new ArrayList<>();
+    List<BuildNode> cur = Collections.singletonList(root);
+    int numNodes = 1;
+    levels.add(cur);
+    while(!cur.get(0).leaf) {
+      List<BuildNode> next = new ArrayList<>();
+      for(BuildNode node : cur) {
+        for(SpatialComparable child : node.children) {
+          next.add((BuildNode) child);
+        }
+      }
+      levels.add(next);
+      numNodes += next.size();
+      cur = next;
+    }
+    final int numLeaves = cur.size();
+    firstLeaf = numNodes - numLeaves;
+    mins = new double[numNodes * dim];
+    maxs = new double[numNodes * dim];
+    dirOffsets = new int[firstLeaf + 1];
+    leafOffsets = new int[numLeaves + 1];
+    points = new double[size * dim];
+    ids = DBIDUtil.newArray(size);
+
+    int g = 0, childpos = 1, p = 0;
+    for(List<BuildNode> level : levels) {
+      for(BuildNode node : level) {
+        System.arraycopy(node.getMinRef(), 0, mins, g * dim, dim);
+        System.arraycopy(node.getMaxRef(), 0, maxs, g * dim, dim);
+        if(!node.leaf) {
+          dirOffsets[g] = childpos;
+          childpos += node.children.size();
+        }
+        else {
+          leafOffsets[g - firstLeaf] = p;
+          for(SpatialComparable child : node.children) {
+            SpatialPointLeafEntry entry = (SpatialPointLeafEntry) child;
+            for(int d = 0, off = p * dim; d < dim; d++) {
+              points[off + d] = entry.doubleValue(d);
+            }
+            ids.add(entry.getDBID());
+            p++;
+          }
+        }
+        ++g;
+      }
+    }
+    dirOffsets[firstLeaf] = childpos;
+    leafOffsets[numLeaves] = p;
+    assert (childpos == numNodes && p == size);
+    if(LOG.isDebugging()) {
+      LOG.debug("Packed R-tree: " + numNodes + " nodes, " + numLeaves + " leaves, height " + levels.size());
+    }
+  }
+
+  /**
+   * Temporary node, used during bulk loading only.
+   *
+   * @author Erich Schubert
+   */
+  private static class BuildNode extends ModifiableHyperBoundingBox {
+    /**
+     * Child entries or nodes.
+     */
+    List<? extends SpatialComparable> children;
+
+    /**
+     * Leaf flag.
+     */
+    boolean leaf;
+
+    /**
+     * Constructor.
+     *
+     * @param children Children
+     * @param leaf Leaf flag
+     * @param dim Dimensionality
+     */
+    public BuildNode(List<? extends SpatialComparable> children, boolean leaf, int dim) {
+      super(dim, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+      // Copy, as the bulk split strategies return views.
+      this.children = new ArrayList<>(children);
+      this.leaf = leaf;
+      for(SpatialComparable child : children) {
+        extend(child);
+      }
+    }
+  }
+
+  @Override
+  public String getLongName() {
+    return "Packed R-Tree";
+  }
+
+  @Override
+  public String getShortName() {
+    return "packed-rtree";
+  }
+
+  @Override
+  public void logStatistics() {
+    if(nodeaccess != null) {
+      LOG.statistics(nodeaccess);
+    }
+    if(distcalc != null) {
+      LOG.statistics(distcalc);
+    }
+  }
+
+  /**
+   * Count a node access.
+   */
+  protected void countNodeAccess() {
+    if(nodeaccess != null) {
+      nodeaccess.increment();
+    }
+  }
+
+  /**
+   * Count distance computations.
+   *
+   * @param num Number of computations
+   */
+  protected void countDistanceComputations(int num) {
+    if(distcalc != null) {
+      distcalc.increment(num);
+    }
+  }
+
+  /**
+   * Choose the array kernel for a distance function.
+   * <p>
+   * The common Minkowski norms use specialized kernels. Other spatial distance
+   * functions on number vectors, such as the weighted norms, are evaluated by
+   * the distance function itself.
+   *
+   * @param df Distance function
+   * @return Kernel, or {@code null} if the distance function is not spatial,
+   *         so the index cannot be used.
+   */
+  protected static Kernel makeKernel(DistanceFunction<?> df) {
+    if(df instanceof SquaredEuclideanDistanceFunction) {
+      return new SquaredEuclideanKernel(false);
+    }
+    if(df instanceof WeightedNumberVectorDistanceFunction) {
+      // Must precede the unweighted norms, which these extend.
+      return makeDistanceFunctionKernel(df);
+    }
+    if(df instanceof EuclideanDistanceFunction) {
+      return new SquaredEuclideanKernel(true);
+    }
+    if(df instanceof ManhattanDistanceFunction) {
+      return new ManhattanKernel();
+    }
+    if(df instanceof MaximumDistanceFunction) {
+      return new MaximumKernel();
+    }
+    if(df instanceof LPNormDistanceFunction) {
+      return new LPNormKernel(((LPNormDistanceFunction) df).getP());
+    }
+    return makeDistanceFunctionKernel(df);
+  }
+
+  /**
+   * Make a kernel that evaluates the distance function itself.
+   *
+   * @param df Distance function
+   * @return Kernel, or {@code null} if not a spatial number vector distance.
+   */
+  private static Kernel makeDistanceFunctionKernel(DistanceFunction<?> df) {
+    if(df instanceof NumberVectorDistanceFunction && df instanceof SpatialPrimitiveDistanceFunction) {
+      return new DistanceFunctionKernel((NumberVectorDistanceFunction<?>) df, (SpatialPrimitiveDistanceFunction<?>) df);
+    }
+    return null;
+  }
+
+  @Override
+  public KNNQuery<O> getKNNQuery(DistanceQuery<O> distanceQuery, Object... hints) {
+    if(distanceQuery.getRelation() != relation) {
+      return null;
+    }
+    Kernel kernel = makeKernel(distanceQuery.getDistanceFunction());
+    return kernel != null ? new PackedRTreeKNNQuery(distanceQuery, kernel) : null;
+  }
+
+  @Override
+  public RangeQuery<O> getRangeQuery(DistanceQuery<O> distanceQuery, Object... hints) {
+    if(distanceQuery.getRelation() != relation) {
+      return null;
+    }
+    Kernel kernel = makeKernel(distanceQuery.getDistanceFunction());
+    return kernel != null ? new PackedRTreeRangeQuery(distanceQuery, kernel) : null;
+  }
+
+  @Override
+  public RKNNQuery<O> getRKNNQuery(DistanceQuery<O> distanceQuery, Object... hints) {
+    if(distanceQuery.getRelation() != relation) {
+      return null;
+    }
+    Kernel kernel = makeKernel(distanceQuery.getDistanceFunction());
+    return kernel != null ? new PackedRTreeRKNNQuery(distanceQuery, kernel) : null;
+  }
+
+  /**
+   * Best-first kNN search.
+   *
+   * @param q Query point
+   * @param qoff Offset of the query point
+   * @param kernel Distance kernel
+   * @param knns Heap to fill (using kernel distances)
+   * @param pq Priority queue (will be cleared)
+   * @param iter Iterator to the object IDs
+   */
+  protected void knnSearch(double[] q, int qoff, Kernel kernel, KNNHeap knns, DoubleIntegerMinHeap pq, DBIDArrayIter iter) {
+    double maxdist = Double.POSITIVE_INFINITY;
+    pq.clear();
+    int node = 0;
+    while(true) {
+      countNodeAccess();
+      if(node >= firstLeaf) {
+        final int end = leafOffsets[node - firstLeaf + 1];
+        for(int i = leafOffsets[node - firstLeaf]; i < end; i++) {
+          final double dist = kernel.distance(q, qoff, points, i * dim, dim);
+          if(dist <= maxdist) {
+            maxdist = knns.insert(dist, iter.seek(i));
+          }
+        }
+        countDistanceComputations(end - leafOffsets[node - firstLeaf]);
+      }
+      else {
+        final int end = dirOffsets[node + 1];
+        for(int c = dirOffsets[node]; c < end; c++) {
+          final double dist = kernel.minDist(q, qoff, mins, maxs, c * dim, dim);
+          if(dist <= maxdist) {
+            pq.add(dist, c);
+          }
+        }
+        countDistanceComputations(end - dirOffsets[node]);
+      }
+      if(pq.isEmpty() || pq.peekKey() > maxdist) {
+        break;
+      }
+      node = pq.peekValue();
+      pq.poll();
+    }
+  }
+
+  /**
+   * Depth-first range search.
+   *
+   * @param node Current node
+   * @param q Query point
+   * @param radius Query radius (using kernel distances)
+   * @param kernel Distance kernel
+   * @param result Output list (using final distances)
+   * @param iter Iterator to the object IDs
+   */
+  protected void rangeSearch(int node, double[] q, double radius, Kernel kernel, ModifiableDoubleDBIDList result, DBIDArrayIter iter) {
+    countNodeAccess();
+    if(node >= firstLeaf) {
+      final int end = leafOffsets[node - firstLeaf + 1];
+      for(int i = leafOffsets[node - firstLeaf]; i < end; i++) {
+        final double dist = kernel.distance(q, 0, points, i * dim, dim);
+        if(dist <= radius) {
+          result.add(kernel.finish(dist), iter.seek(i));
+        }
+      }
+      countDistanceComputations(end - leafOffsets[node - firstLeaf]);
+      return;
+    }
+    final int end = dirOffsets[node + 1];
+    for(int c = dirOffsets[node]; c < end; c++) {
+      if(kernel.minDist(q, 0, mins, maxs, c * dim, dim) <= radius) {
+        rangeSearch(c, q, radius, kernel, result, iter);
+      }
+    }
+    countDistanceComputations(end - dirOffsets[node]);
+  }
+
+  /**
+   * Count the number of points strictly closer than a bound, stopping early
+   * once a limit is reached.
+   *
+   * @param node Current node
+   * @param q Query point array
+   * @param qoff Offset of the query point
+   * @param bound Distance bound (exclusive, using kernel distances)
+   * @param kernel Distance kernel
+   * @param count Number of points found so far
+   * @param limit Stop when this many points have been found
+   * @return Number of points found, at most {@code limit}
+   */
+  protected int countCloser(int node, double[] q, int qoff, double bound, Kernel kernel, int count, int limit) {
+    if(node >= firstLeaf) {
+      final int end = leafOffsets[node - firstLeaf + 1];
+      for(int i = leafOffsets[node - firstLeaf]; i < end && count < limit; i++) {
+        if(kernel.distance(q, qoff, points, i * dim, dim) < bound) {
+          ++count;
+        }
+      }
+      return count;
+    }
+    final int end = dirOffsets[node + 1];
+    for(int c = dirOffsets[node]; c < end && count < limit; c++) {
+      if(kernel.minDist(q, qoff, mins, maxs, c * dim, dim) < bound) {
+        count = countCloser(c, q, qoff, bound, kernel, count, limit);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * kNN query for the packed R-tree.
+   *
+   * @author Erich Schubert
+   */
+  public class PackedRTreeKNNQuery extends AbstractDistanceKNNQuery<O> {
+    /**
+     * Distance kernel.
+     */
+    private Kernel kernel;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     * @param kernel Distance kernel
+     */
+    public PackedRTreeKNNQuery(DistanceQuery<O> distanceQuery, Kernel kernel) {
+      super(distanceQuery);
+      this.kernel = kernel;
+    }
+
+    @Override
+    public KNNList getKNNForObject(O obj, int k) {
+      if(k < 1) {
+        throw new IllegalArgumentException("At least one neighbor has to be requested!");
+      }
+      final KNNHeap knns = DBIDUtil.newHeap(k);
+      knnSearch(obj.toArray(), 0, kernel, knns, new DoubleIntegerMinHeap(Math.min(k << 1, 21)), ids.iter());
+      return kernel.toKNNList(knns);
+    }
+
+    @Override
+    public List<? extends KNNList> getKNNForBulkDBIDs(ArrayDBIDs qids, int k) {
+      if(k < 1) {
+        throw new IllegalArgumentException("At least one neighbor has to be requested!");
+      }
+      // Reuse the priority queue and iterator for all queries.
+      final DoubleIntegerMinHeap pq = new DoubleIntegerMinHeap(Math.min(k << 1, 21));
+      final DBIDArrayIter iter = ids.iter();
+      List<KNNList> ret = new ArrayList<>(qids.size());
+      for(DBIDIter it = qids.iter(); it.valid(); it.advance()) {
+        final KNNHeap knns = DBIDUtil.newHeap(k);
+        knnSearch(relation.get(it).toArray(), 0, kernel, knns, pq, iter);
+        ret.add(kernel.toKNNList(knns));
+      }
+      return ret;
+    }
+  }
+
+  /**
+   * Range query for the packed R-tree.
+   *
+   * @author Erich Schubert
+   */
+  public class PackedRTreeRangeQuery extends AbstractDistanceRangeQuery<O> {
+    /**
+     * Distance kernel.
+     */
+    private Kernel kernel;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     * @param kernel Distance kernel
+     */
+    public PackedRTreeRangeQuery(DistanceQuery<O> distanceQuery, Kernel kernel) {
+      super(distanceQuery);
+      this.kernel = kernel;
+    }
+
+    @Override
+    public void getRangeForObject(O obj, double range, ModifiableDoubleDBIDList result) {
+      rangeSearch(0, obj.toArray(), kernel.reduce(range), kernel, result, ids.iter());
+    }
+  }
+
+  /**
+   * Reverse kNN query for the packed R-tree.
+   * <p>
+   * An object p is a reverse k nearest neighbor of the query q if fewer than k
+   * objects are strictly closer to p than q is. This is tested with a bounded
+   * counting query on the tree, which can stop as soon as k closer objects
+   * were found, and does not require computing the full kNN of p.
+   *
+   * @author Erich Schubert
+   */
+  public class PackedRTreeRKNNQuery extends AbstractRKNNQuery<O> {
+    /**
+     * Distance kernel.
+     */
+    private Kernel kernel;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     * @param kernel Distance kernel
+     */
+    public PackedRTreeRKNNQuery(DistanceQuery<O> distanceQuery, Kernel kernel) {
+      super(distanceQuery);
+      this.kernel = kernel;
+    }
+
+    @Override
+    public DoubleDBIDList getRKNNForObject(O obj, int k) {
+      return rknn(obj.toArray(), k);
+    }
+
+    @Override
+    public DoubleDBIDList getRKNNForDBID(DBIDRef id, int k) {
+      return rknn(relation.get(id).toArray(), k);
+    }
+
+    @Override
+    public List<? extends DoubleDBIDList> getRKNNForBulkDBIDs(ArrayDBIDs qids, int k) {
+      List<DoubleDBIDList> ret = new ArrayList<>(qids.size());
+      for(DBIDIter it = qids.iter(); it.valid(); it.advance()) {
+        ret.add(rknn(relation.get(it).toArray(), k));
+      }
+      return ret;
+    }
+
+    /**
+     * Compute the reverse k nearest neighbors.
+     *
+     * @param q Query point
+     * @param k Number of neighbors
+     * @return Reverse k nearest neighbors
+     */
+    private DoubleDBIDList rknn(double[] q, int k) {
+      if(k < 1) {
+        throw new IllegalArgumentException("At least one neighbor has to be requested!");
+      }
+      ModifiableDoubleDBIDList result = DBIDUtil.newDistanceDBIDList();
+      DBIDArrayIter iter = ids.iter();
+      for(int i = 0, size = ids.size(); i < size; i++) {
+        final double dist = kernel.distance(q, 0, points, i * dim, dim);
+        if(countCloser(0, points, i * dim, dist, kernel, 0, k) < k) {
+          result.add(kernel.finish(dist), iter.seek(i));
+        }
+      }
+      countDistanceComputations(ids.size());
+      result.sort();
+      return result;
+    }
+  }
+
+  /**
+   * Distance kernel on the packed arrays.
+   * <p>
+   * Kernels may compute a monotone transformation of the actual distance (e.g.
+   * squared Euclidean instead of Euclidean) which is only undone on output.
+   *
+   * @author Erich Schubert
+   */
+  protected abstract static class Kernel {
+    /**
+     * Distance of two points.
+     *
+     * @param a First array
+     * @param aoff Offset in first array
+     * @param b Second array
+     * @param boff Offset in second array
+     * @param dim Dimensionality
+     * @return Kernel distance
+     */
+    abstract double distance(double[] a, int aoff, double[] b, int boff, int dim);
+
+    /**
+     * Minimum distance of a point to a bounding box.
+     *
+     * @param a Point array
+     * @param aoff Offset of point
+     * @param min Box minimums
+     * @param max Box maximums
+     * @param boff Offset of box
+     * @param dim Dimensionality
+     * @return Kernel distance
+     */
+    abstract double minDist(double[] a, int aoff, double[] min, double[] max, int boff, int dim);
+
+    /**
+     * Transform a kernel distance into the actual distance.
+     *
+     * @param d Kernel distance
+     * @return Actual distance
+     */
+    abstract double finish(double d);
+
+    /**
+     * Transform an actual distance into a kernel distance.
+     *
+     * @param d Actual distance
+     * @return Kernel distance
+     */
+    abstract double reduce(double d);
+
+    /**
+     * Convert a heap of kernel distances into a kNN list.
+     *
+     * @param heap Heap
+     * @return kNN list with actual distances
+     */
+    KNNList toKNNList(KNNHeap heap) {
+      KNNHeap out = DBIDUtil.newHeap(heap.getK());
+      for(DoubleDBIDListIter it = heap.unorderedIterator(); it.valid(); it.advance()) {
+        out.insert(finish(it.doubleValue()), it);
+      }
+      return out.toKNNList();
+    }
+  }
+
+  /**
+   * Squared Euclidean kernel.
+   *
+   * @author Erich Schubert
+   */
+  private static class SquaredEuclideanKernel extends Kernel {
+    /**
+     * Output the square root.
+     */
+    private boolean sqrt;
+
+    /**
+     * Constructor.
+     *
+     * @param sqrt Take the square root for output.
+     */
+    public SquaredEuclideanKernel(boolean sqrt) {
+      super();
+      this.sqrt = sqrt;
+    }
+
+    @Override
+    double distance(double[] a, int aoff, double[] b, int boff, int dim) {
+      double agg = 0.;
+      for(int d = 0; d < dim; d++) {
+        final double v = a[aoff + d] - b[boff + d];
+        agg += v * v;
+      }
+      return agg;
+    }
+
+    @Override
+    double minDist(double[] a, int aoff, double[] min, double[] max, int boff, int dim) {
+      double agg = 0.;
+      for(int d = 0; d < dim; d++) {
+        final double v = a[aoff + d];
+        // At most one of the two differences is positive:
+        final double delta = Math.max(0., Math.max(min[boff + d] - v, v - max[boff + d]));
+        agg += delta * delta;
+      }
+      return agg;
+    }
+
+    @Override
+    double finish(double d) {
+      return sqrt ? FastMath.sqrt(d) : d;
+    }
+
+    @Override
+    double reduce(double d) {
+      return sqrt ? d * d : d;
+    }
+
+    @Override
+    KNNList toKNNList(KNNHeap heap) {
+      return sqrt ? heap.toKNNListSqrt() : heap.toKNNList();
+    }
+  }
+
+  /**
+   * Manhattan kernel.
+   *
+   * @author Erich Schubert
+   */
+  private static class ManhattanKernel extends Kernel {
+    @Override
+    double distance(double[] a, int aoff, double[] b, int boff, int dim) {
+      double agg = 0.;
+      for(int d = 0; d < dim; d++) {
+        agg += Math.abs(a[aoff + d] - b[boff + d]);
+      }
+      return agg;
+    }
+
+    @Override
+    double minDist(double[] a, int aoff, double[] min, double[] max, int boff, int dim) {
+      double agg = 0.;
+      for(int d = 0; d < dim; d++) {
+        final double v = a[aoff + d];
+        agg += Math.max(0., Math.max(min[boff + d] - v, v - max[boff + d]));
+      }
+      return agg;
+    }
+
+    @Override
+    double finish(double d) {
+      return d;
+    }
+
+    @Override
+    double reduce(double d) {
+      return d;
+    }
+
+    @Override
+    KNNList toKNNList(KNNHeap heap) {
+      return heap.toKNNList();
+    }
+  }
+
+  /**
+   * Maximum norm kernel.
+   *
+   * @author Erich Schubert
+   */
+  private static class MaximumKernel extends Kernel {
+    @Override
+    double distance(double[] a, int aoff, double[] b, int boff, int dim) {
+      double agg = 0.;
+      for(int d = 0; d < dim; d++) {
+        agg = Math.max(agg, Math.abs(a[aoff + d] - b[boff + d]));
+      }
+      return agg;
+    }
+
+    @Override
+    double minDist(double[] a, int aoff, double[] min, double[] max, int boff, int dim) {
+      double agg = 0.;
+      for(int d = 0; d < dim; d++) {
+        final double v = a[aoff + d];
+        agg = Math.max(agg, Math.max(min[boff + d] - v, v - max[boff + d]));
+      }
+      return agg;
+    }
+
+    @Override
+    double finish(double d) {
+      return d;
+    }
+
+    @Override
+    double reduce(double d) {
+      return d;
+    }
+
+    @Override
+    KNNList toKNNList(KNNHeap heap) {
+      return heap.toKNNList();
+    }
+  }
+
+  /**
+   * General Lp norm kernel, without the final root.
+   *
+   * @author Erich Schubert
+   */
+  private static class LPNormKernel extends Kernel {
+    /**
+     * Exponent p, and its inverse.
+     */
+    private double p, invp;
+
+    /**
+     * Constructor.
+     *
+     * @param p Exponent
+     */
+    public LPNormKernel(double p) {
+      super();
+      this.p = p;
+      this.invp = 1. / p;
+    }
+
+    @Override
+    double distance(double[] a, int aoff, double[] b, int boff, int dim) {
+      double agg = 0.;
+      for(int d = 0; d < dim; d++) {
+        agg += FastMath.pow(Math.abs(a[aoff + d] - b[boff + d]), p);
+      }
+      return agg;
+    }
+
+    @Override
+    double minDist(double[] a, int aoff, double[] min, double[] max, int boff, int dim) {
+      double agg = 0.;
+      for(int d = 0; d < dim; d++) {
+        final double v = a[aoff + d];
+        final double delta = Math.max(min[boff + d] - v, v - max[boff + d]);
+        agg += delta > 0. ? FastMath.pow(delta, p) : 0.;
+      }
+      return agg;
+    }
+
+    @Override
+    double finish(double d) {
+      return FastMath.pow(d, invp);
+    }
+
+    @Override
+    double reduce(double d) {
+      return FastMath.pow(d, p);
+    }
+  }
+
+  /**
+   * Kernel that evaluates a spatial distance function on views of the packed
+   * arrays. Slower than the specialized kernels, but supports e.g. weighted
+   * distances.
+   *
+   * @author Erich Schubert
+   */
+  private static class DistanceFunctionKernel extends Kernel {
+    /**
+     * Distance function, for vectors.
+     */
+    private NumberVectorDistanceFunction<?> df;
+
+    /**
+     * Distance function, for bounding boxes.
+     */
+    private SpatialPrimitiveDistanceFunction<?> sdf;
+
+    /**
+     * Constructor.
+     *
+     * @param df Distance function, for vectors
+     * @param sdf The same distance function, for bounding boxes
+     */
+    public DistanceFunctionKernel(NumberVectorDistanceFunction<?> df, SpatialPrimitiveDistanceFunction<?> sdf) {
+      super();
+      this.df = df;
+      this.sdf = sdf;
+    }
+
+    @Override
+    double distance(double[] a, int aoff, double[] b, int boff, int dim) {
+      return df.distance(new PackedVector(a, aoff, dim), new PackedVector(b, boff, dim));
+    }
+
+    @Override
+    double minDist(double[] a, int aoff, double[] min, double[] max, int boff, int dim) {
+      return sdf.minDist(new PackedVector(a, aoff, dim), new PackedBox(min, max, boff, dim));
+    }
+
+    @Override
+    double finish(double d) {
+      return d;
+    }
+
+    @Override
+    double reduce(double d) {
+      return d;
+    }
+
+    @Override
+    KNNList toKNNList(KNNHeap heap) {
+      return heap.toKNNList();
+    }
+  }
+
+  /**
+   * View of a vector in a packed array, without copying.
+   *
+   * @author Erich Schubert
+   */
+  private static class PackedVector implements NumberVector {
+    /**
+     * Data array.
+     */
+    private double[] data;
+
+    /**
+     * Offset and dimensionality.
+     */
+    private int off, dim;
+
+    /**
+     * Constructor.
+     *
+     * @param data Data array
+     * @param off Offset
+     * @param dim Dimensionality
+     */
+    public PackedVector(double[] data, int off, int dim) {
+      this.data = data;
+      this.off = off;
+      this.dim = dim;
+    }
+
+    @Override
+    public int getDimensionality() {
+      return dim;
+    }
+
+    @Override
+    public double doubleValue(int dimension) {
+      return data[off + dimension];
+    }
+
+    @Override
+    public long longValue(int dimension) {
+      return (long) data[off + dimension];
+    }
+
+    @Override
+    public double[] toArray() {
+      return Arrays.copyOfRange(data, off, off + dim);
+    }
+  }
+
+  /**
+   * View of a bounding box in the packed arrays, without copying.
+   *
+   * @author Erich Schubert
+   */
+  private static class PackedBox implements SpatialComparable {
+    /**
+     * Minimums and maximums.
+     */
+    private double[] min, max;
+
+    /**
+     * Offset and dimensionality.
+     */
+    private int off, dim;
+
+    /**
+     * Constructor.
+     *
+     * @param min Minimums array
+     * @param max Maximums array
+     * @param off Offset
+     * @param dim Dimensionality
+     */
+    public PackedBox(double[] min, double[] max, int off, int dim) {
+      this.min = min;
+      this.max = max;
+      this.off = off;
+      this.dim = dim;
+    }
+
+    @Override
+    public int getDimensionality() {
+      return dim;
+    }
+
+    @Override
+    public double getMin(int dimension) {
+      return min[off + dimension];
+    }
+
+    @Override
+    public double getMax(int dimension) {
+      return max[off + dimension];
+    }
+  }
+
+  /**
+   * Factory class
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.stereotype factory
+   * @apiviz.has PackedRTree
+   *
+   * @param <O> Vector type
+   */
+  @Alias({ "packedrtree", "packed" })
+  public static class Factory<O extends NumberVector> implements IndexFactory<O> {
+    /**
+     * Bulk split strategy.
+     */
+    BulkSplit bulkSplitter;
+
+    /**
+     * Maximum number of entries per node.
+     */
+    int capacity;
+
+    /**
+     * Relative minimum fill.
+     */
+    double relativeMinFill;
+
+    /**
+     * Constructor.
+     *
+     * @param bulkSplitter Bulk split strategy
+     * @param capacity Maximum number of entries per node
+     * @param relativeMinFill Relative minimum fill
+     */
+    public Factory(BulkSplit bulkSplitter, int capacity, double relativeMinFill) {
+      super();
+      this.bulkSplitter = bulkSplitter;
+      this.capacity = capacity;
+      this.relativeMinFill = relativeMinFill;
+    }
+
+    @Override
+    public PackedRTree<O> instantiate(Relation<O> relation) {
+      final int minimum = Math.max(1, (int) Math.floor(capacity * relativeMinFill));
+      return new PackedRTree<>(relation, bulkSplitter, capacity, minimum);
+    }
+
+    @Override
+    public TypeInformation getInputTypeRestriction() {
+      return TypeUtil.NUMBER_VECTOR_FIELD;
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    public static class Parameterizer<O extends NumberVector> extends AbstractParameterizer {
+      /**
+       * Parameter for the node capacity.
+       */
+      public static final OptionID CAPACITY_ID = new OptionID("packedrtree.capacity", "Maximum number of entries in each node of the packed R-tree.");
+
+      /**
+       * Bulk split strategy.
+       */
+      BulkSplit bulkSplitter;
+
+      /**
+       * Maximum number of entries per node.
+       */
+      int capacity;
+
+      /**
+       * Relative minimum fill.
+       */
+      double relativeMinFill;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        ObjectParameter<BulkSplit> bulkSplitP = new ObjectParameter<>(AbstractRStarTreeFactory.Parameterizer.BULK_SPLIT_ID, BulkSplit.class, SortTileRecursiveBulkSplit.class);
+        if(config.grab(bulkSplitP)) {
+          bulkSplitter = bulkSplitP.instantiateClass(config);
+        }
+        IntParameter capacityP = new IntParameter(CAPACITY_ID, 32) //
+            .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT);
+        if(config.grab(capacityP)) {
+          capacity = capacityP.intValue();
+        }
+        DoubleParameter minimumFillP = new DoubleParameter(AbstractRStarTreeFactory.Parameterizer.MINIMUM_FILL_ID, 0.4) //
+            .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+            .addConstraint(CommonConstraints.LESS_THAN_HALF_DOUBLE);
+        if(config.grab(minimumFillP)) {
+          relativeMinFill = minimumFillP.doubleValue();
+        }
+      }
+
+      @Override
+      protected Factory<O> makeInstance() {
+        return new Factory<>(bulkSplitter, capacity, relativeMinFill);
+      }
+    }
+  }
+}
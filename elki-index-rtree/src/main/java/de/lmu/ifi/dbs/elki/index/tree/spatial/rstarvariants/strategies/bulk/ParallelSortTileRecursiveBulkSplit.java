@@ -0,0 +1,228 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.strategies.bulk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialSingleMeanComparator;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.utilities.Alias;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of the {@link SortTileRecursiveBulkSplit}.
+ * <p>
+ * Once the slab boundaries of a tile have been selected, the slab is never
+ * touched again by its parent, so the recursion into each slab is submitted
+ * to the {@link ParallelCore} while the parent continues selecting the next
+ * boundary. Every slab performs exactly the same operations as in the
+ * sequential version, so the resulting partitions (and thus the tree layout)
+ * are identical, independent of the number of threads.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@Alias({ "pstr", "parallel-str" })
+public class ParallelSortTileRecursiveBulkSplit extends SortTileRecursiveBulkSplit {
+  /**
+   * Static instance.
+   */
+  public static final ParallelSortTileRecursiveBulkSplit STATIC = new ParallelSortTileRecursiveBulkSplit();
+
+  /**
+   * Minimum number of objects to process in a separate task.
+   */
+  private static final int MIN_TASK_SIZE = 1000;
+
+  @Override
+  public <T extends SpatialComparable> List<List<T>> partition(List<T> spatialObjects, int minEntries, int maxEntries) {
+    if(spatialObjects.size() < MIN_TASK_SIZE << 1) {
+      return super.partition(spatialObjects, minEntries, maxEntries);
+    }
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      return new Partitioner<>(core, spatialObjects, maxEntries).run();
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  /**
+   * Class to coordinate the parallel partitioning of one list.
+   *
+   * @author Erich Schubert
+   *
+   * @param <T> Object type
+   */
+  private class Partitioner<T extends SpatialComparable> {
+    /**
+     * Executor core.
+     */
+    private ParallelCore core;
+
+    /**
+     * Objects to partition.
+     */
+    private List<T> objs;
+
+    /**
+     * Dimensionality.
+     */
+    private int dims;
+
+    /**
+     * Maximum page size.
+     */
+    private int maxEntries;
+
+    /**
+     * Tasks not yet known to be finished.
+     */
+    private ConcurrentLinkedQueue<Future<?>> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Output partitions, encoded as {@code start << 32 | end}, one array per
+     * sequentially processed slab.
+     */
+    private ConcurrentLinkedQueue<long[]> ranges = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructor.
+     *
+     * @param core Executor core
+     * @param objs Objects to partition
+     * @param maxEntries Maximum page size
+     */
+    Partitioner(ParallelCore core, List<T> objs, int maxEntries) {
+      this.core = core;
+      this.objs = objs;
+      this.dims = objs.get(0).getDimensionality();
+      this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Run the partitioning, and wait for all tasks to complete.
+     *
+     * @return Partitions
+     */
+    List<List<T>> run() {
+      partition(0, objs.size(), 0);
+      try {
+        // Tasks enqueue their subtasks before they complete.
+        for(Future<?> f = pending.poll(); f != null; f = pending.poll()) {
+          f.get();
+        }
+      }
+      catch(ExecutionException e) {
+        throw new RuntimeException("Parallel bulk split failed.", e);
+      }
+      catch(InterruptedException e) {
+        throw new RuntimeException("Parallel execution interrupted.");
+      }
+      // Restore the sequential order of partitions:
+      int n = 0;
+      for(long[] r : ranges) {
+        n += r.length;
+      }
+      long[] all = new long[n];
+      n = 0;
+      for(long[] r : ranges) {
+        System.arraycopy(r, 0, all, n, r.length);
+        n += r.length;
+      }
+      Arrays.sort(all);
+      List<List<T>> ret = new ArrayList<>(all.length);
+      for(long r : all) {
+        ret.add(objs.subList((int) (r >>> 32), (int) r));
+      }
+      return ret;
+    }
+
+    /**
+     * Partition a slab, forking off a task for each large subslab.
+     *
+     * @param start Subinterval start
+     * @param end Subinterval end
+     * @param depth Iteration depth
+     */
+    void partition(int start, int end, int depth) {
+      SpatialSingleMeanComparator c = new SpatialSingleMeanComparator(depth);
+      if(end - start < MIN_TASK_SIZE || depth + 1 == dims) {
+        List<List<T>> local = new ArrayList<>();
+        strPartition(objs, start, end, depth, dims, maxEntries, c, local);
+        // The partitions are consecutive, starting at start.
+        long[] r = new long[local.size()];
+        for(int i = 0, pos = start; i < r.length; i++) {
+          final int next = pos + local.get(i).size();
+          r[i] = ((long) pos << 32) | next;
+          pos = next;
+        }
+        ranges.add(r);
+        return;
+      }
+      // Same as in strPartition, but forking off the recursion.
+      final int p = (int) FastMath.ceil((end - start) / (double) maxEntries);
+      final int s = (int) FastMath.ceil(FastMath.pow(p, 1.0 / (dims - depth)));
+      final double len = end - start; // double intentional!
+      for(int i = 0; i < s; i++) {
+        final int s2 = start + (int) ((i * len) / s);
+        final int e2 = start + (int) (((i + 1) * len) / s);
+        if(e2 < end) {
+          c.setDimension(depth);
+          QuickSelect.quickSelect(objs, c, s2, end, e2);
+        }
+        if(e2 - s2 < MIN_TASK_SIZE) {
+          partition(s2, e2, depth + 1);
+          continue;
+        }
+        // Slab s2..e2 is final now, and only modified by the subtask.
+        pending.add(core.submit(() -> {
+          partition(s2, e2, depth + 1);
+          return null;
+        }));
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    @Override
+    protected ParallelSortTileRecursiveBulkSplit makeInstance() {
+      return STATIC;
+    }
+  }
+}
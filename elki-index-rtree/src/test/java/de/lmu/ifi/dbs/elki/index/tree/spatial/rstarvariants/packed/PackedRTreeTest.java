@@ -0,0 +1,141 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.packed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.rknn.LinearScanRKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.rknn.RKNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.WeightedEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractIndexStructureTest;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTreeFactory;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.strategies.bulk.SpatialSortBulkSplit;
+import de.lmu.ifi.dbs.elki.math.spacefillingcurves.HilbertSpatialSorter;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the packed R-tree.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class PackedRTreeTest extends AbstractIndexStructureTest {
+  /**
+   * Test {@link PackedRTree} with the default Sort-Tile-Recursive bulk split.
+   */
+  @Test
+  public void testPackedRTree() {
+    PackedRTree.Factory<?> factory = new ELKIBuilder<>(PackedRTree.Factory.class) //
+        .with(PackedRTree.Factory.Parameterizer.CAPACITY_ID, 10) //
+        .build();
+    testExactEuclidean(factory, PackedRTree.PackedRTreeKNNQuery.class, PackedRTree.PackedRTreeRangeQuery.class);
+    testSinglePoint(factory, PackedRTree.PackedRTreeKNNQuery.class, PackedRTree.PackedRTreeRangeQuery.class);
+  }
+
+  /**
+   * Test {@link PackedRTree} bulk loaded using {@link SpatialSortBulkSplit}
+   * with {@link HilbertSpatialSorter}
+   */
+  @Test
+  public void testHilbertPackedRTree() {
+    PackedRTree.Factory<?> factory = new ELKIBuilder<>(PackedRTree.Factory.class) //
+        .with(PackedRTree.Factory.Parameterizer.CAPACITY_ID, 10) //
+        .with(AbstractRStarTreeFactory.Parameterizer.BULK_SPLIT_ID, SpatialSortBulkSplit.class) //
+        .with(SpatialSortBulkSplit.Parameterizer.SORTER_ID, HilbertSpatialSorter.class) //
+        .build();
+    testExactEuclidean(factory, PackedRTree.PackedRTreeKNNQuery.class, PackedRTree.PackedRTreeRangeQuery.class);
+    testSinglePoint(factory, PackedRTree.PackedRTreeKNNQuery.class, PackedRTree.PackedRTreeRangeQuery.class);
+  }
+
+  /**
+   * Compare the reverse kNN queries to a linear scan.
+   */
+  @Test
+  public void testRKNN() {
+    final int k = 10;
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase("elki/testdata/unittests/hierarchical-3d2d1d.csv", 600);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    PackedRTree<DoubleVector> tree = new ELKIBuilder<PackedRTree.Factory<DoubleVector>>(PackedRTree.Factory.class) //
+        .with(PackedRTree.Factory.Parameterizer.CAPACITY_ID, 10) //
+        .build().instantiate(rel);
+    tree.initialize();
+    RKNNQuery<DoubleVector> rknnq = tree.getRKNNQuery(dq);
+    assertTrue("Reverse kNN query not supported.", rknnq instanceof PackedRTree.PackedRTreeRKNNQuery);
+    LinearScanRKNNQuery<DoubleVector> scan = new LinearScanRKNNQuery<>(dq, new LinearScanDistanceKNNQuery<>(dq), k);
+    DoubleVector dv = DoubleVector.wrap(new double[] { 0.5, 0.5, 0.5 });
+    DoubleDBIDList expect = scan.getRKNNForObject(dv, k), got = rknnq.getRKNNForObject(dv, k);
+    assertEquals("Result size does not match expectation!", expect.size(), got.size());
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid() && i < 20; it.advance(), i++) {
+      expect = scan.getRKNNForDBID(it, k);
+      got = rknnq.getRKNNForDBID(it, k);
+      assertEquals("Result size does not match expectation!", expect.size(), got.size());
+      for(DoubleDBIDListIter e = expect.iter(), g = got.iter(); e.valid(); e.advance(), g.advance()) {
+        assertEquals("Distance does not match.", e.doubleValue(), g.doubleValue(), 1e-15);
+        assertTrue("Reverse neighbor does not match.", DBIDUtil.equal(e, g));
+      }
+    }
+  }
+
+  /**
+   * Compare kNN queries with a weighted distance to a linear scan.
+   */
+  @Test
+  public void testWeighted() {
+    final int k = 10;
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase("elki/testdata/unittests/hierarchical-3d2d1d.csv", 600);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, new WeightedEuclideanDistanceFunction(new double[] { 1., 2., .5 }));
+    PackedRTree<DoubleVector> tree = new ELKIBuilder<PackedRTree.Factory<DoubleVector>>(PackedRTree.Factory.class) //
+        .with(PackedRTree.Factory.Parameterizer.CAPACITY_ID, 10) //
+        .build().instantiate(rel);
+    tree.initialize();
+    KNNQuery<DoubleVector> knnq = tree.getKNNQuery(dq);
+    assertTrue("Weighted kNN query not supported.", knnq instanceof PackedRTree.PackedRTreeKNNQuery);
+    LinearScanDistanceKNNQuery<DoubleVector> scan = new LinearScanDistanceKNNQuery<>(dq);
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid() && i < 20; it.advance(), i++) {
+      KNNList expect = scan.getKNNForDBID(it, k), got = knnq.getKNNForDBID(it, k);
+      assertEquals("Result size does not match expectation!", expect.size(), got.size());
+      for(DoubleDBIDListIter e = expect.iter(), g = got.iter(); e.valid(); e.advance(), g.advance()) {
+        assertEquals("Distance does not match.", e.doubleValue(), g.doubleValue(), 1e-15);
+      }
+    }
+  }
+}
@@ -20,9 +20,28 @@
  */
 package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.rstar;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
 import de.lmu.ifi.dbs.elki.index.AbstractIndexStructureTest;
 import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTreeFactory;
 import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.query.RStarTreeKNNQuery;
@@ -282,4 +301,50 @@ public class RStarTreeTest extends AbstractIndexStructureTest {
     testExactCosine(factory, RStarTreeKNNQuery.class, RStarTreeRangeQuery.class);
     testSinglePoint(factory, RStarTreeKNNQuery.class, RStarTreeRangeQuery.class);
   }
+
+  /**
+   * Test concurrent k-nearest-neighbor queries on a read-only tree.
+   */
+  @Test
+  public void testConcurrentQueries() throws InterruptedException {
+    final int k = 10, numthreads = 4;
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase("elki/testdata/unittests/hierarchical-3d2d1d.csv", 600);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    RStarTreeIndex<DoubleVector> tree = new ELKIBuilder<RStarTreeFactory<DoubleVector>>(RStarTreeFactory.class) //
+        .with(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 300) //
+        .build().instantiate(rel);
+    tree.initialize();
+    assertTrue("Read-only mode must be enabled explicitly.", !tree.isReadOnly());
+    tree.makeReadOnly();
+    assertTrue("Tree was not switched to read-only mode.", tree.isReadOnly());
+    final KNNQuery<DoubleVector> knnq = tree.getKNNQuery(dq, k);
+    final LinearScanDistanceKNNQuery<DoubleVector> scan = new LinearScanDistanceKNNQuery<>(dq);
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(rel.getDBIDs());
+    final KNNList[] results = new KNNList[ids.size()];
+    final AtomicInteger next = new AtomicInteger();
+    Thread[] threads = new Thread[numthreads];
+    for(int t = 0; t < numthreads; t++) {
+      threads[t] = new Thread(() -> {
+        DBIDArrayIter it = ids.iter();
+        for(int i = next.getAndIncrement(); i < ids.size(); i = next.getAndIncrement()) {
+          results[i] = knnq.getKNNForDBID(it.seek(i), k);
+        }
+      });
+      threads[t].start();
+    }
+    for(Thread thread : threads) {
+      thread.join();
+    }
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      KNNList expect = scan.getKNNForDBID(it, k), got = results[it.getOffset()];
+      assertEquals("Result size does not match expectation!", expect.size(), got.size());
+      for(DoubleDBIDListIter e = expect.iter(), g = got.iter(); e.valid(); e.advance(), g.advance()) {
+        assertEquals("Distance does not match.", e.doubleValue(), g.doubleValue(), 1e-15);
+      }
+    }
+    // Modifications leave the read-only mode.
+    tree.insert(ids.iter());
+    assertTrue("Tree is still in read-only mode.", !tree.isReadOnly());
+  }
 }
@@ -0,0 +1,63 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.strategies.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+
+/**
+ * Test that the parallel STR bulk split produces the sequential result.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ParallelSortTileRecursiveBulkSplitTest {
+  /**
+   * Compare the partitions on random data.
+   */
+  @Test
+  public void testSameAsSequential() {
+    Random r = new Random(0L);
+    List<DoubleVector> seq = new ArrayList<>();
+    for(int i = 0; i < 100000; i++) {
+      seq.add(DoubleVector.wrap(new double[] { r.nextDouble(), r.nextDouble(), r.nextDouble() }));
+    }
+    List<DoubleVector> par = new ArrayList<>(seq);
+    List<List<DoubleVector>> expect = SortTileRecursiveBulkSplit.STATIC.partition(seq, 20, 50);
+    List<List<DoubleVector>> got = ParallelSortTileRecursiveBulkSplit.STATIC.partition(par, 20, 50);
+    assertEquals("Number of partitions differs.", expect.size(), got.size());
+    for(int i = 0; i < expect.size(); i++) {
+      List<DoubleVector> e = expect.get(i), g = got.get(i);
+      assertEquals("Partition size differs.", e.size(), g.size());
+      for(int j = 0; j < e.size(); j++) {
+        assertSame("Partition contents differ.", e.get(j), g.get(j));
+      }
+    }
+  }
+}
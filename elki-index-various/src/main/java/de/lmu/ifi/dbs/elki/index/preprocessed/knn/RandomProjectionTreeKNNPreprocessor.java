@@ -0,0 +1,411 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.preprocessed.knn;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.*;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.WrongParameterValueException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.jafama.FastMath;
+
+/**
+ * Approximate k nearest neighbors from multiple random projection splits.
+ * <p>
+ * Similar to the random projections used by FastOPTICS, the data set is
+ * recursively split at the median of a random projection, until the partitions
+ * are small. This is repeated for several independent trees. The
+ * candidate neighbors of an object are the members of its partitions in all
+ * trees, and these are refined using the actual distance function.
+ * <p>
+ * The trees are built in parallel, and the candidates are refined in parallel.
+ * The resulting kNN lists are materialized. As this is an approximate index,
+ * it will not be used for queries that request exact results with
+ * {@link DatabaseQuery#HINT_EXACT}, or a larger k.
+ * <p>
+ * Reference:
+ * <p>
+ * J. Schneider, M. Vlachos<br>
+ * Fast parameterless density-based clustering via random projections<br>
+ * Proc. 22nd ACM Int. Conf. on Information & Knowledge Management (CIKM 2013)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "J. Schneider, M. Vlachos", //
+    title = "Fast parameterless density-based clustering via random projections", //
+    booktitle = "Proc. 22nd ACM Int. Conf. on Information & Knowledge Management (CIKM 2013)", //
+    url = "https://doi.org/10.1145/2505515.2505590", //
+    bibkey = "DBLP:conf/cikm/SchneiderV13")
+public class RandomProjectionTreeKNNPreprocessor<O extends NumberVector> extends AbstractMaterializeKNNPreprocessor<O> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(RandomProjectionTreeKNNPreprocessor.class);
+
+  /**
+   * Number of trees.
+   */
+  private final int numtrees;
+
+  /**
+   * Maximum partition size.
+   */
+  private final int leafsize;
+
+  /**
+   * Random generator.
+   */
+  private final RandomFactory rnd;
+
+  /**
+   * Number of distance computations.
+   */
+  private long distanceComputations;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation to index
+   * @param distanceFunction Distance function
+   * @param k Number of neighbors to materialize
+   * @param numtrees Number of trees
+   * @param leafsize Maximum partition size
+   * @param rnd Random generator
+   */
+  public RandomProjectionTreeKNNPreprocessor(Relation<O> relation, DistanceFunction<? super O> distanceFunction, int k, int numtrees, int leafsize, RandomFactory rnd) {
+    super(relation, distanceFunction, k);
+    this.numtrees = numtrees;
+    this.leafsize = leafsize;
+    this.rnd = rnd;
+  }
+
+  @Override
+  protected void preprocess() {
+    Duration duration = LOG.newDuration(getClass().getCanonicalName() + ".preprocessing-time").begin();
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    final WritableIntegerDataStore offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      offsets.putInt(iter, iter.getOffset());
+    }
+
+    // Draw the seeds in advance, for reproducibility with any number of
+    // threads.
+    final long[] seeds = new long[numtrees];
+    Random random = rnd.getSingleThreadedRandom();
+    for(int t = 0; t < numtrees; t++) {
+      seeds[t] = random.nextLong();
+    }
+    final ArrayModifiableDBIDs[] trees = new ArrayModifiableDBIDs[numtrees];
+    final int[][] bounds = new int[numtrees][];
+    // Position of each object in each tree, by offset.
+    final int[] treepos = new int[size * numtrees];
+    FiniteProgress treeprog = LOG.isVerbose() ? new FiniteProgress("Building random projection trees", numtrees, LOG) : null;
+    ParallelExecutor.run(numtrees, () -> {
+      final WritableDoubleDataStore proj = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+      final double[] dir = new double[RelationUtil.dimensionality(relation)];
+      return t -> {
+        ArrayModifiableDBIDs order = DBIDUtil.newArray(ids);
+        IntArrayList leaves = new IntArrayList();
+        split(order, 0, size, new Random(seeds[t]), proj, dir, leaves);
+        leaves.add(size);
+        for(DBIDArrayIter it = order.iter(); it.valid(); it.advance()) {
+          treepos[offsets.intValue(it) * numtrees + t] = it.getOffset();
+        }
+        trees[t] = order;
+        bounds[t] = leaves.toIntArray();
+        LOG.incrementProcessed(treeprog);
+      };
+    });
+    LOG.ensureCompleted(treeprog);
+
+    // Refine the candidates of each object.
+    final KNNList[] results = new KNNList[size];
+    final AtomicLong distc = new AtomicLong();
+    FiniteProgress refprog = LOG.isVerbose() ? new FiniteProgress("Refining candidates", size, LOG) : null;
+    ParallelExecutor.run(size, () -> {
+      final HashSetModifiableDBIDs cands = DBIDUtil.newHashSet();
+      final DBIDArrayIter iter = ids.iter();
+      return i -> {
+        final O vec = relation.get(iter.seek(i));
+        KNNHeap heap = DBIDUtil.newHeap(k);
+        cands.clear();
+        for(int t = 0; t < numtrees; t++) {
+          final int[] b = bounds[t];
+          final int pos = treepos[i * numtrees + t];
+          int leaf = Arrays.binarySearch(b, pos);
+          leaf = leaf >= 0 ? leaf : -leaf - 2;
+          final int end = b[leaf + 1];
+          for(DBIDArrayIter it = trees[t].iter().seek(b[leaf]); it.getOffset() < end; it.advance()) {
+            if(cands.add(it)) {
+              heap.insert(distanceQuery.distance(vec, it), it);
+            }
+          }
+        }
+        distc.addAndGet(cands.size());
+        results[i] = heap.toKNNList();
+        LOG.incrementProcessed(refprog);
+      };
+    });
+    LOG.ensureCompleted(refprog);
+    offsets.destroy();
+
+    storage = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_HOT, KNNList.class);
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      storage.put(iter, results[iter.getOffset()]);
+    }
+    distanceComputations += distc.get();
+    LOG.statistics(duration.end());
+  }
+
+  /**
+   * Recursively split the data at the median of random projections.
+   *
+   * @param order Objects, will be reordered
+   * @param begin Interval begin
+   * @param end Interval end
+   * @param random Random generator
+   * @param proj Projection storage
+   * @param dir Projection direction buffer
+   * @param leaves Output list of partition starts
+   */
+  private void split(ArrayModifiableDBIDs order, int begin, int end, Random random, WritableDoubleDataStore proj, double[] dir, IntArrayList leaves) {
+    if(end - begin <= leafsize) {
+      leaves.add(begin);
+      return;
+    }
+    randomDirection(dir, random);
+    for(DBIDArrayIter it = order.iter().seek(begin); it.getOffset() < end; it.advance()) {
+      final NumberVector vec = relation.get(it);
+      double sum = 0.;
+      for(int d = 0; d < dir.length; d++) {
+        sum += dir[d] * vec.doubleValue(d);
+      }
+      proj.putDouble(it, sum);
+    }
+    final int mid = (begin + end) >>> 1;
+    QuickSelectDBIDs.quickSelect(order, new DataStoreUtil.AscendingByDoubleDataStore(proj), begin, end, mid);
+    split(order, begin, mid, random, proj, dir, leaves);
+    split(order, mid, end, random, proj, dir, leaves);
+  }
+
+  /**
+   * Choose a random unit vector.
+   *
+   * @param dir Output buffer
+   * @param random Random generator
+   */
+  private static void randomDirection(double[] dir, Random random) {
+    double sum = 0.;
+    for(int d = 0; d < dir.length; d++) {
+      final double v = random.nextGaussian();
+      dir[d] = v;
+      sum += v * v;
+    }
+    sum = 1. / FastMath.sqrt(sum);
+    for(int d = 0; d < dir.length; d++) {
+      dir[d] *= sum;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  @Override
+  public void logStatistics() {
+    LOG.statistics(new LongStatistic(getClass().getCanonicalName() + ".distance-computations", distanceComputations));
+  }
+
+  @Override
+  public String getLongName() {
+    return "Random projection trees kNN";
+  }
+
+  @Override
+  public String getShortName() {
+    return "rptree-knn";
+  }
+
+  @Override
+  public KNNQuery<O> getKNNQuery(DistanceQuery<O> distanceQuery, Object... hints) {
+    for(Object hint : hints) {
+      if(DatabaseQuery.HINT_EXACT.equals(hint)) {
+        return null;
+      }
+    }
+    return super.getKNNQuery(distanceQuery, hints);
+  }
+
+  /**
+   * Index factory.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.has RandomProjectionTreeKNNPreprocessor
+   *
+   * @param <O> Object type
+   */
+  public static class Factory<O extends NumberVector> extends AbstractMaterializeKNNPreprocessor.Factory<O> {
+    /**
+     * Number of trees.
+     */
+    private final int numtrees;
+
+    /**
+     * Maximum partition size.
+     */
+    private final int leafsize;
+
+    /**
+     * Random generator.
+     */
+    private final RandomFactory rnd;
+
+    /**
+     * Constructor.
+     *
+     * @param k Number of neighbors to materialize
+     * @param distanceFunction Distance function
+     * @param numtrees Number of trees
+     * @param leafsize Maximum partition size
+     * @param rnd Random generator
+     */
+    public Factory(int k, DistanceFunction<? super O> distanceFunction, int numtrees, int leafsize, RandomFactory rnd) {
+      super(k, distanceFunction);
+      this.numtrees = numtrees;
+      this.leafsize = leafsize;
+      this.rnd = rnd;
+    }
+
+    @Override
+    public RandomProjectionTreeKNNPreprocessor<O> instantiate(Relation<O> relation) {
+      return new RandomProjectionTreeKNNPreprocessor<>(relation, distanceFunction, k, numtrees, leafsize > 0 ? leafsize : 2 * k, rnd);
+    }
+
+    @Override
+    public TypeInformation getInputTypeRestriction() {
+      return TypeUtil.NUMBER_VECTOR_FIELD;
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     *
+     * @param <O> Object type
+     */
+    public static class Parameterizer<O extends NumberVector> extends AbstractMaterializeKNNPreprocessor.Factory.Parameterizer<O> {
+      /**
+       * Number of trees.
+       */
+      public static final OptionID TREES_ID = new OptionID("rptrees.trees", "Number of random projection trees to build.");
+
+      /**
+       * Maximum partition size.
+       */
+      public static final OptionID LEAFSIZE_ID = new OptionID("rptrees.leafsize", "Maximum partition size, at least k. Default is 2*k.");
+
+      /**
+       * Random seed.
+       */
+      public static final OptionID SEED_ID = new OptionID("rptrees.seed", "Random generator seed.");
+
+      /**
+       * Number of trees.
+       */
+      int numtrees = 10;
+
+      /**
+       * Maximum partition size.
+       */
+      int leafsize = -1;
+
+      /**
+       * Random generator.
+       */
+      RandomFactory rnd;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        IntParameter treesP = new IntParameter(TREES_ID, 10) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(treesP)) {
+          numtrees = treesP.intValue();
+        }
+        IntParameter leafP = new IntParameter(LEAFSIZE_ID) //
+            .setOptional(true) //
+            .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT);
+        if(config.grab(leafP)) {
+          leafsize = leafP.intValue();
+          // Smaller partitions cannot contain k neighbors.
+          if(leafsize < k) {
+            config.reportError(new WrongParameterValueException(leafP, leafP.getValueAsString(), "The partition size must be at least k=" + k + "."));
+          }
+        }
+        RandomParameter rndP = new RandomParameter(SEED_ID);
+        if(config.grab(rndP)) {
+          rnd = rndP.getValue();
+        }
+      }
+
+      @Override
+      protected Factory<O> makeInstance() {
+        return new Factory<>(k, distanceFunction, numtrees, leafsize, rnd);
+      }
+    }
+  }
+}
@@ -0,0 +1,540 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.vafile;
+
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.WeightedNumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPNormDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractRefiningIndex;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
+import de.lmu.ifi.dbs.elki.index.KNNIndex;
+import de.lmu.ifi.dbs.elki.index.RangeIndex;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.Alias;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleMaxHeap;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.LessEqualConstraint;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+import net.jafama.FastMath;
+
+/**
+ * In-memory vector approximation file with a packed, column-oriented layout.
+ * <p>
+ * This uses the same quantile grid as the {@link VAFile}, but stores the cell
+ * numbers as one {@code byte[]} column per dimension (hence at most 256
+ * partitions). For each query, lookup tables with the per-cell minimum and
+ * maximum distance contributions are computed once, and the filter step
+ * accumulates the bounds of a whole segment of objects one dimension at a
+ * time. These branch-free loops over primitive arrays are amenable to
+ * autovectorization by the JIT. Segments are scanned in parallel using the
+ * {@link ParallelExecutor}; the calling thread participates in the scan, so
+ * queries may also be issued from worker threads.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @apiviz.has PackedVAFileKNNQuery
+ * @apiviz.has PackedVAFileRangeQuery
+ *
+ * @param <V> Vector type
+ */
+public class PackedVAFile<V extends NumberVector> extends AbstractRefiningIndex<V> implements KNNIndex<V>, RangeIndex<V> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(PackedVAFile.class);
+
+  /**
+   * Number of partitions per dimension.
+   */
+  protected int partitions;
+
+  /**
+   * Number of objects per scan segment.
+   */
+  protected int segmentsize;
+
+  /**
+   * Quantile grid, {@code partitions + 1} borders per dimension.
+   */
+  protected double[][] splitPositions;
+
+  /**
+   * Cell numbers, one column per dimension.
+   */
+  protected byte[][] columns;
+
+  /**
+   * Object ids, in the order of the columns.
+   */
+  protected ArrayDBIDs ids;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation to index
+   * @param partitions Number of partitions per dimension
+   * @param segmentsize Number of objects per scan segment
+   */
+  public PackedVAFile(Relation<V> relation, int partitions, int segmentsize) {
+    super(relation);
+    this.partitions = partitions;
+    this.segmentsize = segmentsize;
+  }
+
+  @Override
+  public void initialize() {
+    final int dim = RelationUtil.dimensionality(relation);
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    splitPositions = new double[dim][partitions + 1];
+    columns = new byte[dim][size];
+    if(size == 0) {
+      return; // Empty index, all queries return empty results.
+    }
+    double[] tempdata = new double[size];
+    DBIDArrayIter it = ids.iter();
+    for(int d = 0; d < dim; d++) {
+      for(it.seek(0); it.valid(); it.advance()) {
+        tempdata[it.getOffset()] = relation.get(it).doubleValue(d);
+      }
+      Arrays.sort(tempdata);
+      final double[] split = splitPositions[d];
+      for(int b = 0; b < partitions; b++) {
+        split[b] = tempdata[(int) (b * (long) size / partitions)];
+      }
+      // make sure that last object will be included
+      split[partitions] = tempdata[size - 1] + 0.000001;
+    }
+    for(it.seek(0); it.valid(); it.advance()) {
+      final V vec = relation.get(it);
+      final int i = it.getOffset();
+      for(int d = 0; d < dim; d++) {
+        columns[d][i] = (byte) findCell(splitPositions[d], vec.doubleValue(d));
+      }
+    }
+  }
+
+  /**
+   * Find the grid cell of a value.
+   *
+   * @param split Split positions
+   * @param val Value
+   * @return Cell number
+   */
+  private int findCell(double[] split, double val) {
+    int pos = Arrays.binarySearch(split, val);
+    pos = (pos >= 0) ? pos : ((-pos) - 2);
+    return pos < 0 ? 0 : pos >= partitions ? partitions - 1 : pos;
+  }
+
+  /**
+   * Compute the per-cell lookup tables of a query, at offset
+   * {@code d * partitions + cell}.
+   *
+   * @param query Query vector
+   * @param p Exponent of the Lp norm
+   * @param mintab Output: minimum distance contributions
+   * @param maxtab Output: maximum distance contributions
+   */
+  protected void computeTables(NumberVector query, double p, double[] mintab, double[] maxtab) {
+    for(int d = 0, off = 0; d < splitPositions.length; d++, off += partitions) {
+      final double[] split = splitPositions[d];
+      final double q = query.doubleValue(d);
+      final int qc = findCell(split, q);
+      for(int c = 0; c < partitions; c++) {
+        final double dl = pow(Math.abs(split[c] - q), p);
+        final double dh = pow(Math.abs(split[c + 1] - q), p);
+        mintab[off + c] = c < qc ? dh : c > qc ? dl : 0.;
+        maxtab[off + c] = dl > dh ? dl : dh;
+      }
+    }
+  }
+
+  /**
+   * Power function, with fast paths for Manhattan and Euclidean distance.
+   *
+   * @param x Base
+   * @param p Exponent
+   * @return x to the power of p
+   */
+  private static double pow(double x, double p) {
+    return p == 2. ? x * x : p == 1. ? x : FastMath.pow(x, p);
+  }
+
+  /**
+   * Filter step for one segment: accumulate the lower and upper bounds (in
+   * the power space of the Lp norm).
+   *
+   * @param start Start offset
+   * @param len Segment length
+   * @param mintab Minimum distance lookup table
+   * @param maxtab Maximum distance lookup table
+   * @param lb Output: lower bounds
+   * @param ub Output: upper bounds
+   */
+  protected void scanSegment(int start, int len, double[] mintab, double[] maxtab, double[] lb, double[] ub) {
+    Arrays.fill(lb, 0, len, 0.);
+    Arrays.fill(ub, 0, len, 0.);
+    for(int d = 0, off = 0; d < columns.length; d++, off += partitions) {
+      final byte[] col = columns[d];
+      for(int i = 0; i < len; i++) {
+        final int c = off + (col[start + i] & 0xFF);
+        lb[i] += mintab[c];
+        ub[i] += maxtab[c];
+      }
+    }
+  }
+
+  /**
+   * Process all segments, in parallel if there is more than one.
+   *
+   * @param proc Segment processor
+   */
+  protected void processSegments(SegmentProcessor proc) {
+    final int size = ids.size(), numseg = (size + segmentsize - 1) / segmentsize;
+    ParallelExecutor.run(numseg, () -> {
+      final double[] lb = new double[segmentsize], ub = new double[segmentsize];
+      return s -> {
+        final int start = s * segmentsize;
+        proc.process(s, start, Math.min(segmentsize, size - start), lb, ub);
+      };
+    });
+  }
+
+  /**
+   * Processor for a single segment.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  @FunctionalInterface
+  protected interface SegmentProcessor {
+    /**
+     * Process a segment.
+     *
+     * @param segment Segment number
+     * @param start Start offset
+     * @param len Segment length
+     * @param lb Scratch buffer for lower bounds
+     * @param ub Scratch buffer for upper bounds
+     */
+    void process(int segment, int start, int len, double[] lb, double[] ub);
+  }
+
+  /**
+   * Get the exponent of a supported Lp norm.
+   *
+   * @param df Distance function
+   * @return Exponent, or {@code NaN} if not supported.
+   */
+  private static double getExponent(DistanceFunction<?> df) {
+    if(df instanceof LPNormDistanceFunction && !(df instanceof WeightedNumberVectorDistanceFunction)) {
+      final double p = ((LPNormDistanceFunction) df).getP();
+      return p >= 1. && p < Double.POSITIVE_INFINITY ? p : Double.NaN;
+    }
+    return Double.NaN;
+  }
+
+  @Override
+  public Logging getLogger() {
+    return LOG;
+  }
+
+  @Override
+  public String getLongName() {
+    return "Packed VA-file index";
+  }
+
+  @Override
+  public String getShortName() {
+    return "packed-va-file";
+  }
+
+  @Override
+  public KNNQuery<V> getKNNQuery(DistanceQuery<V> distanceQuery, Object... hints) {
+    final double p = getExponent(distanceQuery.getDistanceFunction());
+    return p == p ? new PackedVAFileKNNQuery(distanceQuery, p) : null;
+  }
+
+  @Override
+  public RangeQuery<V> getRangeQuery(DistanceQuery<V> distanceQuery, Object... hints) {
+    final double p = getExponent(distanceQuery.getDistanceFunction());
+    return p == p ? new PackedVAFileRangeQuery(distanceQuery, p) : null;
+  }
+
+  /**
+   * Range query for this index.
+   *
+   * @author Erich Schubert
+   */
+  public class PackedVAFileRangeQuery extends AbstractRefiningIndex<V>.AbstractRangeQuery {
+    /**
+     * Lp norm exponent.
+     */
+    final double p;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query object
+     * @param p Lp norm exponent
+     */
+    public PackedVAFileRangeQuery(DistanceQuery<V> distanceQuery, double p) {
+      super(distanceQuery);
+      this.p = p;
+    }
+
+    @Override
+    public void getRangeForObject(final V query, final double eps, ModifiableDoubleDBIDList result) {
+      final double[] mintab = new double[columns.length * partitions];
+      final double[] maxtab = new double[columns.length * partitions];
+      computeTables(query, p, mintab, maxtab);
+      final double peps = pow(eps, p);
+      final int numseg = (ids.size() + segmentsize - 1) / segmentsize;
+      final ModifiableDoubleDBIDList[] partial = new ModifiableDoubleDBIDList[numseg];
+      // Refinements are counted per segment, the counter is not thread safe.
+      final int[] refined = new int[numseg];
+      processSegments((s, start, len, lb, ub) -> {
+        scanSegment(start, len, mintab, maxtab, lb, ub);
+        ModifiableDoubleDBIDList res = DBIDUtil.newDistanceDBIDList();
+        DBIDArrayIter it = ids.iter();
+        int c = 0;
+        for(int i = 0; i < len; i++) {
+          if(lb[i] <= peps) {
+            final double dist = distanceQuery.distance(query, it.seek(start + i));
+            ++c;
+            if(dist <= eps) {
+              res.add(dist, it);
+            }
+          }
+        }
+        partial[s] = res;
+        refined[s] = c;
+      });
+      int total = 0;
+      for(int c : refined) {
+        total += c;
+      }
+      incRefinements(total);
+      for(ModifiableDoubleDBIDList res : partial) {
+        for(DoubleDBIDListIter iter = res.iter(); iter.valid(); iter.advance()) {
+          result.add(iter.doubleValue(), iter);
+        }
+      }
+    }
+  }
+
+  /**
+   * kNN query for this index.
+   *
+   * @author Erich Schubert
+   */
+  public class PackedVAFileKNNQuery extends AbstractRefiningIndex<V>.AbstractKNNQuery {
+    /**
+     * Lp norm exponent.
+     */
+    final double p;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query object
+     * @param p Lp norm exponent
+     */
+    public PackedVAFileKNNQuery(DistanceQuery<V> distanceQuery, double p) {
+      super(distanceQuery);
+      this.p = p;
+    }
+
+    @Override
+    public KNNList getKNNForObject(V query, final int k) {
+      final double[] mintab = new double[columns.length * partitions];
+      final double[] maxtab = new double[columns.length * partitions];
+      computeTables(query, p, mintab, maxtab);
+      final int numseg = (ids.size() + segmentsize - 1) / segmentsize;
+      final DoubleMaxHeap[] bounds = new DoubleMaxHeap[numseg];
+      final ModifiableDoubleDBIDList[] partial = new ModifiableDoubleDBIDList[numseg];
+      processSegments((s, start, len, lb, ub) -> {
+        scanSegment(start, len, mintab, maxtab, lb, ub);
+        // k smallest upper bounds within this segment
+        DoubleMaxHeap heap = new DoubleMaxHeap(k + 1);
+        for(int i = 0; i < len; i++) {
+          heap.add(ub[i], k);
+        }
+        final double threshold = heap.size() >= k ? heap.peek() : Double.POSITIVE_INFINITY;
+        ModifiableDoubleDBIDList cands = DBIDUtil.newDistanceDBIDList();
+        DBIDArrayIter it = ids.iter();
+        for(int i = 0; i < len; i++) {
+          if(lb[i] <= threshold) {
+            cands.add(lb[i], it.seek(start + i));
+          }
+        }
+        bounds[s] = heap;
+        partial[s] = cands;
+      });
+      // Global k-th smallest upper bound:
+      DoubleMaxHeap heap = new DoubleMaxHeap(k + 1);
+      for(DoubleMaxHeap h : bounds) {
+        for(DoubleHeap.UnsortedIter iter = h.unsortedIter(); iter.valid(); iter.advance()) {
+          heap.add(iter.get(), k);
+        }
+      }
+      final double threshold = heap.size() >= k ? heap.peek() : Double.POSITIVE_INFINITY;
+      ModifiableDoubleDBIDList candidates = DBIDUtil.newDistanceDBIDList();
+      final double onebyp = 1. / p;
+      for(ModifiableDoubleDBIDList cands : partial) {
+        for(DoubleDBIDListIter iter = cands.iter(); iter.valid(); iter.advance()) {
+          final double lb = iter.doubleValue();
+          if(lb <= threshold) {
+            candidates.add(p == 1. ? lb : FastMath.pow(lb, onebyp), iter);
+          }
+        }
+      }
+      // sort candidates by lower bound
+      candidates.sort();
+      // refinement step
+      KNNHeap result = DBIDUtil.newHeap(k);
+      for(DoubleDBIDListIter iter = candidates.iter(); iter.valid(); iter.advance()) {
+        // Stop when we are sure to have all elements
+        if(result.size() >= k && iter.doubleValue() > result.getKNNDistance()) {
+          break;
+        }
+        result.insert(refine(iter, query), iter);
+      }
+      return result.toKNNList();
+    }
+  }
+
+  /**
+   * Index factory class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.stereotype factory
+   * @apiviz.has PackedVAFile
+   *
+   * @param <V> Vector type
+   */
+  @Alias({ "packedvafile" })
+  public static class Factory<V extends NumberVector> implements IndexFactory<V> {
+    /**
+     * Number of partitions.
+     */
+    int partitions;
+
+    /**
+     * Number of objects per scan segment.
+     */
+    int segmentsize;
+
+    /**
+     * Constructor.
+     *
+     * @param partitions Number of partitions
+     * @param segmentsize Number of objects per scan segment
+     */
+    public Factory(int partitions, int segmentsize) {
+      super();
+      this.partitions = partitions;
+      this.segmentsize = segmentsize;
+    }
+
+    @Override
+    public PackedVAFile<V> instantiate(Relation<V> relation) {
+      return new PackedVAFile<>(relation, partitions, segmentsize);
+    }
+
+    @Override
+    public TypeInformation getInputTypeRestriction() {
+      return TypeUtil.NUMBER_VECTOR_FIELD;
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    public static class Parameterizer extends AbstractParameterizer {
+      /**
+       * Number of objects per scan segment.
+       */
+      public static final OptionID SEGMENT_ID = new OptionID("packedvafile.segmentsize", "Number of objects per scan segment. Segments are scanned in parallel.");
+
+      /**
+       * Number of partitions.
+       */
+      int partitions;
+
+      /**
+       * Number of objects per scan segment.
+       */
+      int segmentsize;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        IntParameter partitionsP = new IntParameter(VAFile.Factory.PARTITIONS_ID, 256) //
+            .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT) //
+            .addConstraint(new LessEqualConstraint(256));
+        if(config.grab(partitionsP)) {
+          partitions = partitionsP.intValue();
+        }
+        IntParameter segmentP = new IntParameter(SEGMENT_ID, 16384) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(segmentP)) {
+          segmentsize = segmentP.intValue();
+        }
+      }
+
+      @Override
+      protected Factory<?> makeInstance() {
+        return new Factory<>(partitions, segmentsize);
+      }
+    }
+  }
+}
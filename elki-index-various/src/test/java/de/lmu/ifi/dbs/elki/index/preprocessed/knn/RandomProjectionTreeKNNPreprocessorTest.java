@@ -0,0 +1,113 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.preprocessed.knn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+
+/**
+ * Unit test for the random projection trees kNN preprocessor.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class RandomProjectionTreeKNNPreprocessorTest {
+  // the following values depend on the data set used!
+  static String dataset = "elki/testdata/unittests/3clusters-and-noise-2d.csv";
+
+  // number of kNN to query
+  int k = 10;
+
+  // size of the data set
+  int shoulds = 330;
+
+  @Test
+  public void testPreprocessor() {
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase(dataset, shoulds);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> distanceQuery = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    LinearScanDistanceKNNQuery<DoubleVector> linq = new LinearScanDistanceKNNQuery<>(distanceQuery);
+
+    RandomProjectionTreeKNNPreprocessor<DoubleVector> preproc = new ELKIBuilder<RandomProjectionTreeKNNPreprocessor.Factory<DoubleVector>>(RandomProjectionTreeKNNPreprocessor.Factory.class) //
+        .with(RandomProjectionTreeKNNPreprocessor.Factory.K_ID, k) //
+        .with(RandomProjectionTreeKNNPreprocessor.Factory.Parameterizer.SEED_ID, 0) //
+        .build().instantiate(rel);
+    db.getHierarchy().add(rel, preproc);
+    preproc.initialize();
+
+    // Approximate queries only, and only up to k.
+    assertNull("Exact query not declined.", preproc.getKNNQuery(distanceQuery, k, DatabaseQuery.HINT_EXACT));
+    assertNull("Larger k not declined.", preproc.getKNNQuery(distanceQuery, k + 1));
+    KNNQuery<DoubleVector> preq = db.getKNNQuery(distanceQuery, k);
+    assertTrue("Preprocessor not used.", !(preq instanceof LinearScanDistanceKNNQuery));
+
+    int found = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      KNNList exact = linq.getKNNForDBID(it, k), approx = preq.getKNNForDBID(it, k);
+      assertEquals("Wrong number of neighbors.", k, approx.size());
+      double prev = 0.;
+      for(DoubleDBIDListIter ai = approx.iter(); ai.valid(); ai.advance()) {
+        assertEquals("Distances not refined.", distanceQuery.distance(it, ai), ai.doubleValue(), 0.);
+        assertTrue("Not sorted.", ai.doubleValue() >= prev);
+        prev = ai.doubleValue();
+        for(DoubleDBIDListIter ei = exact.iter(); ei.valid(); ei.advance()) {
+          if(DBIDUtil.equal(ai, ei)) {
+            ++found;
+            break;
+          }
+        }
+      }
+      // Partial queries use a prefix of the materialized list.
+      KNNList partial = preq.getKNNForDBID(it, k / 2);
+      assertEquals("Partial query differs.", approx.iter().seek(k / 2 - 1).doubleValue(), partial.iter().seek(partial.size() - 1).doubleValue(), 0.);
+    }
+    double recall = found / (double) (k * shoulds);
+    assertTrue("Recall too low: " + recall, recall > 0.95);
+  }
+
+  @Test(expected = AbortException.class)
+  public void testLeafSizeTooSmall() {
+    new ELKIBuilder<RandomProjectionTreeKNNPreprocessor.Factory<DoubleVector>>(RandomProjectionTreeKNNPreprocessor.Factory.class) //
+        .with(RandomProjectionTreeKNNPreprocessor.Factory.K_ID, k) //
+        .with(RandomProjectionTreeKNNPreprocessor.Factory.Parameterizer.LEAFSIZE_ID, k - 1) //
+        .build();
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.vafile;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractIndexStructureTest;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the packed VA-file index.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class PackedVAFileTest extends AbstractIndexStructureTest {
+  /**
+   * Test {@link PackedVAFile} with a single scan segment.
+   */
+  @Test
+  public void testPackedVAFile() {
+    PackedVAFile.Factory<?> factory = new ELKIBuilder<>(PackedVAFile.Factory.class) //
+        .with(VAFile.Factory.PARTITIONS_ID, 16).build();
+    testExactEuclidean(factory, PackedVAFile.PackedVAFileKNNQuery.class, PackedVAFile.PackedVAFileRangeQuery.class);
+    testSinglePoint(factory, PackedVAFile.PackedVAFileKNNQuery.class, PackedVAFile.PackedVAFileRangeQuery.class);
+  }
+
+  /**
+   * Test {@link PackedVAFile} with many (parallel) scan segments.
+   */
+  @Test
+  public void testSegmented() {
+    PackedVAFile.Factory<?> factory = new ELKIBuilder<>(PackedVAFile.Factory.class) //
+        .with(VAFile.Factory.PARTITIONS_ID, 4) //
+        .with(PackedVAFile.Factory.Parameterizer.SEGMENT_ID, 50).build();
+    testExactEuclidean(factory, PackedVAFile.PackedVAFileKNNQuery.class, PackedVAFile.PackedVAFileRangeQuery.class);
+    testSinglePoint(factory, PackedVAFile.PackedVAFileKNNQuery.class, PackedVAFile.PackedVAFileRangeQuery.class);
+  }
+
+  /**
+   * Test {@link PackedVAFile} on an empty relation.
+   */
+  @Test
+  public void testEmpty() {
+    Relation<DoubleVector> rel = new MaterializedRelation<>(new VectorFieldTypeInformation<>(DoubleVector.FACTORY, 2), DBIDUtil.EMPTYDBIDS);
+    PackedVAFile<DoubleVector> index = new PackedVAFile<>(rel, 4, 50);
+    index.initialize();
+    DistanceQuery<DoubleVector> dq = EuclideanDistanceFunction.STATIC.instantiate(rel);
+    DoubleVector query = DoubleVector.wrap(new double[] { 1, 0 });
+    assertEquals("Wrong number of knn results", 0, index.getKNNQuery(dq).getKNNForObject(query, 1).size());
+    assertEquals("Wrong number of range results", 0, index.getRangeQuery(dq).getRangeForObject(query, 1.).size());
+  }
+}
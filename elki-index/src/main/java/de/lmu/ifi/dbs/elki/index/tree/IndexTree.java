@@ -20,6 +20,9 @@
  */
 package de.lmu.ifi.dbs.elki.index.tree;
 
+import java.util.ArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
 import de.lmu.ifi.dbs.elki.index.Index;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
@@ -28,6 +31,16 @@ import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 
 /**
  * Abstract super class for all tree based index classes.
+ * <p>
+ * Thread safety: trees are <em>not</em> safe for concurrent modification.
+ * After the tree has been built, {@link #makeReadOnly()} can be used to take
+ * an immutable snapshot of all nodes. In this mode, node lookups go to a plain
+ * array indexed by page id instead of the (possibly synchronized or caching)
+ * page file, and queries may be run concurrently from multiple threads. Any
+ * modification of the tree ({@link #writeNode}, {@link #deleteNode}) discards
+ * the snapshot again; concurrent queries are then no longer safe. The
+ * read-only mode is never enabled automatically, as node reads from the
+ * snapshot are not page accesses of the page file.
  *
  * @author Elke Achtert
  * @since 0.1
@@ -78,6 +91,17 @@ public abstract class IndexTree<N extends Node<E>, E extends Entry> implements I
    */
   private E rootEntry;
 
+  /**
+   * Immutable snapshot of the tree nodes, indexed by page id. {@code null}
+   * unless the tree is in read-only mode.
+   */
+  private volatile Object[] snapshot = null;
+
+  /**
+   * Number of node reads served from the snapshot.
+   */
+  private final LongAdder snapshotReads = new LongAdder();
+
   /**
    * Constructor.
    *
@@ -131,7 +155,8 @@ public abstract class IndexTree<N extends Node<E>, E extends Entry> implements I
    * @return the root node of this index
    */
   public N getRoot() {
-    return file.readPage(getPageID(rootEntry));
+    final N root = readSnapshot(getPageID(rootEntry));
+    return root != null ? root : file.readPage(getPageID(rootEntry));
   }
 
   /**
@@ -164,6 +189,10 @@ public abstract class IndexTree<N extends Node<E>, E extends Entry> implements I
    * @return the node with the specified id
    */
   public N getNode(int nodeID) {
+    final N node = readSnapshot(nodeID);
+    if(node != null) {
+      return node;
+    }
     if(nodeID == getPageID(rootEntry)) {
       return getRoot();
     }
@@ -172,6 +201,25 @@ public abstract class IndexTree<N extends Node<E>, E extends Entry> implements I
     }
   }
 
+  /**
+   * Read a node from the read-only snapshot.
+   *
+   * @param nodeID Page id
+   * @return Node, or {@code null} if not in read-only mode
+   */
+  @SuppressWarnings("unchecked")
+  private N readSnapshot(int nodeID) {
+    final Object[] snap = snapshot;
+    if(snap != null && nodeID >= 0 && nodeID < snap.length) {
+      final Object node = snap[nodeID];
+      if(node != null) {
+        snapshotReads.increment();
+        return (N) node;
+      }
+    }
+    return null;
+  }
+
   /**
    * Returns the node that is represented by the specified entry.
    *
@@ -188,6 +236,7 @@ public abstract class IndexTree<N extends Node<E>, E extends Entry> implements I
    * @param node Node to write
    */
   protected void writeNode(N node) {
+    snapshot = null;
     file.writePage(node);
   }
 
@@ -197,9 +246,61 @@ public abstract class IndexTree<N extends Node<E>, E extends Entry> implements I
    * @param node Node to delete
    */
   protected void deleteNode(N node) {
+    snapshot = null;
     file.deletePage(node.getPageID());
   }
 
+  /**
+   * Switch the tree into read-only mode, by taking an immutable snapshot of
+   * all nodes reachable from the root.
+   * <p>
+   * Afterwards, {@link #getNode} and {@link #getRoot} are lock-free array
+   * lookups, and the tree can be queried concurrently. These reads are not
+   * counted as page accesses by the page file, but reported separately by
+   * {@link #logStatistics}. Other statistics counters are not synchronized,
+   * and may undercount in this case.
+   * <p>
+   * Note: for persistent page files, this loads the entire tree into main
+   * memory.
+   */
+  public void makeReadOnly() {
+    ArrayList<N> nodes = new ArrayList<>();
+    int maxid = -1;
+    nodes.add(getRoot());
+    for(int i = 0; i < nodes.size(); i++) {
+      final N node = nodes.get(i);
+      maxid = Math.max(maxid, node.getPageID());
+      if(node.isLeaf()) {
+        continue;
+      }
+      for(int j = 0, e = node.getNumEntries(); j < e; j++) {
+        nodes.add(getNode(node.getEntry(j)));
+      }
+    }
+    Object[] snap = new Object[maxid + 1];
+    for(N node : nodes) {
+      snap[node.getPageID()] = node;
+    }
+    snapshot = snap;
+  }
+
+  /**
+   * Test whether the tree is in read-only mode, i.e. whether concurrent queries
+   * are safe.
+   *
+   * @return {@code true} if an immutable node snapshot is in use.
+   */
+  public boolean isReadOnly() {
+    return snapshot != null;
+  }
+
+  /**
+   * Leave the read-only mode, and discard the node snapshot.
+   */
+  public void releaseReadOnly() {
+    snapshot = null;
+  }
+
   /**
    * Creates a header for this index structure which is an instance of
    * {@link TreeIndexHeader}. Subclasses may need to overwrite this method if
@@ -324,6 +425,10 @@ public abstract class IndexTree<N extends Node<E>, E extends Entry> implements I
   @Override
   public void logStatistics() {
     file.logStatistics();
+    final Logging log = getLogger();
+    if(log.isStatistics() && snapshotReads.sum() > 0) {
+      log.statistics(new LongStatistic(this.getClass().getName() + ".snapshot.reads", snapshotReads.sum()));
+    }
   }
 
   /**
@@ -23,16 +23,22 @@ package de.lmu.ifi.dbs.elki.datasource.filter.transform;
 import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.plusTimesEquals;
 import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.times;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
 import de.lmu.ifi.dbs.elki.datasource.filter.AbstractVectorConversionFilter;
 import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.Centroid;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.CovarianceMatrix;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.EigenPair;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCAResult;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCARunner;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.RandomizedPCARunner;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.StreamingPCARunner;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.filter.EigenPairFilter;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.Priority;
@@ -52,15 +58,13 @@ import net.jafama.FastMath;
  * data to have a unit covariance matrix.
  * <p>
  * If you want to also reduce dimensionality, set the {@code -pca.filter}
- * parameter! Note that this implementation currently will always perform a full
- * matrix inversion. For very high dimensional data, this can take an excessive
- * amount of time O(d³) and memory O(d²). Please contribute a better
- * implementation to ELKI that only computes the requiried dimensions, yet
- * allows for the same filtering flexibility.
- * <p>
- * TODO: design an API (and implementation) that allows plugging in efficient
- * solvers that do not need to decompose the entire matrix. This may, however,
- * require external dependencies such as jBlas.
+ * parameter! By default, this implementation will perform a full eigenvalue
+ * decomposition of the covariance matrix. For very high dimensional data, this
+ * can take an excessive amount of time O(d³) and memory O(d²). Then choose a
+ * PCA variant such as {@link RandomizedPCARunner} or
+ * {@link StreamingPCARunner}, which only compute the leading components. The
+ * filter is then applied to these components only. The streaming variant is
+ * updated while the data is loaded, other variants need to buffer the data.
  * 
  * @author Erich Schubert
  * @since 0.5.0
@@ -94,11 +98,31 @@ public class GlobalPrincipalComponentAnalysisTransform<O extends NumberVector> e
    */
   EigenPairFilter filter = null;
 
+  /**
+   * PCA variant to use, {@code null} for the full decomposition.
+   */
+  PCARunner pca = null;
+
   /**
    * Covariance matrix builder.
    */
   CovarianceMatrix covmat = null;
 
+  /**
+   * Incremental estimator, when the streaming PCA variant is used.
+   */
+  StreamingPCARunner.Estimator estimator = null;
+
+  /**
+   * Centroid, when another PCA variant is used.
+   */
+  Centroid centroid = null;
+
+  /**
+   * Data buffer, when another PCA variant is used.
+   */
+  List<O> data = null;
+
   /**
    * Final projection after analysis run.
    */
@@ -135,9 +159,21 @@ public class GlobalPrincipalComponentAnalysisTransform<O extends NumberVector> e
    * @param mode Mode
    */
   public GlobalPrincipalComponentAnalysisTransform(EigenPairFilter filter, Mode mode) {
+    this(filter, mode, null);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param filter Filter to use for dimensionality reduction.
+   * @param mode Mode
+   * @param pca PCA variant to use, {@code null} for the full decomposition
+   */
+  public GlobalPrincipalComponentAnalysisTransform(EigenPairFilter filter, Mode mode, PCARunner pca) {
     super();
     this.filter = filter;
     this.mode = mode;
+    this.pca = pca;
   }
 
   @Override
@@ -146,7 +182,16 @@ public class GlobalPrincipalComponentAnalysisTransform<O extends NumberVector> e
       throw new AbortException("PCA can only applied to fixed dimensionality vectors");
     }
     int dim = ((VectorFieldTypeInformation<?>) in).getDimensionality();
-    covmat = new CovarianceMatrix(dim);
+    if(pca == null) {
+      covmat = new CovarianceMatrix(dim);
+    }
+    else if(pca instanceof StreamingPCARunner) {
+      estimator = ((StreamingPCARunner) pca).newEstimator(dim);
+    }
+    else {
+      centroid = new Centroid(dim);
+      data = new ArrayList<>();
+    }
     proj = null;
     mean = null;
     return true;
@@ -154,17 +199,41 @@ public class GlobalPrincipalComponentAnalysisTransform<O extends NumberVector> e
 
   @Override
   protected void prepareProcessInstance(O obj) {
-    covmat.put(obj);
+    if(covmat != null) {
+      covmat.put(obj);
+    }
+    else if(estimator != null) {
+      estimator.put(obj);
+    }
+    else {
+      centroid.put(obj);
+      data.add(obj);
+    }
   }
 
   @Override
   protected void prepareComplete() {
-    mean = covmat.getMeanVector();
-    PCAResult pcares = (new PCARunner(null)).processCovarMatrix(covmat.destroyToPopulationMatrix());
-    covmat = null;
+    PCAResult pcares;
+    if(covmat != null) {
+      mean = covmat.getMeanVector();
+      pcares = (new PCARunner(null)).processCovarMatrix(covmat.destroyToPopulationMatrix());
+      covmat = null;
+    }
+    else if(estimator != null) {
+      mean = estimator.getMean();
+      pcares = estimator.getResult();
+      estimator = null;
+    }
+    else {
+      mean = centroid.getArrayRef();
+      pcares = pca.processVectors(data);
+      centroid = null;
+      data = null;
+    }
 
     final int dim = mean.length;
-    final int pdim = filter != null ? filter.filter(pcares.getEigenvalues()) : dim;
+    final double[] eigenvalues = pcares.getEigenvalues();
+    final int pdim = filter != null ? filter.filter(eigenvalues) : eigenvalues.length;
     if(filter != null && LOG.isVerbose()) {
       LOG.verbose("Reducing dimensionality from " + dim + " to " + pdim + " via PCA.");
     }
@@ -220,6 +289,11 @@ public class GlobalPrincipalComponentAnalysisTransform<O extends NumberVector> e
      */
     public static final OptionID MODE_ID = new OptionID("globalpca.mode", "Operation mode: full, or rotate only.");
 
+    /**
+     * PCA variant to use.
+     */
+    public static final OptionID PCA_ID = new OptionID("globalpca.variant", "PCA variant to use. By default, a full eigenvalue decomposition of the covariance matrix is performed.");
+
     /**
      * Filter to use for dimensionality reduction.
      */
@@ -230,6 +304,11 @@ public class GlobalPrincipalComponentAnalysisTransform<O extends NumberVector> e
      */
     Mode mode;
 
+    /**
+     * PCA variant to use.
+     */
+    PCARunner pca = null;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -241,11 +320,15 @@ public class GlobalPrincipalComponentAnalysisTransform<O extends NumberVector> e
       if(config.grab(modeP)) {
         mode = modeP.getValue();
       }
+      ObjectParameter<PCARunner> pcaP = new ObjectParameter<>(PCA_ID, PCARunner.class, true);
+      if(config.grab(pcaP)) {
+        pca = pcaP.instantiateClass(config);
+      }
     }
 
     @Override
     protected GlobalPrincipalComponentAnalysisTransform<O> makeInstance() {
-      return new GlobalPrincipalComponentAnalysisTransform<>(filter, mode);
+      return new GlobalPrincipalComponentAnalysisTransform<>(filter, mode, pca);
     }
   }
 }
@@ -32,6 +32,8 @@ import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
 import de.lmu.ifi.dbs.elki.math.MeanVariance;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.CovarianceMatrix;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.VMath;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.RandomizedPCARunner;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.StreamingPCARunner;
 import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
 
 /**
@@ -101,4 +103,49 @@ public class GlobalPrincipalComponentAnalysisTransformTest extends AbstractDataS
       assertEquals("Mean not as expected", 0., mvs[col], 1e-13);
     }
   }
+
+  @Test
+  public void randomized() {
+    String filename = UNITTEST + "transformation-test-1.csv";
+    GlobalPrincipalComponentAnalysisTransform<DoubleVector> filter = new ELKIBuilder<GlobalPrincipalComponentAnalysisTransform<DoubleVector>>(GlobalPrincipalComponentAnalysisTransform.class) //
+        .with(GlobalPrincipalComponentAnalysisTransform.Parameterizer.PCA_ID, RandomizedPCARunner.class) //
+        .with(RandomizedPCARunner.Parameterizer.K_ID, 2) //
+        .with(RandomizedPCARunner.Parameterizer.SEED_ID, 0L).build();
+    MultipleObjectsBundle bundle = readBundle(filename, filter);
+    int dim = getFieldDimensionality(bundle, 0, TypeUtil.NUMBER_VECTOR_FIELD);
+    assertEquals("Dimensionality changed", 2, dim);
+
+    // With all components, the result must be whitened as before.
+    CovarianceMatrix cm = new CovarianceMatrix(dim);
+    for(int row = 0; row < bundle.dataLength(); row++) {
+      cm.put(get(bundle, row, 0, DoubleVector.class));
+    }
+    double[] mean = cm.getMeanVector();
+    double[][] ncm = cm.destroyToPopulationMatrix();
+    for(int col = 0; col < dim; col++) {
+      for(int row = 0; row < dim; row++) {
+        assertEquals("Unexpected covariance", col == row ? 1. : 0., ncm[row][col], 1e-10);
+      }
+      assertEquals("Mean not as expected", 0., mean[col], 1e-13);
+    }
+  }
+
+  @Test
+  public void streamingReduce() {
+    String filename = UNITTEST + "transformation-test-1.csv";
+    GlobalPrincipalComponentAnalysisTransform<DoubleVector> filter = new ELKIBuilder<GlobalPrincipalComponentAnalysisTransform<DoubleVector>>(GlobalPrincipalComponentAnalysisTransform.class) //
+        .with(GlobalPrincipalComponentAnalysisTransform.Parameterizer.MODE_ID, GlobalPrincipalComponentAnalysisTransform.Mode.CENTER_ROTATE) //
+        .with(GlobalPrincipalComponentAnalysisTransform.Parameterizer.PCA_ID, StreamingPCARunner.class) //
+        .with(StreamingPCARunner.Parameterizer.K_ID, 1).build();
+    MultipleObjectsBundle bundle = readBundle(filename, filter);
+    int dim = getFieldDimensionality(bundle, 0, TypeUtil.NUMBER_VECTOR_FIELD);
+    assertEquals("Dimensionality not reduced", 1, dim);
+
+    MeanVariance mv = new MeanVariance();
+    for(int row = 0; row < bundle.dataLength(); row++) {
+      mv.put(get(bundle, row, 0, DoubleVector.class).doubleValue(0));
+    }
+    assertEquals("Mean not as expected", 0., mv.getMean(), 1e-13);
+    assertTrue("Unexpected variance", mv.getNaiveVariance() > 10);
+  }
 }
@@ -0,0 +1,414 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.itemsetmining;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.FPGrowth.FPTree.Collector;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+
+/**
+ * Memory-lean FP-tree, stored in primitive arrays.
+ * <p>
+ * Every node uses four integers after construction: item, count, parent and
+ * the next node with the same item (the header chain). Two more integers per
+ * node, for the first child and the next sibling, are only needed while
+ * inserting and are released by {@link #reduceMemory()}. Children of the root
+ * are found via a direct index, deeper children by scanning the siblings.
+ * <p>
+ * When mining, the conditional pattern bases whose tree would exceed the memory
+ * budget are written to temporary files instead of being mined immediately.
+ * They are returned as {@link Spill}s, so that the caller can release this
+ * tree before loading and mining them one at a time.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ArrayFPTree {
+  /**
+   * Bytes per node while mining (four integers).
+   */
+  public static final int NODE_BYTES = 16;
+
+  /**
+   * Node data: item, count, parent, next node with the same item.
+   */
+  private int[] item, count, parent, next;
+
+  /**
+   * Construction only: first child and next sibling.
+   */
+  private int[] child, sibling;
+
+  /**
+   * Header table (first node of every item) and root children index.
+   */
+  private int[] head, rootchild;
+
+  /**
+   * Number of nodes, including the root.
+   */
+  private int size = 1;
+
+  /**
+   * Constructor.
+   *
+   * @param items Number of items
+   * @param capacity Initial node capacity
+   */
+  public ArrayFPTree(int items, int capacity) {
+    capacity = Math.max(capacity, 16);
+    item = new int[capacity];
+    count = new int[capacity];
+    parent = new int[capacity];
+    next = new int[capacity];
+    child = new int[capacity];
+    sibling = new int[capacity];
+    head = new int[items];
+    rootchild = new int[items];
+    item[0] = -1;
+    parent[0] = -1;
+  }
+
+  /**
+   * Insert a transaction.
+   *
+   * @param buf Item ranks, ascending
+   * @param start First position
+   * @param end End position (exclusive)
+   * @param weight Weight
+   */
+  public void insert(int[] buf, int start, int end, int weight) {
+    count[0] += weight;
+    int node = 0;
+    for(int i = start; i < end; i++) {
+      final int it = buf[i];
+      int c = node == 0 ? rootchild[it] : child[node];
+      while(c > 0 && item[c] != it) {
+        c = sibling[c];
+      }
+      if(c <= 0) {
+        c = newNode(node, it);
+      }
+      count[c] += weight;
+      node = c;
+    }
+  }
+
+  /**
+   * Create a new node.
+   *
+   * @param p Parent node
+   * @param it Item
+   * @return Node number
+   */
+  private int newNode(int p, int it) {
+    if(size == item.length) {
+      final int newsize = item.length + (item.length >>> 1);
+      item = Arrays.copyOf(item, newsize);
+      count = Arrays.copyOf(count, newsize);
+      parent = Arrays.copyOf(parent, newsize);
+      next = Arrays.copyOf(next, newsize);
+      child = Arrays.copyOf(child, newsize);
+      sibling = Arrays.copyOf(sibling, newsize);
+    }
+    final int n = size++;
+    item[n] = it;
+    parent[n] = p;
+    next[n] = head[it];
+    head[it] = n;
+    if(p == 0) {
+      rootchild[it] = n;
+    }
+    else {
+      sibling[n] = child[p];
+      child[p] = n;
+    }
+    return n;
+  }
+
+  /**
+   * Release the memory only needed for construction, and trim the arrays.
+   */
+  public void reduceMemory() {
+    child = sibling = rootchild = null;
+    item = Arrays.copyOf(item, size);
+    count = Arrays.copyOf(count, size);
+    parent = Arrays.copyOf(parent, size);
+    next = Arrays.copyOf(next, size);
+  }
+
+  /**
+   * Number of nodes, including the root.
+   *
+   * @return Number of nodes
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Total weight of the transactions inserted.
+   *
+   * @return Weight
+   */
+  public int getTotal() {
+    return count[0];
+  }
+
+  /**
+   * Mine the frequent itemsets, spilling large conditional pattern bases.
+   *
+   * @param minsupp Minimum support
+   * @param minlength Minimum length
+   * @param maxlength Maximum length
+   * @param postfix Itemset postfix (item ranks), with room for all items
+   * @param plen Postfix length
+   * @param budget Memory budget for conditional trees, in bytes
+   * @param col Output collector
+   * @return Spilled conditional pattern bases, to be mined by the caller
+   */
+  public List<Spill> extract(int minsupp, int minlength, int maxlength, int[] postfix, int plen, long budget, Collector col) {
+    List<Spill> spills = new ArrayList<>();
+    int[] cnt = new int[head.length];
+    for(int j = head.length - 1; j >= 0; j--) {
+      extract(j, minsupp, minlength, maxlength, postfix, plen, budget, col, cnt, spills);
+    }
+    return spills;
+  }
+
+  /**
+   * Mine the itemsets ending with a particular item.
+   *
+   * @param j Item
+   * @param minsupp Minimum support
+   * @param minlength Minimum length
+   * @param maxlength Maximum length
+   * @param postfix Itemset postfix
+   * @param plen Postfix length
+   * @param budget Memory budget in bytes
+   * @param col Output collector
+   * @param cnt Scratch buffer for counting
+   * @param spills Output list of spilled conditional pattern bases
+   */
+  private void extract(int j, int minsupp, int minlength, int maxlength, int[] postfix, int plen, long budget, Collector col, int[] cnt, List<Spill> spills) {
+    int support = 0;
+    for(int n = head[j]; n > 0; n = next[n]) {
+      support += count[n];
+    }
+    if(support < minsupp) {
+      return;
+    }
+    postfix[plen] = j;
+    final int len = plen + 1;
+    if(len >= minlength && len <= maxlength) {
+      col.collect(support, postfix, 0, len);
+    }
+    if(len >= maxlength || j == 0) {
+      return;
+    }
+    // Count the items in the conditional pattern base:
+    Arrays.fill(cnt, 0, j, 0);
+    long pathnodes = 0;
+    for(int n = head[j]; n > 0; n = next[n]) {
+      for(int p = parent[n]; p > 0; p = parent[p]) {
+        cnt[item[p]] += count[n];
+        ++pathnodes;
+      }
+    }
+    int numfreq = 0;
+    for(int i = 0; i < j; i++) {
+      numfreq += cnt[i] >= minsupp ? 1 : 0;
+    }
+    if(numfreq == 0 || len + numfreq < minlength) {
+      return;
+    }
+    if(pathnodes * NODE_BYTES > budget) {
+      spills.add(spill(j, minsupp, cnt, Arrays.copyOf(postfix, len)));
+      return;
+    }
+    ArrayFPTree proj = new ArrayFPTree(j, (int) Math.min(pathnodes + 1, Integer.MAX_VALUE));
+    int[] buf = new int[j];
+    for(int n = head[j]; n > 0; n = next[n]) {
+      int l = path(n, minsupp, cnt, buf);
+      if(l > 0) {
+        proj.insert(buf, buf.length - l, buf.length, count[n]);
+      }
+    }
+    proj.reduceMemory();
+    int[] pcnt = new int[j];
+    // Deeper conditional trees are held in memory together with this one.
+    final long remaining = budget - pathnodes * NODE_BYTES;
+    for(int i = j - 1; i >= 0; i--) {
+      proj.extract(i, minsupp, minlength, maxlength, postfix, len, remaining, col, pcnt, spills);
+    }
+  }
+
+  /**
+   * Copy the frequent items of the path above a node into the end of a buffer.
+   *
+   * @param n Node
+   * @param minsupp Minimum support
+   * @param cnt Item counts in the conditional pattern base
+   * @param buf Output buffer, filled from the end
+   * @return Number of items
+   */
+  private int path(int n, int minsupp, int[] cnt, int[] buf) {
+    int k = buf.length;
+    for(int p = parent[n]; p > 0; p = parent[p]) {
+      if(cnt[item[p]] >= minsupp) {
+        buf[--k] = item[p];
+      }
+    }
+    return buf.length - k;
+  }
+
+  /**
+   * Write a conditional pattern base to a temporary file.
+   *
+   * @param j Item
+   * @param minsupp Minimum support
+   * @param cnt Item counts in the conditional pattern base
+   * @param postfix Itemset postfix, including j
+   * @return Spill
+   */
+  private Spill spill(int j, int minsupp, int[] cnt, int[] postfix) {
+    try {
+      File file = File.createTempFile("elki-fptree-", ".bin");
+      file.deleteOnExit();
+      int[] buf = new int[j];
+      long paths = 0;
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+        for(int n = head[j]; n > 0; n = next[n]) {
+          int l = path(n, minsupp, cnt, buf);
+          if(l > 0) {
+            out.writeInt(count[n]);
+            out.writeInt(l);
+            for(int i = buf.length - l; i < buf.length; i++) {
+              out.writeInt(buf[i]);
+            }
+            paths += l;
+          }
+        }
+      }
+      return new Spill(file, j, postfix, paths);
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not spill conditional FP-tree to disk.", e);
+    }
+  }
+
+  /**
+   * Conditional pattern base spilled to disk.
+   *
+   * @author Erich Schubert
+   */
+  public static class Spill {
+    /**
+     * Temporary file.
+     */
+    private final File file;
+
+    /**
+     * Number of items in the conditional tree.
+     */
+    private final int items;
+
+    /**
+     * Itemset postfix of the conditional tree.
+     */
+    private final int[] postfix;
+
+    /**
+     * Number of path entries written (capacity hint).
+     */
+    private final long entries;
+
+    /**
+     * Constructor.
+     *
+     * @param file Temporary file
+     * @param items Number of items
+     * @param postfix Itemset postfix
+     * @param entries Number of path entries
+     */
+    protected Spill(File file, int items, int[] postfix, long entries) {
+      this.file = file;
+      this.items = items;
+      this.postfix = postfix;
+      this.entries = entries;
+    }
+
+    /**
+     * Get the itemset postfix of the conditional tree.
+     *
+     * @return Postfix
+     */
+    public int[] getPostfix() {
+      return postfix;
+    }
+
+    /**
+     * Load the conditional tree, and delete the temporary file.
+     *
+     * @return Conditional FP-tree
+     */
+    public ArrayFPTree load() {
+      ArrayFPTree tree = new ArrayFPTree(items, (int) Math.min(entries + 1, Integer.MAX_VALUE));
+      int[] buf = new int[items];
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+        while(true) {
+          final int weight;
+          try {
+            weight = in.readInt();
+          }
+          catch(EOFException e) {
+            break;
+          }
+          final int l = in.readInt();
+          for(int i = 0; i < l; i++) {
+            buf[i] = in.readInt();
+          }
+          tree.insert(buf, 0, l, weight);
+        }
+      }
+      catch(IOException e) {
+        throw new AbortException("Could not read spilled conditional FP-tree.", e);
+      }
+      finally {
+        file.delete();
+      }
+      tree.reduceMemory();
+      return tree;
+    }
+  }
+}
@@ -155,25 +155,7 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
     final IndefiniteProgress itemp = LOG.isVerbose() ? new IndefiniteProgress("Frequent itemsets", LOG) : null;
     final List<Itemset> solution = new ArrayList<>();
     // Start extraction with the least frequent items
-    tree.extract(minsupp, minlength, maxlength, true, new FPTree.Collector() {
-      @Override
-      public void collect(int support, int[] data, int start, int plen) {
-        // Always translate the indexes back to the original values via 'idx'!
-        if(plen - start == 1) {
-          solution.add(new OneItemset(idx[data[start]], support));
-          LOG.incrementProcessed(itemp);
-          return;
-        }
-        // Copy from buffer to a permanent storage
-        int[] indices = new int[plen - start];
-        for(int i = start, j = 0; i < plen; i++) {
-          indices[j++] = idx[data[i]]; // Translate to original items
-        }
-        Arrays.sort(indices);
-        solution.add(new SparseItemset(indices, support));
-        LOG.incrementProcessed(itemp);
-      }
-    });
+    extractItemsets(tree, minsupp, idx, solution, itemp);
     LOG.setCompleted(itemp);
     Collections.sort(solution);
     LOG.statistics(etime.end());
@@ -182,6 +164,19 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
     return new FrequentItemsetsResult("FP-Growth", "fp-growth", solution, meta, relation.size());
   }
 
+  /**
+   * Extract the frequent itemsets from the FP-tree.
+   *
+   * @param tree FP-tree
+   * @param minsupp Minimum support
+   * @param idx Index to translate item ranks back to dimensions
+   * @param solution Output list
+   * @param itemp Progress, may be {@code null}
+   */
+  protected void extractItemsets(FPTree tree, int minsupp, int[] idx, List<Itemset> solution, IndefiniteProgress itemp) {
+    tree.extract(minsupp, minlength, maxlength, true, new ItemsetCollector(idx, solution, itemp));
+  }
+
   /**
    * Count the support of each 1-item.
    *
@@ -269,6 +264,61 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
     return idx;
   }
 
+  /**
+   * Collector translating item ranks back to itemsets.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  protected static class ItemsetCollector implements FPTree.Collector {
+    /**
+     * Index to translate item ranks back to dimensions.
+     */
+    private final int[] idx;
+
+    /**
+     * Output list.
+     */
+    private final List<Itemset> solution;
+
+    /**
+     * Progress, may be {@code null}.
+     */
+    private final IndefiniteProgress itemp;
+
+    /**
+     * Constructor.
+     *
+     * @param idx Index to translate item ranks back to dimensions
+     * @param solution Output list
+     * @param itemp Progress, may be {@code null}
+     */
+    public ItemsetCollector(int[] idx, List<Itemset> solution, IndefiniteProgress itemp) {
+      this.idx = idx;
+      this.solution = solution;
+      this.itemp = itemp;
+    }
+
+    @Override
+    public void collect(int support, int[] data, int start, int plen) {
+      // Always translate the indexes back to the original values via 'idx'!
+      if(plen - start == 1) {
+        solution.add(new OneItemset(idx[data[start]], support));
+        LOG.incrementProcessed(itemp);
+        return;
+      }
+      // Copy from buffer to a permanent storage
+      int[] indices = new int[plen - start];
+      for(int i = start, j = 0; i < plen; i++) {
+        indices[j++] = idx[data[i]]; // Translate to original items
+      }
+      Arrays.sort(indices);
+      solution.add(new SparseItemset(indices, support));
+      LOG.incrementProcessed(itemp);
+    }
+  }
+
   /**
    * FP-Tree data structure
    *
@@ -361,7 +411,7 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
      * @param destruct Remove nodes
      * @param col Itemset collector
      */
-    private void extract(int minsupp, int minlength, int maxlength, int item, int[] postfix, int plen, int[] buf2, int[] buf3, boolean destruct, Collector col) {
+    public void extract(int minsupp, int minlength, int maxlength, int item, int[] postfix, int plen, int[] buf2, int[] buf3, boolean destruct, Collector col) {
       // Skip items that have disappeared from the tree
       if(header[item] == null) {
         return;
@@ -426,8 +476,9 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
       if(plen >= minlength && plen <= maxlength) {
         col.collect(support, postfix, 0, plen);
       }
+      // The projected tree is private, and can always be consumed.
       for(int j = last; j >= 0; j--) {
-        proj.extract(minsupp, minlength, maxlength, j, postfix, plen, buf2, buf3, destruct, col);
+        proj.extract(minsupp, minlength, maxlength, j, postfix, plen, buf2, buf3, true, col);
       }
       if(destruct) {
         header[item] = null;
@@ -479,7 +530,7 @@ public class FPGrowth extends AbstractFrequentItemsetAlgorithm {
      *
      * @apiviz.exclude
      */
-    interface Collector {
+    public interface Collector {
       /**
        * Collect a single frequent itemset
        *
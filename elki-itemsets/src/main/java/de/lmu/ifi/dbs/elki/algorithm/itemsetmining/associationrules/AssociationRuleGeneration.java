@@ -255,12 +255,8 @@ public class AssociationRuleGeneration extends AbstractAlgorithm<AssociationRule
           if(measure >= minmeasure && measure <= maxmeasure) {
             rules.add(new AssociationRule(itemset, consequent, antecedent, measure));
           }
-          else {
-            // TODO: other monotonic measures?
-            if(interestingness instanceof Confidence) {
-              prune = true;
-              // prune(antecedent, pruning, subsets);
-            }
+          else if(measure < minmeasure && interestingness.isMonotone()) {
+            prune = true;
           }
         }
         // TODO: recursion!
@@ -52,4 +52,10 @@ public class Confidence implements InterestingnessMeasure {
   public double measure(int t, int sX, int sY, int sXY) {
     return sXY / (double) sX;
   }
+
+  @Override
+  public boolean isMonotone() {
+    // Support of the antecedent can only increase when it shrinks.
+    return true;
+  }
 }
@@ -36,4 +36,17 @@ public interface InterestingnessMeasure {
    * @return value of the measure
    */
   double measure(int t, int sX, int sY, int sXY);
+
+  /**
+   * Whether the measure can only decrease when items are moved from the
+   * antecedent into the consequent of a rule (keeping the union fixed).
+   * <p>
+   * For such measures, rule generation can stop refining a rule as soon as it
+   * falls below the minimum threshold.
+   *
+   * @return {@code true} if the measure is monotone in the antecedent
+   */
+  default boolean isMonotone() {
+    return false;
+  }
 }
@@ -0,0 +1,427 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.itemsetmining.parallel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.AbstractFrequentItemsetAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.Itemset;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.associationrules.AssociationRule;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.associationrules.AssociationRuleGeneration;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.associationrules.interest.InterestingnessMeasure;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.result.AssociationRuleResult;
+import de.lmu.ifi.dbs.elki.result.FrequentItemsetsResult;
+import de.lmu.ifi.dbs.elki.result.textwriter.TextWriterStream;
+
+/**
+ * Parallel association rule generation from frequent itemsets.
+ * <p>
+ * The frequent itemsets are partitioned into blocks, and the rules of each
+ * block are generated by a worker thread. Antecedents and consequents are
+ * found with a hash index instead of a binary search. If the interestingness
+ * measure is monotone (see {@link InterestingnessMeasure#isMonotone()}), rules
+ * below the minimum threshold are not refined further.
+ * <p>
+ * The rules are not stored in the result, but generated when the result is
+ * written, in windows of blocks, and passed on to the writer in the same
+ * order as the sequential version produces them.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ParallelAssociationRuleGeneration extends AssociationRuleGeneration {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelAssociationRuleGeneration.class);
+
+  /**
+   * Number of itemsets per work block.
+   */
+  private static final int BLOCKSIZE = 64;
+
+  /**
+   * Number of blocks generated before the rules are passed on.
+   */
+  private static final int WINDOW = 256;
+
+  /**
+   * Constructor.
+   *
+   * @param frequentItemAlgo FrequentItemset mining Algorithm
+   * @param interestMeasure Interestingness measure
+   * @param minmeasure Minimum threshold for interestingness measure
+   * @param maxmeasure Maximum threshold for interestingness measure
+   */
+  public ParallelAssociationRuleGeneration(AbstractFrequentItemsetAlgorithm frequentItemAlgo, InterestingnessMeasure interestMeasure, double minmeasure, double maxmeasure) {
+    super(frequentItemAlgo, interestMeasure, minmeasure, maxmeasure);
+  }
+
+  @Override
+  public AssociationRuleResult run(Database database) {
+    return new StreamingRuleResult(frequentItemAlgo.run(database));
+  }
+
+  /**
+   * Generate the association rules, and pass them to a consumer.
+   *
+   * @param frequentResult Frequent itemsets
+   * @param out Rule consumer, only called from the calling thread
+   * @return Number of rules generated
+   */
+  public long generateRules(FrequentItemsetsResult frequentResult, Consumer<AssociationRule> out) {
+    final List<Itemset> itemsets = frequentResult.getItemsets() instanceof RandomAccess ? frequentResult.getItemsets() : new ArrayList<>(frequentResult.getItemsets());
+    if(itemsets.isEmpty()) {
+      LOG.warning("No frequent itemsets found.");
+      return 0;
+    }
+    // Itemsets are sorted by length; find the first of length 2.
+    final int end = itemsets.size();
+    int start = 0;
+    for(int e = end; start < e;) {
+      final int m = (start + e) >>> 1;
+      if(itemsets.get(m).length() < 2) {
+        start = m + 1;
+      }
+      else {
+        e = m;
+      }
+    }
+    final ItemsetHashIndex index = new ItemsetHashIndex(itemsets);
+    final int maxlen = itemsets.get(end - 1).length();
+    final int blocks = (end - start + BLOCKSIZE - 1) / BLOCKSIZE;
+    final int first = start;
+    long count = 0;
+    for(int wb = 0; wb < blocks; wb += WINDOW) {
+      final int woff = wb;
+      @SuppressWarnings("unchecked")
+      final List<AssociationRule>[] results = new List[Math.min(wb + WINDOW, blocks) - wb];
+      ParallelExecutor.run(results.length, () -> {
+        Worker worker = new Worker(index, frequentResult, maxlen);
+        return r -> {
+          List<AssociationRule> rules = new ArrayList<>();
+          for(int i = first + (woff + r) * BLOCKSIZE, e = Math.min(i + BLOCKSIZE, end); i < e; i++) {
+            worker.process(itemsets.get(i), rules);
+          }
+          results[r] = rules;
+        };
+      });
+      for(List<AssociationRule> rules : results) {
+        for(AssociationRule rule : rules) {
+          out.accept(rule);
+        }
+        count += rules.size();
+      }
+    }
+    LOG.statistics(new LongStatistic(ParallelAssociationRuleGeneration.class.getName() + ".rules", count));
+    return count;
+  }
+
+  /**
+   * Rule generation state of a single worker.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class Worker {
+    /**
+     * Itemset index.
+     */
+    private ItemsetHashIndex index;
+
+    /**
+     * Frequent itemsets, for metadata and the number of transactions.
+     */
+    private FrequentItemsetsResult frequentResult;
+
+    /**
+     * Scratch itemsets: antecedent and consequent.
+     */
+    private PartialItemset scratch1, scratch2;
+
+    /**
+     * Output list.
+     */
+    private List<AssociationRule> rules;
+
+    /**
+     * Constructor.
+     *
+     * @param index Itemset index
+     * @param frequentResult Frequent itemsets
+     * @param maxlen Maximum itemset length
+     */
+    Worker(ItemsetHashIndex index, FrequentItemsetsResult frequentResult, int maxlen) {
+      this.index = index;
+      this.frequentResult = frequentResult;
+      int[] ind = new int[maxlen];
+      Arrays.fill(ind, -1);
+      this.scratch1 = new PartialItemset(ind);
+      this.scratch2 = new PartialItemset(ind);
+    }
+
+    /**
+     * Generate the rules of one itemset.
+     *
+     * @param itemset Itemset
+     * @param rules Output list
+     */
+    void process(Itemset itemset, List<AssociationRule> rules) {
+      final int len = itemset.length();
+      int[] ind = scratch1.indices;
+      for(int it = itemset.iter(), j = 0; itemset.iterValid(it); it = itemset.iterAdvance(it), j++) {
+        ind[j] = itemset.iterDim(it);
+      }
+      scratch1.begin = 0;
+      scratch1.len = len;
+      scratch2.begin = len;
+      scratch2.len = 0;
+      this.rules = rules;
+      processSubsets(itemset, len - 1);
+      this.rules = null;
+    }
+
+    /**
+     * Recursively move items from the antecedent to the consequent.
+     *
+     * @param itemset Current itemset
+     * @param cur Current position
+     */
+    private void processSubsets(Itemset itemset, int cur) {
+      while(cur >= 0 && scratch1.len > 1) {
+        int[] indices = scratch1.indices;
+        // Move entry to consequent.
+        int elemMoved = indices[cur];
+        System.arraycopy(indices, cur + 1, indices, cur, scratch1.len - cur - 1);
+        scratch1.len--;
+        scratch2.len++;
+        scratch2.begin--;
+        indices[scratch1.len] = elemMoved;
+
+        Itemset antecedent = index.search(scratch1);
+        Itemset consequent = index.search(scratch2);
+        if(antecedent == null) {
+          LOG.warning(scratch1.appendItemsTo(new StringBuilder(100).append("Antecedent not found: "), frequentResult.getMeta()));
+        }
+        if(consequent == null) {
+          LOG.warning(scratch2.appendItemsTo(new StringBuilder(100).append("Consequent not found: "), frequentResult.getMeta()));
+        }
+        boolean prune = false;
+        if(antecedent != null && consequent != null) {
+          double measure = interestingness.measure(frequentResult.getTotal(), antecedent.getSupport(), consequent.getSupport(), itemset.getSupport());
+          if(measure >= minmeasure && measure <= maxmeasure) {
+            rules.add(new AssociationRule(itemset, consequent, antecedent, measure));
+          }
+          else if(measure < minmeasure && interestingness.isMonotone()) {
+            prune = true;
+          }
+        }
+        if(!prune) {
+          processSubsets(itemset, cur - 1);
+        }
+        // Undo the move:
+        scratch1.len++;
+        scratch2.len--;
+        scratch2.begin++;
+        System.arraycopy(indices, cur, indices, cur + 1, scratch1.len - cur - 1);
+        indices[cur] = elemMoved;
+        --cur;
+      }
+    }
+  }
+
+  /**
+   * Hash index for finding itemsets.
+   * <p>
+   * Uses open addressing with linear probing; the hash codes of the stored
+   * itemsets are kept to avoid most comparisons.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class ItemsetHashIndex {
+    /**
+     * Itemsets to search.
+     */
+    private List<Itemset> itemsets;
+
+    /**
+     * Hash table, containing the itemset position + 1, or 0.
+     */
+    private int[] table;
+
+    /**
+     * Hash codes of the table entries.
+     */
+    private int[] hashes;
+
+    /**
+     * Bit mask for the table size.
+     */
+    private int mask;
+
+    /**
+     * Constructor.
+     *
+     * @param itemsets Itemsets
+     */
+    public ItemsetHashIndex(List<Itemset> itemsets) {
+      this.itemsets = itemsets;
+      final int size = itemsets.size();
+      int cap = Integer.highestOneBit(Math.max(size, 1)) << 2;
+      this.table = new int[cap];
+      this.hashes = new int[cap];
+      this.mask = cap - 1;
+      for(int i = 0; i < size; i++) {
+        final int h = hash(itemsets.get(i));
+        int pos = h & mask;
+        while(table[pos] != 0) {
+          pos = (pos + 1) & mask;
+        }
+        table[pos] = i + 1;
+        hashes[pos] = h;
+      }
+    }
+
+    /**
+     * Find an itemset.
+     *
+     * @param c Itemset to search
+     * @return Found itemset, or {@code null}
+     */
+    public Itemset search(Itemset c) {
+      final int h = hash(c), len = c.length();
+      for(int pos = h & mask; table[pos] != 0; pos = (pos + 1) & mask) {
+        if(hashes[pos] == h) {
+          Itemset cand = itemsets.get(table[pos] - 1);
+          if(cand.length() == len && cand.equals(c)) {
+            return cand;
+          }
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Hash code of an itemset.
+     * <p>
+     * Itemsets deliberately do not implement {@link Object#hashCode()}.
+     *
+     * @param c Itemset
+     * @return Hash code
+     */
+    private static int hash(Itemset c) {
+      int h = c.length();
+      for(int it = c.iter(); c.iterValid(it); it = c.iterAdvance(it)) {
+        h = h * 31 + c.iterDim(it);
+      }
+      // Spread the bits, as the item ids are small integers.
+      h *= 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+  }
+
+  /**
+   * Association rule result that generates the rules on demand.
+   * <p>
+   * Writing the result streams the rules to the output without storing them;
+   * {@link #getRules()} materializes them once.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public class StreamingRuleResult extends AssociationRuleResult {
+    /**
+     * Frequent itemsets.
+     */
+    private FrequentItemsetsResult frequentResult;
+
+    /**
+     * Materialized rules.
+     */
+    private List<AssociationRule> rules;
+
+    /**
+     * Constructor.
+     *
+     * @param frequentResult Frequent itemsets
+     */
+    public StreamingRuleResult(FrequentItemsetsResult frequentResult) {
+      super("association rules", "arules", null, frequentResult.getMeta());
+      this.frequentResult = frequentResult;
+    }
+
+    @Override
+    public List<AssociationRule> getRules() {
+      if(rules == null) {
+        List<AssociationRule> list = new ArrayList<>();
+        generateRules(frequentResult, list::add);
+        rules = list;
+      }
+      return rules;
+    }
+
+    @Override
+    public void writeToText(TextWriterStream out, String label) {
+      StringBuilder buf = new StringBuilder();
+      Consumer<AssociationRule> writer = rule -> {
+        buf.setLength(0); // Reuse
+        out.inlinePrintNoQuotes(rule.appendTo(buf, getMeta()));
+        out.flush();
+      };
+      if(rules != null) {
+        rules.forEach(writer);
+        return;
+      }
+      generateRules(frequentResult, writer);
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AssociationRuleGeneration.Parameterizer {
+    @Override
+    protected ParallelAssociationRuleGeneration makeInstance() {
+      return new ParallelAssociationRuleGeneration(frequentItemAlgo, interestMeasure, minmeasure, maxmeasure);
+    }
+  }
+}
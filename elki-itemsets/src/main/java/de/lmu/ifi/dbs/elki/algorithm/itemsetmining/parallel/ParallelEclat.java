@@ -0,0 +1,409 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.itemsetmining.parallel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.AbstractFrequentItemsetAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.Itemset;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.OneItemset;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.SparseItemset;
+import de.lmu.ifi.dbs.elki.data.BitVector;
+import de.lmu.ifi.dbs.elki.data.SparseFeatureVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.result.FrequentItemsetsResult;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.IntegerArrayQuickSort;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+/**
+ * Parallel Eclat using diffsets (dEclat).
+ * <p>
+ * The transactions of every frequent item are stored as a dense bitmap. The
+ * 2-itemsets are counted with word-wise bit operations; from then on, only the
+ * difference sets are kept as sorted arrays, i.e., the transactions that
+ * contain the prefix but not the itemset. For dense data, these are much
+ * smaller than the transaction lists used by {@link
+ * de.lmu.ifi.dbs.elki.algorithm.itemsetmining.Eclat}.
+ * <p>
+ * The equivalence classes of the first-level prefixes are processed
+ * concurrently. Items are ordered by increasing support, and workers take the
+ * next prefix from a shared counter to balance the uneven class sizes.
+ * <p>
+ * The bitmaps need one bit per transaction and frequent item, so this is best
+ * suited for dense data, or a high minimum support.
+ * <p>
+ * Reference:
+ * <p>
+ * M. J. Zaki, K. Gouda<br>
+ * Fast vertical mining using diffsets<br>
+ * Proc. 9th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@Reference(authors = "M. J. Zaki, K. Gouda", //
+    title = "Fast vertical mining using diffsets", //
+    booktitle = "Proc. 9th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining", //
+    url = "https://doi.org/10.1145/956750.956788", //
+    bibkey = "DBLP:conf/kdd/ZakiG03")
+public class ParallelEclat extends AbstractFrequentItemsetAlgorithm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelEclat.class);
+
+  /**
+   * Prefix for statistics.
+   */
+  private static final String STAT = ParallelEclat.class.getName() + ".";
+
+  /**
+   * Constructor.
+   *
+   * @param minsupp Minimum support
+   * @param minlength Minimum length
+   * @param maxlength Maximum length
+   */
+  public ParallelEclat(double minsupp, int minlength, int maxlength) {
+    super(minsupp, minlength, maxlength);
+  }
+
+  /**
+   * Run the parallel Eclat algorithm
+   *
+   * @param db Database to process
+   * @param relation Bit vector relation
+   * @return Frequent patterns found
+   */
+  public FrequentItemsetsResult run(Database db, final Relation<BitVector> relation) {
+    final int dim = RelationUtil.dimensionality(relation);
+    final VectorFieldTypeInformation<BitVector> meta = RelationUtil.assumeVectorField(relation);
+    final int minsupp = getMinimumSupport(relation.size());
+
+    LOG.verbose("Build transaction bitmaps.");
+    Duration ctime = LOG.newDuration(STAT + "eclat.transposition.time").begin();
+    final int[] counts = new int[dim];
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+      SparseFeatureVector<?> bv = relation.get(iter);
+      for(int it = bv.iter(); bv.iterValid(it); it = bv.iterAdvance(it)) {
+        counts[bv.iterDim(it)]++;
+      }
+    }
+    final int[] items = frequentItems(counts, minsupp);
+    final int[] supports = new int[items.length];
+    final long[][] bitmaps = buildBitmaps(relation, dim, items, supports);
+    LOG.statistics(ctime.end());
+    LOG.statistics(new LongStatistic(STAT + "frequent-items", items.length));
+
+    Duration etime = LOG.newDuration(STAT + "eclat.extraction.time").begin();
+    final List<Itemset> solution = new ArrayList<>();
+    if(minlength <= 1) {
+      for(int i = 0; i < items.length; i++) {
+        solution.add(new OneItemset(items[i], supports[i]));
+      }
+    }
+    if(maxlength > 1 && items.length > 1) {
+      mineParallel(items, supports, bitmaps, minsupp, solution);
+    }
+    Collections.sort(solution);
+    LOG.statistics(etime.end());
+
+    LOG.statistics(new LongStatistic(STAT + "frequent-itemsets", solution.size()));
+    return new FrequentItemsetsResult("Eclat", "eclat", solution, meta, relation.size());
+  }
+
+  /**
+   * Find the frequent items, by increasing support.
+   *
+   * @param counts Item counts
+   * @param minsupp Minimum support
+   * @return Frequent items
+   */
+  private static int[] frequentItems(final int[] counts, int minsupp) {
+    int numfreq = 0;
+    for(int i = 0; i < counts.length; i++) {
+      numfreq += counts[i] >= minsupp ? 1 : 0;
+    }
+    int[] items = new int[numfreq];
+    for(int i = 0, j = 0; i < counts.length; i++) {
+      if(counts[i] >= minsupp) {
+        items[j++] = i;
+      }
+    }
+    IntegerArrayQuickSort.sort(items, (x, y) -> counts[x] != counts[y] ? Integer.compare(counts[x], counts[y]) : Integer.compare(x, y));
+    return items;
+  }
+
+  /**
+   * Build the vertical bitmaps of the frequent items.
+   *
+   * @param relation Data relation
+   * @param dim Dimensionality
+   * @param items Frequent items
+   * @param supports Output: item supports
+   * @return Bitmaps, one per frequent item
+   */
+  private static long[][] buildBitmaps(Relation<BitVector> relation, int dim, int[] items, int[] supports) {
+    int[] pos = new int[dim];
+    Arrays.fill(pos, -1);
+    for(int i = 0; i < items.length; i++) {
+      pos[items[i]] = i;
+    }
+    final int words = (relation.size() + 63) >>> 6;
+    long[][] bitmaps = new long[items.length][words];
+    int t = 0;
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance(), t++) {
+      SparseFeatureVector<?> bv = relation.get(iter);
+      for(int it = bv.iter(); bv.iterValid(it); it = bv.iterAdvance(it)) {
+        final int p = pos[bv.iterDim(it)];
+        if(p >= 0) {
+          bitmaps[p][t >>> 6] |= 1L << t;
+          supports[p]++;
+        }
+      }
+    }
+    return bitmaps;
+  }
+
+  /**
+   * Mine the first-level equivalence classes in parallel.
+   *
+   * @param items Frequent items
+   * @param supports Item supports
+   * @param bitmaps Item bitmaps
+   * @param minsupp Minimum support
+   * @param solution Output list
+   */
+  private void mineParallel(int[] items, int[] supports, long[][] bitmaps, int minsupp, List<Itemset> solution) {
+    final int last = items.length - 1;
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Building frequent itemsets", last, LOG) : null;
+    // Every worker collects into its own list, merged afterwards.
+    List<List<Itemset>> locals = new ArrayList<>();
+    ParallelExecutor.run(last, () -> {
+      List<Itemset> local = new ArrayList<>();
+      synchronized(locals) {
+        locals.add(local);
+      }
+      int[] prefix = new int[items.length];
+      return i -> {
+        mineFirstLevel(i, items, supports, bitmaps, minsupp, prefix, local);
+        LOG.incrementProcessed(prog);
+      };
+    });
+    for(List<Itemset> local : locals) {
+      solution.addAll(local);
+    }
+    LOG.ensureCompleted(prog);
+  }
+
+  /**
+   * Mine the equivalence class of a single item, using the bitmaps.
+   *
+   * @param i Item position
+   * @param items Frequent items
+   * @param supports Item supports
+   * @param bitmaps Item bitmaps
+   * @param minsupp Minimum support
+   * @param prefix Prefix buffer
+   * @param out Output list
+   */
+  private void mineFirstLevel(int i, int[] items, int[] supports, long[][] bitmaps, int minsupp, int[] prefix, List<Itemset> out) {
+    final long[] bi = bitmaps[i];
+    final int maxdiff = supports[i] - minsupp;
+    final boolean deeper = maxlength > 2;
+    final int n = items.length - i - 1;
+    int[] citems = new int[n], csupp = new int[n];
+    int[][] cdiffs = deeper ? new int[n][] : null;
+    int size = 0;
+    prefix[0] = items[i];
+    for(int j = i + 1; j < items.length; j++) {
+      // Diffset: transactions with item i, but not with item j.
+      final long[] bj = bitmaps[j];
+      int diff = 0;
+      for(int w = 0; w < bi.length && diff <= maxdiff; w++) {
+        diff += Long.bitCount(bi[w] & ~bj[w]);
+      }
+      if(diff > maxdiff) {
+        continue;
+      }
+      final int supp = supports[i] - diff;
+      prefix[1] = items[j];
+      if(minlength <= 2) {
+        out.add(makeItemset(prefix, 2, supp));
+      }
+      citems[size] = items[j];
+      csupp[size] = supp;
+      if(deeper) {
+        cdiffs[size] = bitmapDifference(bi, bj, diff);
+      }
+      ++size;
+    }
+    if(deeper && size > 1) {
+      mineClass(prefix, 1, citems, csupp, cdiffs, size, minsupp, out);
+    }
+  }
+
+  /**
+   * Recursively mine an equivalence class using diffsets.
+   *
+   * @param prefix Prefix buffer
+   * @param plen Prefix length
+   * @param items Class members (last item)
+   * @param supps Member supports
+   * @param diffs Member diffsets
+   * @param size Number of members
+   * @param minsupp Minimum support
+   * @param out Output list
+   */
+  private void mineClass(int[] prefix, int plen, int[] items, int[] supps, int[][] diffs, int size, int minsupp, List<Itemset> out) {
+    final int len = plen + 2; // Length of new itemsets
+    final boolean deeper = len < maxlength;
+    for(int a = 0; a < size - 1; a++) {
+      prefix[plen] = items[a];
+      final int maxdiff = supps[a] - minsupp;
+      final int n = size - a - 1;
+      int[] citems = new int[n], csupp = new int[n];
+      int[][] cdiffs = deeper ? new int[n][] : null;
+      int csize = 0;
+      for(int b = a + 1; b < size; b++) {
+        // d(PXY) = d(PY) \ d(PX)
+        int[] d = difference(diffs[b], diffs[a], maxdiff);
+        if(d == null) {
+          continue;
+        }
+        final int supp = supps[a] - d.length;
+        prefix[plen + 1] = items[b];
+        if(len >= minlength) {
+          out.add(makeItemset(prefix, len, supp));
+        }
+        citems[csize] = items[b];
+        csupp[csize] = supp;
+        if(deeper) {
+          cdiffs[csize] = d;
+        }
+        ++csize;
+      }
+      if(deeper && csize > 1) {
+        mineClass(prefix, plen + 1, citems, csupp, cdiffs, csize, minsupp, out);
+      }
+    }
+  }
+
+  /**
+   * Materialize the difference of two bitmaps.
+   *
+   * @param a First bitmap
+   * @param b Second bitmap
+   * @param size Number of bits set in {@code a & ~b}
+   * @return Sorted transaction numbers
+   */
+  private static int[] bitmapDifference(long[] a, long[] b, int size) {
+    int[] d = new int[size];
+    for(int w = 0, k = 0; w < a.length; w++) {
+      for(long v = a[w] & ~b[w]; v != 0; v &= v - 1) {
+        d[k++] = (w << 6) + Long.numberOfTrailingZeros(v);
+      }
+    }
+    return d;
+  }
+
+  /**
+   * Difference of two sorted arrays, with early abandoning.
+   *
+   * @param a First array
+   * @param b Array of values to remove
+   * @param maxsize Maximum result size
+   * @return Difference, or {@code null} if larger than {@code maxsize}
+   */
+  private static int[] difference(int[] a, int[] b, int maxsize) {
+    int[] d = new int[Math.min(a.length, maxsize)];
+    int i = 0, j = 0, k = 0;
+    while(i < a.length) {
+      final int v = a[i];
+      while(j < b.length && b[j] < v) {
+        ++j;
+      }
+      if(j < b.length && b[j] == v) {
+        ++i;
+        ++j;
+        continue;
+      }
+      if(k == maxsize) {
+        return null;
+      }
+      d[k++] = v;
+      ++i;
+    }
+    return k == d.length ? d : Arrays.copyOf(d, k);
+  }
+
+  /**
+   * Build an itemset from the prefix buffer.
+   *
+   * @param buf Item buffer
+   * @param len Length
+   * @param supp Support
+   * @return Itemset
+   */
+  private static Itemset makeItemset(int[] buf, int len, int supp) {
+    int[] indices = Arrays.copyOf(buf, len);
+    Arrays.sort(indices);
+    return new SparseItemset(indices, supp);
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(TypeUtil.BIT_VECTOR_FIELD);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractFrequentItemsetAlgorithm.Parameterizer {
+    @Override
+    protected ParallelEclat makeInstance() {
+      return new ParallelEclat(minsupp, minlength, maxlength);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.itemsetmining.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.AbstractFrequentItemsetAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.FPGrowth;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.Itemset;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+
+/**
+ * Parallel version of FP-Growth.
+ * <p>
+ * The FP-tree is built once, then the conditional trees of the individual
+ * items are mined concurrently. The shared FP-tree is only read (it is not
+ * consumed as in the sequential version), every worker builds its own
+ * projected trees. Workers take the next unprocessed item from a shared
+ * counter, so that the very uneven cost per item is balanced automatically.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ParallelFPGrowth extends FPGrowth {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelFPGrowth.class);
+
+  /**
+   * Constructor.
+   *
+   * @param minsupp Minimum support (relative or absolute)
+   * @param minlength Minimum length
+   * @param maxlength Maximum length
+   */
+  public ParallelFPGrowth(double minsupp, int minlength, int maxlength) {
+    super(minsupp, minlength, maxlength);
+  }
+
+  @Override
+  protected void extractItemsets(FPTree tree, int minsupp, int[] idx, List<Itemset> solution, IndefiniteProgress itemp) {
+    final int items = idx.length, stop = (minlength > 1) ? minlength - 1 : 0;
+    // Start with the least frequent items, as in the sequential version.
+    // Every worker collects into its own list, merged afterwards.
+    List<List<Itemset>> locals = new ArrayList<>();
+    ParallelExecutor.run(items - stop, () -> {
+      List<Itemset> local = new ArrayList<>();
+      synchronized(locals) {
+        locals.add(local);
+      }
+      ItemsetCollector col = new ItemsetCollector(idx, local, itemp);
+      int[] buf = new int[items], buf2 = new int[items], buf3 = new int[items];
+      return i -> tree.extract(minsupp, minlength, maxlength, items - 1 - i, buf, 0, buf2, buf3, false, col);
+    });
+    for(List<Itemset> local : locals) {
+      solution.addAll(local);
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractFrequentItemsetAlgorithm.Parameterizer {
+    @Override
+    protected ParallelFPGrowth makeInstance() {
+      return new ParallelFPGrowth(minsupp, minlength, maxlength);
+    }
+  }
+}
@@ -0,0 +1,426 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.application;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.AbstractFrequentItemsetAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.ArrayFPTree;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.FPGrowth;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.Itemset;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.OneItemset;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.SparseItemset;
+import de.lmu.ifi.dbs.elki.data.BitVector;
+import de.lmu.ifi.dbs.elki.data.SparseFeatureVector;
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleMeta;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleStreamSource.Event;
+import de.lmu.ifi.dbs.elki.datasource.parser.SimpleTransactionParser;
+import de.lmu.ifi.dbs.elki.datasource.parser.StreamingParser;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.result.FrequentItemsetsResult;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.IntegerArrayQuickSort;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.FileUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * FP-Growth on a transaction file, without loading it into a database.
+ * <p>
+ * The input is read twice: the first pass only counts the item frequencies,
+ * the second pass inserts the transactions directly into a compact
+ * {@link ArrayFPTree}. No relation of transactions is materialized.
+ * Conditional pattern bases whose tree would exceed the memory budget are
+ * written to temporary files, and mined one at a time after the larger tree
+ * has been released.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class StreamingFPGrowth extends AbstractApplication {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(StreamingFPGrowth.class);
+
+  /**
+   * Prefix for statistics.
+   */
+  private static final String STAT = StreamingFPGrowth.class.getName() + ".";
+
+  /**
+   * Input file.
+   */
+  private File infile;
+
+  /**
+   * Output file, may be {@code null} for standard output.
+   */
+  private File outfile;
+
+  /**
+   * Transaction parser.
+   */
+  private StreamingParser parser;
+
+  /**
+   * Minimum support.
+   */
+  private double minsupp;
+
+  /**
+   * Minimum and maximum length.
+   */
+  private int minlength, maxlength;
+
+  /**
+   * Memory budget for conditional trees, in bytes.
+   */
+  private long budget;
+
+  /**
+   * Number of conditional trees spilled to disk by the last run.
+   */
+  private long spilled;
+
+  /**
+   * Constructor.
+   *
+   * @param infile Input file
+   * @param outfile Output file, may be {@code null}
+   * @param parser Transaction parser
+   * @param minsupp Minimum support (relative or absolute)
+   * @param minlength Minimum length
+   * @param maxlength Maximum length
+   * @param budget Memory budget for conditional trees, in bytes
+   */
+  public StreamingFPGrowth(File infile, File outfile, StreamingParser parser, double minsupp, int minlength, int maxlength, long budget) {
+    super();
+    this.infile = infile;
+    this.outfile = outfile;
+    this.parser = parser;
+    this.minsupp = minsupp;
+    this.minlength = minlength;
+    this.maxlength = maxlength > 0 ? maxlength : Integer.MAX_VALUE;
+    this.budget = budget;
+  }
+
+  @Override
+  public void run() {
+    FrequentItemsetsResult result = mine();
+    try (PrintStream out = outfile != null ? new PrintStream(new FileOutputStream(outfile)) : null) {
+      PrintStream o = out != null ? out : System.out;
+      StringBuilder buf = new StringBuilder();
+      for(Itemset itemset : result.getItemsets()) {
+        buf.setLength(0);
+        o.println(itemset.appendTo(buf, result.getMeta()));
+      }
+      o.flush();
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not write output file.", e);
+    }
+  }
+
+  /**
+   * Mine the frequent itemsets.
+   *
+   * @return Frequent itemsets
+   */
+  public FrequentItemsetsResult mine() {
+    // First pass: count item frequencies.
+    LOG.verbose("Counting item frequencies.");
+    int[] counts = new int[1024];
+    int n = 0;
+    try (InputStream in = open()) {
+      parser.initStream(in);
+      for(Event ev = parser.nextEvent(); ev != Event.END_OF_STREAM; ev = parser.nextEvent()) {
+        if(ev != Event.NEXT_OBJECT) {
+          continue;
+        }
+        SparseFeatureVector<?> bv = (SparseFeatureVector<?>) parser.data(0);
+        for(int it = bv.iter(); bv.iterValid(it); it = bv.iterAdvance(it)) {
+          final int d = bv.iterDim(it);
+          if(d >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(d + 1, counts.length << 1));
+          }
+          counts[d]++;
+        }
+        ++n;
+      }
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not read input file.", e);
+    }
+    final VectorFieldTypeInformation<BitVector> meta = getMeta(parser.getMeta());
+    final int dim = meta != null ? meta.getDimensionality() : counts.length;
+    final int minsupp = (int) ((this.minsupp < 1.) ? Math.ceil(this.minsupp * n) : this.minsupp);
+    // Item ranks by descending frequency:
+    final int[] cnts = counts;
+    int numfreq = 0;
+    for(int i = 0; i < cnts.length; i++) {
+      numfreq += cnts[i] >= minsupp ? 1 : 0;
+    }
+    final int[] idx = new int[numfreq];
+    for(int i = 0, j = 0; i < cnts.length; i++) {
+      if(cnts[i] >= minsupp) {
+        idx[j++] = i;
+      }
+    }
+    IntegerArrayQuickSort.sort(idx, (x, y) -> Integer.compare(cnts[y], cnts[x]));
+    final int[] rank = new int[Math.max(dim, cnts.length)];
+    Arrays.fill(rank, -1);
+    for(int i = 0; i < idx.length; i++) {
+      rank[idx[i]] = i;
+    }
+    LOG.statistics(new LongStatistic(STAT + "raw-items", dim));
+    LOG.statistics(new LongStatistic(STAT + "raw-transactions", n));
+    LOG.statistics(new LongStatistic(STAT + "minsupp-absolute", minsupp));
+
+    // Second pass: build the FP-tree.
+    LOG.verbose("Building FP-Tree.");
+    Duration ctime = LOG.newDuration(STAT + "fp-tree.construction.time").begin();
+    ArrayFPTree tree = new ArrayFPTree(idx.length, 1024);
+    int[] buf = new int[idx.length];
+    try (InputStream in = open()) {
+      parser.initStream(in);
+      for(Event ev = parser.nextEvent(); ev != Event.END_OF_STREAM; ev = parser.nextEvent()) {
+        if(ev != Event.NEXT_OBJECT) {
+          continue;
+        }
+        SparseFeatureVector<?> bv = (SparseFeatureVector<?>) parser.data(0);
+        int l = 0;
+        for(int it = bv.iter(); bv.iterValid(it); it = bv.iterAdvance(it)) {
+          final int d = bv.iterDim(it);
+          final int r = d < rank.length ? rank[d] : -1;
+          if(r >= 0) {
+            buf[l++] = r;
+          }
+        }
+        if(l >= minlength) {
+          Arrays.sort(buf, 0, l);
+          tree.insert(buf, 0, l, 1);
+        }
+      }
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not read input file.", e);
+    }
+    parser.cleanup();
+    tree.reduceMemory();
+    LOG.statistics(new LongStatistic(STAT + "nodes", tree.size()));
+    LOG.statistics(ctime.end());
+
+    // Mine, processing spilled conditional trees one at a time.
+    LOG.verbose("Extracting frequent patterns.");
+    Duration etime = LOG.newDuration(STAT + "fp-growth.extraction.time").begin();
+    final List<Itemset> solution = new ArrayList<>();
+    final int minl = minlength, maxl = maxlength;
+    FPGrowth.FPTree.Collector col = (support, data, start, end) -> {
+      if(end - start == 1) {
+        solution.add(new OneItemset(idx[data[start]], support));
+        return;
+      }
+      int[] indices = new int[end - start];
+      for(int i = start, j = 0; i < end; i++) {
+        indices[j++] = idx[data[i]];
+      }
+      Arrays.sort(indices);
+      solution.add(new SparseItemset(indices, support));
+    };
+    Deque<ArrayFPTree.Spill> pending = new ArrayDeque<>(tree.extract(minsupp, minl, maxl, buf, 0, budget, col));
+    tree = null; // Release the main tree before loading spilled trees.
+    spilled = pending.size();
+    while(!pending.isEmpty()) {
+      ArrayFPTree.Spill spill = pending.pop();
+      int[] postfix = spill.getPostfix();
+      System.arraycopy(postfix, 0, buf, 0, postfix.length);
+      List<ArrayFPTree.Spill> more = spill.load().extract(minsupp, minl, maxl, buf, postfix.length, budget, col);
+      spilled += more.size();
+      for(ArrayFPTree.Spill s : more) {
+        pending.push(s);
+      }
+    }
+    Collections.sort(solution);
+    LOG.statistics(new LongStatistic(STAT + "spilled-trees", spilled));
+    LOG.statistics(etime.end());
+    LOG.statistics(new LongStatistic(STAT + "frequent-itemsets", solution.size()));
+    return new FrequentItemsetsResult("FP-Growth", "fp-growth", solution, meta, n);
+  }
+
+  /**
+   * Get the number of conditional trees spilled to disk by the last call to
+   * {@link #mine()}.
+   *
+   * @return Number of spilled trees
+   */
+  public long getSpilledTrees() {
+    return spilled;
+  }
+
+  /**
+   * Open the input file.
+   *
+   * @return Input stream
+   * @throws IOException on errors
+   */
+  private InputStream open() throws IOException {
+    return new BufferedInputStream(FileUtil.tryGzipInput(new FileInputStream(infile)));
+  }
+
+  /**
+   * Get the vector field metadata from the parser.
+   *
+   * @param bmeta Bundle metadata
+   * @return Vector field type, or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  private static VectorFieldTypeInformation<BitVector> getMeta(BundleMeta bmeta) {
+    for(SimpleTypeInformation<?> t : bmeta) {
+      if(t instanceof VectorFieldTypeInformation) {
+        return (VectorFieldTypeInformation<BitVector>) t;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractApplication.Parameterizer {
+    /**
+     * Parser for the transactions.
+     */
+    public static final OptionID PARSER_ID = new OptionID("fpgrowth.parser", "Parser for the transaction file.");
+
+    /**
+     * Memory budget for conditional trees, in megabytes.
+     */
+    public static final OptionID BUDGET_ID = new OptionID("fpgrowth.memory", "Memory budget for conditional FP-trees in megabytes. Larger conditional trees are spilled to temporary files.");
+
+    /**
+     * Input file.
+     */
+    private File infile;
+
+    /**
+     * Output file.
+     */
+    private File outfile;
+
+    /**
+     * Transaction parser.
+     */
+    private StreamingParser parser;
+
+    /**
+     * Minimum support.
+     */
+    private double minsupp;
+
+    /**
+     * Minimum and maximum length.
+     */
+    private int minlength = 0, maxlength = Integer.MAX_VALUE;
+
+    /**
+     * Memory budget in bytes.
+     */
+    private long budget;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      infile = super.getParameterInputFile(config, "Transaction file to mine.");
+      FileParameter outP = new FileParameter(OUTPUT_ID, FileParameter.FileType.OUTPUT_FILE) //
+          .setOptional(true);
+      outP.setShortDescription("Output file for the frequent itemsets, standard output if not given.");
+      if(config.grab(outP)) {
+        outfile = outP.getValue();
+      }
+      ObjectParameter<StreamingParser> parserP = new ObjectParameter<>(PARSER_ID, StreamingParser.class, SimpleTransactionParser.class);
+      if(config.grab(parserP)) {
+        parser = parserP.instantiateClass(config);
+      }
+      DoubleParameter minsuppP = new DoubleParameter(AbstractFrequentItemsetAlgorithm.Parameterizer.MINSUPP_ID) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+      if(config.grab(minsuppP)) {
+        minsupp = minsuppP.getValue();
+      }
+      IntParameter minlengthP = new IntParameter(AbstractFrequentItemsetAlgorithm.Parameterizer.MINLENGTH_ID) //
+          .setOptional(true) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(minlengthP)) {
+        minlength = minlengthP.getValue();
+      }
+      IntParameter maxlengthP = new IntParameter(AbstractFrequentItemsetAlgorithm.Parameterizer.MAXLENGTH_ID) //
+          .setOptional(true) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(maxlengthP)) {
+        maxlength = maxlengthP.getValue();
+      }
+      IntParameter budgetP = new IntParameter(BUDGET_ID, 1024) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(budgetP)) {
+        budget = budgetP.getValue() * 1024L * 1024L;
+      }
+    }
+
+    @Override
+    protected StreamingFPGrowth makeInstance() {
+      return new StreamingFPGrowth(infile, outfile, parser, minsupp, minlength, maxlength, budget);
+    }
+  }
+
+  /**
+   * Run command line application.
+   *
+   * @param args Command line parameters
+   */
+  public static void main(String[] args) {
+    runCLIApplication(StreamingFPGrowth.class, args);
+  }
+}
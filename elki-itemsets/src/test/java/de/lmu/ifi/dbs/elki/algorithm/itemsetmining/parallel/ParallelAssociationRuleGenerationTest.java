@@ -0,0 +1,101 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.itemsetmining.parallel;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.AbstractFrequentItemsetAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.FPGrowth;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.associationrules.AssociationRule;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.associationrules.AssociationRuleGeneration;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.associationrules.interest.Confidence;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.associationrules.interest.InterestingnessMeasure;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.associationrules.interest.Lift;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.result.AssociationRuleResult;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for parallel association rule generation.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ParallelAssociationRuleGenerationTest extends AbstractFrequentItemsetAlgorithmTest {
+  @Test
+  public void testToyExample() {
+    Database db = loadTransactions(UNITTEST + "itemsets/increasing5.txt", 5);
+    {
+      AssociationRuleResult res = new ELKIBuilder<>(ParallelAssociationRuleGeneration.class) //
+          .with(FPGrowth.Parameterizer.MINSUPP_ID, 3) //
+          .with(AssociationRuleGeneration.Parameterizer.MINMEASURE_ID, 1.) //
+          .with(AssociationRuleGeneration.Parameterizer.INTERESTMEASURE_ID, Confidence.class) //
+          .build().run(db);
+      assertEquals("Size not as expected.", 6, res.getRules().size());
+    }
+    {
+      AssociationRuleResult res = new ELKIBuilder<>(ParallelAssociationRuleGeneration.class) //
+          .with(FPGrowth.Parameterizer.MINSUPP_ID, 2) //
+          .with(AssociationRuleGeneration.Parameterizer.MINMEASURE_ID, 1.5) //
+          .with(AssociationRuleGeneration.Parameterizer.INTERESTMEASURE_ID, Lift.class) //
+          .build().run(db);
+      assertEquals("Size not as expected.", 18, res.getRules().size());
+    }
+  }
+
+  @Test
+  public void testSameAsSequential() {
+    Database db = loadTransactions(UNITTEST + "itemsets/zutaten.txt.gz", 16401);
+    compare(db, Confidence.class, .3);
+    compare(db, Lift.class, 1.5);
+  }
+
+  /**
+   * Compare the parallel to the sequential rules.
+   *
+   * @param db Database
+   * @param measure Interestingness measure
+   * @param minmeasure Minimum threshold
+   */
+  private void compare(Database db, Class<? extends InterestingnessMeasure> measure, double minmeasure) {
+    List<AssociationRule> exp = new ELKIBuilder<>(AssociationRuleGeneration.class) //
+        .with(FPGrowth.Parameterizer.MINSUPP_ID, 100) //
+        .with(AssociationRuleGeneration.Parameterizer.MINMEASURE_ID, minmeasure) //
+        .with(AssociationRuleGeneration.Parameterizer.INTERESTMEASURE_ID, measure) //
+        .build().run(db).getRules();
+    List<AssociationRule> res = new ELKIBuilder<>(ParallelAssociationRuleGeneration.class) //
+        .with(FPGrowth.Parameterizer.MINSUPP_ID, 100) //
+        .with(AssociationRuleGeneration.Parameterizer.MINMEASURE_ID, minmeasure) //
+        .with(AssociationRuleGeneration.Parameterizer.INTERESTMEASURE_ID, measure) //
+        .build().run(db).getRules();
+    assertEquals("Size not as expected.", exp.size(), res.size());
+    for(int i = 0; i < exp.size(); i++) {
+      AssociationRule e = exp.get(i), r = res.get(i);
+      assertEquals("Itemset differs.", 0, e.getUnion().compareTo(r.getUnion()));
+      assertEquals("Antecedent differs.", 0, e.getAntecedent().compareTo(r.getAntecedent()));
+      assertEquals("Measure differs.", e.getMeasure(), r.getMeasure(), 0.);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.AbstractFrequentItemsetAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.FPGrowth;
+import de.lmu.ifi.dbs.elki.algorithm.itemsetmining.Itemset;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.datasource.parser.CSVReaderFormat;
+import de.lmu.ifi.dbs.elki.datasource.parser.SimpleTransactionParser;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Test the streaming FP-Growth application against FP-Growth.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class StreamingFPGrowthTest {
+  /**
+   * Test file.
+   */
+  private static final String ZUTATEN = AbstractSimpleAlgorithmTest.UNITTEST + "itemsets/zutaten.txt.gz";
+
+  @Test
+  public void testSameAsFPGrowth() throws IOException {
+    // Memory budget large enough to never spill:
+    assertEquals("Trees were spilled.", 0, compare(100, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testSpilling() throws IOException {
+    // Tiny memory budget, forcing conditional trees to disk:
+    assertTrue("No trees were spilled.", compare(100, 64) > 0);
+  }
+
+  @Test
+  public void testNestedSpilling() throws IOException {
+    // Budget exceeded only by some conditional trees, and their subtrees:
+    assertEquals("Unexpected number of spilled trees.", 14, compare(100, 16384));
+  }
+
+  /**
+   * Compare the streaming result to regular FP-Growth.
+   *
+   * @param minsupp Minimum support
+   * @param budget Memory budget in bytes
+   * @return Number of spilled trees
+   * @throws IOException on errors
+   */
+  private long compare(int minsupp, long budget) throws IOException {
+    Database db = AbstractFrequentItemsetAlgorithmTest.loadTransactions(ZUTATEN, 16401);
+    List<Itemset> exp = new ELKIBuilder<>(FPGrowth.class) //
+        .with(FPGrowth.Parameterizer.MINSUPP_ID, minsupp).build().run(db).getItemsets();
+    File tmp = File.createTempFile("zutaten", ".txt");
+    try (InputStream is = AbstractSimpleAlgorithmTest.open(ZUTATEN)) {
+      Files.copy(is, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      SimpleTransactionParser parser = new SimpleTransactionParser(CSVReaderFormat.DEFAULT_FORMAT);
+      StreamingFPGrowth fpgrowth = new StreamingFPGrowth(tmp, null, parser, minsupp, 0, Integer.MAX_VALUE, budget);
+      List<Itemset> res = fpgrowth.mine().getItemsets();
+      assertEquals("Size not as expected.", exp.size(), res.size());
+      for(int i = 0; i < exp.size(); i++) {
+        assertEquals("Itemset differs.", 0, exp.get(i).compareTo(res.get(i)));
+        assertEquals("Support differs.", exp.get(i).getSupport(), res.get(i).getSupport());
+      }
+      return fpgrowth.getSpilledTrees();
+    }
+    finally {
+      tmp.delete();
+    }
+  }
+}
@@ -0,0 +1,614 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased.parallel;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased.ABOD;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased.FastABOD;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.projection.random.RandomProjectionFamily;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.similarityfunction.PrimitiveSimilarityFunction;
+import de.lmu.ifi.dbs.elki.distance.similarityfunction.kernel.PolynomialKernelFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.InvertedOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMaxHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.GreaterEqualConstraint;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of Fast-ABOD (approximate ABOF).
+ * <p>
+ * The scores are computed with {@link ParallelExecutor}; each worker keeps a
+ * cache of the kernel values between neighbors, which are shared by the
+ * neighborhoods of nearby objects.
+ * <p>
+ * Optionally, data with more than {@code projection.dim} dimensions can be
+ * mapped into a lower-dimensional space with a random projection first, which
+ * approximately preserves the angles (Johnson-Lindenstrauss lemma) at a much
+ * lower cost per kernel evaluation. Use the outlier evaluation to assess the
+ * loss in quality.
+ * <p>
+ * Reference:
+ * <p>
+ * Hans-Peter Kriegel, Matthias Schubert, Arthur Zimek<br>
+ * Angle-Based Outlier Detection in High-dimensional Data<br>
+ * Proc. 14th ACM SIGKDD Int. Conf. Knowledge Discovery and Data Mining (KDD'08)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @apiviz.composedOf Worker
+ *
+ * @param <V> Vector type
+ */
+@Reference(authors = "Hans-Peter Kriegel, Matthias Schubert, Arthur Zimek", //
+    title = "Angle-Based Outlier Detection in High-dimensional Data", //
+    booktitle = "Proc. 14th ACM SIGKDD Int. Conf. Knowledge Discovery and Data Mining (KDD'08)", //
+    url = "https://doi.org/10.1145/1401890.1401946", //
+    bibkey = "DBLP:conf/kdd/KriegelSZ08")
+public class ParallelFastABOD<V extends NumberVector> extends AbstractAlgorithm<OutlierResult> implements OutlierAlgorithm {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelFastABOD.class);
+
+  /**
+   * Maximum number of cached kernel values per worker.
+   */
+  private static final int CACHE_SIZE = 1 << 20;
+
+  /**
+   * Kernel function.
+   */
+  protected PrimitiveSimilarityFunction<? super NumberVector> kernelFunction;
+
+  /**
+   * Number of nearest neighbors.
+   */
+  protected int k;
+
+  /**
+   * Random projection family, may be {@code null}.
+   */
+  protected RandomProjectionFamily projection;
+
+  /**
+   * Target dimensionality of the projection.
+   */
+  protected int projdim;
+
+  /**
+   * Constructor.
+   *
+   * @param kernelFunction Kernel function
+   * @param k Number of nearest neighbors
+   * @param projection Random projection family, may be {@code null}
+   * @param projdim Target dimensionality; only data with a higher
+   *        dimensionality is projected
+   */
+  public ParallelFastABOD(PrimitiveSimilarityFunction<? super NumberVector> kernelFunction, int k, RandomProjectionFamily projection, int projdim) {
+    super();
+    this.kernelFunction = kernelFunction;
+    this.k = k;
+    this.projection = projection;
+    this.projdim = projdim;
+  }
+
+  /**
+   * Run Fast-ABOD on the data set.
+   *
+   * @param relation Relation to process
+   * @return Outlier detection result
+   */
+  public OutlierResult run(Relation<V> relation) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    KernelData data = prepare(relation, ids);
+
+    WritableDoubleDataStore abodvalues = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    ABODProcessor abodm = new ABODProcessor(data, k);
+    SharedDouble abodv = new SharedDouble();
+    WriteDoubleDataStoreProcessor storem = new WriteDoubleDataStoreProcessor(abodvalues);
+    DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+    abodm.connectOutput(abodv);
+    storem.connectInput(abodv);
+    mmm.connectInput(abodv);
+    ParallelExecutor.run(ids, abodm, storem, mmm);
+
+    // Build result representation.
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Angle-Based Outlier Degree", "abod-outlier", abodvalues, ids);
+    OutlierScoreMeta scoreMeta = new InvertedOutlierScoreMeta(mmm.getMinMax().getMin(), mmm.getMinMax().getMax(), 0.0, Double.POSITIVE_INFINITY);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Prepare the (optionally projected) data and the kernel diagonal.
+   *
+   * @param relation Data relation
+   * @param ids Object ids
+   * @return Kernel data
+   */
+  protected KernelData prepare(Relation<V> relation, ArrayDBIDs ids) {
+    final int dim = RelationUtil.dimensionality(relation);
+    RandomProjectionFamily.Projection proj = null;
+    if(projection != null && dim > projdim) {
+      LOG.verbose("Using a random projection from " + dim + " to " + projdim + " dimensions.");
+      proj = projection.generateProjection(dim, projdim);
+    }
+    NumberVector[] vecs = new NumberVector[ids.size()];
+    double[] diag = new double[ids.size()];
+    WritableIntegerDataStore offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final int i = it.getOffset();
+      final V vec = relation.get(it);
+      vecs[i] = proj != null ? DoubleVector.wrap(proj.project(vec)) : vec;
+      diag[i] = kernelFunction.similarity(vecs[i], vecs[i]);
+      offsets.putInt(it, i);
+    }
+    return new KernelData(kernelFunction, vecs, diag, offsets);
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Shared, read-only data: the vectors and their kernel self-similarities.
+   *
+   * @author Erich Schubert
+   */
+  protected static class KernelData {
+    /**
+     * Kernel function.
+     */
+    final PrimitiveSimilarityFunction<? super NumberVector> kernel;
+
+    /**
+     * Data vectors, by offset.
+     */
+    final NumberVector[] vecs;
+
+    /**
+     * Kernel self-similarities.
+     */
+    final double[] diag;
+
+    /**
+     * Offsets of the objects.
+     */
+    final WritableIntegerDataStore offsets;
+
+    /**
+     * Constructor.
+     *
+     * @param kernel Kernel function
+     * @param vecs Data vectors
+     * @param diag Kernel self-similarities
+     * @param offsets Offsets of the objects
+     */
+    KernelData(PrimitiveSimilarityFunction<? super NumberVector> kernel, NumberVector[] vecs, double[] diag, WritableIntegerDataStore offsets) {
+      this.kernel = kernel;
+      this.vecs = vecs;
+      this.diag = diag;
+      this.offsets = offsets;
+    }
+
+    /**
+     * Compute a kernel value.
+     *
+     * @param a First offset
+     * @param b Second offset
+     * @return Kernel value
+     */
+    double kernel(int a, int b) {
+      return kernel.similarity(vecs[a], vecs[b]);
+    }
+  }
+
+  /**
+   * Per-thread state: kernel row of the current object, nearest neighbors,
+   * and a cache of kernel values between neighbors.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Worker {
+    /**
+     * Shared data.
+     */
+    final KernelData data;
+
+    /**
+     * Number of neighbors.
+     */
+    final int k;
+
+    /**
+     * Kernel values of the current object.
+     */
+    final double[] row;
+
+    /**
+     * Heap for finding the nearest neighbors.
+     */
+    final DoubleIntegerMaxHeap heap;
+
+    /**
+     * Nearest neighbors and squared kernel distances, ascending.
+     */
+    final int[] nidx;
+
+    /**
+     * Squared kernel distances of the neighbors.
+     */
+    final double[] nsqd;
+
+    /**
+     * Number of neighbors found.
+     */
+    int size;
+
+    /**
+     * Sums of the inverse distances and inverse squared distances to all
+     * other objects, for the lower bound of LB-ABOD.
+     */
+    double sumid, sumisqd;
+
+    /**
+     * Cache of kernel values between neighbors.
+     */
+    final Long2DoubleOpenHashMap cache = new Long2DoubleOpenHashMap();
+
+    /**
+     * Variance statistics.
+     */
+    final MeanVariance s = new MeanVariance();
+
+    /**
+     * Constructor.
+     *
+     * @param data Shared data
+     * @param k Number of neighbors
+     */
+    Worker(KernelData data, int k) {
+      this.data = data;
+      this.k = k;
+      this.row = new double[data.vecs.length];
+      this.heap = new DoubleIntegerMaxHeap(k);
+      this.nidx = new int[k];
+      this.nsqd = new double[k];
+      cache.defaultReturnValue(Double.NaN);
+    }
+
+    /**
+     * Cached kernel value of two neighbors.
+     *
+     * @param b First offset
+     * @param c Second offset
+     * @return Kernel value
+     */
+    double cached(int b, int c) {
+      final long key = b < c ? (((long) b) << 32) | c : (((long) c) << 32) | b;
+      double v = cache.get(key);
+      if(v != v) { // NaN: not cached
+        if(cache.size() >= CACHE_SIZE) {
+          cache.clear();
+        }
+        cache.put(key, v = data.kernel(b, c));
+      }
+      return v;
+    }
+
+    /**
+     * Compute the kernel row and the k nearest neighbors of an object.
+     *
+     * @param a Object offset
+     */
+    void neighbors(int a) {
+      final double simAA = data.diag[a];
+      heap.clear();
+      sumid = sumisqd = 0.;
+      for(int b = 0; b < row.length; b++) {
+        if(b == a) {
+          continue;
+        }
+        final double simAB = row[b] = data.kernel(a, b);
+        final double sqdAB = simAA + data.diag[b] - simAB - simAB;
+        final double isqdAB = 1. / sqdAB;
+        sumid += FastMath.sqrt(isqdAB);
+        sumisqd += isqdAB;
+        if(!(sqdAB > 0.)) {
+          continue;
+        }
+        if(heap.size() < k) {
+          heap.add(sqdAB, b);
+        }
+        else if(sqdAB < heap.peekKey()) {
+          heap.replaceTopElement(sqdAB, b);
+        }
+      }
+      size = heap.size();
+      for(int i = size - 1; i >= 0; i--) {
+        nsqd[i] = heap.peekKey();
+        nidx[i] = heap.peekValue();
+        heap.poll();
+      }
+    }
+
+    /**
+     * Fast-ABOF of the current neighborhood.
+     *
+     * @param a Object offset
+     * @return Approximate ABOF
+     */
+    double fastABOF(int a) {
+      final double simAA = data.diag[a];
+      s.reset();
+      for(int i = 0; i < size; i++) {
+        final int b = nidx[i];
+        final double sqdAB = nsqd[i], simAB = row[b];
+        for(int j = i + 1; j < size; j++) {
+          final int c = nidx[j];
+          final double sqdAC = nsqd[j], simAC = row[c];
+          // <B-A, C-A> = <B,C> - <B,A> - <A,C> + <A,A>
+          final double numerator = cached(b, c) - simAB - simAC + simAA;
+          final double div = 1. / (sqdAB * sqdAC);
+          s.put(numerator * div, FastMath.sqrt(div));
+        }
+      }
+      return s.getNaiveVariance();
+    }
+
+    /**
+     * Lower bound of the ABOF of the current neighborhood (LB-ABOD).
+     *
+     * @param a Object offset
+     * @return Lower bound
+     */
+    double lbABOF(int a) {
+      final double simAA = data.diag[a];
+      double nnsum = 0., nnsumsq = 0., nnsumisqd = 0.;
+      for(int i = 0; i < size; i++) {
+        final int b = nidx[i];
+        final double sqdAB = nsqd[i], simAB = row[b];
+        for(int j = i + 1; j < size; j++) {
+          final int c = nidx[j];
+          final double sqdAC = nsqd[j], simAC = row[c];
+          final double numerator = cached(b, c) - simAB - simAC + simAA;
+          final double sqweight = 1. / (sqdAB * sqdAC);
+          final double weight = FastMath.sqrt(sqweight);
+          final double val = numerator * sqweight;
+          nnsum += val * weight;
+          nnsumsq += val * val * weight;
+          nnsumisqd += sqweight;
+        }
+      }
+      // Remaining weight, term R2:
+      final double r2 = sumisqd * sumisqd - 2. * nnsumisqd;
+      final double tmp = (2. * nnsum + r2) / (sumid * sumid);
+      return 2. * nnsumsq / (sumid * sumid) - tmp * tmp;
+    }
+
+    /**
+     * Exact ABOF, using all pairs of objects.
+     *
+     * @param a Object offset
+     * @return ABOF
+     */
+    double exactABOF(int a) {
+      final double simAA = data.diag[a];
+      for(int b = 0; b < row.length; b++) {
+        row[b] = b != a ? data.kernel(a, b) : simAA;
+      }
+      s.reset();
+      for(int b = 0; b < row.length; b++) {
+        final double sqdAB = simAA + data.diag[b] - row[b] - row[b];
+        if(b == a || !(sqdAB > 0.)) {
+          continue;
+        }
+        for(int c = b + 1; c < row.length; c++) {
+          final double sqdAC = simAA + data.diag[c] - row[c] - row[c];
+          if(c == a || !(sqdAC > 0.)) {
+            continue;
+          }
+          final double numerator = data.kernel(b, c) - row[b] - row[c] + simAA;
+          final double div = 1. / (sqdAB * sqdAC);
+          s.put(numerator * div, FastMath.sqrt(div));
+        }
+      }
+      return s.getNaiveVariance();
+    }
+  }
+
+  /**
+   * Processor computing the Fast-ABOF scores.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.uses Worker
+   */
+  protected static class ABODProcessor extends AbstractDoubleProcessor {
+    /**
+     * Shared data.
+     */
+    KernelData data;
+
+    /**
+     * Number of neighbors.
+     */
+    int k;
+
+    /**
+     * Constructor.
+     *
+     * @param data Shared data
+     * @param k Number of neighbors
+     */
+    public ABODProcessor(KernelData data, int k) {
+      super();
+      this.data = data;
+      this.k = k;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      return new Instance(new Worker(data, k), executor.getInstance(output));
+    }
+
+    /**
+     * Instance for a single thread.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    private static class Instance extends AbstractDoubleProcessor.Instance {
+      /**
+       * Worker state.
+       */
+      Worker worker;
+
+      /**
+       * Constructor.
+       *
+       * @param worker Worker state
+       * @param output Output variable
+       */
+      protected Instance(Worker worker, SharedDouble.Instance output) {
+        super(output);
+        this.worker = worker;
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        final int a = worker.data.offsets.intValue(id);
+        worker.neighbors(a);
+        output.set(worker.fastABOF(a));
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractParameterizer {
+    /**
+     * Random projection family for high-dimensional data.
+     */
+    public static final OptionID PROJECTION_ID = new OptionID("pabod.projection", "Random projection to use for high-dimensional data (approximate angles).");
+
+    /**
+     * Projection dimensionality.
+     */
+    public static final OptionID PROJECTION_DIM_ID = new OptionID("pabod.projection.dim", "Target dimensionality of the random projection; only data of a higher dimensionality is projected.");
+
+    /**
+     * Kernel function.
+     */
+    protected PrimitiveSimilarityFunction<? super NumberVector> kernelFunction;
+
+    /**
+     * Number of neighbors.
+     */
+    protected int k;
+
+    /**
+     * Random projection family.
+     */
+    protected RandomProjectionFamily projection;
+
+    /**
+     * Projection dimensionality.
+     */
+    protected int projdim;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      ObjectParameter<PrimitiveSimilarityFunction<? super NumberVector>> kernelP = new ObjectParameter<>(ABOD.Parameterizer.KERNEL_FUNCTION_ID, PrimitiveSimilarityFunction.class, PolynomialKernelFunction.class);
+      if(config.grab(kernelP)) {
+        kernelFunction = kernelP.instantiateClass(config);
+      }
+      IntParameter kP = new IntParameter(FastABOD.Parameterizer.K_ID) //
+          .addConstraint(new GreaterEqualConstraint(3));
+      if(config.grab(kP)) {
+        k = kP.intValue();
+      }
+      ObjectParameter<RandomProjectionFamily> projP = new ObjectParameter<>(PROJECTION_ID, RandomProjectionFamily.class);
+      projP.setOptional(true);
+      if(config.grab(projP)) {
+        projection = projP.instantiateClass(config);
+        IntParameter projdimP = new IntParameter(PROJECTION_DIM_ID, 100) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(projdimP)) {
+          projdim = projdimP.intValue();
+        }
+      }
+    }
+
+    @Override
+    protected ParallelFastABOD<V> makeInstance() {
+      return new ParallelFastABOD<>(kernelFunction, k, projection, projdim);
+    }
+  }
+}
@@ -0,0 +1,311 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased.parallel;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased.LBABOD;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.projection.random.RandomProjectionFamily;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.similarityfunction.PrimitiveSimilarityFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.InvertedOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleMaxHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Parallel version of LB-ABOD: exact on the top l outliers, approximate on the
+ * remaining.
+ * <p>
+ * The lower bounds are computed in parallel as in {@link ParallelFastABOD}.
+ * Candidates are then refined in parallel, in ascending order of their lower
+ * bound, until no remaining candidate can enter the top l. The refined set is
+ * the same as in a sequential run, independent of the number of threads.
+ * <p>
+ * Reference:
+ * <p>
+ * Hans-Peter Kriegel, Matthias Schubert, Arthur Zimek<br>
+ * Angle-Based Outlier Detection in High-dimensional Data<br>
+ * Proc. 14th ACM SIGKDD Int. Conf. Knowledge Discovery and Data Mining (KDD'08)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <V> Vector type
+ */
+@Reference(authors = "Hans-Peter Kriegel, Matthias Schubert, Arthur Zimek", //
+    title = "Angle-Based Outlier Detection in High-dimensional Data", //
+    booktitle = "Proc. 14th ACM SIGKDD Int. Conf. Knowledge Discovery and Data Mining (KDD'08)", //
+    url = "https://doi.org/10.1145/1401890.1401946", //
+    bibkey = "DBLP:conf/kdd/KriegelSZ08")
+public class ParallelLBABOD<V extends NumberVector> extends ParallelFastABOD<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelLBABOD.class);
+
+  /**
+   * Number of outliers to refine.
+   */
+  protected int l;
+
+  /**
+   * Constructor.
+   *
+   * @param kernelFunction Kernel function
+   * @param k Number of nearest neighbors
+   * @param l Number of outliers to compute exactly
+   * @param projection Random projection family, may be {@code null}
+   * @param projdim Target dimensionality; only data with a higher
+   *        dimensionality is projected
+   */
+  public ParallelLBABOD(PrimitiveSimilarityFunction<? super NumberVector> kernelFunction, int k, int l, RandomProjectionFamily projection, int projdim) {
+    super(kernelFunction, k, projection, projdim);
+    this.l = l;
+  }
+
+  @Override
+  public OutlierResult run(Relation<V> relation) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final KernelData data = prepare(relation, ids);
+
+    // Lower bounds, in parallel.
+    WritableDoubleDataStore abodvalues = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    LBProcessor lbm = new LBProcessor(data, k);
+    SharedDouble lbv = new SharedDouble();
+    WriteDoubleDataStoreProcessor storem = new WriteDoubleDataStoreProcessor(abodvalues);
+    lbm.connectOutput(lbv);
+    storem.connectInput(lbv);
+    ParallelExecutor.run(ids, lbm, storem);
+
+    DoubleMinMax minmaxabod = new DoubleMinMax();
+    double max = 0.;
+    ModifiableDoubleDBIDList candidates = DBIDUtil.newDistanceDBIDList(ids.size());
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final double lb = abodvalues.doubleValue(it);
+      max = lb > max ? lb : max;
+      candidates.add(lb, it);
+    }
+    minmaxabod.put(max); // Put maximum from approximate values.
+    candidates.sort();
+
+    // Refine candidates in parallel, in ascending order of their lower bound.
+    // Refinement stops when the next candidate cannot enter the top l of the
+    // scores refined so far. These may include scores of later candidates, so
+    // some candidates needed by the sequential rule may remain unrefined.
+    final int size = candidates.size();
+    final double[] exact = new double[size];
+    Arrays.fill(exact, Double.NaN);
+    final DoubleMaxHeap shared = new DoubleMaxHeap(l);
+    // As candidates are sorted, all later candidates can be skipped then.
+    final AtomicBoolean stop = new AtomicBoolean();
+    ParallelExecutor.run(size, () -> {
+      Worker worker = new Worker(data, k);
+      DoubleDBIDListIter pA = candidates.iter();
+      return i -> {
+        if(stop.get()) {
+          return;
+        }
+        pA.seek(i);
+        synchronized(shared) {
+          if(shared.size() >= l && pA.doubleValue() > shared.peek()) {
+            stop.set(true);
+            return;
+          }
+        }
+        final double abof = exact[i] = worker.exactABOF(data.offsets.intValue(pA));
+        synchronized(shared) {
+          updateTopScores(shared, abof);
+        }
+      };
+    });
+    // Apply the sequential stopping rule, so that the result does not depend
+    // on the number of threads. Additional refinements are discarded, missing
+    // refinements are computed now.
+    int refinements = 0;
+    DoubleMaxHeap topscores = new DoubleMaxHeap(l);
+    Worker worker = null;
+    for(DoubleDBIDListIter pA = candidates.iter(); pA.valid(); pA.advance()) {
+      if(topscores.size() >= l && pA.doubleValue() > topscores.peek()) {
+        break;
+      }
+      double abof = exact[pA.getOffset()];
+      if(abof != abof) { // Not refined yet.
+        worker = worker != null ? worker : new Worker(data, k);
+        abof = worker.exactABOF(data.offsets.intValue(pA));
+      }
+      abodvalues.putDouble(pA, abof);
+      minmaxabod.put(abof);
+      updateTopScores(topscores, abof);
+      ++refinements;
+    }
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(ParallelLBABOD.class.getName() + ".refinements", refinements));
+    }
+
+    // Build result representation.
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Angle-based Outlier Detection", "abod-outlier", abodvalues, ids);
+    OutlierScoreMeta scoreMeta = new InvertedOutlierScoreMeta(minmaxabod.getMin(), minmaxabod.getMax(), 0.0, Double.POSITIVE_INFINITY);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Update the heap of the l best (smallest) scores.
+   *
+   * @param topscores Heap
+   * @param abof New score
+   */
+  private void updateTopScores(DoubleMaxHeap topscores, double abof) {
+    if(topscores.size() < l) {
+      topscores.add(abof);
+    }
+    else if(abof < topscores.peek()) {
+      topscores.replaceTopElement(abof);
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Processor computing the LB-ABOF lower bounds.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.uses Worker
+   */
+  protected static class LBProcessor extends AbstractDoubleProcessor {
+    /**
+     * Shared data.
+     */
+    KernelData data;
+
+    /**
+     * Number of neighbors.
+     */
+    int k;
+
+    /**
+     * Constructor.
+     *
+     * @param data Shared data
+     * @param k Number of neighbors
+     */
+    public LBProcessor(KernelData data, int k) {
+      super();
+      this.data = data;
+      this.k = k;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      return new Instance(new Worker(data, k), executor.getInstance(output));
+    }
+
+    /**
+     * Instance for a single thread.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    private static class Instance extends AbstractDoubleProcessor.Instance {
+      /**
+       * Worker state.
+       */
+      Worker worker;
+
+      /**
+       * Constructor.
+       *
+       * @param worker Worker state
+       * @param output Output variable
+       */
+      protected Instance(Worker worker, SharedDouble.Instance output) {
+        super(output);
+        this.worker = worker;
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        final int a = worker.data.offsets.intValue(id);
+        worker.neighbors(a);
+        output.set(worker.lbABOF(a));
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<V extends NumberVector> extends ParallelFastABOD.Parameterizer<V> {
+    /**
+     * Number of outliers to find.
+     */
+    protected int l = 0;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      final IntParameter lP = new IntParameter(LBABOD.Parameterizer.L_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(lP)) {
+        l = lP.getValue();
+      }
+    }
+
+    @Override
+    protected ParallelLBABOD<V> makeInstance() {
+      return new ParallelLBABOD<>(kernelFunction, k, l, projection, projdim);
+    }
+  }
+}
@@ -0,0 +1,511 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance;
+
+import java.util.function.DoubleSupplier;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.Alias;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Top-n distance-based outlier detection with randomization and a simple
+ * pruning rule (ORCA).
+ * <p>
+ * The data is processed in random order, in blocks of candidates. For every
+ * block, the data set is scanned until the current kNN distance (or kNN
+ * weight) of a candidate drops below the score of the n-th best outlier found
+ * so far; the candidate can then no longer be a top-n outlier and is removed.
+ * On typical data, most candidates are removed after a small fraction of the
+ * scan.
+ * <p>
+ * The scores of the top n outliers are exact, and match {@link KNNOutlier}
+ * (or {@link KNNWeightOutlier}). All other objects receive an upper bound of
+ * their score, which is lower than the score of the n-th outlier.
+ * <p>
+ * Reference:
+ * <p>
+ * S. D. Bay, M. Schwabacher<br>
+ * Mining distance-based outliers in near linear time with randomization and a
+ * simple pruning rule<br>
+ * Proc. 9th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @apiviz.has Block
+ *
+ * @param <O> the type of objects handled by this algorithm
+ */
+@Title("ORCA: Mining distance-based outliers in near linear time")
+@Reference(authors = "S. D. Bay, M. Schwabacher", //
+    title = "Mining distance-based outliers in near linear time with randomization and a simple pruning rule", //
+    booktitle = "Proc. 9th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining", //
+    url = "https://doi.org/10.1145/956750.956758", //
+    bibkey = "DBLP:conf/kdd/BaySchwabacher03")
+@Alias("orca")
+public class ORCA<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> implements OutlierAlgorithm {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ORCA.class);
+
+  /**
+   * Number of neighbors (excluding the query point).
+   */
+  protected int k;
+
+  /**
+   * Number of outliers to find.
+   */
+  protected int n;
+
+  /**
+   * Number of candidates processed at once.
+   */
+  protected int blocksize;
+
+  /**
+   * Use the sum of the kNN distances instead of the kNN distance.
+   */
+  protected boolean weight;
+
+  /**
+   * Random generator for the processing order.
+   */
+  protected RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param k Number of neighbors (excluding the query point)
+   * @param n Number of outliers to find
+   * @param blocksize Number of candidates processed at once
+   * @param weight Use the kNN weight instead of the kNN distance
+   * @param rnd Random generator
+   */
+  public ORCA(DistanceFunction<? super O> distanceFunction, int k, int n, int blocksize, boolean weight, RandomFactory rnd) {
+    super(distanceFunction);
+    this.k = k;
+    this.n = n;
+    this.blocksize = blocksize;
+    this.weight = weight;
+    this.rnd = rnd;
+  }
+
+  /**
+   * Run the algorithm.
+   *
+   * @param database Database
+   * @param relation Data relation
+   * @return Outlier result
+   */
+  public OutlierResult run(Database database, Relation<O> relation) {
+    DistanceQuery<O> distq = database.getDistanceQuery(relation, getDistanceFunction());
+    ArrayModifiableDBIDs order = DBIDUtil.newArray(relation.getDBIDs());
+    DBIDUtil.randomShuffle(order, rnd);
+
+    final int size = order.size();
+    final int numblocks = (size + blocksize - 1) / blocksize;
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Processing blocks", numblocks, LOG) : null;
+    TopN top = new TopN(n);
+    Block[] blocks = new Block[numblocks];
+    for(int b = 0; b < numblocks; b++) {
+      Block block = blocks[b] = new Block(b * blocksize, Math.min(size, (b + 1) * blocksize), k, weight);
+      block.process(distq, order, top::cutoff);
+      top.merge(block);
+      LOG.incrementProcessed(prog);
+    }
+    LOG.ensureCompleted(prog);
+    return wrapResult(relation, order, blocks, LOG, ORCA.class.getName());
+  }
+
+  /**
+   * Build the outlier result.
+   *
+   * @param relation Data relation
+   * @param order Processing order
+   * @param blocks Processed blocks
+   * @param log Logger for statistics
+   * @param key Statistics prefix
+   * @return Outlier result
+   */
+  protected static OutlierResult wrapResult(Relation<?> relation, ArrayDBIDs order, Block[] blocks, Logging log, String key) {
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    DoubleMinMax minmax = new DoubleMinMax();
+    long distcalcs = 0, pruned = 0;
+    DBIDArrayIter it = order.iter();
+    for(Block block : blocks) {
+      for(int i = 0; i < block.score.length; i++) {
+        final double s = block.score[i];
+        scores.putDouble(it.seek(block.start + i), s);
+        minmax.put(s);
+      }
+      distcalcs += block.distcalcs;
+      pruned += block.score.length - block.survivors;
+    }
+    if(log.isStatistics()) {
+      final long size = order.size();
+      log.statistics(new LongStatistic(key + ".distance-computations", distcalcs));
+      log.statistics(new DoubleStatistic(key + ".distance-computations.relative", distcalcs / (double) (size * (size - 1))));
+      log.statistics(new LongStatistic(key + ".pruned", pruned));
+    }
+    DoubleRelation scoreres = new MaterializedDoubleRelation("ORCA top-n outlier score", "orca-outlier", scores, relation.getDBIDs());
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., Double.POSITIVE_INFINITY, 0.);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * The current top n outliers.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  protected static class TopN {
+    /**
+     * Heap of the best scores, weakest on top.
+     */
+    private DoubleIntegerMinHeap heap;
+
+    /**
+     * Number of outliers.
+     */
+    private int n;
+
+    /**
+     * Constructor.
+     *
+     * @param n Number of outliers
+     */
+    public TopN(int n) {
+      this.heap = new DoubleIntegerMinHeap(n);
+      this.n = n;
+    }
+
+    /**
+     * Score of the n-th outlier, the pruning threshold.
+     *
+     * @return Cutoff
+     */
+    public double cutoff() {
+      return heap.size() < n ? Double.NEGATIVE_INFINITY : heap.peekKey();
+    }
+
+    /**
+     * Merge the candidates that survived a block.
+     *
+     * @param block Processed block
+     * @return New cutoff
+     */
+    public double merge(Block block) {
+      for(int a = 0; a < block.survivors; a++) {
+        final int i = block.active[a];
+        final double s = block.score[i];
+        if(heap.size() < n) {
+          heap.add(s, block.start + i);
+        }
+        else if(s > heap.peekKey()) {
+          heap.replaceTopElement(s, block.start + i);
+        }
+      }
+      return cutoff();
+    }
+  }
+
+  /**
+   * A block of candidates, compared against the full data set.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  protected static class Block {
+    /**
+     * Offset of the first candidate in the processing order.
+     */
+    final int start;
+
+    /**
+     * Number of neighbors.
+     */
+    final int k;
+
+    /**
+     * Use the kNN weight.
+     */
+    final boolean weight;
+
+    /**
+     * Nearest neighbor distances, k per candidate, ascending.
+     */
+    final double[] knn;
+
+    /**
+     * Number of neighbors found per candidate.
+     */
+    final int[] count;
+
+    /**
+     * Score (exact for survivors) or upper bound (for pruned candidates).
+     */
+    final double[] score;
+
+    /**
+     * Candidates not yet pruned; after processing the first entries are the
+     * survivors.
+     */
+    final int[] active;
+
+    /**
+     * Number of surviving candidates.
+     */
+    int survivors;
+
+    /**
+     * Number of distance computations.
+     */
+    long distcalcs;
+
+    /**
+     * Constructor.
+     *
+     * @param start First candidate offset
+     * @param end End candidate offset (exclusive)
+     * @param k Number of neighbors
+     * @param weight Use the kNN weight
+     */
+    public Block(int start, int end, int k, boolean weight) {
+      final int size = end - start;
+      this.start = start;
+      this.k = k;
+      this.weight = weight;
+      this.knn = new double[size * k];
+      this.count = new int[size];
+      this.score = new double[size];
+      this.active = new int[size];
+      for(int i = 0; i < size; i++) {
+        active[i] = i;
+        score[i] = Double.POSITIVE_INFINITY;
+      }
+      this.survivors = size;
+    }
+
+    /**
+     * Scan the data set for the candidates of this block.
+     *
+     * @param distq Distance query
+     * @param order Processing order
+     * @param cutoff Current pruning threshold (may increase concurrently)
+     * @param <O> Object type
+     */
+    public <O> void process(DistanceQuery<O> distq, ArrayDBIDs order, DoubleSupplier cutoff) {
+      DBIDArrayIter cand = order.iter(), other = order.iter();
+      for(; other.valid() && survivors > 0; other.advance()) {
+        final int off = other.getOffset();
+        final double c = cutoff.getAsDouble();
+        for(int a = 0; a < survivors;) {
+          final int i = active[a];
+          if(start + i == off) {
+            a++;
+            continue; // Query point.
+          }
+          ++distcalcs;
+          if(insert(i, distq.distance(cand.seek(start + i), other)) && score[i] < c) {
+            active[a] = active[--survivors]; // Prune.
+            active[survivors] = i;
+            continue;
+          }
+          a++;
+        }
+      }
+    }
+
+    /**
+     * Insert a distance into the candidates neighbors.
+     *
+     * @param i Candidate
+     * @param d Distance
+     * @return {@code true} when the score bound changed
+     */
+    private boolean insert(int i, double d) {
+      final int base = i * k, c = count[i];
+      if(c == k && d >= knn[base + k - 1]) {
+        return false;
+      }
+      // Insertion sort step.
+      int j = (c < k ? c : k - 1) + base;
+      for(; j > base && knn[j - 1] > d; j--) {
+        knn[j] = knn[j - 1];
+      }
+      knn[j] = d;
+      if(c < k) {
+        count[i] = c + 1;
+        if(c + 1 < k) {
+          return false;
+        }
+      }
+      if(!weight) {
+        score[i] = knn[base + k - 1];
+        return true;
+      }
+      double sum = 0.;
+      for(int l = base, e = base + k; l < e; l++) {
+        sum += knn[l];
+      }
+      score[i] = sum;
+      return true;
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Number of outliers to find.
+     */
+    public static final OptionID N_ID = new OptionID("orca.n", "Number of outliers to find.");
+
+    /**
+     * Number of candidates to process at once.
+     */
+    public static final OptionID BLOCKSIZE_ID = new OptionID("orca.blocksize", "Number of candidates to process at once.");
+
+    /**
+     * Use the kNN weight instead of the kNN distance.
+     */
+    public static final OptionID WEIGHT_ID = new OptionID("orca.weight", "Use the sum of the kNN distances (kNN weight) instead of the kNN distance.");
+
+    /**
+     * Random seed for the processing order.
+     */
+    public static final OptionID SEED_ID = new OptionID("orca.seed", "Random seed for the processing order.");
+
+    /**
+     * Number of neighbors.
+     */
+    protected int k;
+
+    /**
+     * Number of outliers.
+     */
+    protected int n;
+
+    /**
+     * Block size.
+     */
+    protected int blocksize;
+
+    /**
+     * Use the kNN weight.
+     */
+    protected boolean weight;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter kP = new IntParameter(KNNOutlier.Parameterizer.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.intValue();
+      }
+      IntParameter nP = new IntParameter(N_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(nP)) {
+        n = nP.intValue();
+      }
+      IntParameter blocksizeP = new IntParameter(BLOCKSIZE_ID, 1000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(blocksizeP)) {
+        blocksize = blocksizeP.intValue();
+      }
+      Flag weightF = new Flag(WEIGHT_ID);
+      if(config.grab(weightF)) {
+        weight = weightF.isTrue();
+      }
+      RandomParameter rndP = new RandomParameter(SEED_ID);
+      if(config.grab(rndP)) {
+        rnd = rndP.getValue();
+      }
+    }
+
+    @Override
+    protected ORCA<O> makeInstance() {
+      return new ORCA<>(distanceFunction, k, n, blocksize, weight, rnd);
+    }
+  }
+}
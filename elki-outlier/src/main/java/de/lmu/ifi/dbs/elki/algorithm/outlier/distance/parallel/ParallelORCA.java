@@ -0,0 +1,147 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.ORCA;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Parallel version of the ORCA top-n distance-based outlier detection.
+ * <p>
+ * Blocks of candidates are processed concurrently. All threads share the
+ * pruning threshold, which is raised atomically whenever a block finishes, so
+ * that blocks still running prune with the best threshold known.
+ * <p>
+ * Reference:
+ * <p>
+ * S. D. Bay, M. Schwabacher<br>
+ * Mining distance-based outliers in near linear time with randomization and a
+ * simple pruning rule<br>
+ * Proc. 9th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <O> the type of objects handled by this algorithm
+ */
+public class ParallelORCA<O> extends ORCA<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelORCA.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param k Number of neighbors (excluding the query point)
+   * @param n Number of outliers to find
+   * @param blocksize Number of candidates processed at once
+   * @param weight Use the kNN weight instead of the kNN distance
+   * @param rnd Random generator
+   */
+  public ParallelORCA(DistanceFunction<? super O> distanceFunction, int k, int n, int blocksize, boolean weight, RandomFactory rnd) {
+    super(distanceFunction, k, n, blocksize, weight, rnd);
+  }
+
+  @Override
+  public OutlierResult run(Database database, Relation<O> relation) {
+    DistanceQuery<O> distq = database.getDistanceQuery(relation, getDistanceFunction());
+    ArrayModifiableDBIDs order = DBIDUtil.newArray(relation.getDBIDs());
+    DBIDUtil.randomShuffle(order, rnd);
+
+    final int size = order.size();
+    final int numblocks = (size + blocksize - 1) / blocksize;
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Processing blocks", numblocks, LOG) : null;
+    final TopN top = new TopN(n);
+    // Shared pruning threshold, as double bits.
+    final AtomicLong cutoff = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+    Block[] blocks = new Block[numblocks];
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      List<Future<Block>> futures = new ArrayList<>(numblocks);
+      for(int b = 0; b < numblocks; b++) {
+        final Block block = blocks[b] = new Block(b * blocksize, Math.min(size, (b + 1) * blocksize), k, weight);
+        futures.add(core.submit(() -> {
+          block.process(distq, order, () -> Double.longBitsToDouble(cutoff.get()));
+          synchronized(top) {
+            // Merging is serialized, the cutoff can only increase.
+            cutoff.set(Double.doubleToLongBits(top.merge(block)));
+          }
+          return block;
+        }));
+      }
+      for(Future<Block> fut : futures) {
+        fut.get();
+        LOG.incrementProcessed(prog);
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+    LOG.ensureCompleted(prog);
+    return wrapResult(relation, order, blocks, LOG, ParallelORCA.class.getName());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends ORCA.Parameterizer<O> {
+    @Override
+    protected ParallelORCA<O> makeInstance() {
+      return new ParallelORCA<>(distanceFunction, k, n, blocksize, weight, rnd);
+    }
+  }
+}
@@ -0,0 +1,597 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.forest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.statistics.distribution.GammaDistribution;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.ProbabilisticOutlierScore;
+import de.lmu.ifi.dbs.elki.utilities.Alias;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arraylike.DoubleArray;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arraylike.IntegerArray;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+import net.jafama.FastMath;
+
+/**
+ * Isolation Forest: outliers are isolated by fewer random splits than inliers.
+ * <p>
+ * An ensemble of random trees is built on small subsamples of the data. The
+ * outlier score is derived from the average path length needed to isolate an
+ * object, normalized by the expected path length of an unsuccessful search in
+ * a binary search tree. With an extension level greater than zero, random
+ * hyperplanes with {@code extension + 1} non-zero coefficients are used
+ * instead of axis-parallel splits (Extended Isolation Forest).
+ * <p>
+ * Trees are built in parallel and stored as flat primitive arrays; scoring is
+ * a parallel pass over the relation.
+ * <p>
+ * Reference:
+ * <p>
+ * F. T. Liu, K. M. Ting, Z.-H. Zhou<br>
+ * Isolation Forest<br>
+ * Proc. 8th IEEE Int. Conf. on Data Mining (ICDM 2008)
+ * <p>
+ * S. Hariri, M. Carrasco Kind, R. J. Brunner<br>
+ * Extended Isolation Forest<br>
+ * arXiv preprint arXiv:1811.02141
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @apiviz.composedOf Tree
+ */
+@Title("Isolation Forest")
+@Reference(authors = "F. T. Liu, K. M. Ting, Z.-H. Zhou", //
+    title = "Isolation Forest", //
+    booktitle = "Proc. 8th IEEE Int. Conf. on Data Mining (ICDM 2008)", //
+    url = "https://doi.org/10.1109/ICDM.2008.17", //
+    bibkey = "DBLP:conf/icdm/LiuTZ08")
+@Reference(authors = "S. Hariri, M. Carrasco Kind, R. J. Brunner", //
+    title = "Extended Isolation Forest", //
+    booktitle = "arXiv preprint arXiv:1811.02141", //
+    url = "https://arxiv.org/abs/1811.02141", //
+    bibkey = "DBLP:journals/corr/abs-1811-02141")
+@Alias({ "iforest", "isolationforest" })
+public class IsolationForest extends AbstractAlgorithm<OutlierResult> implements OutlierAlgorithm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(IsolationForest.class);
+
+  /**
+   * Number of trees.
+   */
+  protected int numtrees;
+
+  /**
+   * Subsample size.
+   */
+  protected int subsample;
+
+  /**
+   * Extension level, 0 for axis-parallel splits.
+   */
+  protected int extension;
+
+  /**
+   * Random generator.
+   */
+  protected RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param numtrees Number of trees
+   * @param subsample Subsample size
+   * @param extension Extension level, 0 for the standard Isolation Forest
+   * @param rnd Random generator
+   */
+  public IsolationForest(int numtrees, int subsample, int extension, RandomFactory rnd) {
+    super();
+    this.numtrees = numtrees;
+    this.subsample = subsample;
+    this.extension = extension;
+    this.rnd = rnd;
+  }
+
+  /**
+   * Run the algorithm.
+   *
+   * @param relation Data relation
+   * @return Outlier result
+   */
+  public OutlierResult run(Relation<? extends NumberVector> relation) {
+    final DBIDs ids = relation.getDBIDs();
+    final int dim = RelationUtil.dimensionality(relation);
+    final int nz = Math.min(extension, dim - 1) + 1;
+    final int psi = Math.min(subsample, ids.size());
+    final Random random = rnd.getSingleThreadedRandom();
+
+    // Build the trees in parallel, each with its own seed for reproducibility.
+    final Tree[] trees = new Tree[numtrees];
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Building isolation trees", numtrees, LOG) : null;
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      List<Future<?>> futures = new ArrayList<>(numtrees);
+      for(int t = 0; t < numtrees; t++) {
+        final int i = t;
+        final long seed = random.nextLong();
+        futures.add(core.submit(() -> {
+          Random r = new Random(seed);
+          trees[i] = new TreeBuilder(relation, DBIDUtil.randomSample(ids, psi, r), dim, nz, r).build();
+          return null;
+        }));
+      }
+      for(Future<?> f : futures) {
+        f.get();
+        LOG.incrementProcessed(prog);
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Building isolation trees failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+    LOG.ensureCompleted(prog);
+
+    // Parallel scoring pass.
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    ScoreProcessor scorem = new ScoreProcessor(relation, trees, c(psi));
+    SharedDouble scorev = new SharedDouble();
+    scorem.connectOutput(scorev);
+    WriteDoubleDataStoreProcessor storem = new WriteDoubleDataStoreProcessor(scores);
+    storem.connectInput(scorev);
+    DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+    mmm.connectInput(scorev);
+    ParallelExecutor.run(ids, scorem, storem, mmm);
+
+    DoubleMinMax minmax = mmm.getMinMax();
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Isolation Forest", "isolation-forest-outlier", scores, ids);
+    OutlierScoreMeta meta = new ProbabilisticOutlierScore(minmax.getMin(), minmax.getMax(), 0.5);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  /**
+   * Average path length of an unsuccessful search in a binary search tree.
+   *
+   * @param n Number of objects
+   * @return Expected path length
+   */
+  protected static double c(int n) {
+    return n <= 1 ? 0. : n == 2 ? 1. : //
+        2. * (FastMath.log(n - 1.) + GammaDistribution.EULERS_CONST) - 2. * (n - 1.) / n;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Isolation tree, stored as flat arrays in depth-first order. The left child
+   * of a node is the next node, the right child is stored explicitly.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Tree {
+    /**
+     * Number of coefficients per split.
+     */
+    final int nz;
+
+    /**
+     * Right child of each node, -1 for leaves.
+     */
+    final int[] right;
+
+    /**
+     * Split dimensions, {@code nz} per node.
+     */
+    final int[] dims;
+
+    /**
+     * Split coefficients, {@code nz} per node.
+     */
+    final double[] weights;
+
+    /**
+     * Split threshold; for leaves, the (adjusted) path length.
+     */
+    final double[] values;
+
+    /**
+     * Constructor.
+     *
+     * @param nz Number of coefficients per split
+     * @param right Right children
+     * @param dims Split dimensions
+     * @param weights Split coefficients
+     * @param values Thresholds and leaf path lengths
+     */
+    Tree(int nz, int[] right, int[] dims, double[] weights, double[] values) {
+      this.nz = nz;
+      this.right = right;
+      this.dims = dims;
+      this.weights = weights;
+      this.values = values;
+    }
+
+    /**
+     * Compute the path length of a vector.
+     *
+     * @param vec Vector
+     * @return Path length, including the leaf size adjustment
+     */
+    double pathLength(NumberVector vec) {
+      int node = 0;
+      while(right[node] >= 0) {
+        double s = 0.;
+        for(int j = 0, o = node * nz; j < nz; j++, o++) {
+          s += vec.doubleValue(dims[o]) * weights[o];
+        }
+        node = s < values[node] ? node + 1 : right[node];
+      }
+      return values[node];
+    }
+  }
+
+  /**
+   * Builder for a single isolation tree.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.has Tree
+   */
+  protected static class TreeBuilder {
+    /**
+     * Sample data.
+     */
+    final double[][] data;
+
+    /**
+     * Object order, partitioned during the build.
+     */
+    final int[] idx;
+
+    /**
+     * Dimension permutation scratch buffer.
+     */
+    final int[] perm;
+
+    /**
+     * Number of coefficients per split.
+     */
+    final int nz;
+
+    /**
+     * Maximum tree depth.
+     */
+    final int maxdepth;
+
+    /**
+     * Random generator.
+     */
+    final Random random;
+
+    /**
+     * Output arrays.
+     */
+    final IntegerArray right = new IntegerArray(), dims = new IntegerArray();
+
+    /**
+     * Output arrays.
+     */
+    final DoubleArray weights = new DoubleArray(), values = new DoubleArray();
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param sample Sample to build the tree on
+     * @param dim Dimensionality
+     * @param nz Number of coefficients per split
+     * @param random Random generator
+     */
+    TreeBuilder(Relation<? extends NumberVector> relation, DBIDs sample, int dim, int nz, Random random) {
+      final int size = sample.size();
+      this.data = new double[size][];
+      this.idx = new int[size];
+      int i = 0;
+      for(DBIDIter it = sample.iter(); it.valid(); it.advance(), i++) {
+        data[i] = relation.get(it).toArray();
+        idx[i] = i;
+      }
+      this.perm = new int[dim];
+      for(int d = 0; d < dim; d++) {
+        perm[d] = d;
+      }
+      this.nz = nz;
+      this.maxdepth = size > 1 ? (int) Math.ceil(FastMath.log(size) / FastMath.log(2)) : 0;
+      this.random = random;
+    }
+
+    /**
+     * Build the tree.
+     *
+     * @return Tree
+     */
+    Tree build() {
+      build(0, idx.length, 0);
+      return new Tree(nz, right.toArray(), dims.toArray(), weights.toArray(), values.toArray());
+    }
+
+    /**
+     * Build a subtree.
+     *
+     * @param start Start of the objects in {@link #idx}
+     * @param end End of the objects in {@link #idx}
+     * @param depth Current depth
+     */
+    private void build(int start, int end, int depth) {
+      final int node = right.size();
+      right.add(-1);
+      values.add(0.);
+      for(int j = 0; j < nz; j++) {
+        dims.add(0);
+        weights.add(0.);
+      }
+      if(end - start <= 1 || depth >= maxdepth) {
+        values.set(node, depth + c(end - start));
+        return;
+      }
+      // Choose the split dimensions, coefficients and intercept.
+      double threshold = 0.;
+      for(int j = 0, o = node * nz; j < nz; j++, o++) {
+        final int r = j + random.nextInt(perm.length - j);
+        final int d = perm[r];
+        perm[r] = perm[j];
+        perm[j] = d;
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for(int i = start; i < end; i++) {
+          final double v = data[idx[i]][d];
+          min = v < min ? v : min;
+          max = v > max ? v : max;
+        }
+        final double w = nz == 1 ? 1. : random.nextGaussian();
+        dims.set(o, d);
+        weights.set(o, w);
+        threshold += w * (min + random.nextDouble() * (max - min));
+      }
+      values.set(node, threshold);
+      // Partition the objects.
+      int mid = start;
+      for(int i = start; i < end; i++) {
+        double s = 0.;
+        for(int j = 0, o = node * nz; j < nz; j++, o++) {
+          s += data[idx[i]][dims.get(o)] * weights.get(o);
+        }
+        if(s < threshold) {
+          final int tmp = idx[mid];
+          idx[mid++] = idx[i];
+          idx[i] = tmp;
+        }
+      }
+      build(start, mid, depth + 1);
+      right.set(node, right.size());
+      build(mid, end, depth + 1);
+    }
+  }
+
+  /**
+   * Processor to compute the isolation forest score.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.uses Tree
+   */
+  protected static class ScoreProcessor extends AbstractDoubleProcessor {
+    /**
+     * Data relation.
+     */
+    Relation<? extends NumberVector> relation;
+
+    /**
+     * Trees.
+     */
+    Tree[] trees;
+
+    /**
+     * Normalization: expected path length for the subsample size.
+     */
+    double norm;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param trees Trees
+     * @param cpsi Expected path length for the subsample size
+     */
+    public ScoreProcessor(Relation<? extends NumberVector> relation, Tree[] trees, double cpsi) {
+      super();
+      this.relation = relation;
+      this.trees = trees;
+      this.norm = cpsi > 0 ? 1. / (cpsi * trees.length) : 0.;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      return new Instance(executor.getInstance(output));
+    }
+
+    /**
+     * Instance for a single thread.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    private class Instance extends AbstractDoubleProcessor.Instance {
+      /**
+       * Constructor.
+       *
+       * @param output Output variable
+       */
+      protected Instance(SharedDouble.Instance output) {
+        super(output);
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        final NumberVector vec = relation.get(id);
+        double sum = 0.;
+        for(Tree tree : trees) {
+          sum += tree.pathLength(vec);
+        }
+        output.set(FastMath.pow(2., -sum * norm));
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Number of trees.
+     */
+    public static final OptionID NUM_TREES_ID = new OptionID("iforest.numtrees", "Number of trees to use.");
+
+    /**
+     * Subsample size.
+     */
+    public static final OptionID SUBSAMPLE_ID = new OptionID("iforest.subsample", "Subsampling size for each tree.");
+
+    /**
+     * Extension level.
+     */
+    public static final OptionID EXTENSION_ID = new OptionID("iforest.extension", "Extension level: number of additional dimensions of the random split hyperplanes (0 for the standard, axis-parallel Isolation Forest).");
+
+    /**
+     * Random seed.
+     */
+    public static final OptionID SEED_ID = new OptionID("iforest.seed", "Random generator seed.");
+
+    /**
+     * Number of trees.
+     */
+    protected int numtrees;
+
+    /**
+     * Subsample size.
+     */
+    protected int subsample;
+
+    /**
+     * Extension level.
+     */
+    protected int extension;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter numtreesP = new IntParameter(NUM_TREES_ID, 100) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(numtreesP)) {
+        numtrees = numtreesP.intValue();
+      }
+      IntParameter subsampleP = new IntParameter(SUBSAMPLE_ID, 256) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT);
+      if(config.grab(subsampleP)) {
+        subsample = subsampleP.intValue();
+      }
+      IntParameter extensionP = new IntParameter(EXTENSION_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(extensionP)) {
+        extension = extensionP.intValue();
+      }
+      RandomParameter rndP = new RandomParameter(SEED_ID);
+      if(config.grab(rndP)) {
+        rnd = rndP.getValue();
+      }
+    }
+
+    @Override
+    protected IsolationForest makeInstance() {
+      return new IsolationForest(numtrees, subsample, extension, rnd);
+    }
+  }
+}
@@ -101,7 +101,7 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
   /**
    * Minimum size for a leaf.
    */
-  private int nmin;
+  protected int nmin;
 
   /**
    * Alpha (level difference of sampling and counting neighborhoods)
@@ -116,7 +116,7 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
   /**
    * Random generator
    */
-  private RandomFactory rnd;
+  protected RandomFactory rnd;
 
   /**
    * Distance function
@@ -142,46 +142,16 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
   }
 
   public OutlierResult run(Database database, Relation<O> relation) {
-    final int dim = RelationUtil.dimensionality(relation);
     final Random random = rnd.getSingleThreadedRandom();
     FiniteProgress progressPreproc = LOG.isVerbose() ? new FiniteProgress("Build aLOCI quadtress", g, LOG) : null;
 
     // Compute extend of dataset.
-    double[] min, max;
-    {
-      double[][] hbbs = RelationUtil.computeMinMax(relation);
-      min = hbbs[0];
-      max = hbbs[1];
-      double maxd = 0;
-      for(int i = 0; i < dim; i++) {
-        maxd = MathUtil.max(maxd, max[i] - min[i]);
-      }
-      // Enlarge bounding box to have equal lengths.
-      for(int i = 0; i < dim; i++) {
-        double diff = (maxd - (max[i] - min[i])) * .5;
-        min[i] -= diff;
-        max[i] += diff;
-      }
-    }
+    double[][] bbox = computeBoundingBox(relation);
+    double[] min = bbox[0], max = bbox[1];
 
     List<ALOCIQuadTree> qts = new ArrayList<>(g);
-
-    double[] nshift = new double[dim];
-    ALOCIQuadTree qt = new ALOCIQuadTree(min, max, nshift, nmin, relation);
-    qts.add(qt);
-    LOG.incrementProcessed(progressPreproc);
-    /*
-     * create the remaining g-1 shifted QuadTrees. This not clearly described in
-     * the paper and therefore implemented in a way that achieves good results
-     * with the test data.
-     */
-    for(int shift = 1; shift < g; shift++) {
-      double[] svec = new double[dim];
-      for(int i = 0; i < dim; i++) {
-        svec[i] = random.nextDouble() * (max[i] - min[i]);
-      }
-      qt = new ALOCIQuadTree(min, max, svec, nmin, relation);
-      qts.add(qt);
+    for(double[] svec : computeShifts(min, max, random)) {
+      qts.add(new ALOCIQuadTree(min, max, svec, nmin, relation));
       LOG.incrementProcessed(progressPreproc);
     }
     LOG.ensureCompleted(progressPreproc);
@@ -192,50 +162,7 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
     DoubleMinMax minmax = new DoubleMinMax();
 
     for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      final O obj = relation.get(iditer);
-
-      double maxmdefnorm = 0;
-      // For each level
-      for(int l = 0;; l++) {
-        // Find the closest C_i
-        Node ci = null;
-        for(int i = 0; i < g; i++) {
-          Node ci2 = qts.get(i).findClosestNode(obj, l);
-          if(ci2.getLevel() != l) {
-            continue;
-          }
-          // TODO: always use manhattan?
-          if(ci == null || distFunc.distance(ci, obj) > distFunc.distance(ci2, obj)) {
-            ci = ci2;
-          }
-        }
-        // LOG.debug("level:" + (ci != null ? ci.getLevel() : -1) +" l:"+l);
-        if(ci == null) {
-          break; // no matching tree for this level.
-        }
-
-        // Find the closest C_j
-        Node cj = null;
-        for(int i = 0; i < g; i++) {
-          Node cj2 = qts.get(i).findClosestNode(ci, l - alpha);
-          // TODO: allow higher levels or not?
-          if(cj != null && cj2.getLevel() < cj.getLevel()) {
-            continue;
-          }
-          // TODO: always use manhattan?
-          if(cj == null || distFunc.distance(cj, ci) > distFunc.distance(cj2, ci)) {
-            cj = cj2;
-          }
-        }
-        // LOG.debug("level:" + (cj != null ? cj.getLevel() : -1) +" l:"+l);
-        if(cj == null) {
-          continue; // no matching tree for this level.
-        }
-        double mdefnorm = calculate_MDEF_norm(cj, ci);
-        // LOG.warning("level:" + ci.getLevel() + "/" + cj.getLevel() +
-        // " mdef: " + mdefnorm);
-        maxmdefnorm = MathUtil.max(maxmdefnorm, mdefnorm);
-      }
+      final double maxmdefnorm = computeMDEFNorm(qts, relation.get(iditer));
       // Store results
       mdef_norm.putDouble(iditer, maxmdefnorm);
       minmax.put(maxmdefnorm);
@@ -248,6 +175,110 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
     return result;
   }
 
+  /**
+   * Compute the bounding box of the data set, enlarged to a cube.
+   *
+   * @param relation Data relation
+   * @return Minimum and maximum coordinates
+   */
+  protected static double[][] computeBoundingBox(Relation<? extends NumberVector> relation) {
+    final int dim = RelationUtil.dimensionality(relation);
+    double[][] hbbs = RelationUtil.computeMinMax(relation);
+    double[] min = hbbs[0], max = hbbs[1];
+    double maxd = 0;
+    for(int i = 0; i < dim; i++) {
+      maxd = MathUtil.max(maxd, max[i] - min[i]);
+    }
+    // Enlarge bounding box to have equal lengths.
+    for(int i = 0; i < dim; i++) {
+      double diff = (maxd - (max[i] - min[i])) * .5;
+      min[i] -= diff;
+      max[i] += diff;
+    }
+    return hbbs;
+  }
+
+  /**
+   * Generate the shift vectors of the quadtrees; the first tree is not shifted.
+   *
+   * @param min Minimum coordinates
+   * @param max Maximum coordinates
+   * @param random Random generator
+   * @return Shift vectors, one per tree
+   */
+  protected double[][] computeShifts(double[] min, double[] max, Random random) {
+    final int dim = min.length;
+    double[][] shifts = new double[g][];
+    shifts[0] = new double[dim];
+    /*
+     * create the remaining g-1 shifted QuadTrees. This not clearly described in
+     * the paper and therefore implemented in a way that achieves good results
+     * with the test data.
+     */
+    for(int shift = 1; shift < g; shift++) {
+      double[] svec = new double[dim];
+      for(int i = 0; i < dim; i++) {
+        svec[i] = random.nextDouble() * (max[i] - min[i]);
+      }
+      shifts[shift] = svec;
+    }
+    return shifts;
+  }
+
+  /**
+   * Compute the aLOCI score of a single object, the maximum normalized MDEF
+   * over all levels.
+   *
+   * @param qts Shifted quadtrees
+   * @param obj Query object
+   * @return Maximum normalized MDEF
+   */
+  protected double computeMDEFNorm(List<ALOCIQuadTree> qts, O obj) {
+    double maxmdefnorm = 0;
+    // For each level
+    for(int l = 0;; l++) {
+      // Find the closest C_i
+      Node ci = null;
+      for(int i = 0; i < g; i++) {
+        Node ci2 = qts.get(i).findClosestNode(obj, l);
+        if(ci2.getLevel() != l) {
+          continue;
+        }
+        // TODO: always use manhattan?
+        if(ci == null || distFunc.distance(ci, obj) > distFunc.distance(ci2, obj)) {
+          ci = ci2;
+        }
+      }
+      // LOG.debug("level:" + (ci != null ? ci.getLevel() : -1) +" l:"+l);
+      if(ci == null) {
+        break; // no matching tree for this level.
+      }
+
+      // Find the closest C_j
+      Node cj = null;
+      for(int i = 0; i < g; i++) {
+        Node cj2 = qts.get(i).findClosestNode(ci, l - alpha);
+        // TODO: allow higher levels or not?
+        if(cj != null && cj2.getLevel() < cj.getLevel()) {
+          continue;
+        }
+        // TODO: always use manhattan?
+        if(cj == null || distFunc.distance(cj, ci) > distFunc.distance(cj2, ci)) {
+          cj = cj2;
+        }
+      }
+      // LOG.debug("level:" + (cj != null ? cj.getLevel() : -1) +" l:"+l);
+      if(cj == null) {
+        continue; // no matching tree for this level.
+      }
+      double mdefnorm = calculate_MDEF_norm(cj, ci);
+      // LOG.warning("level:" + ci.getLevel() + "/" + cj.getLevel() +
+      // " mdef: " + mdefnorm);
+      maxmdefnorm = MathUtil.max(maxmdefnorm, mdefnorm);
+    }
+    return maxmdefnorm;
+  }
+
   /**
    * Method for the MDEF calculation
    *
@@ -307,7 +338,7 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
    *
    * @apiviz.composedOf Node
    */
-  static class ALOCIQuadTree {
+  protected static class ALOCIQuadTree {
     /**
      * Tree parameters
      */
@@ -519,7 +550,7 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
    *
    * @author Erich Schubert
    */
-  static class Node implements NumberVector {
+  protected static class Node implements NumberVector {
     /**
      * Position code
      */
@@ -550,6 +581,12 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
      */
     double[] center;
 
+    /**
+     * Sums of squared and cubed counts of the descendants, by depth (the last
+     * entry also applies to larger depths).
+     */
+    final long[] squareSums, cubicSums;
+
     /**
      * Constructor.
      *
@@ -565,9 +602,26 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
       this.count = count;
       this.level = level;
       this.children = children;
+      int height = 0;
       if(children != null) {
         for(Node child : children) {
           child.parent = this;
+          height = Math.max(height, child.squareSums.length);
+        }
+      }
+      // Aggregate the counts once, bottom-up, instead of on every query.
+      final long c = count;
+      squareSums = new long[height + 1];
+      cubicSums = new long[height + 1];
+      squareSums[0] = c * c;
+      cubicSums[0] = c * c * c;
+      if(children != null) {
+        for(Node child : children) {
+          final int last = child.squareSums.length - 1;
+          for(int d = 1; d <= height; d++) {
+            squareSums[d] += child.squareSums[d - 1 < last ? d - 1 : last];
+            cubicSums[d] += child.cubicSums[d - 1 < last ? d - 1 : last];
+          }
         }
       }
     }
@@ -591,20 +645,13 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
     }
 
     /**
-     * Get sum of squares, recursively
+     * Get sum of squares, of the descendants at the given depth
      *
      * @param levels Depth to collect
      * @return Sum of squares
      */
     public long getSquareSum(int levels) {
-      if(levels <= 0 || children == null) {
-        return ((long) count) * ((long) count);
-      }
-      long agg = 0;
-      for(Node child : children) {
-        agg += child.getSquareSum(levels - 1);
-      }
-      return agg;
+      return squareSums[levels <= 0 ? 0 : levels < squareSums.length ? levels : squareSums.length - 1];
     }
 
     /**
@@ -614,14 +661,7 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
      * @return sum of cubes
      */
     public long getCubicSum(int levels) {
-      if(levels <= 0 || children == null) {
-        return ((long) count) * ((long) count) * ((long) count);
-      }
-      long agg = 0;
-      for(Node child : children) {
-        agg += child.getCubicSum(levels - 1);
-      }
-      return agg;
+      return cubicSums[levels <= 0 ? 0 : levels < cubicSums.length ? levels : cubicSums.length - 1];
     }
 
     @Override
@@ -696,7 +736,7 @@ public class ALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResu
     /**
      * The distance function
      */
-    private NumberVectorDistanceFunction<?> distanceFunction;
+    protected NumberVectorDistanceFunction<?> distanceFunction;
 
     @Override
     protected void makeOptions(Parameterization config) {
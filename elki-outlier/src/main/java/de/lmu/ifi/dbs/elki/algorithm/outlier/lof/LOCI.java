@@ -27,6 +27,7 @@ import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
@@ -97,7 +98,7 @@ public class LOCI<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> im
   /**
    * Maximum radius.
    */
-  private double rmax;
+  protected double rmax;
 
   /**
    * Minimum neighborhood size.
@@ -145,65 +146,19 @@ public class LOCI<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> im
     WritableDoubleDataStore mdef_radius = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
     DoubleMinMax minmax = new DoubleMinMax();
 
-    // Shared instance, to save allocations.
+    // Shared instances, to save allocations.
     MeanVariance mv_n_r_alpha = new MeanVariance();
+    double[] mdef = new double[2];
 
     for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
       final DoubleIntArrayList cdist = interestingDistances.get(iditer);
-      final double maxdist = cdist.getDouble(cdist.size() - 1);
-      final int maxneig = cdist.getInt(cdist.size() - 1);
-
-      double maxmdefnorm = 0.0;
-      double maxnormr = 0;
-      if(maxneig >= nmin) {
-        // Compute the largest neighborhood we will need.
-        DoubleDBIDList maxneighbors = rangeQuery.getRangeForDBID(iditer, maxdist);
-        // TODO: Ensure the result is sorted. This is currently implied.
-
-        // For any critical distance, compute the normalized MDEF score.
-        for(int i = 0, size = cdist.size(); i < size; i++) {
-          // Only start when minimum size is fulfilled
-          if(cdist.getInt(i) < nmin) {
-            continue;
-          }
-          final double r = cdist.getDouble(i);
-          final double alpha_r = alpha * r;
-          // compute n(p_i, \alpha * r) from list (note: alpha_r is not cdist!)
-          final int n_alphar = cdist.getInt(cdist.find(alpha_r));
-          // compute \hat{n}(p_i, r, \alpha) and the corresponding \simga_{MDEF}
-          mv_n_r_alpha.reset();
-          for(DoubleDBIDListIter neighbor = maxneighbors.iter(); neighbor.valid(); neighbor.advance()) {
-            // Stop at radius r
-            if(neighbor.doubleValue() > r) {
-              break;
-            }
-            DoubleIntArrayList cdist2 = interestingDistances.get(neighbor);
-            int rn_alphar = cdist2.getInt(cdist2.find(alpha_r));
-            mv_n_r_alpha.put(rn_alphar);
-          }
-          // We only use the average and standard deviation
-          final double nhat_r_alpha = mv_n_r_alpha.getMean();
-          final double sigma_nhat_r_alpha = mv_n_r_alpha.getNaiveStddev();
-
-          // Redundant divisions by nhat_r_alpha removed.
-          final double mdef = nhat_r_alpha - n_alphar;
-          final double sigmamdef = sigma_nhat_r_alpha;
-          final double mdefnorm = mdef / sigmamdef;
-
-          if(mdefnorm > maxmdefnorm) {
-            maxmdefnorm = mdefnorm;
-            maxnormr = r;
-          }
-        }
-      }
-      else {
-        // FIXME: when nmin was not fulfilled - what is the proper value then?
-        maxmdefnorm = Double.POSITIVE_INFINITY;
-        maxnormr = maxdist;
-      }
-      mdef_norm.putDouble(iditer, maxmdefnorm);
-      mdef_radius.putDouble(iditer, maxnormr);
-      minmax.put(maxmdefnorm);
+      // Compute the largest neighborhood we will need.
+      final DoubleDBIDList maxneighbors = cdist.getInt(cdist.size() - 1) >= nmin ? //
+          rangeQuery.getRangeForDBID(iditer, cdist.getDouble(cdist.size() - 1)) : null;
+      computeMDEFNorm(cdist, maxneighbors, interestingDistances, mv_n_r_alpha, mdef);
+      mdef_norm.putDouble(iditer, mdef[0]);
+      mdef_radius.putDouble(iditer, mdef[1]);
+      minmax.put(mdef[0]);
       LOG.incrementProcessed(progressLOCI);
     }
     LOG.ensureCompleted(progressLOCI);
@@ -214,6 +169,70 @@ public class LOCI<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> im
     return result;
   }
 
+  /**
+   * Compute the maximum normalized MDEF of a single object, over all critical
+   * radii.
+   *
+   * @param cdist Critical distances of the object
+   * @param maxneighbors Neighbors of the object, sorted by distance, up to the
+   *        largest critical distance at least (unused if the object has less
+   *        than nmin neighbors)
+   * @param interestingDistances Critical distances of all objects
+   * @param mv_n_r_alpha Scratch buffer
+   * @param out Output: maximum normalized MDEF, and its radius
+   */
+  protected void computeMDEFNorm(DoubleIntArrayList cdist, DoubleDBIDList maxneighbors, DataStore<DoubleIntArrayList> interestingDistances, MeanVariance mv_n_r_alpha, double[] out) {
+    final double maxdist = cdist.getDouble(cdist.size() - 1);
+    final int maxneig = cdist.getInt(cdist.size() - 1);
+    if(maxneig < nmin) {
+      // FIXME: when nmin was not fulfilled - what is the proper value then?
+      out[0] = Double.POSITIVE_INFINITY;
+      out[1] = maxdist;
+      return;
+    }
+    double maxmdefnorm = 0.0;
+    double maxnormr = 0;
+    // TODO: Ensure the neighbor list is sorted. This is currently implied.
+
+    // For any critical distance, compute the normalized MDEF score.
+    for(int i = 0, size = cdist.size(); i < size; i++) {
+      // Only start when minimum size is fulfilled
+      if(cdist.getInt(i) < nmin) {
+        continue;
+      }
+      final double r = cdist.getDouble(i);
+      final double alpha_r = alpha * r;
+      // compute n(p_i, \alpha * r) from list (note: alpha_r is not cdist!)
+      final int n_alphar = cdist.getInt(cdist.find(alpha_r));
+      // compute \hat{n}(p_i, r, \alpha) and the corresponding \simga_{MDEF}
+      mv_n_r_alpha.reset();
+      for(DoubleDBIDListIter neighbor = maxneighbors.iter(); neighbor.valid(); neighbor.advance()) {
+        // Stop at radius r
+        if(neighbor.doubleValue() > r) {
+          break;
+        }
+        DoubleIntArrayList cdist2 = interestingDistances.get(neighbor);
+        int rn_alphar = cdist2.getInt(cdist2.find(alpha_r));
+        mv_n_r_alpha.put(rn_alphar);
+      }
+      // We only use the average and standard deviation
+      final double nhat_r_alpha = mv_n_r_alpha.getMean();
+      final double sigma_nhat_r_alpha = mv_n_r_alpha.getNaiveStddev();
+
+      // Redundant divisions by nhat_r_alpha removed.
+      final double mdef = nhat_r_alpha - n_alphar;
+      final double sigmamdef = sigma_nhat_r_alpha;
+      final double mdefnorm = mdef / sigmamdef;
+
+      if(mdefnorm > maxmdefnorm) {
+        maxmdefnorm = mdefnorm;
+        maxnormr = r;
+      }
+    }
+    out[0] = maxmdefnorm;
+    out[1] = maxnormr;
+  }
+
   /**
    * Preprocessing step: determine the radii of interest for each point.
    *
@@ -225,49 +244,59 @@ public class LOCI<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> im
     FiniteProgress progressPreproc = LOG.isVerbose() ? new FiniteProgress("LOCI preprocessing", ids.size(), LOG) : null;
     for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
       DoubleDBIDList neighbors = rangeQuery.getRangeForDBID(iditer, rmax);
-      // build list of critical distances
-      DoubleIntArrayList cdist = new DoubleIntArrayList(neighbors.size() << 1);
-      {
-        int i = 0;
-        DoubleDBIDListIter ni = neighbors.iter();
-        while(ni.valid()) {
-          final double curdist = ni.doubleValue();
-          ++i;
-          ni.advance();
-          // Skip, if tied to the next object:
-          if(ni.valid() && curdist == ni.doubleValue()) {
-            continue;
-          }
-          cdist.append(curdist, i);
-          // Scale radius, and reinsert
-          if(alpha != 1.) {
-            final double ri = curdist / alpha;
-            if(ri <= rmax) {
-              cdist.append(ri, Integer.MIN_VALUE);
-            }
+      interestingDistances.put(iditer, computeCriticalDistances(neighbors));
+      LOG.incrementProcessed(progressPreproc);
+    }
+    LOG.ensureCompleted(progressPreproc);
+  }
+
+  /**
+   * Build the list of critical distances of an object, along with the number
+   * of neighbors within each distance.
+   *
+   * @param neighbors Neighbors of the object within rmax, sorted by distance
+   * @return Critical distances
+   */
+  protected DoubleIntArrayList computeCriticalDistances(DoubleDBIDList neighbors) {
+    // build list of critical distances
+    DoubleIntArrayList cdist = new DoubleIntArrayList(neighbors.size() << 1);
+    {
+      int i = 0;
+      DoubleDBIDListIter ni = neighbors.iter();
+      while(ni.valid()) {
+        final double curdist = ni.doubleValue();
+        ++i;
+        ni.advance();
+        // Skip, if tied to the next object:
+        if(ni.valid() && curdist == ni.doubleValue()) {
+          continue;
+        }
+        cdist.append(curdist, i);
+        // Scale radius, and reinsert
+        if(alpha != 1.) {
+          final double ri = curdist / alpha;
+          if(ri <= rmax) {
+            cdist.append(ri, Integer.MIN_VALUE);
           }
         }
       }
-      cdist.sort();
-
-      // fill the gaps to have fast lookups of number of neighbors at a given
-      // distance.
-      int lastk = 0;
-      for(int i = 0, size = cdist.size(); i < size; i++) {
-        final int k = cdist.getInt(i);
-        if(k == Integer.MIN_VALUE) {
-          cdist.setValue(i, lastk);
-        }
-        else {
-          lastk = k;
-        }
+    }
+    cdist.sort();
+
+    // fill the gaps to have fast lookups of number of neighbors at a given
+    // distance.
+    int lastk = 0;
+    for(int i = 0, size = cdist.size(); i < size; i++) {
+      final int k = cdist.getInt(i);
+      if(k == Integer.MIN_VALUE) {
+        cdist.setValue(i, lastk);
+      }
+      else {
+        lastk = k;
       }
-      // TODO: shrink the list, removing duplicate radii?
-
-      interestingDistances.put(iditer, cdist);
-      LOG.incrementProcessed(progressPreproc);
     }
-    LOG.ensureCompleted(progressPreproc);
+    // TODO: shrink the list, removing duplicate radii?
+    return cdist;
   }
 
   /**
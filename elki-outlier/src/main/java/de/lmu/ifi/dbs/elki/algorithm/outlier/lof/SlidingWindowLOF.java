@@ -0,0 +1,604 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof;
+
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Streaming LOF over a sliding window.
+ * <p>
+ * Objects arrive in the order of the relation, and only the most recent
+ * {@code window} objects are retained. Each object is scored on arrival,
+ * relative to the current window contents.
+ * <p>
+ * In contrast to {@link OnlineLOF}, reverse k nearest neighbor sets are not
+ * materialized, and updates do not cascade: the neighbor lists of the objects
+ * affected by an insertion or expiration are updated directly, and densities
+ * and scores are recomputed lazily when queried, based on modification stamps
+ * of the object and its k nearest neighbors. Each object keeps a few extra
+ * candidate neighbors, such that the expiration of a neighbor usually does not
+ * require a rescan of the window. Memory is bounded by
+ * {@code window * (k + slack)}.
+ * <p>
+ * Ties at the k-distance are not included in the neighborhoods, i.e., exactly
+ * k neighbors are used once the window is large enough.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @apiviz.composedOf Window
+ *
+ * @param <O> Object type
+ */
+public class SlidingWindowLOF<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> implements OutlierAlgorithm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(SlidingWindowLOF.class);
+
+  /**
+   * Window size.
+   */
+  protected int window;
+
+  /**
+   * Number of neighbors, excluding the query point.
+   */
+  protected int k;
+
+  /**
+   * Number of additional candidate neighbors to keep.
+   */
+  protected int slack;
+
+  /**
+   * Use the simplified LOF (without reachability distance).
+   */
+  protected boolean simplified;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param window Window size
+   * @param k Number of neighbors, excluding the query point
+   * @param slack Number of additional candidate neighbors to keep
+   * @param simplified Use the simplified LOF
+   */
+  public SlidingWindowLOF(DistanceFunction<? super O> distanceFunction, int window, int k, int slack, boolean simplified) {
+    super(distanceFunction);
+    this.window = window;
+    this.k = k;
+    this.slack = slack;
+    this.simplified = simplified;
+  }
+
+  /**
+   * Run the algorithm.
+   *
+   * @param relation Data relation, in arrival order
+   * @return Outlier result
+   */
+  public OutlierResult run(Relation<O> relation) {
+    DBIDs ids = relation.getDBIDs();
+    DistanceQuery<O> dq = relation.getDistanceQuery(getDistanceFunction());
+    Window<O> win = new Window<>(dq, window, k, slack, simplified);
+
+    WritableDoubleDataStore lofs = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    DoubleMinMax lofminmax = new DoubleMinMax();
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Sliding window LOF", ids.size(), LOG) : null;
+    final long start = System.nanoTime();
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      final double lof = win.score(win.insert(relation.get(iter)));
+      lofs.putDouble(iter, lof);
+      lofminmax.put(lof);
+      LOG.incrementProcessed(prog);
+    }
+    final long elapsed = System.nanoTime() - start;
+    LOG.ensureCompleted(prog);
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(SlidingWindowLOF.class.getName() + ".rescans", win.getRescans()));
+      LOG.statistics(new DoubleStatistic(SlidingWindowLOF.class.getName() + ".insertions-per-second", ids.size() * 1e9 / elapsed));
+    }
+
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Sliding Window LOF", "sliding-window-lof-outlier", lofs, ids);
+    OutlierScoreMeta scoreMeta = new QuotientOutlierScoreMeta(lofminmax.getMin(), lofminmax.getMax(), 0., Double.POSITIVE_INFINITY, 1.);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Sliding window state. Objects are stored in a ring buffer, and referenced
+   * by their slot number, which is valid until the object expires.
+   * <p>
+   * This class is not thread safe.
+   *
+   * @author Erich Schubert
+   *
+   * @param <O> Object type
+   */
+  public static class Window<O> {
+    /**
+     * Distance query.
+     */
+    private final DistanceQuery<O> dq;
+
+    /**
+     * Window capacity.
+     */
+    private final int capacity;
+
+    /**
+     * Number of neighbors, and length of the candidate lists.
+     */
+    private final int k, cand;
+
+    /**
+     * Use the simplified LOF (without reachability distance).
+     */
+    private final boolean simplified;
+
+    /**
+     * Objects in the window.
+     */
+    private final Object[] objs;
+
+    /**
+     * Candidate neighbors (slots) and distances, sorted by distance, with
+     * {@link #cand} entries per object.
+     */
+    private final int[] nslot;
+
+    /**
+     * Candidate neighbor distances.
+     */
+    private final double[] ndist;
+
+    /**
+     * Number of valid candidates per object.
+     */
+    private final int[] ncount;
+
+    /**
+     * Lower bound for the distances of objects not in the candidate list.
+     */
+    private final double[] nbound;
+
+    /**
+     * Stamps of the last change of the k nearest neighbors, of the last
+     * density computation, and of the last score computation.
+     */
+    private final long[] knnstamp, lrdstamp, lofstamp;
+
+    /**
+     * Cached densities and scores.
+     */
+    private final double[] lrds, lofs;
+
+    /**
+     * Number of objects inserted, and current number of objects in the
+     * window.
+     */
+    private long inserted = 0;
+
+    /**
+     * Number of objects currently in the window.
+     */
+    private int size = 0;
+
+    /**
+     * Number of full rescans after expirations.
+     */
+    private long rescans = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param dq Distance query
+     * @param capacity Window size
+     * @param k Number of neighbors, excluding the query point
+     * @param slack Number of additional candidate neighbors to keep
+     * @param simplified Use the simplified LOF (without reachability)
+     */
+    public Window(DistanceQuery<O> dq, int capacity, int k, int slack, boolean simplified) {
+      this.dq = dq;
+      this.capacity = capacity;
+      this.k = k;
+      this.cand = k + slack;
+      this.simplified = simplified;
+      this.objs = new Object[capacity];
+      this.nslot = new int[capacity * cand];
+      this.ndist = new double[capacity * cand];
+      this.ncount = new int[capacity];
+      this.nbound = new double[capacity];
+      this.knnstamp = new long[capacity];
+      this.lrdstamp = new long[capacity];
+      this.lofstamp = new long[capacity];
+      this.lrds = new double[capacity];
+      this.lofs = new double[capacity];
+    }
+
+    /**
+     * Insert a new object, expiring the oldest object if the window is full.
+     *
+     * @param obj New object
+     * @return Slot of the new object
+     */
+    public int insert(O obj) {
+      final long stamp = ++inserted;
+      final int p = (int) ((stamp - 1) % capacity);
+      if(size == capacity) {
+        expire(p, stamp);
+      }
+      else {
+        ++size;
+      }
+      objs[p] = obj;
+      ncount[p] = 0;
+      nbound[p] = Double.POSITIVE_INFINITY;
+      knnstamp[p] = stamp;
+      lrdstamp[p] = lofstamp[p] = 0;
+      for(int q = 0; q < size; q++) {
+        if(q == p) {
+          continue;
+        }
+        final double d = dq.distance(obj, get(q));
+        offer(p, q, d);
+        if(offer(q, p, d) < k) {
+          knnstamp[q] = stamp;
+        }
+      }
+      return p;
+    }
+
+    /**
+     * Remove the object in slot x from the window.
+     *
+     * @param x Slot to expire
+     * @param stamp Current stamp
+     */
+    private void expire(int x, long stamp) {
+      objs[x] = null;
+      final int need = Math.min(k, size - 2);
+      for(int q = 0; q < size; q++) {
+        if(q == x) {
+          continue;
+        }
+        final int pos = remove(q, x);
+        if(pos < 0) {
+          continue;
+        }
+        if(pos < k) {
+          knnstamp[q] = stamp;
+        }
+        if(ncount[q] < need) {
+          rescan(q, x);
+        }
+      }
+    }
+
+    /**
+     * Rebuild the candidate list of slot q.
+     *
+     * @param q Slot to rebuild
+     * @param skip Slot to skip
+     */
+    private void rescan(int q, int skip) {
+      ++rescans;
+      ncount[q] = 0;
+      nbound[q] = Double.POSITIVE_INFINITY;
+      final O obj = get(q);
+      for(int o = 0; o < size; o++) {
+        if(o != q && o != skip) {
+          offer(q, o, dq.distance(obj, get(o)));
+        }
+      }
+    }
+
+    /**
+     * Offer a candidate neighbor to the list of slot q.
+     * <p>
+     * Candidates not closer than any object previously dropped from the list
+     * are rejected, such that the list always contains the exact nearest
+     * neighbors within the window, even after removals.
+     *
+     * @param q Slot to update
+     * @param o Candidate neighbor
+     * @param d Distance
+     * @return Insertion position, or {@code cand} if not inserted
+     */
+    private int offer(int q, int o, double d) {
+      final int base = q * cand;
+      int c = ncount[q];
+      if(d >= nbound[q]) {
+        return cand;
+      }
+      if(c == cand) {
+        if(d >= ndist[base + c - 1]) {
+          nbound[q] = d;
+          return cand;
+        }
+        nbound[q] = ndist[base + --c];
+      }
+      int i = c;
+      for(; i > 0 && ndist[base + i - 1] > d; i--) {
+        nslot[base + i] = nslot[base + i - 1];
+        ndist[base + i] = ndist[base + i - 1];
+      }
+      nslot[base + i] = o;
+      ndist[base + i] = d;
+      ncount[q] = c + 1;
+      return i;
+    }
+
+    /**
+     * Remove a neighbor from the list of slot q.
+     *
+     * @param q Slot to update
+     * @param o Neighbor to remove
+     * @return Former position, or -1 if not present
+     */
+    private int remove(int q, int o) {
+      final int base = q * cand, c = ncount[q];
+      for(int i = 0; i < c; i++) {
+        if(nslot[base + i] == o) {
+          System.arraycopy(nslot, base + i + 1, nslot, base + i, c - i - 1);
+          System.arraycopy(ndist, base + i + 1, ndist, base + i, c - i - 1);
+          ncount[q] = c - 1;
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Get the object in a slot.
+     *
+     * @param slot Slot
+     * @return Object
+     */
+    @SuppressWarnings("unchecked")
+    public O get(int slot) {
+      return (O) objs[slot];
+    }
+
+    /**
+     * Number of neighbors of a slot in use.
+     *
+     * @param q Slot
+     * @return Number of neighbors
+     */
+    private int numNeighbors(int q) {
+      return Math.min(k, ncount[q]);
+    }
+
+    /**
+     * k-distance of an object (or the largest neighbor distance, if fewer than
+     * k objects are in the window).
+     *
+     * @param q Slot
+     * @return k-distance
+     */
+    private double kdist(int q) {
+      final int c = numNeighbors(q);
+      return c > 0 ? ndist[q * cand + c - 1] : 0.;
+    }
+
+    /**
+     * Get the (simplified) local reachability density, recomputing it if a
+     * neighborhood it depends on has changed.
+     *
+     * @param q Slot
+     * @return Density
+     */
+    private double lrd(int q) {
+      final int base = q * cand, c = numNeighbors(q);
+      long valid = lrdstamp[q];
+      boolean stale = valid < knnstamp[q];
+      for(int i = 0; !stale && !simplified && i < c; i++) {
+        stale = valid < knnstamp[nslot[base + i]];
+      }
+      if(!stale) {
+        return lrds[q];
+      }
+      double sum = 0.;
+      for(int i = 0; i < c; i++) {
+        final double d = ndist[base + i];
+        sum += simplified ? d : Math.max(d, kdist(nslot[base + i]));
+      }
+      lrdstamp[q] = inserted;
+      return lrds[q] = sum > 0 ? c / sum : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Get the current LOF score of an object.
+     *
+     * @param q Slot
+     * @return LOF score
+     */
+    public double score(int q) {
+      final int base = q * cand, c = numNeighbors(q);
+      final double lrdp = lrd(q);
+      boolean stale = lofstamp[q] < lrdstamp[q];
+      for(int i = 0; i < c; i++) {
+        lrd(nslot[base + i]);
+        stale |= lofstamp[q] < lrdstamp[nslot[base + i]];
+      }
+      if(!stale) {
+        return lofs[q];
+      }
+      double lof = 1.;
+      if(c > 0 && !Double.isInfinite(lrdp)) {
+        double sum = 0.;
+        for(int i = 0; i < c; i++) {
+          final double val = lrds[nslot[base + i]];
+          sum += val;
+          if(Double.isInfinite(val)) {
+            break;
+          }
+        }
+        lof = sum / (lrdp * c);
+      }
+      lofstamp[q] = inserted;
+      return lofs[q] = lof;
+    }
+
+    /**
+     * Get the slots of the current k nearest neighbors.
+     *
+     * @param q Slot
+     * @return Neighbor slots, in ascending distance
+     */
+    public int[] getNeighbors(int q) {
+      return Arrays.copyOfRange(nslot, q * cand, q * cand + numNeighbors(q));
+    }
+
+    /**
+     * Number of objects currently in the window.
+     *
+     * @return Size
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Number of full rescans necessary after expirations.
+     *
+     * @return Number of rescans
+     */
+    public long getRescans() {
+      return rescans;
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Window size.
+     */
+    public static final OptionID WINDOW_ID = new OptionID("slidinglof.window", "Number of most recent objects retained in the sliding window.");
+
+    /**
+     * Additional candidate neighbors.
+     */
+    public static final OptionID SLACK_ID = new OptionID("slidinglof.slack", "Number of additional candidate neighbors kept per object, to avoid rescans when neighbors expire.");
+
+    /**
+     * Simplified LOF flag.
+     */
+    public static final OptionID SIMPLIFIED_ID = new OptionID("slidinglof.simplified", "Use the simplified LOF, without reachability distance.");
+
+    /**
+     * Window size.
+     */
+    protected int window;
+
+    /**
+     * Number of neighbors.
+     */
+    protected int k;
+
+    /**
+     * Additional candidate neighbors.
+     */
+    protected int slack;
+
+    /**
+     * Use the simplified LOF.
+     */
+    protected boolean simplified;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter kP = new IntParameter(LOF.Parameterizer.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.intValue();
+      }
+      IntParameter windowP = new IntParameter(WINDOW_ID, 1000) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT);
+      if(config.grab(windowP)) {
+        window = windowP.intValue();
+      }
+      IntParameter slackP = new IntParameter(SLACK_ID, 5) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(slackP)) {
+        slack = slackP.intValue();
+      }
+      Flag simplifiedF = new Flag(SIMPLIFIED_ID);
+      if(config.grab(simplifiedF)) {
+        simplified = simplifiedF.isTrue();
+      }
+    }
+
+    @Override
+    protected SlidingWindowLOF<O> makeInstance() {
+      return new SlidingWindowLOF<>(distanceFunction, window, k, slack, simplified);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.ALOCI;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Parallel version of the approximate Local Correlation Integral.
+ * <p>
+ * The shifted quadtrees are independent of each other, and are bulk-loaded
+ * concurrently; the objects are then scored in parallel. The shift vectors are
+ * drawn in the same order as in {@link ALOCI}, so for the same seed the
+ * results are identical.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <O> Object type
+ */
+public class ParallelALOCI<O extends NumberVector> extends ALOCI<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelALOCI.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param nmin Minimum neighborhood size
+   * @param alpha Alpha value
+   * @param g Number of grids to use
+   * @param rnd Random generator.
+   */
+  public ParallelALOCI(NumberVectorDistanceFunction<?> distanceFunction, int nmin, int alpha, int g, RandomFactory rnd) {
+    super(distanceFunction, nmin, alpha, g, rnd);
+  }
+
+  @Override
+  public OutlierResult run(Database database, Relation<O> relation) {
+    double[][] bbox = computeBoundingBox(relation);
+    final double[] min = bbox[0], max = bbox[1];
+    final double[][] shifts = computeShifts(min, max, rnd.getSingleThreadedRandom());
+
+    // Build the shifted quadtrees concurrently.
+    final ALOCIQuadTree[] trees = new ALOCIQuadTree[shifts.length];
+    ParallelExecutor.run(shifts.length, i -> trees[i] = new ALOCIQuadTree(min, max, shifts[i], nmin, relation));
+    final List<ALOCIQuadTree> qts = Arrays.asList(trees);
+
+    // Score all objects.
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final double[] scores = new double[ids.size()];
+    ParallelExecutor.run(scores.length, i -> scores[i] = computeMDEFNorm(qts, relation.get(ids.iter().seek(i))));
+
+    WritableDoubleDataStore mdef_norm = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    DoubleMinMax minmax = new DoubleMinMax();
+    for(DBIDArrayIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      final double maxmdefnorm = scores[iditer.getOffset()];
+      mdef_norm.putDouble(iditer, maxmdefnorm);
+      minmax.put(maxmdefnorm);
+    }
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("aLOCI normalized MDEF", "aloci-mdef-outlier", mdef_norm, relation.getDBIDs());
+    OutlierScoreMeta scoreMeta = new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O extends NumberVector> extends ALOCI.Parameterizer<O> {
+    @Override
+    protected ParallelALOCI<O> makeInstance() {
+      return new ParallelALOCI<>(distanceFunction, nmin, alpha, g, rnd);
+    }
+  }
+}
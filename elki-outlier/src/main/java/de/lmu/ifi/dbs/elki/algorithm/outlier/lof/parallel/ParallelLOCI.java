@@ -0,0 +1,144 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOCI;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+
+/**
+ * Parallel version of the exact Local Correlation Integral.
+ * <p>
+ * In contrast to {@link LOCI}, only a single range query with radius rmax is
+ * run per object. The sorted result is kept, and used both for the critical
+ * distances and for the sampling neighborhoods at all radii, instead of
+ * querying again in the second phase. Both phases run in parallel. This trades
+ * memory (all neighborhoods within rmax are kept) for queries; the results
+ * are identical to {@link LOCI}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <O> Object type
+ */
+public class ParallelLOCI<O> extends LOCI<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelLOCI.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param rmax Maximum radius
+   * @param nmin Minimum neighborhood size
+   * @param alpha Alpha value
+   */
+  public ParallelLOCI(DistanceFunction<? super O> distanceFunction, double rmax, int nmin, double alpha) {
+    super(distanceFunction, rmax, nmin, alpha);
+  }
+
+  @Override
+  public OutlierResult run(Database database, Relation<O> relation) {
+    DistanceQuery<O> distFunc = database.getDistanceQuery(relation, getDistanceFunction());
+    final RangeQuery<O> rangeQuery = database.getRangeQuery(distFunc, rmax);
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+
+    // LOCI preprocessing step: one range query per object.
+    final DoubleDBIDList[] neighbors = new DoubleDBIDList[size];
+    final DoubleIntArrayList[] cdists = new DoubleIntArrayList[size];
+    ParallelExecutor.run(size, i -> {
+      neighbors[i] = rangeQuery.getRangeForDBID(ids.iter().seek(i), rmax);
+      cdists[i] = computeCriticalDistances(neighbors[i]);
+    });
+    final WritableDataStore<DoubleIntArrayList> interestingDistances = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_SORTED, DoubleIntArrayList.class);
+    for(DBIDArrayIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      interestingDistances.put(iditer, cdists[iditer.getOffset()]);
+    }
+
+    // LOCI main step, reusing the neighborhoods.
+    final double[] norms = new double[size], radii = new double[size];
+    ParallelExecutor.run(size, i -> {
+      double[] mdef = new double[2];
+      computeMDEFNorm(cdists[i], neighbors[i], interestingDistances, new MeanVariance(), mdef);
+      norms[i] = mdef[0];
+      radii[i] = mdef[1];
+    });
+
+    WritableDoubleDataStore mdef_norm = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    WritableDoubleDataStore mdef_radius = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    DoubleMinMax minmax = new DoubleMinMax();
+    for(DBIDArrayIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      final int i = iditer.getOffset();
+      mdef_norm.putDouble(iditer, norms[i]);
+      mdef_radius.putDouble(iditer, radii[i]);
+      minmax.put(norms[i]);
+    }
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("LOCI normalized MDEF", "loci-mdef-outlier", mdef_norm, relation.getDBIDs());
+    OutlierScoreMeta scoreMeta = new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY, 0.0);
+    OutlierResult result = new OutlierResult(scoreMeta, scoreResult);
+    result.addChildResult(new MaterializedDoubleRelation("LOCI MDEF Radius", "loci-critical-radius", mdef_radius, relation.getDBIDs()));
+    return result;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends LOCI.Parameterizer<O> {
+    @Override
+    protected ParallelLOCI<O> makeInstance() {
+      return new ParallelLOCI<>(distanceFunction, rmax, nmin, alpha);
+    }
+  }
+}
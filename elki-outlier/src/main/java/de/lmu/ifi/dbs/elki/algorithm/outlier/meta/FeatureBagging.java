@@ -22,6 +22,7 @@ package de.lmu.ifi.dbs.elki.algorithm.outlier.meta;
 
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.Callable;
 
 import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
@@ -33,7 +34,9 @@ import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
@@ -42,6 +45,8 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.subspace.SubspaceEuclideanD
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.OrderedTaskRunner;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
@@ -55,7 +60,6 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameteriz
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
-import de.lmu.ifi.dbs.elki.utilities.pairs.Pair;
 import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
 
 /**
@@ -65,6 +69,9 @@ import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
  * the same algorithm (due to incompatible score ranges), we do not allow using
  * arbitrary algorithms.
  * <p>
+ * The LOF runs are executed concurrently, bounded by the available processors
+ * and memory, and combined as they finish.
+ * <p>
  * Reference:<br>
  * A. Lazarevic, V. Kumar<br>
  * Feature Bagging for Outlier Detection<br>
@@ -135,82 +142,51 @@ public class FeatureBagging extends AbstractAlgorithm<OutlierResult> implements
     final int maxdim = dbdim - 1;
     final Random rand = rnd.getSingleThreadedRandom();
 
-    ArrayList<OutlierResult> results = new ArrayList<>(num);
-    {
-      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("LOF iterations", num, LOG) : null;
-      for(int i = 0; i < num; i++) {
-        long[] dimset = randomSubspace(dbdim, mindim, maxdim, rand);
-        SubspaceEuclideanDistanceFunction df = new SubspaceEuclideanDistanceFunction(dimset);
-        LOF<NumberVector> lof = new LOF<>(k, df);
-
-        // run LOF and collect the result
-        OutlierResult result = lof.run(database, relation);
-        results.add(result);
-        LOG.incrementProcessed(prog);
-      }
-      LOG.ensureCompleted(prog);
-    }
-
-    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
-    DoubleMinMax minmax = new DoubleMinMax();
-    if(breadth) {
-      FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Combining results", relation.size(), LOG) : null;
-      @SuppressWarnings("unchecked")
-      Pair<DBIDIter, DoubleRelation>[] IDVectorOntoScoreVector = (Pair<DBIDIter, DoubleRelation>[]) new Pair[results.size()];
-
-      // Mapping score-sorted DBID-Iterators onto their corresponding scores.
-      // We need to initialize them now be able to iterate them "in parallel".
-      {
-        int i = 0;
-        for(OutlierResult r : results) {
-          IDVectorOntoScoreVector[i] = new Pair<DBIDIter, DoubleRelation>(r.getOrdering().order(relation.getDBIDs()).iter(), r.getScores());
-          i++;
-        }
+    // Choose all subspaces first, independent of the execution order.
+    // Members with the same subspace share a single LOF run.
+    ArrayList<long[]> distinct = new ArrayList<>(num);
+    int[] member = new int[num];
+    for(int i = 0; i < num; i++) {
+      long[] dimset = randomSubspace(dbdim, mindim, maxdim, rand);
+      int j = 0;
+      while(j < distinct.size() && !BitsUtil.equal(distinct.get(j), dimset)) {
+        j++;
       }
-
-      // Iterating over the *lines* of the AS_t(i)-matrix.
-      for(int i = 0; i < relation.size(); i++) {
-        // Iterating over the elements of a line (breadth-first).
-        for(Pair<DBIDIter, DoubleRelation> pair : IDVectorOntoScoreVector) {
-          DBIDIter iter = pair.first;
-          // Always true if every algorithm returns a complete result (one score
-          // for every DBID).
-          if(iter.valid()) {
-            double score = pair.second.doubleValue(iter);
-            if(Double.isNaN(scores.doubleValue(iter))) {
-              scores.putDouble(iter, score);
-              minmax.put(score);
-            }
-            iter.advance();
-          }
-          else {
-            LOG.warning("Incomplete result: Iterator does not contain |DB| DBIDs");
-          }
-        }
-        // Progress does not take the initial mapping into account.
-        LOG.incrementProcessed(cprog);
+      if(j == distinct.size()) {
+        distinct.add(dimset);
       }
-      LOG.ensureCompleted(cprog);
+      member[i] = j;
+    }
+    int[] remaining = new int[distinct.size()];
+    for(int i = 0; i < num; i++) {
+      remaining[member[i]]++;
+    }
+    ArrayList<Callable<OutlierResult>> tasks = new ArrayList<>(distinct.size());
+    for(long[] dimset : distinct) {
+      tasks.add(() -> new LOF<NumberVector>(k, new SubspaceEuclideanDistanceFunction(dimset)).run(database, relation));
     }
-    else {
-      FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Combining results", relation.size(), LOG) : null;
-      for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
-        double sum = 0.0;
-        for(OutlierResult r : results) {
-          final double s = r.getScores().doubleValue(iter);
-          if(!Double.isNaN(s)) {
-            sum += s;
-          }
+
+    // Combine the results as they become available, in member order.
+    Combiner combiner = breadth ? new BreadthFirstCombiner(relation.getDBIDs()) : new SumCombiner(relation.getDBIDs());
+    OutlierResult[] shared = new OutlierResult[distinct.size()];
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("LOF iterations", num, LOG) : null;
+    int[] next = new int[1], received = new int[1];
+    // Each LOF run materializes the kNN of every object, and three scores.
+    final long bytesPerRun = relation.size() * (16L * (k + 1) + 64L);
+    OrderedTaskRunner.run(tasks, ParallelCore.getCore().getParallelism(), bytesPerRun, result -> {
+      shared[received[0]++] = result;
+      // Consume all members whose result is available.
+      for(; next[0] < num && member[next[0]] < received[0]; next[0]++) {
+        final int j = member[next[0]];
+        combiner.add(shared[j], relation.getDBIDs());
+        if(--remaining[j] == 0) {
+          shared[j] = null; // Release memory
         }
-        scores.putDouble(iter, sum);
-        minmax.put(sum);
-        LOG.incrementProcessed(cprog);
+        LOG.incrementProcessed(prog);
       }
-      LOG.ensureCompleted(cprog);
-    }
-    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax());
-    DoubleRelation scoreres = new MaterializedDoubleRelation("Feature bagging", "fb-outlier", scores, relation.getDBIDs());
-    return new OutlierResult(meta, scoreres);
+    });
+    LOG.ensureCompleted(prog);
+    return combiner.result(relation.getDBIDs());
   }
 
   /**
@@ -249,6 +225,131 @@ public class FeatureBagging extends AbstractAlgorithm<OutlierResult> implements
     return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
   }
 
+  /**
+   * Combination of the member results, one result at a time.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private abstract static class Combiner {
+    /**
+     * Combined scores.
+     */
+    protected WritableDoubleDataStore scores;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Object IDs
+     */
+    protected Combiner(DBIDs ids) {
+      scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    }
+
+    /**
+     * Add the next member result.
+     *
+     * @param result Member result
+     * @param ids Object IDs
+     */
+    protected abstract void add(OutlierResult result, DBIDs ids);
+
+    /**
+     * Produce the final result.
+     *
+     * @param ids Object IDs
+     * @return Combined outlier result
+     */
+    protected OutlierResult result(DBIDs ids) {
+      DoubleMinMax minmax = new DoubleMinMax();
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        final double score = scores.doubleValue(iter);
+        if(!Double.isNaN(score)) {
+          minmax.put(score);
+        }
+      }
+      OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax());
+      DoubleRelation scoreres = new MaterializedDoubleRelation("Feature bagging", "fb-outlier", scores, ids);
+      return new OutlierResult(meta, scoreres);
+    }
+  }
+
+  /**
+   * Cumulative sum combination.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class SumCombiner extends Combiner {
+    /**
+     * Constructor.
+     *
+     * @param ids Object IDs
+     */
+    protected SumCombiner(DBIDs ids) {
+      super(ids);
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        scores.putDouble(iter, 0.);
+      }
+    }
+
+    @Override
+    protected void add(OutlierResult result, DBIDs ids) {
+      DoubleRelation r = result.getScores();
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        final double s = r.doubleValue(iter);
+        if(!Double.isNaN(s)) {
+          scores.increment(iter, s);
+        }
+      }
+    }
+  }
+
+  /**
+   * Breadth-first combination: every object receives the score of the member
+   * that ranks it highest, earlier members winning ties.
+   * <p>
+   * This is equivalent to iterating over all rankings in parallel, but only
+   * needs one ranking at a time.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class BreadthFirstCombiner extends Combiner {
+    /**
+     * Best rank position seen so far.
+     */
+    private WritableIntegerDataStore best;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Object IDs
+     */
+    protected BreadthFirstCombiner(DBIDs ids) {
+      super(ids);
+      best = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP, Integer.MAX_VALUE);
+    }
+
+    @Override
+    protected void add(OutlierResult result, DBIDs ids) {
+      DoubleRelation r = result.getScores();
+      int pos = 0;
+      for(DBIDIter iter = result.getOrdering().order(ids).iter(); iter.valid(); iter.advance(), pos++) {
+        if(pos < best.intValue(iter)) {
+          best.putInt(iter, pos);
+          scores.putDouble(iter, r.doubleValue(iter));
+        }
+      }
+      if(pos < ids.size()) {
+        LOG.warning("Incomplete result: Iterator does not contain |DB| DBIDs");
+      }
+    }
+  }
+
   /**
    * Parameterization class.
    *
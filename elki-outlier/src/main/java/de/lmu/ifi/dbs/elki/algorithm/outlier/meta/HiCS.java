@@ -21,6 +21,7 @@
 package de.lmu.ifi.dbs.elki.algorithm.outlier.meta;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
@@ -28,40 +29,44 @@ import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
-import de.lmu.ifi.dbs.elki.data.VectorUtil;
-import de.lmu.ifi.dbs.elki.data.VectorUtil.SortDBIDsBySingleDimension;
-import de.lmu.ifi.dbs.elki.data.projection.NumericalFeatureSelection;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
 import de.lmu.ifi.dbs.elki.database.ProxyDatabase;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
-import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
-import de.lmu.ifi.dbs.elki.database.relation.ProjectedView;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedRelation;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
 import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.AbstractProgress;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
 import de.lmu.ifi.dbs.elki.math.statistics.tests.GoodnessOfFitTest;
 import de.lmu.ifi.dbs.elki.math.statistics.tests.KolmogorovSmirnovTest;
+import de.lmu.ifi.dbs.elki.parallel.OrderedTaskRunner;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.IntegerArrayQuickSort;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.Heap;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.TopBoundedHeap;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
@@ -172,33 +177,24 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
    *         outlier detection algorithm
    */
   public OutlierResult run(Relation<V> relation) {
-    final DBIDs ids = relation.getDBIDs();
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
 
-    ArrayList<ArrayDBIDs> subspaceIndex = buildOneDimIndexes(relation);
-    Set<HiCSSubspace> subspaces = calculateSubspaces(relation, subspaceIndex, rnd.getSingleThreadedRandom());
+    SortedIndex subspaceIndex = new SortedIndex(relation, ids);
+    Set<HiCSSubspace> subspaces = calculateSubspaces(subspaceIndex, rnd.getSingleThreadedRandom());
 
     if(LOG.isVerbose()) {
       LOG.verbose("Number of high-contrast subspaces: " + subspaces.size());
     }
-    List<DoubleRelation> results = new ArrayList<>();
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Calculating Outlier scores for high Contrast subspaces", subspaces.size(), LOG) : null;
 
-    // run outlier detection and collect the result
-    // TODO extend so that any outlierAlgorithm can be used (use materialized
-    // relation instead of SubspaceEuclideanDistanceFunction?)
+    // run outlier detection and collect the result, concurrently
+    final NumberVector.Factory<V> factory = RelationUtil.getNumberVectorFactory(relation);
+    List<Callable<DoubleRelation>> tasks = new ArrayList<>(subspaces.size());
     for(HiCSSubspace dimset : subspaces) {
-      if(LOG.isVerbose()) {
-        LOG.verbose("Performing outlier detection in subspace " + dimset);
-      }
-
-      ProxyDatabase pdb = new ProxyDatabase(ids);
-      pdb.addRelation(new ProjectedView<>(relation, new NumericalFeatureSelection<V>(dimset)));
-
-      // run LOF and collect the result
-      OutlierResult result = outlierAlgorithm.run(pdb);
-      results.add(result.getScores());
-      LOG.incrementProcessed(prog);
+      tasks.add(() -> runSubspace(subspaceIndex, ids, factory, dimset, prog));
     }
+    List<DoubleRelation> results = new ArrayList<>(subspaces.size());
+    OrderedTaskRunner.run(tasks, ParallelCore.getCore().getParallelism(), 0L, results::add);
     LOG.ensureCompleted(prog);
 
     WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
@@ -222,37 +218,50 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
   }
 
   /**
-   * Calculates "index structures" for every attribute, i.e. sorts a
-   * ModifiableArray of every DBID in the database for every dimension and
-   * stores them in a list
-   * 
-   * @param relation Relation to index
-   * @return List of sorted objects
+   * Run the outlier detection algorithm on a single subspace.
+   * <p>
+   * The projected vectors are materialized once from the column index, rather
+   * than projecting on every access of the inner algorithm.
+   *
+   * @param subspaceIndex Column index
+   * @param ids Object IDs, in index order
+   * @param factory Vector factory
+   * @param dimset Subspace
+   * @param prog Progress
+   * @return Outlier scores
    */
-  private ArrayList<ArrayDBIDs> buildOneDimIndexes(Relation<? extends NumberVector> relation) {
-    final int dim = RelationUtil.dimensionality(relation);
-    ArrayList<ArrayDBIDs> subspaceIndex = new ArrayList<>(dim + 1);
-
-    SortDBIDsBySingleDimension comp = new VectorUtil.SortDBIDsBySingleDimension(relation);
-    for(int i = 0; i < dim; i++) {
-      ArrayModifiableDBIDs amDBIDs = DBIDUtil.newArray(relation.getDBIDs());
-      comp.setDimension(i);
-      amDBIDs.sort(comp);
-      subspaceIndex.add(amDBIDs);
+  private DoubleRelation runSubspace(SortedIndex subspaceIndex, ArrayDBIDs ids, NumberVector.Factory<V> factory, HiCSSubspace dimset, FiniteProgress prog) {
+    if(LOG.isVerbose()) {
+      LOG.verbose("Performing outlier detection in subspace " + dimset);
+    }
+    final int card = dimset.cardinality();
+    WritableDataStore<V> projected = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, factory.getRestrictionClass());
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final int o = it.getOffset();
+      double[] buf = new double[card];
+      for(int d = dimset.nextSetBit(0), i = 0; d >= 0; d = dimset.nextSetBit(d + 1)) {
+        buf[i++] = subspaceIndex.column[d][o];
+      }
+      projected.put(it, factory.newNumberVector(buf));
     }
+    ProxyDatabase pdb = new ProxyDatabase(ids);
+    pdb.addRelation(new MaterializedRelation<>("Projection " + dimset, "projection", new VectorFieldTypeInformation<>(factory, card), projected, ids));
 
-    return subspaceIndex;
+    // run LOF and collect the result
+    OutlierResult result = outlierAlgorithm.run(pdb);
+    LOG.incrementProcessed(prog);
+    return result.getScores();
   }
 
   /**
    * Identifies high contrast subspaces in a given full-dimensional database.
    * 
-   * @param relation the relation the HiCS should be evaluated for
    * @param subspaceIndex Subspace indexes
+   * @param random Random generator
    * @return a set of high contrast subspaces
    */
-  private Set<HiCSSubspace> calculateSubspaces(Relation<? extends NumberVector> relation, ArrayList<ArrayDBIDs> subspaceIndex, Random random) {
-    final int dbdim = RelationUtil.dimensionality(relation);
+  private Set<HiCSSubspace> calculateSubspaces(SortedIndex subspaceIndex, Random random) {
+    final int dbdim = subspaceIndex.column.length;
 
     FiniteProgress dprog = LOG.isVerbose() ? new FiniteProgress("Subspace dimensionality", dbdim, LOG) : null;
     if(dprog != null) {
@@ -263,16 +272,19 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
     TopBoundedHeap<HiCSSubspace> dDimensionalList = new TopBoundedHeap<>(cutoff, HiCSSubspace.SORT_BY_CONTRAST_ASC);
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Generating two-element subsets", (dbdim * (dbdim - 1)) >> 1, LOG) : null;
     // compute two-element sets of subspaces
+    ArrayList<HiCSSubspace> batch = new ArrayList<>();
     for(int i = 0; i < dbdim; i++) {
       for(int j = i + 1; j < dbdim; j++) {
         HiCSSubspace ts = new HiCSSubspace();
         ts.set(i);
         ts.set(j);
-        calculateContrast(relation, ts, subspaceIndex, random);
-        dDimensionalList.add(ts);
-        LOG.incrementProcessed(prog);
+        batch.add(ts);
       }
     }
+    calculateContrasts(subspaceIndex, batch, random, prog);
+    for(HiCSSubspace ts : batch) {
+      dDimensionalList.add(ts);
+    }
     LOG.ensureCompleted(prog);
 
     IndefiniteProgress qprog = LOG.isVerbose() ? new IndefiniteProgress("Testing subspace candidates", LOG) : null;
@@ -292,6 +304,7 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
       Collections.sort(candidateList, HiCSSubspace.SORT_BY_SUBSPACE);
 
       // TODO: optimize APRIORI style, by not even computing the bit set or?
+      batch.clear();
       for(int i = 0; i < candidateList.size() - 1; i++) {
         for(int j = i + 1; j < candidateList.size(); j++) {
           HiCSSubspace set1 = candidateList.get(i), set2 = candidateList.get(j);
@@ -302,12 +315,13 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
           if(joinedSet.cardinality() != d) {
             continue;
           }
-
-          calculateContrast(relation, joinedSet, subspaceIndex, random);
-          dDimensionalList.add(joinedSet);
-          LOG.incrementProcessed(qprog);
+          batch.add(joinedSet);
         }
       }
+      calculateContrasts(subspaceIndex, batch, random, qprog);
+      for(HiCSSubspace joinedSet : batch) {
+        dDimensionalList.add(joinedSet);
+      }
       // Prune
       for(HiCSSubspace cand : candidateList) {
         for(Heap<HiCSSubspace>.UnorderedIter it = dDimensionalList.unorderedIter(); it.valid(); it.advance()) {
@@ -327,45 +341,84 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
   }
 
   /**
-   * Calculates the actual contrast of a given subspace.
+   * Calculate the contrast of a batch of subspaces in parallel.
+   * <p>
+   * The random windows are drawn sequentially first, in candidate order, so
+   * that the random stream is consumed exactly as in a sequential run. Only
+   * the statistical tests are then run in parallel; the result does not
+   * depend on the number of threads.
+   *
+   * @param subspaceIndex Subspace indexes
+   * @param batch Subspaces to evaluate
+   * @param random Random generator
+   * @param prog Progress
+   */
+  private void calculateContrasts(SortedIndex subspaceIndex, List<HiCSSubspace> batch, Random random, AbstractProgress prog) {
+    final int[][] draws = new int[batch.size()][];
+    for(int c = 0; c < draws.length; c++) {
+      draws[c] = drawWindows(subspaceIndex, batch.get(c), random);
+    }
+    ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      List<Future<HiCSSubspace>> futures = new ArrayList<>(batch.size());
+      for(int c = 0; c < draws.length; c++) {
+        final HiCSSubspace subspace = batch.get(c);
+        final int[] d = draws[c];
+        futures.add(core.submit(() -> {
+          calculateContrast(subspaceIndex, subspace, d);
+          return subspace;
+        }));
+      }
+      for(Future<HiCSSubspace> fut : futures) {
+        fut.get();
+        LOG.incrementProcessed(prog);
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  /**
+   * Draw the random windows of all Monte-Carlo iterations of a subspace.
+   * <p>
+   * Windows that yield too small samples are redrawn, as the sequential
+   * algorithm does.
    * 
-   * @param relation Relation to process
-   * @param subspace Subspace
    * @param subspaceIndex Subspace indexes
+   * @param subspace Subspace
+   * @param random Random generator
+   * @return For every iteration, the chosen dimension followed by the window
+   *         starts of the other dimensions, in dimension order
    */
-  private void calculateContrast(Relation<? extends NumberVector> relation, HiCSSubspace subspace, ArrayList<ArrayDBIDs> subspaceIndex, Random random) {
+  private int[] drawWindows(SortedIndex subspaceIndex, HiCSSubspace subspace, Random random) {
+    final int size = subspaceIndex.size;
     final int card = subspace.cardinality();
-    final double alpha1 = FastMath.pow(alpha, (1.0 / card));
-    final int windowsize = (int) (relation.size() * alpha1);
-    final FiniteProgress prog = LOG.isDebugging() ? new FiniteProgress("Monte-Carlo iterations", m, LOG) : null;
+    final int windowsize = windowSize(size, card);
+    int[] starts = new int[subspaceIndex.column.length];
+    int[] draws = new int[m * card];
 
     int retries = 0;
-    double deviationSum = 0.0;
     for(int i = 0; i < m; i++) {
       // Choose a random set bit.
       int chosen = -1;
       for(int tmp = random.nextInt(card); tmp >= 0; tmp--) {
         chosen = subspace.nextSetBit(chosen + 1);
       }
-      // initialize sample
-      DBIDs conditionalSample = relation.getDBIDs();
-
+      // Choose the index blocks.
       for(int j = subspace.nextSetBit(0); j >= 0; j = subspace.nextSetBit(j + 1)) {
-        if(j == chosen) {
-          continue;
-        }
-        ArrayDBIDs sortedIndices = subspaceIndex.get(j);
-        ArrayModifiableDBIDs indexBlock = DBIDUtil.newArray(windowsize);
-        // initialize index block
-        DBIDArrayIter iter = sortedIndices.iter();
-        iter.seek(random.nextInt(relation.size() - windowsize));
-        for(int k = 0; k < windowsize; k++, iter.advance()) {
-          indexBlock.add(iter); // select index block
+        if(j != chosen) {
+          starts[j] = random.nextInt(size - windowsize);
         }
-
-        conditionalSample = DBIDUtil.intersection(conditionalSample, indexBlock);
       }
-      if(conditionalSample.size() < 10) {
+      if(scanWindows(subspaceIndex, subspace, chosen, starts, windowsize, null) < 10) {
         retries++;
         if(LOG.isDebugging()) {
           LOG.debug("Sample size very small. Retry no. " + retries);
@@ -378,33 +431,111 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
           continue;
         }
       }
-      // Project conditional set
-      double[] sampleValues = new double[conditionalSample.size()];
-      {
-        int l = 0;
-        for(DBIDIter iter = conditionalSample.iter(); iter.valid(); iter.advance()) {
-          sampleValues[l++] = relation.get(iter).doubleValue(chosen);
+      int k = i * card;
+      draws[k++] = chosen;
+      for(int j = subspace.nextSetBit(0); j >= 0; j = subspace.nextSetBit(j + 1)) {
+        if(j != chosen) {
+          draws[k++] = starts[j];
         }
       }
-      // Project full set
-      double[] fullValues = new double[relation.size()];
-      {
-        int l = 0;
-        for(DBIDIter iter = subspaceIndex.get(chosen).iter(); iter.valid(); iter.advance()) {
-          fullValues[l++] = relation.get(iter).doubleValue(chosen);
+    }
+    return draws;
+  }
+
+  /**
+   * Calculates the actual contrast of a given subspace.
+   * <p>
+   * Iterations with a NaN contrast cannot be redrawn here without changing the
+   * random stream of the other subspaces, and are skipped instead.
+   * 
+   * @param subspaceIndex Subspace indexes
+   * @param subspace Subspace
+   * @param draws Random windows, see
+   *        {@link #drawWindows(SortedIndex, HiCSSubspace, Random)}
+   */
+  private void calculateContrast(SortedIndex subspaceIndex, HiCSSubspace subspace, int[] draws) {
+    final int size = subspaceIndex.size;
+    final int card = subspace.cardinality();
+    final int windowsize = windowSize(size, card);
+
+    // Window start positions, and buffers.
+    int[] starts = new int[subspaceIndex.column.length];
+    double[] sampleBuffer = new double[windowsize];
+    double[] fullValues = new double[size];
+
+    double deviationSum = 0.0;
+    int valid = 0;
+    for(int i = 0, k = 0; i < m; i++) {
+      final int chosen = draws[k++];
+      for(int j = subspace.nextSetBit(0); j >= 0; j = subspace.nextSetBit(j + 1)) {
+        if(j != chosen) {
+          starts[j] = draws[k++];
         }
       }
+      int samplesize = scanWindows(subspaceIndex, subspace, chosen, starts, windowsize, sampleBuffer);
+      // Project conditional set
+      double[] sampleValues = Arrays.copyOf(sampleBuffer, samplesize);
+      // Full set, already sorted; copied because the test may modify it.
+      System.arraycopy(subspaceIndex.sorted[chosen], 0, fullValues, 0, size);
       double contrast = statTest.deviation(fullValues, sampleValues);
       if(Double.isNaN(contrast)) {
-        i--;
         LOG.warning("Contrast was NaN");
         continue;
       }
       deviationSum += contrast;
-      LOG.incrementProcessed(prog);
+      valid++;
     }
-    LOG.ensureCompleted(prog);
-    subspace.contrast = deviationSum / m;
+    // No valid sample: no evidence of contrast.
+    subspace.contrast = valid > 0 ? deviationSum / valid : 0.;
+  }
+
+  /**
+   * Window size for a subspace.
+   *
+   * @param size Data set size
+   * @param card Subspace dimensionality
+   * @return Window size
+   */
+  private int windowSize(int size, int card) {
+    return (int) (size * FastMath.pow(alpha, (1.0 / card)));
+  }
+
+  /**
+   * Collect the conditional sample: scan the window of the first dimension,
+   * and check the ranks in the other dimensions.
+   *
+   * @param subspaceIndex Subspace indexes
+   * @param subspace Subspace
+   * @param chosen Chosen (unconditioned) dimension
+   * @param starts Window starts
+   * @param windowsize Window size
+   * @param sampleBuffer Output buffer for the values of the chosen dimension,
+   *        may be {@code null} to only count
+   * @return Sample size
+   */
+  private static int scanWindows(SortedIndex subspaceIndex, HiCSSubspace subspace, int chosen, int[] starts, int windowsize, double[] sampleBuffer) {
+    int first = subspace.nextSetBit(0);
+    first = first == chosen ? subspace.nextSetBit(first + 1) : first;
+    final int[] order = subspaceIndex.order[first];
+    final double[] chosenColumn = subspaceIndex.column[chosen];
+    int samplesize = 0;
+    scan: for(int r = starts[first], end = r + windowsize; r < end; r++) {
+      final int o = order[r];
+      for(int j = subspace.nextSetBit(first + 1); j >= 0; j = subspace.nextSetBit(j + 1)) {
+        if(j == chosen) {
+          continue;
+        }
+        final int rank = subspaceIndex.rank[j][o];
+        if(rank < starts[j] || rank >= starts[j] + windowsize) {
+          continue scan;
+        }
+      }
+      if(sampleBuffer != null) {
+        sampleBuffer[samplesize] = chosenColumn[o];
+      }
+      samplesize++;
+    }
+    return samplesize;
   }
 
   @Override
@@ -496,6 +627,76 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
     };
   }
 
+  /**
+   * One-dimensional sorted indexes of every attribute, computed once and
+   * shared by all threads.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  protected static class SortedIndex {
+    /**
+     * Number of objects.
+     */
+    final int size;
+
+    /**
+     * Attribute values, by dimension and object offset.
+     */
+    final double[][] column;
+
+    /**
+     * Sorted attribute values, by dimension and rank.
+     */
+    final double[][] sorted;
+
+    /**
+     * Object offsets, by dimension and rank.
+     */
+    final int[][] order;
+
+    /**
+     * Object ranks, by dimension and object offset.
+     */
+    final int[][] rank;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation to index
+     * @param ids Object IDs, defining the offsets
+     */
+    protected SortedIndex(Relation<? extends NumberVector> relation, ArrayDBIDs ids) {
+      final int dim = RelationUtil.dimensionality(relation);
+      size = ids.size();
+      column = new double[dim][size];
+      sorted = new double[dim][size];
+      order = new int[dim][size];
+      rank = new int[dim][size];
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        final NumberVector vec = relation.get(it);
+        final int o = it.getOffset();
+        for(int d = 0; d < dim; d++) {
+          column[d][o] = vec.doubleValue(d);
+        }
+      }
+      for(int d = 0; d < dim; d++) {
+        final double[] col = column[d];
+        final int[] ord = order[d], rnk = rank[d];
+        final double[] srt = sorted[d];
+        for(int i = 0; i < size; i++) {
+          ord[i] = i;
+        }
+        IntegerArrayQuickSort.sort(ord, (x, y) -> Double.compare(col[x], col[y]));
+        for(int r = 0; r < size; r++) {
+          rnk[ord[r]] = r;
+          srt[r] = col[ord[r]];
+        }
+      }
+    }
+  }
+
   /**
    * Parameterization class.
    * 
@@ -23,25 +23,35 @@ package de.lmu.ifi.dbs.elki.algorithm.outlier.meta;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.Algorithm;
+import de.lmu.ifi.dbs.elki.algorithm.DistanceBasedAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
 import de.lmu.ifi.dbs.elki.data.type.CombinedTypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ProxyDatabase;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.index.preprocessed.knn.MaterializeKNNPreprocessor;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.OrderedTaskRunner;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.result.Result;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
@@ -49,14 +59,20 @@ import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.utilities.ensemble.EnsembleVoting;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ChainedParameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectListParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
  * Simple outlier ensemble method.
+ * <p>
+ * The members are run concurrently, bounded by the available processors and
+ * memory. Optionally, the k nearest neighbors can be materialized once for
+ * every distance function, and shared by all members.
  * 
  * @author Erich Schubert
  * @since 0.5.5
@@ -71,6 +87,17 @@ public class SimpleOutlierEnsemble extends AbstractAlgorithm<OutlierResult> impl
    */
   private static final Logging LOG = Logging.getLogger(SimpleOutlierEnsemble.class);
 
+  /**
+   * Estimated memory per object of a member that materializes its own kNN
+   * (about 20 neighbors, and a few scores).
+   */
+  private static final int MEMBER_BYTES_PER_OBJECT = 400;
+
+  /**
+   * Estimated memory per object of a member using the shared kNN.
+   */
+  private static final int SHARED_BYTES_PER_OBJECT = 64;
+
   /**
    * The algorithms to run.
    */
@@ -81,6 +108,11 @@ public class SimpleOutlierEnsemble extends AbstractAlgorithm<OutlierResult> impl
    */
   private EnsembleVoting voting;
 
+  /**
+   * Number of neighbors to materialize and share, 0 to disable.
+   */
+  private int knn;
+
   /**
    * Constructor.
    * 
@@ -88,27 +120,47 @@ public class SimpleOutlierEnsemble extends AbstractAlgorithm<OutlierResult> impl
    * @param voting Voting method
    */
   public SimpleOutlierEnsemble(List<OutlierAlgorithm> algorithms, EnsembleVoting voting) {
+    this(algorithms, voting, 0);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param algorithms Algorithms to run
+   * @param voting Voting method
+   * @param knn Number of neighbors to materialize for all members, 0 to
+   *        disable
+   */
+  public SimpleOutlierEnsemble(List<OutlierAlgorithm> algorithms, EnsembleVoting voting, int knn) {
     this.algorithms = algorithms;
     this.voting = voting;
+    this.knn = knn;
   }
 
   @Override
   public OutlierResult run(Database database) throws IllegalStateException {
     int num = algorithms.size();
-    // Run inner outlier algorithms
+    final int size = database.getRelation(TypeUtil.DBID).size();
+    final Database db = knn > 0 ? shareKNN(database) : database;
+    // Run inner outlier algorithms, concurrently
+    ArrayList<Callable<Result>> tasks = new ArrayList<>(num);
+    for (Algorithm alg : algorithms) {
+      tasks.add(() -> alg.run(db));
+    }
     ModifiableDBIDs ids = DBIDUtil.newHashSet();
-    ArrayList<OutlierResult> results = new ArrayList<>(num);
+    ArrayList<DoubleRelation> results = new ArrayList<>(num);
     {
       FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Inner outlier algorithms", num, LOG) : null;
-      for (Algorithm alg : algorithms) {
-        Result res = alg.run(database);
+      final long bytesPerMember = size * (long) (knn > 0 ? SHARED_BYTES_PER_OBJECT : MEMBER_BYTES_PER_OBJECT);
+      OrderedTaskRunner.run(tasks, ParallelCore.getCore().getParallelism(), bytesPerMember, res -> {
         List<OutlierResult> ors = OutlierResult.getOutlierResults(res);
         for (OutlierResult or : ors) {
-          results.add(or);
+          // Only keep the scores, not the full result.
+          results.add(or.getScores());
           ids.addDBIDs(or.getScores().getDBIDs());
         }
         LOG.incrementProcessed(prog);
-      }
+      });
       LOG.ensureCompleted(prog);
     }
     // Combine
@@ -119,8 +171,8 @@ public class SimpleOutlierEnsemble extends AbstractAlgorithm<OutlierResult> impl
       for (DBIDIter id = ids.iter(); id.valid(); id.advance()) {
         double[] scores = new double[num];
         int i = 0;
-        for (OutlierResult r : results) {
-          double score = r.getScores().doubleValue(id);
+        for (DoubleRelation r : results) {
+          double score = r.doubleValue(id);
           if (!Double.isNaN(score)) {
             scores[i] = score;
             i++;
@@ -148,6 +200,44 @@ public class SimpleOutlierEnsemble extends AbstractAlgorithm<OutlierResult> impl
     return new OutlierResult(meta, scores);
   }
 
+  /**
+   * Materialize the k nearest neighbors once for every distance function used
+   * by the members, so that all members with the same relation and distance
+   * share them.
+   * <p>
+   * The indexes are added to a proxy database, to not modify the input.
+   * 
+   * @param database Input database
+   * @return Proxy database with shared kNN indexes
+   */
+  private Database shareKNN(Database database) {
+    ProxyDatabase proxy = new ProxyDatabase(database.getRelation(TypeUtil.DBID).getDBIDs(), database);
+    for (OutlierAlgorithm alg : algorithms) {
+      if (alg instanceof DistanceBasedAlgorithm) {
+        materializeKNN(proxy, ((DistanceBasedAlgorithm<?>) alg).getDistanceFunction());
+      }
+    }
+    return proxy;
+  }
+
+  /**
+   * Materialize the kNN for a single distance function, unless already shared.
+   * 
+   * @param proxy Proxy database
+   * @param distanceFunction Distance function
+   * @param <O> Object type
+   */
+  private <O> void materializeKNN(ProxyDatabase proxy, DistanceFunction<? super O> distanceFunction) {
+    Relation<O> relation = proxy.getRelation(distanceFunction.getInputTypeRestriction());
+    DistanceQuery<O> dq = proxy.getDistanceQuery(relation, distanceFunction);
+    if (proxy.getKNNQuery(dq, knn, DatabaseQuery.HINT_OPTIMIZED_ONLY) != null) {
+      return;
+    }
+    MaterializeKNNPreprocessor<O> index = new MaterializeKNNPreprocessor<>(relation, distanceFunction, knn);
+    index.initialize();
+    proxy.getHierarchy().add(relation, index);
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
@@ -176,6 +266,11 @@ public class SimpleOutlierEnsemble extends AbstractAlgorithm<OutlierResult> impl
      */
     public static final OptionID VOTING_ID = new OptionID("ensemble.voting", "Voting strategy to use in the ensemble.");
 
+    /**
+     * Number of nearest neighbors to materialize once, shared by all members.
+     */
+    public static final OptionID KNN_ID = new OptionID("ensemble.knn", "Number of nearest neighbors to materialize once for each distance function, shared by all ensemble members.");
+
     /**
      * The algorithms to run.
      */
@@ -186,6 +281,11 @@ public class SimpleOutlierEnsemble extends AbstractAlgorithm<OutlierResult> impl
      */
     private EnsembleVoting voting;
 
+    /**
+     * Number of neighbors to share.
+     */
+    private int knn = 0;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -201,11 +301,17 @@ public class SimpleOutlierEnsemble extends AbstractAlgorithm<OutlierResult> impl
       if (config.grab(votingP)) {
         voting = votingP.instantiateClass(config);
       }
+      IntParameter knnP = new IntParameter(KNN_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true);
+      if (config.grab(knnP)) {
+        knn = knnP.intValue();
+      }
     }
 
     @Override
     protected SimpleOutlierEnsemble makeInstance() {
-      return new SimpleOutlierEnsemble(algorithms, voting);
+      return new SimpleOutlierEnsemble(algorithms, voting, knn);
     }
   }
 }
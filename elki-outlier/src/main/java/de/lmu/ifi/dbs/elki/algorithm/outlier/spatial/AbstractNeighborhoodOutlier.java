@@ -23,6 +23,10 @@ package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial;
 import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.NeighborSetPredicate;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
@@ -68,6 +72,22 @@ public abstract class AbstractNeighborhoodOutlier<O> extends AbstractAlgorithm<O
     return npredf;
   }
 
+  /**
+   * Materialize the (first) attribute value of each object, in the order of
+   * the given array, for the aggregation over the neighborhood graph.
+   *
+   * @param ids Objects
+   * @param relation Attribute relation (1d)
+   * @return Attribute values
+   */
+  protected static double[] attributeValues(ArrayDBIDs ids, Relation<? extends NumberVector> relation) {
+    double[] values = new double[ids.size()];
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      values[it.getOffset()] = relation.get(it).doubleValue(0);
+    }
+    return values;
+  }
+
   /**
    * Parameterization class.
    * 
@@ -24,6 +24,7 @@ import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.*;
 
 import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.CSRNeighborhood;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
@@ -33,10 +34,10 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
-import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
@@ -48,6 +49,7 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
 import de.lmu.ifi.dbs.elki.math.statistics.distribution.NormalDistribution;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
@@ -172,80 +174,68 @@ public class CTLuGLSBackwardSearchAlgorithm<V extends NumberVector> extends Abst
     KNNQuery<V> knnQuery = QueryUtil.getKNNQuery(relationx, getDistanceFunction(), k + 1);
 
     // We need stable indexed DBIDs
-    ArrayModifiableDBIDs ids = DBIDUtil.newArray(relationx.getDBIDs());
-    // Sort, so we can do a binary search below.
+    final ArrayModifiableDBIDs ids = DBIDUtil.newArray(relationx.getDBIDs());
+    // Sort, for a deterministic order.
     ids.sort();
+    final int size = ids.size();
 
-    // init F,X,Z
-    double[][] X = new double[ids.size()][6];
-    double[][] F = new double[ids.size()][ids.size()];
-    double[][] Y = new double[ids.size()][dimy];
-
-    {
-      int i = 0;
-      for(DBIDIter id = ids.iter(); id.valid(); id.advance(), i++) {
-        // Fill the data matrix
-        {
-          V vec = relationx.get(id);
-          double la = vec.doubleValue(0);
-          double lo = vec.doubleValue(1);
-          X[i][0] = 1.0;
-          X[i][1] = la;
-          X[i][2] = lo;
-          X[i][3] = la * lo;
-          X[i][4] = la * la;
-          X[i][5] = lo * lo;
-        }
-
-        {
-          final NumberVector vecy = relationy.get(id);
-          for(int d = 0; d < dimy; d++) {
-            double idy = vecy.doubleValue(d);
-            Y[i][d] = idy;
-          }
-        }
+    // init X,Y
+    double[][] X = new double[size][6];
+    double[][] Y = new double[size][dimy];
+    for(DBIDArrayIter id = ids.iter(); id.valid(); id.advance()) {
+      final int i = id.getOffset();
+      // Fill the data matrix
+      {
+        V vec = relationx.get(id);
+        double la = vec.doubleValue(0);
+        double lo = vec.doubleValue(1);
+        X[i][0] = 1.0;
+        X[i][1] = la;
+        X[i][2] = lo;
+        X[i][3] = la * lo;
+        X[i][4] = la * la;
+        X[i][5] = lo * lo;
+      }
 
-        // Fill the neighborhood matrix F:
-        {
-          KNNList neighbors = knnQuery.getKNNForDBID(id, k + 1);
-          ModifiableDBIDs neighborhood = DBIDUtil.newArray(neighbors.size());
-          for(DBIDIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
-            if(DBIDUtil.equal(id, neighbor)) {
-              continue;
-            }
-            neighborhood.add(neighbor);
-          }
-          // Weight object itself positively.
-          F[i][i] = 1.0;
-          final int nweight = -1 / neighborhood.size();
-          // We need to find the index positions of the neighbors,
-          // unfortunately.
-          for(DBIDIter iter = neighborhood.iter(); iter.valid(); iter.advance()) {
-            int pos = ids.binarySearch(iter);
-            assert (pos >= 0);
-            F[pos][i] = nweight;
-          }
+      {
+        final NumberVector vecy = relationy.get(id);
+        for(int d = 0; d < dimy; d++) {
+          double idy = vecy.doubleValue(d);
+          Y[i][d] = idy;
         }
       }
     }
+    // The neighborhood matrix F is sparse: we only store the kNN graph, and
+    // the weight of column i, F[j][i] = weight[i] for the neighbors j of i.
+    final CSRNeighborhood graph = CSRNeighborhood.build(ids, i -> knnQuery.getKNNForDBID(ids.iter().seek(i), k + 1));
+    final double[] weight = new double[size];
+    for(int i = 0; i < size; i++) {
+      int cnt = 0;
+      for(int p = graph.begin(i), e = graph.end(i); p < e; p++) {
+        cnt += graph.target(p) != i ? 1 : 0;
+      }
+      weight[i] = cnt > 0 ? -1 / cnt : 0;
+    }
+    // Rows of F, for the products below
+    final CSRNeighborhood rows = graph.transpose();
+
     // Estimate the parameter beta
-    // Common term that we can save recomputing.
-    double[][] common = times(transposeTimesTranspose(X, F), F);
-    double[][] b = times(inverse(times(common, X)), times(common, Y));
+    // X^T F^T F X = (F X)^T (F X), X^T F^T F Y = (F X)^T (F Y)
+    final double[][] FX = timesF(rows, weight, X), FY = timesF(rows, weight, Y);
+    double[][] b = times(inverse(transposeTimes(FX, FX)), transposeTimes(FX, FY));
     // Estimate sigma_0 and sigma:
     // sigma_sum_square = sigma_0*sigma_0 + sigma*sigma
-    double[][] sigmaMat = times(F, minusEquals(times(X, b), times(F, Y)));
+    double[][] sigmaMat = timesF(rows, weight, minusEquals(times(X, b), FY));
     final double sigma_sum_square = normF(sigmaMat) / (relationx.size() - 6 - 1);
     final double norm = 1 / FastMath.sqrt(sigma_sum_square);
 
     // calculate the absolute values of standard residuals
-    double[][] E = timesEquals(times(F, minus(Y, times(X, b))), norm);
+    double[][] E = timesEquals(timesF(rows, weight, minus(Y, times(X, b))), norm);
 
     DBIDVar worstid = DBIDUtil.newVar();
     double worstscore = Double.NEGATIVE_INFINITY;
-    int i = 0;
-    for(DBIDIter id = ids.iter(); id.valid(); id.advance(), i++) {
-      double err = squareSum(getRow(E, i));
+    for(DBIDArrayIter id = ids.iter(); id.valid(); id.advance()) {
+      double err = squareSum(E[id.getOffset()]);
       // double err = Math.abs(E.get(i, 0));
       if(err > worstscore) {
         worstscore = err;
@@ -256,6 +246,30 @@ public class CTLuGLSBackwardSearchAlgorithm<V extends NumberVector> extends Abst
     return new Pair<>(worstid, FastMath.sqrt(worstscore));
   }
 
+  /**
+   * Multiply with the sparse neighborhood matrix F, which is 1 on the diagonal
+   * and has the weight of column i at the neighbors of object i.
+   *
+   * @param rows Reverse neighborhood graph (nonzero entries of the rows of F)
+   * @param weight Column weights
+   * @param M Dense matrix
+   * @return F * M
+   */
+  private static double[][] timesF(CSRNeighborhood rows, double[] weight, double[][] M) {
+    final double[][] R = new double[M.length][];
+    ParallelExecutor.run(M.length, i -> {
+      final double[] r = M[i].clone();
+      for(int p = rows.begin(i), e = rows.end(i); p < e; p++) {
+        final int j = rows.target(p);
+        if(j != i && weight[j] != 0) {
+          plusTimesEquals(r, M[j], weight[j]);
+        }
+      }
+      R[i] = r;
+    });
+    return R;
+  }
+
   @Override
   public TypeInformation[] getInputTypeRestriction() {
     return TypeUtil.array(getDistanceFunction().getInputTypeRestriction(), TypeUtil.NUMBER_VECTOR_FIELD);
@@ -20,6 +20,7 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial;
 
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.CSRNeighborhood;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.NeighborSetPredicate;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
@@ -28,15 +29,14 @@ import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
 import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
@@ -96,42 +96,32 @@ public class CTLuMedianAlgorithm<N> extends AbstractNeighborhoodOutlier<N> {
    */
   public OutlierResult run(Database database, Relation<N> nrel, Relation<? extends NumberVector> relation) {
     final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(database, nrel);
-    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
-
-    MeanVariance mv = new MeanVariance();
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      final double median;
-      {
-        double[] fi = new double[neighbors.size()];
-        // calculate and store Median of neighborhood
-        int c = 0;
-        for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-          if(DBIDUtil.equal(iditer, iter)) {
-            continue;
-          }
-          fi[c] = relation.get(iter).doubleValue(0);
-          c++;
-        }
+    final CSRNeighborhood graph = CSRNeighborhood.build(npred, relation.getDBIDs());
+    final double[] values = attributeValues(graph.getDBIDs(), relation);
 
-        if(c > 0) {
-          median = QuickSelect.median(fi, 0, c);
-        }
-        else {
-          median = relation.get(iditer).doubleValue(0);
+    // Difference to the median of the neighborhood
+    final double[] diffs = new double[values.length];
+    ParallelExecutor.run(values.length, i -> {
+      double[] fi = new double[graph.degree(i)];
+      int c = 0;
+      for(int p = graph.begin(i), e = graph.end(i); p < e; p++) {
+        final int j = graph.target(p);
+        if(j != i) {
+          fi[c++] = values[j];
         }
       }
-      double h = relation.get(iditer).doubleValue(0) - median;
-      scores.putDouble(iditer, h);
-      mv.put(h);
-    }
+      diffs[i] = c > 0 ? values[i] - QuickSelect.median(fi, 0, c) : 0.;
+    });
+    MeanVariance mv = new MeanVariance();
+    mv.put(diffs);
 
     // Normalize scores
     final double mean = mv.getMean();
     final double stddev = mv.getNaiveStddev();
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
     DoubleMinMax minmax = new DoubleMinMax();
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      double score = Math.abs((scores.doubleValue(iditer) - mean) / stddev);
+    for(DBIDArrayIter iditer = graph.getDBIDs().iter(); iditer.valid(); iditer.advance()) {
+      double score = Math.abs((diffs[iditer.getOffset()] - mean) / stddev);
       minmax.put(score);
       scores.putDouble(iditer, score);
     }
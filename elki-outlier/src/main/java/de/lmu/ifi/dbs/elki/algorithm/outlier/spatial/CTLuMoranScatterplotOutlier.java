@@ -20,6 +20,7 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial;
 
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.CSRNeighborhood;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.NeighborSetPredicate;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.NeighborSetPredicate.Factory;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
@@ -29,15 +30,14 @@ import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
-import de.lmu.ifi.dbs.elki.math.Mean;
 import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
@@ -102,42 +102,43 @@ public class CTLuMoranScatterplotOutlier<N> extends AbstractNeighborhoodOutlier<
   public OutlierResult run(Database database, Relation<N> nrel, Relation<? extends NumberVector> relation) {
     final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(database, nrel);
 
+    final CSRNeighborhood graph = CSRNeighborhood.build(npred, relation.getDBIDs());
+    final double[] z = attributeValues(graph.getDBIDs(), relation);
+
     // Compute the global mean and variance
     MeanVariance globalmv = new MeanVariance();
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      globalmv.put(relation.get(iditer).doubleValue(0));
+    globalmv.put(z);
+    // calculate normalized attribute values
+    final double mean = globalmv.getMean(), stddev = globalmv.getNaiveStddev();
+    for(int i = 0; i < z.length; i++) {
+      z[i] = (z[i] - mean) / stddev;
     }
 
-    DoubleMinMax minmax = new DoubleMinMax();
-    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
-
-    // calculate normalized attribute values
     // calculate neighborhood average of normalized attribute values.
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      // Compute global z score
-      final double globalZ = (relation.get(iditer).doubleValue(0) - globalmv.getMean()) / globalmv.getNaiveStddev();
+    final double[] s = new double[z.length];
+    ParallelExecutor.run(z.length, i -> {
       // Compute local average z score
-      Mean localm = new Mean();
-      for(DBIDIter iter = npred.getNeighborDBIDs(iditer).iter(); iter.valid(); iter.advance()) {
-        if(DBIDUtil.equal(iditer, iter)) {
-          continue;
+      double sum = 0.;
+      int cnt = 0;
+      for(int p = graph.begin(i), e = graph.end(i); p < e; p++) {
+        final int j = graph.target(p);
+        if(j != i) {
+          sum += z[j];
+          cnt++;
         }
-        localm.put((relation.get(iter).doubleValue(0) - globalmv.getMean()) / globalmv.getNaiveStddev());
       }
-      // if neighors.size == 0
-      final double localZ;
-      if(localm.getCount() > 0) {
-        localZ = localm.getMean();
-      }
-      else {
-        // if s has no neighbors => Wzi = zi
-        localZ = globalZ;
-      }
-
+      // if s has no neighbors => Wzi = zi
+      final double localZ = cnt > 0 ? sum / cnt : z[i];
       // compute score
       // Note: in the original moran scatterplot, any object with a score < 0
       // would be an outlier.
-      final double score = Math.max(-globalZ * localZ, 0);
+      s[i] = Math.max(-z[i] * localZ, 0);
+    });
+
+    DoubleMinMax minmax = new DoubleMinMax();
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    for(DBIDArrayIter iditer = graph.getDBIDs().iter(); iditer.valid(); iditer.advance()) {
+      final double score = s[iditer.getOffset()];
       minmax.put(score);
       scores.putDouble(iditer, score);
     }
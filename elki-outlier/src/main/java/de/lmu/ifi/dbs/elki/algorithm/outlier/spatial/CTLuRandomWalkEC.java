@@ -22,14 +22,16 @@ package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial;
 
 import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.*;
 
+import java.util.Arrays;
+
 import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.CSRNeighborhood;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
-import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.*;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
@@ -39,6 +41,7 @@ import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
@@ -122,99 +125,88 @@ public class CTLuRandomWalkEC<P> extends AbstractDistanceBasedAlgorithm<P, Outli
    * @return Outlier result
    */
   public OutlierResult run(Relation<P> spatial, Relation<? extends NumberVector> relation) {
-    DistanceQuery<P> distFunc = getDistanceFunction().instantiate(spatial);
-    WritableDataStore<double[]> similarityVectors = DataStoreUtil.makeStorage(spatial.getDBIDs(), DataStoreFactory.HINT_TEMP, double[].class);
-    WritableDataStore<DBIDs> neighbors = DataStoreUtil.makeStorage(spatial.getDBIDs(), DataStoreFactory.HINT_TEMP, DBIDs.class);
+    final DistanceQuery<P> distFunc = getDistanceFunction().instantiate(spatial);
 
     // Make a static IDs array for matrix column indexing
-    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    final double[] values = new double[size];
+    for(DBIDArrayIter id = ids.iter(); id.valid(); id.advance()) {
+      values[id.getOffset()] = relation.get(id).doubleValue(0);
+    }
 
-    // construct the relation Matrix of the ec-graph
-    double[][] E = new double[ids.size()][ids.size()];
-    KNNHeap heap = DBIDUtil.newHeap(k);
-    {
-      int i = 0;
-      for(DBIDIter id = ids.iter(); id.valid(); id.advance(), i++) {
-        final double val = relation.get(id).doubleValue(0);
-        assert (heap.size() == 0);
-        int j = 0;
-        for(DBIDIter n = ids.iter(); n.valid(); n.advance(), j++) {
-          if(i == j) {
-            continue;
-          }
-          final double e;
-          final double distance = distFunc.distance(id, n);
-          heap.insert(distance, n);
-          if(distance == 0) {
-            LOG.warning("Zero distances are not supported - skipping: " + DBIDUtil.toString(id) + " " + DBIDUtil.toString(n));
-            e = 0;
-          }
-          else {
-            double diff = Math.abs(val - relation.get(n).doubleValue(0));
-            double exp = FastMath.exp(FastMath.pow(diff, alpha));
-            // Implementation note: not inverting exp worked a lot better.
-            // Therefore we diverge from the article here.
-            e = exp / distance;
-          }
-          E[j][i] = e;
+    // Construct the relation matrix of the ec-graph, transposed: row i holds
+    // the edge weights from object i, which makes the normalization below
+    // operate on contiguous memory, and each row can be computed in parallel.
+    final double[][] Et = new double[size][];
+    final DBIDs[] knns = new DBIDs[size];
+    ParallelExecutor.run(size, i -> {
+      final DBIDArrayIter id = ids.iter().seek(i);
+      final double val = values[i];
+      final double[] row = new double[size];
+      KNNHeap heap = DBIDUtil.newHeap(k);
+      double sum = 0.;
+      for(DBIDArrayIter n = ids.iter(); n.valid(); n.advance()) {
+        final int j = n.getOffset();
+        if(i == j) {
+          continue;
         }
-        // Convert kNN Heap into DBID array (unordered)
-        ModifiableDBIDs nids = DBIDUtil.newArray(heap.size());
-        for(DBIDIter it = heap.unorderedIterator(); it.valid(); it.advance()) {
-          nids.add(it);
+        final double distance = distFunc.distance(id, n);
+        heap.insert(distance, n);
+        if(distance == 0) {
+          LOG.warning("Zero distances are not supported - skipping: " + DBIDUtil.toString(id) + " " + DBIDUtil.toString(n));
+          continue;
         }
-        neighbors.put(id, nids);
+        double diff = Math.abs(val - values[j]);
+        double exp = FastMath.exp(FastMath.pow(diff, alpha));
+        // Implementation note: not inverting exp worked a lot better.
+        // Therefore we diverge from the article here.
+        sum += row[j] = exp / distance;
       }
-    }
-    // normalize the adjacent Matrix
-    // Sum based normalization - don't use E.normalizeColumns()
-    // Which normalized to Euclidean length 1.0!
-    // Also do the -c multiplication in this process.
-    for(int i = 0; i < E[0].length; i++) {
-      double sum = 0.0;
-      for(int j = 0; j < E.length; j++) {
-        sum += E[j][i];
-      }
-      if(sum == 0) {
-        sum = 1.0;
+      // normalize the adjacent Matrix
+      // Sum based normalization - don't use E.normalizeColumns()
+      // Which normalized to Euclidean length 1.0!
+      // Also do the -c multiplication in this process.
+      final double f = -c / (sum == 0 ? 1.0 : sum);
+      for(int j = 0; j < size; j++) {
+        row[j] *= f;
       }
-      for(int j = 0; j < E.length; j++) {
-        E[j][i] = -c * E[j][i] / sum;
+      // Add identity matrix. The diagonal is still 0, so this is trivial.
+      row[i] = 1.0;
+      Et[i] = row;
+      // Unordered kNN, the heap is not needed anymore.
+      ModifiableDBIDs nids = DBIDUtil.newArray(heap.size());
+      for(DBIDIter it = heap.unorderedIterator(); it.valid(); it.advance()) {
+        nids.add(it);
       }
-    }
-    // Add identity matrix. The diagonal should still be 0s, so this is trivial.
-    assert (E.length == E[0].length);
-    for(int col = 0; col < E[0].length; col++) {
-      assert (E[col][col] == 0.0);
-      E[col][col] = 1.0;
-    }
-    E = timesEquals(inverse(E), 1 - c);
+      knns[i] = nids;
+    });
+    final CSRNeighborhood graph = CSRNeighborhood.build(ids, i -> knns[i]);
+    Arrays.fill(knns, null);
+
+    // The similarity vectors are the columns of (1-c) inverse(E), i.e. the
+    // rows of inverse(E^T). The constant factor does not affect the angles.
+    final double[][] S = inverse(Et);
 
-    // Split the matrix into columns
-    {
-      int i = 0;
-      for(DBIDIter id = ids.iter(); id.valid(); id.advance(), i++) {
-        // Note: matrix times ith unit vector = ith column
-        double[] sim = getCol(E, i);
-        similarityVectors.put(id, sim);
-      }
-    }
-    E = null;
     // compute the relevance scores between specified Object and its neighbors
-    DoubleMinMax minmax = new DoubleMinMax();
-    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(spatial.getDBIDs(), DataStoreFactory.HINT_STATIC);
-    for(DBIDIter id = ids.iter(); id.valid(); id.advance()) {
+    final double[] s = new double[size];
+    ParallelExecutor.run(size, i -> {
       double gmean = 1.0;
       int cnt = 0;
-      for(DBIDIter iter = neighbors.get(id).iter(); iter.valid(); iter.advance()) {
-        if(DBIDUtil.equal(id, iter)) {
+      for(int p = graph.begin(i), e = graph.end(i); p < e; p++) {
+        final int j = graph.target(p);
+        if(j == i) {
           continue;
         }
-        double sim = angle(similarityVectors.get(id), similarityVectors.get(iter));
-        gmean *= sim;
+        gmean *= angle(S[i], S[j]);
         cnt++;
       }
-      final double score = FastMath.pow(gmean, 1.0 / cnt);
+      s[i] = FastMath.pow(gmean, 1.0 / cnt);
+    });
+    DoubleMinMax minmax = new DoubleMinMax();
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(spatial.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    for(DBIDArrayIter id = ids.iter(); id.valid(); id.advance()) {
+      final double score = s[id.getOffset()];
       minmax.put(score);
       scores.putDouble(id, score);
     }
@@ -20,6 +20,7 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial;
 
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.CSRNeighborhood;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.NeighborSetPredicate;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
@@ -28,16 +29,14 @@ import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
-import de.lmu.ifi.dbs.elki.math.Mean;
 import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
@@ -101,34 +100,32 @@ public class CTLuZTestOutlier<N> extends AbstractNeighborhoodOutlier<N> {
    */
   public OutlierResult run(Database database, Relation<N> nrel, Relation<? extends NumberVector> relation) {
     final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(database, nrel);
-    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    final CSRNeighborhood graph = CSRNeighborhood.build(npred, relation.getDBIDs());
+    final double[] values = attributeValues(graph.getDBIDs(), relation);
 
-    MeanVariance zmv = new MeanVariance();
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      // Compute Mean of neighborhood
-      Mean localmean = new Mean();
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        if(DBIDUtil.equal(iditer, iter)) {
-          continue;
+    // Difference to the mean of the neighborhood
+    final double[] diffs = new double[values.length];
+    ParallelExecutor.run(values.length, i -> {
+      double sum = 0.;
+      int cnt = 0;
+      for(int p = graph.begin(i), e = graph.end(i); p < e; p++) {
+        final int j = graph.target(p);
+        if(j != i) {
+          sum += values[j];
+          cnt++;
         }
-        localmean.put(relation.get(iter).doubleValue(0));
-      }
-      final double localdiff;
-      if(localmean.getCount() > 0) {
-        localdiff = relation.get(iditer).doubleValue(0) - localmean.getMean();
-      }
-      else {
-        localdiff = 0.0;
       }
-      scores.putDouble(iditer, localdiff);
-      zmv.put(localdiff);
-    }
+      diffs[i] = cnt > 0 ? values[i] - sum / cnt : 0.;
+    });
+    MeanVariance zmv = new MeanVariance();
+    zmv.put(diffs);
 
     // Normalize scores using mean and variance
+    final double mean = zmv.getMean(), stddev = zmv.getSampleStddev();
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
     DoubleMinMax minmax = new DoubleMinMax();
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      double score = Math.abs(scores.doubleValue(iditer) - zmv.getMean()) / zmv.getSampleStddev();
+    for(DBIDArrayIter iditer = graph.getDBIDs().iter(); iditer.valid(); iditer.advance()) {
+      double score = Math.abs(diffs[iditer.getOffset()] - mean) / stddev;
       minmax.put(score);
       scores.putDouble(iditer, score);
     }
@@ -20,6 +20,7 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial;
 
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.CSRNeighborhood;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.NeighborSetPredicate;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
@@ -27,9 +28,8 @@ import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
@@ -37,6 +37,7 @@ import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
@@ -95,96 +96,76 @@ public class SLOM<N, O> extends AbstractDistanceBasedSpatialOutlier<N, O> {
    */
   public OutlierResult run(Database database, Relation<N> spatial, Relation<O> relation) {
     final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(database, spatial);
-    DistanceQuery<O> distFunc = getNonSpatialDistanceFunction().instantiate(relation);
+    final DistanceQuery<O> distFunc = getNonSpatialDistanceFunction().instantiate(relation);
+
+    final CSRNeighborhood graph = CSRNeighborhood.build(npred, relation.getDBIDs());
+    final ArrayDBIDs ids = graph.getDBIDs();
+    final int size = ids.size();
 
-    WritableDoubleDataStore modifiedDistance = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
     // calculate D-Tilde
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+    final double[] modifiedDistance = new double[size];
+    ParallelExecutor.run(size, i -> {
+      DBIDArrayIter iditer = ids.iter().seek(i), iter = ids.iter();
       double sum = 0;
       double maxDist = 0;
       int cnt = 0;
-
-      final DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        if(DBIDUtil.equal(iditer, iter)) {
+      for(int p = graph.begin(i), e = graph.end(i); p < e; p++) {
+        final int j = graph.target(p);
+        if(j == i) {
           continue;
         }
-        double dist = distFunc.distance(iditer, iter);
+        double dist = distFunc.distance(iditer, iter.seek(j));
         sum += dist;
         cnt++;
         maxDist = Math.max(maxDist, dist);
       }
-      if(cnt > 1) {
-        modifiedDistance.putDouble(iditer, ((sum - maxDist) / (cnt - 1)));
-      }
-      else {
-        // Use regular distance when the d-tilde trick is undefined.
-        // Note: this can be 0 when there were no neighbors.
-        modifiedDistance.putDouble(iditer, maxDist);
-      }
-    }
+      // Use regular distance when the d-tilde trick is undefined.
+      // Note: this can be 0 when there were no neighbors.
+      modifiedDistance[i] = cnt > 1 ? (sum - maxDist) / (cnt - 1) : maxDist;
+    });
 
     // Second step - compute actual SLOM values
-    DoubleMinMax slomminmax = new DoubleMinMax();
-    WritableDoubleDataStore sloms = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
-
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+    final double[] slom = new double[size];
+    ParallelExecutor.run(size, i -> {
       double sum = 0;
       int cnt = 0;
-
-      final DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        if(DBIDUtil.equal(iditer, iter)) {
-          continue;
+      for(int p = graph.begin(i), e = graph.end(i); p < e; p++) {
+        final int j = graph.target(p);
+        if(j != i) {
+          sum += modifiedDistance[j];
+          cnt++;
         }
-        sum += modifiedDistance.doubleValue(iter);
-        cnt++;
       }
-      double slom;
-      if(cnt > 0) {
-        // With and without the object itself:
-        double avgPlus = (sum + modifiedDistance.doubleValue(iditer)) / (cnt + 1);
-        double avg = sum / cnt;
+      if(cnt == 0) {
+        // No neighbors to compare to - no score.
+        return;
+      }
+      // With and without the object itself:
+      final double avgPlus = (sum + modifiedDistance[i]) / (cnt + 1);
+      final double avg = sum / cnt;
 
-        double beta = 0;
-        for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-          final double dist = modifiedDistance.doubleValue(iter);
-          if(dist > avgPlus) {
-            beta += 1;
-          }
-          else if(dist < avgPlus) {
-            beta -= 1;
-          }
-        }
-        // Include object itself
-        if(!neighbors.contains(iditer)) {
-          final double dist = modifiedDistance.doubleValue(iditer);
-          if(dist > avgPlus) {
-            beta += 1;
-          }
-          else if(dist < avgPlus) {
-            beta -= 1;
-          }
+      // Include object itself
+      double beta = Math.signum(modifiedDistance[i] - avgPlus);
+      for(int p = graph.begin(i), e = graph.end(i); p < e; p++) {
+        final int j = graph.target(p);
+        if(j != i) {
+          beta += Math.signum(modifiedDistance[j] - avgPlus);
         }
-        beta = Math.abs(beta);
-        // note: cnt == size of N(x), not N+(x)
-        if(cnt > 1) {
-          beta = Math.max(beta, 1.0) / (cnt - 1);
-        }
-        else {
-          // Workaround insufficiency in SLOM paper - div by zero
-          beta = 1.0;
-        }
-        beta = beta / (1 + avg);
-
-        slom = beta * modifiedDistance.doubleValue(iditer);
       }
-      else {
-        // No neighbors to compare to - no score.
-        slom = 0.0;
-      }
-      sloms.putDouble(iditer, slom);
-      slomminmax.put(slom);
+      beta = Math.abs(beta);
+      // note: cnt == size of N(x), not N+(x)
+      // Workaround insufficiency in SLOM paper - div by zero
+      beta = cnt > 1 ? Math.max(beta, 1.0) / (cnt - 1) : 1.0;
+      beta = beta / (1 + avg);
+      slom[i] = beta * modifiedDistance[i];
+    });
+
+    DoubleMinMax slomminmax = new DoubleMinMax();
+    WritableDoubleDataStore sloms = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    for(DBIDArrayIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      final double score = slom[iditer.getOffset()];
+      sloms.putDouble(iditer, score);
+      slomminmax.put(score);
     }
 
     DoubleRelation scoreResult = new MaterializedDoubleRelation("SLOM", "slom-outlier", sloms, relation.getDBIDs());
@@ -20,6 +20,7 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial;
 
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.CSRNeighborhood;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.NeighborSetPredicate;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
@@ -27,8 +28,8 @@ import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
@@ -36,6 +37,7 @@ import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
@@ -102,34 +104,38 @@ public class SOF<N, O> extends AbstractDistanceBasedSpatialOutlier<N, O> {
    */
   public OutlierResult run(Database database, Relation<N> spatial, Relation<O> relation) {
     final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(database, spatial);
-    DistanceQuery<O> distFunc = getNonSpatialDistanceFunction().instantiate(relation);
+    final DistanceQuery<O> distFunc = getNonSpatialDistanceFunction().instantiate(relation);
 
-    WritableDoubleDataStore lrds = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT);
-    WritableDoubleDataStore lofs = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
-    DoubleMinMax lofminmax = new DoubleMinMax();
+    final CSRNeighborhood graph = CSRNeighborhood.build(npred, relation.getDBIDs());
+    final ArrayDBIDs ids = graph.getDBIDs();
+    final int size = ids.size();
 
     // Compute densities
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      DBIDs neighbors = npred.getNeighborDBIDs(iditer);
+    final double[] lrds = new double[size];
+    ParallelExecutor.run(size, i -> {
+      DBIDArrayIter iditer = ids.iter().seek(i), iter = ids.iter();
       double avg = 0;
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        avg += distFunc.distance(iditer, iter);
+      for(int p = graph.begin(i), e = graph.end(i); p < e; p++) {
+        avg += distFunc.distance(iditer, iter.seek(graph.target(p)));
       }
-      double lrd = 1 / (avg / neighbors.size());
-      if(Double.isNaN(lrd)) {
-        lrd = 0;
-      }
-      lrds.putDouble(iditer, lrd);
-    }
+      double lrd = 1 / (avg / graph.degree(i));
+      lrds[i] = Double.isNaN(lrd) ? 0 : lrd;
+    });
 
     // Compute density quotients
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      DBIDs neighbors = npred.getNeighborDBIDs(iditer);
+    final double[] sofs = new double[size];
+    ParallelExecutor.run(size, i -> {
       double avg = 0;
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        avg += lrds.doubleValue(iter);
+      for(int p = graph.begin(i), e = graph.end(i); p < e; p++) {
+        avg += lrds[graph.target(p)];
       }
-      final double lrd = (avg / neighbors.size()) / lrds.doubleValue(iditer);
+      sofs[i] = (avg / graph.degree(i)) / lrds[i];
+    });
+
+    WritableDoubleDataStore lofs = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    DoubleMinMax lofminmax = new DoubleMinMax();
+    for(DBIDArrayIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      final double lrd = sofs[iditer.getOffset()];
       if(!Double.isNaN(lrd)) {
         lofs.putDouble(iditer, lrd);
         lofminmax.put(lrd);
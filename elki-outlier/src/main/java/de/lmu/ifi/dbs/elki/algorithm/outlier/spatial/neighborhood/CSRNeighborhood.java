@@ -0,0 +1,302 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+
+/**
+ * Neighborhood graph in compressed sparse row (CSR) layout.
+ * <p>
+ * The neighbor sets of all objects are collected once (in parallel), and
+ * stored as object indexes into two flat arrays: the neighbors of the object
+ * at index {@code i} are {@code target(begin(i))} to
+ * {@code target(end(i) - 1)}. This avoids the per-object set lookups and DBID
+ * comparisons of the neighbor predicates in the aggregation loops, and allows
+ * sparse matrix operations on the adjacency.
+ * <p>
+ * The neighbor sets are stored as returned by the predicate, i.e. they may or
+ * may not contain the object itself. Neighbors outside of the indexed objects
+ * are dropped.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class CSRNeighborhood implements NeighborSetPredicate {
+  /**
+   * Objects, defining the index positions.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Map from objects to index positions, {@code null} for a DBID range.
+   */
+  private WritableIntegerDataStore index;
+
+  /**
+   * Row offsets, of length {@code size() + 1}.
+   */
+  private int[] offsets;
+
+  /**
+   * Neighbor indexes.
+   */
+  private int[] targets;
+
+  /**
+   * Constructor.
+   *
+   * @param ids Objects
+   * @param index Map from objects to index positions
+   * @param offsets Row offsets
+   * @param targets Neighbor indexes
+   */
+  protected CSRNeighborhood(ArrayDBIDs ids, WritableIntegerDataStore index, int[] offsets, int[] targets) {
+    super();
+    this.ids = ids;
+    this.index = index;
+    this.offsets = offsets;
+    this.targets = targets;
+  }
+
+  /**
+   * Collect the neighborhoods of a neighbor set predicate.
+   *
+   * @param npred Neighbor set predicate
+   * @param ids Objects to collect the neighborhoods for
+   * @return Neighborhood graph
+   */
+  public static CSRNeighborhood build(NeighborSetPredicate npred, DBIDs ids) {
+    final ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
+    return build(aids, i -> npred.getNeighborDBIDs(aids.iter().seek(i)));
+  }
+
+  /**
+   * Collect neighborhoods in parallel.
+   *
+   * @param ids Objects, defining the index positions
+   * @param neighbors Function to produce the neighbors of the i-th object; must
+   *        be safe for concurrent use.
+   * @return Neighborhood graph
+   */
+  public static CSRNeighborhood build(ArrayDBIDs ids, IntFunction<? extends DBIDs> neighbors) {
+    final int size = ids.size();
+    WritableIntegerDataStore index = makeIndex(ids);
+    final int[][] rows = new int[size][];
+    ParallelExecutor.run(size, i -> {
+      DBIDs nids = neighbors.apply(i);
+      int[] row = new int[nids.size()];
+      int c = 0;
+      for(DBIDIter it = nids.iter(); it.valid(); it.advance()) {
+        final int j = indexOf(ids, index, it);
+        if(j >= 0) {
+          row[c++] = j;
+        }
+      }
+      rows[i] = c == row.length ? row : Arrays.copyOf(row, c);
+    });
+    int[] offsets = new int[size + 1];
+    for(int i = 0; i < size; i++) {
+      offsets[i + 1] = offsets[i] + rows[i].length;
+    }
+    final int[] targets = new int[offsets[size]];
+    ParallelExecutor.run(size, i -> {
+      System.arraycopy(rows[i], 0, targets, offsets[i], rows[i].length);
+      rows[i] = null;
+    });
+    return new CSRNeighborhood(ids, index, offsets, targets);
+  }
+
+  /**
+   * Build the map from objects to index positions.
+   *
+   * @param ids Objects
+   * @return Index map, -1 for unknown objects; {@code null} for a DBID range,
+   *         which maps objects to offsets itself
+   */
+  private static WritableIntegerDataStore makeIndex(ArrayDBIDs ids) {
+    if(ids instanceof DBIDRange) {
+      return null;
+    }
+    WritableIntegerDataStore index = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      index.putInt(it, it.getOffset());
+    }
+    return index;
+  }
+
+  /**
+   * Build the reverse neighborhood graph: object {@code j} is a neighbor of
+   * {@code i} in the result, if {@code i} is a neighbor of {@code j} in this
+   * graph. Reverse neighbors are ordered by index.
+   *
+   * @return Transposed graph
+   */
+  public CSRNeighborhood transpose() {
+    final int size = size();
+    int[] roffsets = new int[size + 1];
+    for(int p = 0; p < targets.length; p++) {
+      ++roffsets[targets[p] + 1];
+    }
+    for(int i = 0; i < size; i++) {
+      roffsets[i + 1] += roffsets[i];
+    }
+    int[] pos = Arrays.copyOf(roffsets, size);
+    int[] rtargets = new int[targets.length];
+    for(int i = 0; i < size; i++) {
+      for(int p = offsets[i], e = offsets[i + 1]; p < e; p++) {
+        rtargets[pos[targets[p]]++] = i;
+      }
+    }
+    return new CSRNeighborhood(ids, index, roffsets, rtargets);
+  }
+
+  /**
+   * Number of objects.
+   *
+   * @return Size
+   */
+  public int size() {
+    return offsets.length - 1;
+  }
+
+  /**
+   * Total number of stored neighbor relations.
+   *
+   * @return Number of edges
+   */
+  public int edges() {
+    return targets.length;
+  }
+
+  /**
+   * Get the objects, in index order.
+   *
+   * @return Objects
+   */
+  public ArrayDBIDs getDBIDs() {
+    return ids;
+  }
+
+  /**
+   * Get the index position of an object.
+   *
+   * @param ref Object
+   * @return Index, or -1
+   */
+  public int indexOf(DBIDRef ref) {
+    return indexOf(ids, index, ref);
+  }
+
+  /**
+   * Get the index position of an object.
+   *
+   * @param ids Objects
+   * @param index Index map, {@code null} for a DBID range
+   * @param ref Object
+   * @return Index, or -1
+   */
+  private static int indexOf(ArrayDBIDs ids, WritableIntegerDataStore index, DBIDRef ref) {
+    if(index != null) {
+      return index.intValue(ref);
+    }
+    // A range-based store would not detect objects outside of the range.
+    final int i = ((DBIDRange) ids).getOffset(ref);
+    return i >= 0 && i < ids.size() ? i : -1;
+  }
+
+  /**
+   * First neighbor position of the i-th object.
+   *
+   * @param i Object index
+   * @return Position in the neighbor array
+   */
+  public int begin(int i) {
+    return offsets[i];
+  }
+
+  /**
+   * End (exclusive) of the neighbor positions of the i-th object.
+   *
+   * @param i Object index
+   * @return Position in the neighbor array
+   */
+  public int end(int i) {
+    return offsets[i + 1];
+  }
+
+  /**
+   * Number of neighbors of the i-th object.
+   *
+   * @param i Object index
+   * @return Number of neighbors (possibly including the object itself)
+   */
+  public int degree(int i) {
+    return offsets[i + 1] - offsets[i];
+  }
+
+  /**
+   * Get the neighbor index at a position.
+   *
+   * @param p Position, from {@link #begin} to {@link #end}
+   * @return Object index
+   */
+  public int target(int p) {
+    return targets[p];
+  }
+
+  @Override
+  public DBIDs getNeighborDBIDs(DBIDRef reference) {
+    final int i = indexOf(reference);
+    if(i < 0) {
+      return DBIDUtil.EMPTYDBIDS;
+    }
+    ArrayModifiableDBIDs nids = DBIDUtil.newArray(degree(i));
+    DBIDArrayIter it = ids.iter();
+    for(int p = offsets[i], e = offsets[i + 1]; p < e; p++) {
+      nids.add(it.seek(targets[p]));
+    }
+    return nids;
+  }
+
+  @Override
+  public String getLongName() {
+    return "CSR Neighborhood";
+  }
+
+  @Override
+  public String getShortName() {
+    return "csr-neighborhood";
+  }
+}
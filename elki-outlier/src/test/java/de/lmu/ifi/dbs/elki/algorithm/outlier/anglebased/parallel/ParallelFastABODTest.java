@@ -0,0 +1,90 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased.parallel;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased.FastABOD;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased.LBABOD;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.projection.random.AbstractRandomProjectionFamily;
+import de.lmu.ifi.dbs.elki.data.projection.random.GaussianRandomProjectionFamily;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.distance.similarityfunction.kernel.LinearKernelFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the parallel FastABOD and LB-ABOD algorithms.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ParallelFastABODTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testParallelFastABOD() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ParallelFastABOD<DoubleVector>>(ParallelFastABOD.class) //
+        .with(FastABOD.Parameterizer.K_ID, 5) //
+        .build().run(db);
+    // Same values as the serial FastABOD, up to rounding:
+    testAUC(db, "Noise", result, 0.94626962962);
+    testSingleScore(result, 945, 3.289513914486768E-4);
+  }
+
+  @Test
+  public void testParallelFastABODLinear() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ParallelFastABOD<DoubleVector>>(ParallelFastABOD.class) //
+        .with(FastABOD.Parameterizer.K_ID, 5) //
+        .with(FastABOD.Parameterizer.KERNEL_FUNCTION_ID, LinearKernelFunction.STATIC) //
+        .build().run(db);
+    // Same values as the serial FastABOD, up to rounding:
+    testAUC(db, "Noise", result, 0.993814148);
+    testSingleScore(result, 945, 0.498653289);
+  }
+
+  @Test
+  public void testParallelFastABODProjected() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ParallelFastABOD<DoubleVector>>(ParallelFastABOD.class) //
+        .with(FastABOD.Parameterizer.K_ID, 5) //
+        .with(FastABOD.Parameterizer.KERNEL_FUNCTION_ID, LinearKernelFunction.STATIC) //
+        .with(ParallelFastABOD.Parameterizer.PROJECTION_ID, GaussianRandomProjectionFamily.class) //
+        .with(AbstractRandomProjectionFamily.Parameterizer.RANDOM_ID, 0L) //
+        .with(ParallelFastABOD.Parameterizer.PROJECTION_DIM_ID, 2) //
+        .build().run(db);
+    testAUC(db, "Noise", result, 0.97638888888);
+    testSingleScore(result, 945, 4.863902413709794);
+  }
+
+  @Test
+  public void testParallelLBABOD() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ParallelLBABOD<DoubleVector>>(ParallelLBABOD.class) //
+        .with(FastABOD.Parameterizer.K_ID, 150) //
+        .with(LBABOD.Parameterizer.L_ID, 10) //
+        .build().run(db);
+    testAUC(db, "Noise", result, 0.92331481481);
+    testSingleScore(result, 945, 2.0897348547799E-5);
+  }
+}
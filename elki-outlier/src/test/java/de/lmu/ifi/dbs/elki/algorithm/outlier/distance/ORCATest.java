@@ -0,0 +1,66 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the ORCA algorithm.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ORCATest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testORCA() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ORCA<DoubleVector>>(ORCA.class) //
+        .with(KNNOutlier.Parameterizer.K_ID, 1) //
+        .with(ORCA.Parameterizer.N_ID, 30) //
+        .with(ORCA.Parameterizer.BLOCKSIZE_ID, 100) //
+        .with(ORCA.Parameterizer.SEED_ID, 0) //
+        .build().run(db);
+    // Same as KNNOutlier for the top outliers:
+    testSingleScore(result, 945, 0.4793554700168577);
+    testAUC(db, "Noise", result, 0.93728703703);
+  }
+
+  @Test
+  public void testORCAWeight() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ORCA<DoubleVector>>(ORCA.class) //
+        .with(KNNOutlier.Parameterizer.K_ID, 4) //
+        .with(ORCA.Parameterizer.N_ID, 60) //
+        .with(ORCA.Parameterizer.BLOCKSIZE_ID, 100) //
+        .with(ORCA.Parameterizer.WEIGHT_ID) //
+        .with(ORCA.Parameterizer.SEED_ID, 0) //
+        .build().run(db);
+    // Same as KNNWeightOutlier for the top outliers:
+    testSingleScore(result, 945, 2.384117261027324);
+    testAUC(db, "Noise", result, 0.97753703703);
+  }
+}
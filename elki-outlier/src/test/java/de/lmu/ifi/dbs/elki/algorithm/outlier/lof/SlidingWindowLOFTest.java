@@ -0,0 +1,93 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the sliding window LOF algorithm.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class SlidingWindowLOFTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testSlidingWindowLOF() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<SlidingWindowLOF<DoubleVector>>(SlidingWindowLOF.class) //
+        .with(LOF.Parameterizer.K_ID, 10) //
+        .with(SlidingWindowLOF.Parameterizer.WINDOW_ID, 500).build().run(db);
+    testSingleScore(result, 945, 1.3280703);
+    testAUC(db, "Noise", result, 0.9256666);
+  }
+
+  @Test
+  public void testFullWindow() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = rel.getDistanceQuery(EuclideanDistanceFunction.STATIC);
+    OutlierResult result = new ELKIBuilder<LOF<DoubleVector>>(LOF.class) //
+        .with(LOF.Parameterizer.K_ID, 10).build().run(db);
+    SlidingWindowLOF.Window<DoubleVector> win = new SlidingWindowLOF.Window<>(dq, rel.size(), 10, 0, false);
+    DBIDArrayIter it = DBIDUtil.ensureArray(rel.getDBIDs()).iter();
+    for(; it.valid(); it.advance()) {
+      win.insert(rel.get(it));
+    }
+    for(it.seek(0); it.valid(); it.advance()) {
+      assertEquals("LOF does not match.", result.getScores().doubleValue(it), win.score(it.getOffset()), 1e-10);
+    }
+  }
+
+  @Test
+  public void testExpiration() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = rel.getDistanceQuery(EuclideanDistanceFunction.STATIC);
+    final int w = 200, n = rel.size();
+    SlidingWindowLOF.Window<DoubleVector> sliding = new SlidingWindowLOF.Window<>(dq, w, 10, 2, false);
+    SlidingWindowLOF.Window<DoubleVector> fresh = new SlidingWindowLOF.Window<>(dq, w, 10, 2, false);
+    DBIDArrayIter it = DBIDUtil.ensureArray(rel.getDBIDs()).iter();
+    for(; it.valid(); it.advance()) {
+      // Query intermediate scores, to exercise the lazy updates.
+      sliding.score(sliding.insert(rel.get(it)));
+      if(it.getOffset() >= n - w) {
+        fresh.insert(rel.get(it));
+      }
+    }
+    for(int i = 0; i < w; i++) {
+      assertEquals("Score after expiration does not match.", fresh.score(i), sliding.score((n - w + i) % w), 1e-10);
+    }
+  }
+}
@@ -46,6 +46,17 @@ public class SimpleEnsembleTest extends AbstractOutlierAlgorithmTest {
     testAUC(db, "Noise", result, 0.98631);
   }
 
+  @Test
+  public void testEnsembleMeanSharedKNN() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<>(SimpleOutlierEnsemble.class) //
+        .with(SimpleOutlierEnsemble.ALGORITHM_ID, LOF.class.getName() + "," + KNNOutlier.class.getName()) //
+        .with(SimpleOutlierEnsemble.Parameterizer.VOTING_ID, EnsembleVotingMean.class) //
+        .with(SimpleOutlierEnsemble.Parameterizer.KNN_ID, 11) //
+        .with(KNNOutlier.Parameterizer.K_ID, 1).with(LOF.Parameterizer.K_ID, 10).build().run(db);
+    testAUC(db, "Noise", result, 0.98631);
+  }
+
   @Test
   public void testEnsembleMin() {
     Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
@@ -0,0 +1,54 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial;
+
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.datasource.AbstractDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.filter.FixedDBIDsFilter;
+import de.lmu.ifi.dbs.elki.datasource.filter.typeconversions.SplitNumberVectorFilter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Abstract test for spatial outlier algorithms.
+ * <p>
+ * The first two attributes of the test data are used as spatial coordinates,
+ * the third as non-spatial attribute.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public abstract class AbstractSpatialOutlierAlgorithmTest extends AbstractOutlierAlgorithmTest {
+  /**
+   * Generate a database with a spatial relation (2d) and an attribute
+   * relation (1d).
+   *
+   * @return Database
+   */
+  protected static Database makeSpatialDatabase() {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(AbstractDatabaseConnection.Parameterizer.FILTERS_ID, //
+        Arrays.asList(new FixedDBIDsFilter(1), new SplitNumberVectorFilter<>(new int[] { 0, 1 })));
+    return makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960, params);
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.PrecomputedKNearestNeighborNeighborhood;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the CTLuZTestOutlier algorithm.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class CTLuZTestOutlierTest extends AbstractSpatialOutlierAlgorithmTest {
+  @Test
+  public void testCTLuZTestOutlier() {
+    Database db = makeSpatialDatabase();
+    Relation<DoubleVector> spatial = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD_2D);
+    Relation<DoubleVector> attributes = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD_1D);
+    OutlierResult result = new ELKIBuilder<CTLuZTestOutlier<DoubleVector>>(CTLuZTestOutlier.class) //
+        .with(AbstractNeighborhoodOutlier.NEIGHBORHOOD_ID, PrecomputedKNearestNeighborNeighborhood.Factory.class) //
+        .with(PrecomputedKNearestNeighborNeighborhood.Factory.Parameterizer.K_ID, 10) //
+        .with(PrecomputedKNearestNeighborNeighborhood.Factory.Parameterizer.DISTANCEFUNCTION_ID, EuclideanDistanceFunction.class) //
+        .build().run(db, spatial, attributes);
+    testAUC(db, "Noise", result, 0.86);
+    testSingleScore(result, 1, 0.15718203);
+    testSingleScore(result, 901, 2.77464787);
+  }
+}
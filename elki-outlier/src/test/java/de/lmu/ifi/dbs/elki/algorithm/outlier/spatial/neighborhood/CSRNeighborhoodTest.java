@@ -0,0 +1,85 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+
+/**
+ * Unit test for the compressed sparse row neighborhood graph.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class CSRNeighborhoodTest {
+  /**
+   * Number of objects.
+   */
+  private static final int SIZE = 7;
+
+  /**
+   * Each object i has the neighbors i+1 and i+3 (modulo size), and an object
+   * that is not part of the graph.
+   */
+  @Test
+  public void testBuildAndTranspose() {
+    final DBIDRange ids = DBIDUtil.generateStaticDBIDRange(SIZE);
+    CSRNeighborhood graph = CSRNeighborhood.build(ids, i -> {
+      ArrayModifiableDBIDs n = DBIDUtil.newArray(3);
+      DBIDArrayIter it = ids.iter();
+      n.add(it.seek((i + 1) % SIZE));
+      n.add(DBIDUtil.generateSingleDBID());
+      n.add(it.seek((i + 3) % SIZE));
+      return n;
+    });
+    assertEquals("Size does not match.", SIZE, graph.size());
+    assertEquals("Unknown objects were not ignored.", 2 * SIZE, graph.edges());
+    for(int i = 0; i < SIZE; i++) {
+      assertEquals("Degree does not match.", 2, graph.degree(i));
+      assertEquals("Neighbor does not match.", (i + 1) % SIZE, graph.target(graph.begin(i)));
+      assertEquals("Neighbor does not match.", (i + 3) % SIZE, graph.target(graph.begin(i) + 1));
+    }
+    DBIDArrayIter it = ids.iter();
+    DBIDs nids = graph.getNeighborDBIDs(it.seek(2));
+    assertEquals("Neighbor set size does not match.", 2, nids.size());
+    assertTrue("Neighbor missing.", nids.contains(it.seek(3)));
+    assertTrue("Neighbor missing.", nids.contains(it.seek(5)));
+    assertTrue("Unknown objects have no neighbors.", graph.getNeighborDBIDs(DBIDUtil.generateSingleDBID()).isEmpty());
+
+    // Reverse neighbors of i are i-3 and i-1, ordered by index.
+    CSRNeighborhood rev = graph.transpose();
+    assertEquals("Edges do not match.", graph.edges(), rev.edges());
+    for(int i = 0; i < SIZE; i++) {
+      int a = (i + SIZE - 3) % SIZE, b = (i + SIZE - 1) % SIZE;
+      assertEquals("Degree does not match.", 2, rev.degree(i));
+      assertEquals("Reverse neighbor does not match.", Math.min(a, b), rev.target(rev.begin(i)));
+      assertEquals("Reverse neighbor does not match.", Math.max(a, b), rev.target(rev.begin(i) + 1));
+    }
+  }
+}
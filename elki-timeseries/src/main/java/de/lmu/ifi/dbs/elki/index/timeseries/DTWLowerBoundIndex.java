@@ -0,0 +1,416 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.timeseries;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.AbstractDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.AbstractDistanceRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.timeseries.DTWDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractIndex;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
+import de.lmu.ifi.dbs.elki.index.KNNIndex;
+import de.lmu.ifi.dbs.elki.index.RangeIndex;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+
+import net.jafama.FastMath;
+
+/**
+ * Refining index for dynamic time warping, using a cascade of lower bounds.
+ * <p>
+ * Candidates are first filtered with the constant time LB_Kim bound (first
+ * and last values), then with LB_Keogh using the envelope of the query, and
+ * then with LB_Keogh using the envelope of the candidate. Only the remaining
+ * candidates are refined with the exact DTW distance, which is abandoned early
+ * once it exceeds the current k-distance (or query radius).
+ * <p>
+ * The results are identical to a linear scan. The bounds are only used for
+ * series of equal length, other candidates are refined directly. Candidate
+ * envelopes are computed lazily on the first query, for the band width of the
+ * distance function used.
+ * <p>
+ * Reference:
+ * <p>
+ * E. Keogh, C. A. Ratanamahatana<br>
+ * Exact indexing of dynamic time warping<br>
+ * Knowledge and Information Systems 7(3)
+ * <p>
+ * T. Rakthanmanon, B. Campana, A. Mueen, G. Batista, B. Westover, Q. Zhu, J.
+ * Zakaria, E. Keogh<br>
+ * Searching and mining trillions of time series subsequences under dynamic
+ * time warping<br>
+ * Proc. 18th ACM SIGKDD Int. Conf. Knowledge Discovery and Data Mining
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <V> Vector type
+ */
+@Reference(authors = "E. Keogh, C. A. Ratanamahatana", //
+    title = "Exact indexing of dynamic time warping", //
+    booktitle = "Knowledge and Information Systems 7(3)", //
+    url = "https://doi.org/10.1007/s10115-004-0154-9", //
+    bibkey = "DBLP:journals/kais/KeoghR05")
+@Reference(authors = "T. Rakthanmanon, B. Campana, A. Mueen, G. Batista, B. Westover, Q. Zhu, J. Zakaria, E. Keogh", //
+    title = "Searching and mining trillions of time series subsequences under dynamic time warping", //
+    booktitle = "Proc. 18th ACM SIGKDD Int. Conf. Knowledge Discovery and Data Mining", //
+    url = "https://doi.org/10.1145/2339530.2339576", //
+    bibkey = "DBLP:conf/kdd/RakthanmanonCMBWZZK12")
+public class DTWLowerBoundIndex<V extends NumberVector> extends AbstractIndex<V> implements KNNIndex<V>, RangeIndex<V> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(DTWLowerBoundIndex.class);
+
+  /**
+   * Candidate envelopes, upper values followed by lower values.
+   */
+  private WritableDataStore<double[]> envelopes;
+
+  /**
+   * Band width the envelopes were computed for.
+   */
+  private int envelopeBand = -1;
+
+  /**
+   * Statistics: candidates pruned by each bound, and refinements. Queries
+   * may run concurrently, so these are thread safe.
+   */
+  private final LongAdder kimPruned = new LongAdder(), keoghPruned = new LongAdder(), reversePruned = new LongAdder(), refinements = new LongAdder();
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   */
+  public DTWLowerBoundIndex(Relation<V> relation) {
+    super(relation);
+  }
+
+  @Override
+  public void initialize() {
+    // Envelopes depend on the band width, and are computed lazily.
+  }
+
+  /**
+   * Get the candidate envelopes for a band width.
+   *
+   * @param band Band width
+   * @return Envelope storage
+   */
+  private synchronized WritableDataStore<double[]> getEnvelopes(int band) {
+    if(envelopes != null && envelopeBand == band) {
+      return envelopes;
+    }
+    WritableDataStore<double[]> store = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, double[].class);
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+      store.put(iter, envelope(relation.get(iter).toArray(), band));
+    }
+    envelopeBand = band;
+    return envelopes = store;
+  }
+
+  /**
+   * Compute the envelope of a series, using monotone queues in linear time.
+   *
+   * @param s Series
+   * @param band Band width
+   * @return Upper envelope followed by the lower envelope
+   */
+  protected static double[] envelope(double[] s, int band) {
+    final int n = s.length;
+    band = band < n ? band : n - 1;
+    double[] env = new double[n << 1];
+    int[] du = new int[n], dl = new int[n];
+    int uh = 0, ut = 0, lh = 0, lt = 0;
+    for(int i = 0, e = n + band; i < e; i++) {
+      if(i < n) {
+        final double v = s[i];
+        while(ut > uh && s[du[ut - 1]] <= v) {
+          --ut;
+        }
+        du[ut++] = i;
+        while(lt > lh && s[dl[lt - 1]] >= v) {
+          --lt;
+        }
+        dl[lt++] = i;
+      }
+      final int p = i - band;
+      if(p >= 0) {
+        while(du[uh] < p - band) {
+          ++uh;
+        }
+        while(dl[lh] < p - band) {
+          ++lh;
+        }
+        env[p] = s[du[uh]];
+        env[n + p] = s[dl[lh]];
+      }
+    }
+    return env;
+  }
+
+  /**
+   * LB_Kim lower bound of the squared DTW, using the first and last values.
+   *
+   * @param q Query series
+   * @param c Candidate series of the same length
+   * @return Lower bound
+   */
+  protected static double lbKim(double[] q, NumberVector c) {
+    final int m = q.length - 1;
+    final double d0 = q[0] - c.doubleValue(0);
+    if(m == 0) {
+      return d0 * d0;
+    }
+    final double dm = q[m] - c.doubleValue(m);
+    return d0 * d0 + dm * dm;
+  }
+
+  /**
+   * LB_Keogh lower bound of the squared DTW, with early abandoning.
+   *
+   * @param c Candidate series
+   * @param env Envelope of the other series
+   * @param limit Abandoning threshold
+   * @return Lower bound, or a partial sum larger than the threshold
+   */
+  protected static double lbKeogh(NumberVector c, double[] env, double limit) {
+    final int n = env.length >>> 1;
+    double sum = 0.;
+    for(int i = 0; i < n && sum <= limit; i++) {
+      final double v = c.doubleValue(i);
+      final double u = env[i], l = env[n + i];
+      final double d = v > u ? v - u : v < l ? l - v : 0.;
+      sum += d * d;
+    }
+    return sum;
+  }
+
+  /**
+   * Check the lower bound cascade for a candidate.
+   *
+   * @param df Distance function
+   * @param qv Query vector
+   * @param q Query values
+   * @param qenv Query envelope
+   * @param cenvs Candidate envelopes
+   * @param it Candidate
+   * @param threshold Distance threshold
+   * @return Distance, or infinity if pruned
+   */
+  private double refine(DTWDistanceFunction df, V qv, double[] q, double[] qenv, WritableDataStore<double[]> cenvs, DBIDRef it, double threshold) {
+    final V c = relation.get(it);
+    if(threshold < Double.POSITIVE_INFINITY && c.getDimensionality() == q.length) {
+      if(FastMath.sqrt(lbKim(q, c)) > threshold) {
+        kimPruned.increment();
+        return Double.POSITIVE_INFINITY;
+      }
+      final double limit = threshold * threshold;
+      if(FastMath.sqrt(lbKeogh(c, qenv, limit)) > threshold) {
+        keoghPruned.increment();
+        return Double.POSITIVE_INFINITY;
+      }
+      if(FastMath.sqrt(lbKeogh(qv, cenvs.get(it), limit)) > threshold) {
+        reversePruned.increment();
+        return Double.POSITIVE_INFINITY;
+      }
+    }
+    refinements.increment();
+    return df.distance(qv, c, threshold);
+  }
+
+  @Override
+  public void logStatistics() {
+    final String prefix = this.getClass().getName();
+    LOG.statistics(new LongStatistic(prefix + ".pruned.lb_kim", kimPruned.sum()));
+    LOG.statistics(new LongStatistic(prefix + ".pruned.lb_keogh", keoghPruned.sum()));
+    LOG.statistics(new LongStatistic(prefix + ".pruned.lb_keogh-reverse", reversePruned.sum()));
+    LOG.statistics(new LongStatistic(prefix + ".refinements", refinements.sum()));
+  }
+
+  @Override
+  public KNNQuery<V> getKNNQuery(DistanceQuery<V> distanceQuery, Object... hints) {
+    DistanceFunction<? super V> df = distanceQuery.getDistanceFunction();
+    // Subclasses such as ERP and derivative DTW are not bounded by LB_Keogh.
+    if(df.getClass() == DTWDistanceFunction.class) {
+      return new DTWKNNQuery(distanceQuery, (DTWDistanceFunction) df);
+    }
+    return null;
+  }
+
+  @Override
+  public RangeQuery<V> getRangeQuery(DistanceQuery<V> distanceQuery, Object... hints) {
+    DistanceFunction<? super V> df = distanceQuery.getDistanceFunction();
+    if(df.getClass() == DTWDistanceFunction.class) {
+      return new DTWRangeQuery(distanceQuery, (DTWDistanceFunction) df);
+    }
+    return null;
+  }
+
+  @Override
+  public String getLongName() {
+    return "DTW lower bound index";
+  }
+
+  @Override
+  public String getShortName() {
+    return "dtw-lower-bound";
+  }
+
+  /**
+   * kNN query object, for dynamic time warping.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  protected class DTWKNNQuery extends AbstractDistanceKNNQuery<V> {
+    /**
+     * Distance function.
+     */
+    private DTWDistanceFunction df;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     * @param df Distance function
+     */
+    public DTWKNNQuery(DistanceQuery<V> distanceQuery, DTWDistanceFunction df) {
+      super(distanceQuery);
+      this.df = df;
+    }
+
+    @Override
+    public KNNList getKNNForObject(V obj, int k) {
+      final double[] q = obj.toArray();
+      final int band = df.effectiveBandSize(q.length, q.length);
+      final double[] qenv = envelope(q, band);
+      final WritableDataStore<double[]> cenvs = getEnvelopes(band);
+      KNNHeap heap = DBIDUtil.newHeap(k);
+      double max = Double.POSITIVE_INFINITY;
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+        final double dist = refine(df, obj, q, qenv, cenvs, it, max);
+        if(dist <= max) {
+          max = heap.insert(dist, it);
+        }
+      }
+      return heap.toKNNList();
+    }
+  }
+
+  /**
+   * Range query object, for dynamic time warping.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  protected class DTWRangeQuery extends AbstractDistanceRangeQuery<V> {
+    /**
+     * Distance function.
+     */
+    private DTWDistanceFunction df;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     * @param df Distance function
+     */
+    public DTWRangeQuery(DistanceQuery<V> distanceQuery, DTWDistanceFunction df) {
+      super(distanceQuery);
+      this.df = df;
+    }
+
+    @Override
+    public void getRangeForObject(V obj, double range, ModifiableDoubleDBIDList result) {
+      final double[] q = obj.toArray();
+      final int band = df.effectiveBandSize(q.length, q.length);
+      final double[] qenv = envelope(q, band);
+      final WritableDataStore<double[]> cenvs = getEnvelopes(band);
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+        final double dist = refine(df, obj, q, qenv, cenvs, it, range);
+        if(dist <= range) {
+          result.add(dist, it);
+        }
+      }
+    }
+  }
+
+  /**
+   * Index factory.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.has DTWLowerBoundIndex
+   *
+   * @param <V> Vector type
+   */
+  public static class Factory<V extends NumberVector> implements IndexFactory<V> {
+    @Override
+    public DTWLowerBoundIndex<V> instantiate(Relation<V> relation) {
+      return new DTWLowerBoundIndex<>(relation);
+    }
+
+    @Override
+    public TypeInformation getInputTypeRestriction() {
+      return TypeUtil.NUMBER_VECTOR_VARIABLE_LENGTH;
+    }
+
+    /**
+     * Parameterizer for the DTW lower bound index.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     *
+     * @param <V> Vector type
+     */
+    public static class Parameterizer<V extends NumberVector> extends AbstractParameterizer {
+      @Override
+      protected Factory<V> makeInstance() {
+        return new Factory<>();
+      }
+    }
+  }
+}
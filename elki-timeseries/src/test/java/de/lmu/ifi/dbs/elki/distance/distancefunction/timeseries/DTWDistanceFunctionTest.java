@@ -21,6 +21,7 @@
 package de.lmu.ifi.dbs.elki.distance.distancefunction.timeseries;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -114,4 +115,23 @@ public class DTWDistanceFunctionTest {
       }
     }
   }
+
+  @Test
+  public void testEarlyAbandoning() {
+    DoubleVector[] vecs = new DoubleVector[DATA.length];
+    for(int i = 0; i < DATA.length; i++) {
+      vecs[i] = DoubleVector.wrap(DATA[i]);
+    }
+    DTWDistanceFunction f = new DTWDistanceFunction();
+    for(int i = 0; i < vecs.length; i++) {
+      for(int j = 0; j < vecs.length; j++) {
+        double exp = f.distance(vecs[i], vecs[j]);
+        assertEquals("Distance does not agree.", exp, f.distance(vecs[i], vecs[j], exp), 0.);
+        assertEquals("Distance does not agree.", exp, f.distance(vecs[i], vecs[j], exp + 1.), 0.);
+        if(exp > 0.) {
+          assertTrue("Distance not abandoned.", f.distance(vecs[i], vecs[j], exp * .5) > exp * .5);
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,109 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.timeseries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.ArrayAdapterDatabaseConnection;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.timeseries.DTWDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
+
+/**
+ * Unit test for the DTW lower bound index, against exhaustive computation.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class DTWLowerBoundIndexTest {
+  @Test
+  public void testEnvelope() {
+    double[] s = { 1., 3., 2., 5., 4., 0. };
+    double[] env = DTWLowerBoundIndex.envelope(s, 1);
+    assertTrue(Arrays.equals(new double[] { 3., 3., 5., 5., 5., 4., 1., 1., 2., 2., 0., 0. }, env));
+    env = DTWLowerBoundIndex.envelope(s, 0);
+    assertTrue(Arrays.equals(new double[] { 1., 3., 2., 5., 4., 0., 1., 3., 2., 5., 4., 0. }, env));
+    env = DTWLowerBoundIndex.envelope(s, 10);
+    assertTrue(Arrays.equals(new double[] { 5., 5., 5., 5., 5., 5., 0., 0., 0., 0., 0., 0. }, env));
+  }
+
+  @Test
+  public void testRandomWalks() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[300][40];
+    for(double[] row : data) {
+      double v = 0.;
+      for(int i = 0; i < row.length; i++) {
+        row[i] = v += rnd.nextGaussian();
+      }
+    }
+    IndexFactory<?> factory = new DTWLowerBoundIndex.Factory<DoubleVector>();
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), Arrays.asList(factory));
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    for(double band : new double[] { 3, .25, Double.POSITIVE_INFINITY }) {
+      DTWDistanceFunction df = new DTWDistanceFunction(band);
+      DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, df);
+      KNNQuery<DoubleVector> knnq = db.getKNNQuery(dq, 10);
+      RangeQuery<DoubleVector> rq = db.getRangeQuery(dq);
+      assertTrue(knnq.getClass().getName(), knnq instanceof DTWLowerBoundIndex.DTWKNNQuery);
+      assertTrue(rq.getClass().getName(), rq instanceof DTWLowerBoundIndex.DTWRangeQuery);
+      int c = 0;
+      for(DBIDIter q = rel.iterDBIDs(); q.valid() && c < 20; q.advance(), c++) {
+        // Exhaustive, without early abandoning:
+        ModifiableDoubleDBIDList all = DBIDUtil.newDistanceDBIDList(rel.size());
+        for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+          all.add(df.distance(rel.get(q), rel.get(it)), it);
+        }
+        all.sort();
+        KNNList knn = knnq.getKNNForDBID(q, 10);
+        assertEquals(10, knn.size());
+        DoubleDBIDListIter a = all.iter();
+        for(DoubleDBIDListIter it = knn.iter(); it.valid(); it.advance(), a.advance()) {
+          assertEquals("Distance differs.", a.doubleValue(), it.doubleValue(), 0.);
+          assertTrue("Neighbor differs.", DBIDUtil.equal(a, it));
+        }
+        final double r = knn.getKNNDistance();
+        DoubleDBIDList range = rq.getRangeForDBID(q, r);
+        assertEquals("Range query size differs.", knn.size(), range.size());
+      }
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.benchmark;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.SlidingWindowLOF;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.result.Result;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Benchmarking algorithm for the insertion throughput of
+ * {@link SlidingWindowLOF}. The objects of the relation are streamed through
+ * the window in order, and the current score of every n-th new object is
+ * queried.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <O> Object type
+ *
+ * @apiviz.uses SlidingWindowLOF.Window
+ */
+public class SlidingWindowLOFBenchmarkAlgorithm<O> extends AbstractDistanceBasedAlgorithm<O, Result> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(SlidingWindowLOFBenchmarkAlgorithm.class);
+
+  /**
+   * Window size.
+   */
+  protected int window;
+
+  /**
+   * Number of neighbors.
+   */
+  protected int k;
+
+  /**
+   * Number of additional candidate neighbors.
+   */
+  protected int slack;
+
+  /**
+   * Use the simplified LOF.
+   */
+  protected boolean simplified;
+
+  /**
+   * Query interval, 0 to only insert.
+   */
+  protected int interval;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function to use
+   * @param window Window size
+   * @param k Number of neighbors
+   * @param slack Number of additional candidate neighbors
+   * @param simplified Use the simplified LOF
+   * @param interval Query interval, 0 to only insert
+   */
+  public SlidingWindowLOFBenchmarkAlgorithm(DistanceFunction<? super O> distanceFunction, int window, int k, int slack, boolean simplified, int interval) {
+    super(distanceFunction);
+    this.window = window;
+    this.k = k;
+    this.slack = slack;
+    this.simplified = simplified;
+    this.interval = interval;
+  }
+
+  /**
+   * Run the algorithm.
+   *
+   * @param relation Relation
+   * @return Null result
+   */
+  public Result run(Relation<O> relation) {
+    DistanceQuery<O> dq = relation.getDistanceQuery(getDistanceFunction());
+    SlidingWindowLOF.Window<O> win = new SlidingWindowLOF.Window<>(dq, window, k, slack, simplified);
+    FiniteProgress prog = LOG.isVeryVerbose() ? new FiniteProgress("Insertions", relation.size(), LOG) : null;
+    double checksum = 0.;
+    int i = 0, queries = 0;
+    final long start = System.nanoTime();
+    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance(), i++) {
+      final int slot = win.insert(relation.get(iditer));
+      if(interval > 0 && i % interval == 0) {
+        checksum += win.score(slot);
+        ++queries;
+      }
+      LOG.incrementProcessed(prog);
+    }
+    final long elapsed = System.nanoTime() - start;
+    LOG.ensureCompleted(prog);
+    if(LOG.isStatistics()) {
+      final String key = SlidingWindowLOFBenchmarkAlgorithm.class.getName();
+      LOG.statistics(new LongStatistic(key + ".insertions", i));
+      LOG.statistics(new LongStatistic(key + ".queries", queries));
+      LOG.statistics(new LongStatistic(key + ".rescans", win.getRescans()));
+      LOG.statistics(new DoubleStatistic(key + ".insertions-per-second", i * 1e9 / elapsed));
+      LOG.statistics(new DoubleStatistic(key + ".mean-microseconds", elapsed * 1e-3 / i));
+      LOG.statistics(new DoubleStatistic(key + ".checksum", checksum));
+    }
+    return null;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @apiviz.exclude
+   *
+   * @author Erich Schubert
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Parameter for the query interval.
+     */
+    public static final OptionID INTERVAL_ID = new OptionID("slidinglofbench.interval", "Query the score of every n-th inserted object. 0 to only measure insertions.");
+
+    /**
+     * Window size.
+     */
+    protected int window;
+
+    /**
+     * Number of neighbors.
+     */
+    protected int k;
+
+    /**
+     * Number of additional candidate neighbors.
+     */
+    protected int slack;
+
+    /**
+     * Use the simplified LOF.
+     */
+    protected boolean simplified;
+
+    /**
+     * Query interval.
+     */
+    protected int interval;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter kP = new IntParameter(LOF.Parameterizer.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.intValue();
+      }
+      IntParameter windowP = new IntParameter(SlidingWindowLOF.Parameterizer.WINDOW_ID, 1000) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT);
+      if(config.grab(windowP)) {
+        window = windowP.intValue();
+      }
+      IntParameter slackP = new IntParameter(SlidingWindowLOF.Parameterizer.SLACK_ID, 5) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(slackP)) {
+        slack = slackP.intValue();
+      }
+      Flag simplifiedF = new Flag(SlidingWindowLOF.Parameterizer.SIMPLIFIED_ID);
+      if(config.grab(simplifiedF)) {
+        simplified = simplifiedF.isTrue();
+      }
+      IntParameter intervalP = new IntParameter(INTERVAL_ID, 1) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(intervalP)) {
+        interval = intervalP.intValue();
+      }
+    }
+
+    @Override
+    protected SlidingWindowLOFBenchmarkAlgorithm<O> makeInstance() {
+      return new SlidingWindowLOFBenchmarkAlgorithm<>(distanceFunction, window, k, slack, simplified, interval);
+    }
+  }
+}
@@ -333,7 +333,7 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractApp
    * @param scaling Scaling function
    * @param label Identification label
    */
-  void writeResult(PrintStream out, DBIDs ids, OutlierResult result, ScalingFunction scaling, String label) {
+  static void writeResult(PrintStream out, DBIDs ids, OutlierResult result, ScalingFunction scaling, String label) {
     if(scaling instanceof OutlierScaling) {
       ((OutlierScaling) scaling).prepare(result);
     }
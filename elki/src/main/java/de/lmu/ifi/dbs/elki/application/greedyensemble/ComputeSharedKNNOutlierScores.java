@@ -0,0 +1,757 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.application.greedyensemble;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import de.lmu.ifi.dbs.elki.algorithm.DistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.trivial.ByLabelOutlier;
+import de.lmu.ifi.dbs.elki.application.AbstractApplication;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.math.Mean;
+import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.math.statistics.distribution.NormalDistribution;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.GaussianKernelDensityFunction;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.KNNProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.InvertedOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.ProbabilisticOutlierScore;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.range.IntGenerator;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.FormatUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntGeneratorParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.PatternParameter;
+import de.lmu.ifi.dbs.elki.utilities.scaling.IdentityScaling;
+import de.lmu.ifi.dbs.elki.utilities.scaling.ScalingFunction;
+import de.lmu.ifi.dbs.elki.workflow.InputStep;
+
+import net.jafama.FastMath;
+
+/**
+ * Application that computes the kNN-based outlier scores of
+ * {@link ComputeKNNOutlierScores} from a single, shared k nearest neighbor
+ * materialization.
+ * <p>
+ * The neighbors are computed once for the maximum k, in parallel, and stored
+ * as flat arrays. All methods and all values of k are then derived from
+ * prefixes of these lists, sharing the per-k neighborhood sizes and
+ * k-distances between the methods; no method repeats any kNN query.
+ * <p>
+ * Only the methods that can be computed from the neighbor lists (and, for
+ * LDOF, the distances within each neighborhood) are supported: KNN, KNNW, LOF,
+ * SimplifiedLOF, LoOP, LDOF, ODIN, KDEOS, INFLO and KNNDD. The scores are
+ * identical to those of the individual algorithms (including tied neighbors,
+ * and the degenerate results for k=0), and the output file has the same
+ * format as {@link ComputeKNNOutlierScores}, such that it can be used with
+ * {@link EvaluatePrecomputedOutlierScores} and
+ * {@link GreedyEnsembleExperiment}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <O> Vector type
+ */
+public class ComputeSharedKNNOutlierScores<O extends NumberVector> extends AbstractApplication {
+  /**
+   * Our logger class.
+   */
+  private static final Logging LOG = Logging.getLogger(ComputeSharedKNNOutlierScores.class);
+
+  /**
+   * Input step
+   */
+  final InputStep inputstep;
+
+  /**
+   * Distance function to use
+   */
+  final DistanceFunction<? super O> distf;
+
+  /**
+   * Range of k.
+   */
+  final IntGenerator krange;
+
+  /**
+   * Output file
+   */
+  File outfile;
+
+  /**
+   * By label outlier detection - reference
+   */
+  ByLabelOutlier bylabel;
+
+  /**
+   * Scaling function.
+   */
+  ScalingFunction scaling;
+
+  /**
+   * Pattern for disabling (skipping) methods.
+   */
+  Pattern disable = null;
+
+  /**
+   * Maximum k for O(k^2) methods.
+   */
+  int ksquarestop;
+
+  /**
+   * Distance query, for LDOF.
+   */
+  private DistanceQuery<O> distq;
+
+  /**
+   * Object ids, in output order.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Neighbor offsets (including the query object) for each object.
+   */
+  private int[][] nidx;
+
+  /**
+   * Neighbor distances for each object.
+   */
+  private double[][] ndist;
+
+  /**
+   * Size of the current neighborhood of each object, including ties and the
+   * query object.
+   */
+  private int[] end;
+
+  /**
+   * Current k-distance of each object.
+   */
+  private double[] kdist;
+
+  /**
+   * Constructor.
+   *
+   * @param inputstep Input step
+   * @param distf Distance function
+   * @param krange K parameter range
+   * @param bylabel By label outlier (reference)
+   * @param outfile Output file
+   * @param scaling Scaling function
+   * @param disable Pattern for disabling methods
+   * @param ksquarestop Maximum k for O(k^2) methods
+   */
+  public ComputeSharedKNNOutlierScores(InputStep inputstep, DistanceFunction<? super O> distf, IntGenerator krange, ByLabelOutlier bylabel, File outfile, ScalingFunction scaling, Pattern disable, int ksquarestop) {
+    super();
+    this.distf = distf;
+    this.krange = krange;
+    this.inputstep = inputstep;
+    this.bylabel = bylabel;
+    this.outfile = outfile;
+    this.scaling = scaling;
+    this.disable = disable;
+    this.ksquarestop = ksquarestop;
+  }
+
+  @Override
+  public void run() {
+    final Database database = inputstep.getDatabase();
+    final Relation<O> relation = database.getRelation(distf.getInputTypeRestriction());
+    // Ensure we don't go beyond the relation size:
+    final int maxk = Math.min(krange.getMax(), relation.size() - 1);
+    final int maxksq = Math.min(maxk, ksquarestop);
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    distq = database.getDistanceQuery(relation, distf);
+
+    Duration time = LOG.newDuration(this.getClass().getCanonicalName() + ".knn.runtime").begin();
+    materialize(relation, Math.min(maxk + 1, relation.size()));
+    LOG.statistics(time.end());
+
+    final int digits = (int) FastMath.ceil(FastMath.log10(krange.getMax() + 1));
+    final String format = "%s-%0" + digits + "d";
+    try (PrintStream fout = new PrintStream(outfile)) {
+      // Control: print the DBIDs in case we are seeing an odd iteration
+      fout.append("# Data set size: " + relation.size()) //
+          .append(" data type: " + relation.getDataTypeInformation()).append(FormatUtil.NEWLINE);
+
+      // Label outlier result (reference)
+      ComputeKNNOutlierScores.writeResult(fout, ids, bylabel.run(database), new IdentityScaling(), "bylabel");
+
+      final int size = ids.size();
+      end = new int[size];
+      kdist = new double[size];
+      double[] scores = new double[size], tmp = new double[size];
+      int[] marks = new int[size];
+      krange.forEach(k -> {
+        if(k < 0 || k > maxk) {
+          return;
+        }
+        // Neighborhood sizes and k-distances, shared by all methods.
+        for(int i = 0; i < size; i++) {
+          final double[] d = ndist[i];
+          final double kd = d[k];
+          int e = k + 1;
+          while(e < d.length && d[e] <= kd) {
+            e++;
+          }
+          end[i] = e;
+          kdist[i] = kd;
+        }
+        final String label = String.format(Locale.ROOT, format, "", k);
+        if(!isDisabled("KNN")) {
+          System.arraycopy(kdist, 0, scores, 0, size);
+          write(fout, "KNN" + label, scores, mm -> new BasicOutlierScoreMeta(mm.getMin(), mm.getMax(), 0., Double.POSITIVE_INFINITY, 0.));
+        }
+        if(!isDisabled("KNNW")) {
+          computeKNNW(k, scores);
+          write(fout, "KNNW" + label, scores, mm -> new BasicOutlierScoreMeta(mm.getMin(), mm.getMax(), 0., Double.POSITIVE_INFINITY, 0.));
+        }
+        if(!isDisabled("LOF")) {
+          computeLRDs(false, tmp);
+          computeLOFs(tmp, false, scores);
+          write(fout, "LOF" + label, scores, mm -> new QuotientOutlierScoreMeta(mm.getMin(), mm.getMax(), 0., Double.POSITIVE_INFINITY, 1.));
+        }
+        if(!isDisabled("SimplifiedLOF")) {
+          computeLRDs(true, tmp);
+          computeLOFs(tmp, true, scores);
+          write(fout, "SimplifiedLOF" + label, scores, mm -> new QuotientOutlierScoreMeta(mm.getMin(), mm.getMax(), 0., Double.POSITIVE_INFINITY, 1.));
+        }
+        if(!isDisabled("LoOP")) {
+          computeLoOP(k, tmp, scores);
+          write(fout, "LoOP" + label, scores, mm -> new ProbabilisticOutlierScore(mm.getMin(), mm.getMax(), 0.));
+        }
+        if(k >= 2 && k <= maxksq && !isDisabled("LDOF")) {
+          computeLDOF(scores);
+          write(fout, "LDOF" + label, scores, mm -> new QuotientOutlierScoreMeta(mm.getMin(), mm.getMax(), 0., Double.POSITIVE_INFINITY, .5));
+        }
+        if(!isDisabled("ODIN")) {
+          computeODIN(k, scores);
+          write(fout, "ODIN" + label, scores, mm -> new InvertedOutlierScoreMeta(size > 1 ? 1. / k : Double.POSITIVE_INFINITY, mm.getMax(), 0., (size - 1.) / k, 1));
+        }
+        if(k >= 2 && !isDisabled("KDEOS")) {
+          computeKDEOS(k, tmp, scores);
+          write(fout, "KDEOS" + label, scores, mm -> new ProbabilisticOutlierScore(mm.getMin(), mm.getMax()));
+        }
+        if(!isDisabled("INFLO")) {
+          computeINFLO(marks, scores);
+          write(fout, "INFLO" + label, scores, mm -> new QuotientOutlierScoreMeta(mm.getMin(), mm.getMax(), 0., Double.POSITIVE_INFINITY, 1.));
+        }
+        if(!isDisabled("KNNDD")) {
+          computeKNNDD(scores);
+          write(fout, "KNNDD" + label, scores, mm -> new BasicOutlierScoreMeta(mm.getMin(), mm.getMax(), 0., Double.POSITIVE_INFINITY, 1.));
+        }
+      });
+    }
+    catch(FileNotFoundException e) {
+      throw new AbortException("Cannot create output file.", e);
+    }
+  }
+
+  /**
+   * Materialize the k nearest neighbors of all objects in parallel, and
+   * convert them to offset and distance arrays.
+   *
+   * @param relation Data relation
+   * @param k Number of neighbors, including the query object
+   */
+  private void materialize(Relation<O> relation, int k) {
+    KNNQuery<O> knnq = QueryUtil.getKNNQuery(relation, distf, k);
+    WritableDataStore<KNNList> knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_TEMP, KNNList.class);
+    KNNProcessor<O> knnm = new KNNProcessor<>(k, knnq);
+    SharedObject<KNNList> knnv = new SharedObject<>();
+    WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(knns);
+    knnm.connectKNNOutput(knnv);
+    storek.connectInput(knnv);
+    ParallelExecutor.run(ids, knnm, storek);
+
+    WritableIntegerDataStore offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      offsets.putInt(it, it.getOffset());
+    }
+    nidx = new int[ids.size()][];
+    ndist = new double[ids.size()][];
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final KNNList knn = knns.get(it);
+      final int[] ni = nidx[it.getOffset()] = new int[knn.size()];
+      final double[] nd = ndist[it.getOffset()] = new double[knn.size()];
+      int j = 0;
+      for(DoubleDBIDListIter n = knn.iter(); n.valid(); n.advance(), j++) {
+        ni[j] = offsets.intValue(n);
+        nd[j] = n.doubleValue();
+      }
+    }
+    knns.destroy();
+    offsets.destroy();
+  }
+
+  /**
+   * Compute the kNN weight scores.
+   *
+   * @param k Number of neighbors
+   * @param scores Output scores
+   */
+  private void computeKNNW(int k, double[] scores) {
+    for(int i = 0; i < scores.length; i++) {
+      final int[] ni = nidx[i];
+      final double[] nd = ndist[i];
+      double skn = 0;
+      int c = 0;
+      for(int j = 0, e = end[i]; j < e && c < k; j++) {
+        if(ni[j] != i) {
+          skn += nd[j];
+          ++c;
+        }
+      }
+      scores[i] = c < k ? Double.POSITIVE_INFINITY : skn;
+    }
+  }
+
+  /**
+   * Compute the (simplified) local reachability densities.
+   *
+   * @param simplified Use the simplified density, without reachability
+   * @param lrds Output densities
+   */
+  private void computeLRDs(boolean simplified, double[] lrds) {
+    for(int i = 0; i < lrds.length; i++) {
+      final int[] ni = nidx[i];
+      final double[] nd = ndist[i];
+      double sum = 0.;
+      int c = 0;
+      for(int j = 0, e = end[i]; j < e; j++) {
+        if(ni[j] != i) {
+          sum += simplified ? nd[j] : MathUtil.max(nd[j], kdist[ni[j]]);
+          ++c;
+        }
+      }
+      lrds[i] = sum > 0 ? c / sum : Double.POSITIVE_INFINITY;
+    }
+  }
+
+  /**
+   * Compute the (simplified) LOF scores.
+   *
+   * @param lrds Densities
+   * @param simplified Simplified LOF
+   * @param scores Output scores
+   */
+  private void computeLOFs(double[] lrds, boolean simplified, double[] scores) {
+    for(int i = 0; i < scores.length; i++) {
+      final double lrdp = lrds[i];
+      if(Double.isInfinite(lrdp)) {
+        scores[i] = 1.;
+        continue;
+      }
+      final int[] ni = nidx[i];
+      double sum = 0.;
+      int c = 0;
+      for(int j = 0, e = end[i]; j < e; j++) {
+        if(ni[j] != i) {
+          final double val = lrds[ni[j]];
+          sum += val;
+          ++c;
+          if(simplified && Double.isInfinite(val)) {
+            break;
+          }
+        }
+      }
+      scores[i] = sum / (lrdp * c);
+    }
+  }
+
+  /**
+   * Compute the LoOP scores, with lambda = 1.
+   *
+   * @param k Number of neighbors
+   * @param pdists Scratch buffer for the probabilistic distances
+   * @param scores Output scores
+   */
+  private void computeLoOP(int k, double[] pdists, double[] scores) {
+    for(int i = 0; i < scores.length; i++) {
+      final int[] ni = nidx[i];
+      final double[] nd = ndist[i];
+      double ssum = 0.;
+      int c = 0;
+      for(int j = 0, e = end[i]; j < e && c < k; j++) {
+        if(ni[j] != i) {
+          ssum += nd[j] * nd[j];
+          ++c;
+        }
+      }
+      pdists[i] = c > 0 ? FastMath.sqrt(ssum / c) : 0.;
+    }
+    double nplof = 0.;
+    for(int i = 0; i < scores.length; i++) {
+      final int[] ni = nidx[i];
+      double sum = 0.;
+      int c = 0;
+      for(int j = 0, e = end[i]; j < e && c < k; j++) {
+        if(ni[j] != i) {
+          sum += pdists[ni[j]];
+          ++c;
+        }
+      }
+      double plof = MathUtil.max(pdists[i] * c / sum, 1.0);
+      plof = Double.isNaN(plof) || Double.isInfinite(plof) ? 1. : plof;
+      scores[i] = plof;
+      nplof += (plof - 1.0) * (plof - 1.0);
+    }
+    nplof = FastMath.sqrt(nplof / scores.length);
+    final double norm = 1. / ((nplof > 0. ? nplof : 1.) * MathUtil.SQRT2);
+    for(int i = 0; i < scores.length; i++) {
+      scores[i] = NormalDistribution.erf((scores[i] - 1.) * norm);
+    }
+  }
+
+  /**
+   * Compute the ODIN in-degree scores.
+   *
+   * @param k Number of neighbors
+   * @param scores Output scores
+   */
+  private void computeODIN(int k, double[] scores) {
+    final double inc = 1. / k;
+    Arrays.fill(scores, 0.);
+    for(int i = 0; i < scores.length; i++) {
+      final int[] ni = nidx[i];
+      for(int j = 0, e = end[i]; j < e; j++) {
+        if(ni[j] != i) {
+          scores[ni[j]] += inc;
+        }
+      }
+    }
+  }
+
+  /**
+   * Compute the kNN data descriptor scores.
+   *
+   * @param scores Output scores
+   */
+  private void computeKNNDD(double[] scores) {
+    for(int i = 0; i < scores.length; i++) {
+      final double d = kdist[i], nd = kdist[nidx[i][end[i] - 1]];
+      scores[i] = nd > 0 ? d / nd : d > 0 ? Double.POSITIVE_INFINITY : 1.;
+    }
+  }
+
+  /**
+   * Compute the LDOF scores.
+   *
+   * @param scores Output scores
+   */
+  private void computeLDOF(double[] scores) {
+    DBIDArrayIter it1 = ids.iter(), it2 = ids.iter();
+    Mean dxp = new Mean(), Dxp = new Mean();
+    for(int i = 0; i < scores.length; i++) {
+      final int[] ni = nidx[i];
+      final double[] nd = ndist[i];
+      dxp.reset();
+      Dxp.reset();
+      for(int j = 0, e = end[i]; j < e; j++) {
+        if(ni[j] == i) {
+          continue;
+        }
+        dxp.put(nd[j]);
+        it1.seek(ni[j]);
+        for(int l = j + 1; l < e; l++) {
+          if(ni[l] != i) {
+            Dxp.put(distq.distance(it1, it2.seek(ni[l])));
+          }
+        }
+      }
+      final double ldof = dxp.getMean() / Dxp.getMean();
+      scores[i] = Double.isNaN(ldof) || Double.isInfinite(ldof) ? 1. : ldof;
+    }
+  }
+
+  /**
+   * Compute the KDEOS scores, with a Gaussian kernel, intrinsic dimensionality
+   * 2, and kmin = kmax = k, as in {@link ComputeKNNOutlierScores}.
+   *
+   * @param k Number of neighbors
+   * @param dens Scratch buffer for the densities
+   * @param scores Output scores
+   */
+  private void computeKDEOS(int k, double[] dens, double[] scores) {
+    final double scale = .5 * GaussianKernelDensityFunction.KERNEL.canonicalBandwidth();
+    Arrays.fill(dens, 0.);
+    for(int i = 0; i < dens.length; i++) {
+      final int[] ni = nidx[i];
+      final double[] nd = ndist[i];
+      double sum = 0.;
+      for(int j = 0; j < k; j++) {
+        sum += nd[j];
+      }
+      final double ibw = k / (sum * scale);
+      final double sca = ibw * ibw;
+      for(int j = 0, e = end[i]; j < e; j++) {
+        // NaNs with duplicate points!
+        final double d = sca < Double.POSITIVE_INFINITY ? sca * GaussianKernelDensityFunction.KERNEL.density(nd[j] * ibw) : nd[j] == 0. ? 1. : 0.;
+        dens[ni[j]] += d;
+        if(d < 1e-20) {
+          break;
+        }
+      }
+    }
+    MeanVariance mv = new MeanVariance();
+    for(int i = 0; i < scores.length; i++) {
+      final int[] ni = nidx[i];
+      mv.reset();
+      for(int j = 0, e = end[i]; j < e; j++) {
+        mv.put(dens[ni[j]]);
+      }
+      final double stddev = mv.getSampleStddev();
+      scores[i] = NormalDistribution.standardNormalCDF(stddev > 0. ? (mv.getMean() - dens[i]) / stddev : 0.);
+    }
+  }
+
+  /**
+   * Compute the INFLO scores, with m = 1.
+   *
+   * @param marks Scratch buffer for marking neighbors
+   * @param scores Output scores
+   */
+  private void computeINFLO(int[] marks, double[] scores) {
+    final int size = scores.length;
+    // Reverse neighbors, as compressed adjacency lists.
+    int[] rstart = new int[size + 1];
+    for(int i = 0; i < size; i++) {
+      final int[] ni = nidx[i];
+      for(int j = 0, e = end[i]; j < e; j++) {
+        if(ni[j] != i) {
+          ++rstart[ni[j] + 1];
+        }
+      }
+    }
+    for(int i = 0; i < size; i++) {
+      rstart[i + 1] += rstart[i];
+    }
+    int[] rnn = new int[rstart[size]], rpos = Arrays.copyOf(rstart, size);
+    for(int i = 0; i < size; i++) {
+      final int[] ni = nidx[i];
+      for(int j = 0, e = end[i]; j < e; j++) {
+        if(ni[j] != i) {
+          rnn[rpos[ni[j]]++] = i;
+        }
+      }
+    }
+    Arrays.fill(marks, -1);
+    for(int i = 0; i < size; i++) {
+      final int[] ni = nidx[i];
+      final int e = end[i];
+      // Mark the kNN, and count the symmetric neighbors (and the point itself).
+      for(int j = 0; j < e; j++) {
+        marks[ni[j]] = i;
+      }
+      int count = 1;
+      for(int r = rstart[i]; r < rstart[i + 1]; r++) {
+        count += marks[rnn[r]] == i ? 1 : 0;
+      }
+      if(count >= e || kdist[i] == 0.) { // INFLO pruning rule, or duplicates
+        scores[i] = 1.;
+        continue;
+      }
+      // Mean density of kNN and RkNN:
+      double sum = 0.;
+      int c = 0;
+      for(int j = 0; j < e + rstart[i + 1] - rstart[i]; j++) {
+        final int n = j < e ? ni[j] : rnn[rstart[i] + j - e];
+        if(n == i || (j >= e && marks[n] == i)) {
+          continue;
+        }
+        if(kdist[n] <= 0) {
+          sum = Double.POSITIVE_INFINITY;
+          c++;
+          break;
+        }
+        sum += 1. / kdist[n];
+        c++;
+      }
+      sum *= kdist[i];
+      scores[i] = sum == 0 ? 1. : sum / c;
+    }
+  }
+
+  /**
+   * Write a single output line.
+   *
+   * @param out Output stream
+   * @param label Identification label
+   * @param scores Scores, by offset
+   * @param meta Score metadata, given the score range
+   */
+  private void write(PrintStream out, String label, double[] scores, Function<DoubleMinMax, OutlierScoreMeta> meta) {
+    WritableDoubleDataStore store = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_TEMP);
+    DoubleMinMax mm = new DoubleMinMax();
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final double v = scores[it.getOffset()];
+      store.putDouble(it, v);
+      mm.put(v);
+    }
+    ComputeKNNOutlierScores.writeResult(out, ids, new OutlierResult(meta.apply(mm), new MaterializedDoubleRelation(label, label, store, ids)), scaling, label);
+    store.destroy();
+  }
+
+  /**
+   * Test if a given algorithm is disabled.
+   *
+   * @param name Algorithm name
+   * @return {@code true} if disabled
+   */
+  protected boolean isDisabled(String name) {
+    return disable != null && disable.matcher(name).matches();
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<O extends NumberVector> extends AbstractApplication.Parameterizer {
+    /**
+     * k step size
+     */
+    IntGenerator krange;
+
+    /**
+     * Data source
+     */
+    InputStep inputstep;
+
+    /**
+     * Distance function to use
+     */
+    DistanceFunction<? super O> distf;
+
+    /**
+     * By label outlier -- reference
+     */
+    ByLabelOutlier bylabel;
+
+    /**
+     * Scaling function.
+     */
+    ScalingFunction scaling = null;
+
+    /**
+     * Output destination file
+     */
+    File outfile;
+
+    /**
+     * Pattern for disabling (skipping) methods.
+     */
+    Pattern disable = null;
+
+    /**
+     * Maximum k for O(k^2) methods.
+     */
+    int ksquarestop = 100;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      // Data input
+      inputstep = config.tryInstantiate(InputStep.class);
+      // Distance function
+      ObjectParameter<DistanceFunction<? super O>> distP = new ObjectParameter<>(DistanceBasedAlgorithm.DISTANCE_FUNCTION_ID, DistanceFunction.class, EuclideanDistanceFunction.class);
+      if(config.grab(distP)) {
+        distf = distP.instantiateClass(config);
+      }
+      IntGeneratorParameter kP = new IntGeneratorParameter(ComputeKNNOutlierScores.Parameterizer.KRANGE_ID);
+      if(config.grab(kP)) {
+        krange = kP.getValue();
+      }
+      bylabel = config.tryInstantiate(ByLabelOutlier.class);
+      // Output
+      outfile = super.getParameterOutputFile(config, "File to output the resulting score vectors to.");
+
+      ObjectParameter<ScalingFunction> scalingP = new ObjectParameter<>(ComputeKNNOutlierScores.Parameterizer.SCALING_ID, ScalingFunction.class);
+      scalingP.setOptional(true);
+      if(config.grab(scalingP)) {
+        scaling = scalingP.instantiateClass(config);
+      }
+
+      PatternParameter disableP = new PatternParameter(ComputeKNNOutlierScores.Parameterizer.DISABLE_ID) //
+          .setOptional(true);
+      if(config.grab(disableP)) {
+        disable = disableP.getValue();
+      }
+
+      IntParameter ksqP = new IntParameter(ComputeKNNOutlierScores.Parameterizer.KSQUARE_ID, 100);
+      if(config.grab(ksqP)) {
+        ksquarestop = ksqP.intValue();
+      }
+    }
+
+    @Override
+    protected ComputeSharedKNNOutlierScores<O> makeInstance() {
+      return new ComputeSharedKNNOutlierScores<>(inputstep, distf, krange, bylabel, outfile, scaling, disable, ksquarestop);
+    }
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args Command line parameters.
+   */
+  public static void main(String[] args) {
+    runCLIApplication(ComputeSharedKNNOutlierScores.class, args);
+  }
+}
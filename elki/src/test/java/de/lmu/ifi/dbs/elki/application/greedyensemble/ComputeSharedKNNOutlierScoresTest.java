@@ -0,0 +1,91 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.application.greedyensemble;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.trivial.ByLabelOutlier;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.range.IntGenerator;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.range.LinearIntGenerator;
+import de.lmu.ifi.dbs.elki.workflow.InputStep;
+
+/**
+ * Test the shared kNN outlier score computation against the individual
+ * algorithms run by {@link ComputeKNNOutlierScores}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ComputeSharedKNNOutlierScoresTest extends AbstractSimpleAlgorithmTest {
+  /**
+   * Methods not supported by the shared computation.
+   */
+  private static final Pattern UNSUPPORTED = Pattern.compile("FastABOD|LDF|COF|Intrinsic|IDOS|KDLOF|DWOF|LIC|VOV|KNNSOS|ISOS");
+
+  @Test
+  public void testSameAsComputeKNNOutlierScores() throws IOException {
+    IntGenerator krange = new LinearIntGenerator(0, 1, 12);
+    File expfile = File.createTempFile("knnscores", ".txt");
+    File resfile = File.createTempFile("sharedknnscores", ".txt");
+    try {
+      new ComputeKNNOutlierScores<NumberVector>(new InputStep(makeSimpleDatabase(UNITTEST + "outlier-parabolic.ascii", 530)), //
+          EuclideanDistanceFunction.STATIC, krange, new ByLabelOutlier(), expfile, null, UNSUPPORTED, 8).run();
+      new ComputeSharedKNNOutlierScores<NumberVector>(new InputStep(makeSimpleDatabase(UNITTEST + "outlier-parabolic.ascii", 530)), //
+          EuclideanDistanceFunction.STATIC, krange, new ByLabelOutlier(), resfile, null, null, 8).run();
+      List<String> exp = Files.readAllLines(expfile.toPath(), StandardCharsets.UTF_8);
+      List<String> res = Files.readAllLines(resfile.toPath(), StandardCharsets.UTF_8);
+      // The shared computation writes all methods for each k, the original
+      // all values of k for each method.
+      Collections.sort(exp);
+      Collections.sort(res);
+      assertEquals("Number of lines differs.", exp.size(), res.size());
+      for(int i = 0; i < exp.size(); i++) {
+        String[] e = exp.get(i).split(" "), r = res.get(i).split(" ");
+        assertEquals("Label differs.", e[0], r[0]);
+        assertEquals("Number of values differs for " + e[0], e.length, r.length);
+        if(e[0].charAt(0) == '#') {
+          assertEquals("Header differs.", exp.get(i), res.get(i));
+          continue;
+        }
+        for(int j = 1; j < e.length; j++) {
+          assertEquals("Score differs for " + e[0], Double.parseDouble(e[j]), Double.parseDouble(r[j]), 1e-10);
+        }
+      }
+    }
+    finally {
+      expfile.delete();
+      resfile.delete();
+    }
+  }
+}